@@ -0,0 +1,370 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BackupReader - Reads a backup written by BackupWriter, one block at a time. The users are
+ * available as soon as the reader is open; the transactions are decoded as they are read.
+ *
+ * Every block is checked against its CRC32C before any of its records is returned, and the
+ * counts and footer are checked at the end, so a damaged or truncated backup fails with an
+ * IOException instead of restoring wrong data. A reader must not be shared between threads.
+ */
+public class BackupReader implements Closeable {
+
+    // Larger block lengths can only come from a damaged file
+    private static final int MAX_BLOCK_LENGTH = 64 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private final boolean incremental;
+    private final long createdMillis;
+    private final LedgerBackup.Mark base;
+    private final List<User> users = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private final Inflater inflater = new Inflater();
+    private byte[] block = new byte[BackupWriter.BLOCK_SIZE + 1024];
+    private byte[] compressed = new byte[BackupWriter.BLOCK_SIZE];
+    private int blockNumber;
+    private int position;
+    private int limit;
+
+    // State of the current transaction block
+    private final List<String> userIds = new ArrayList<>();
+    private final List<String> categoryIds = new ArrayList<>();
+    private long blockRecords;
+    private long previousDay;
+    private long previousCents;
+
+    private long transactionCount;
+    // Type of a block read ahead but not yet decoded, or 0
+    private int pendingType;
+    private LedgerBackup.Mark end;
+    private boolean closed;
+
+    /**
+     * Opens a backup and reads its header and users
+     * @param in The stream to read the backup from; closed with the reader
+     */
+    public BackupReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, BackupWriter.BLOCK_SIZE));
+        byte[] header = new byte[BackupWriter.HEADER_SIZE];
+        try {
+            this.in.readFully(header);
+        } catch (EOFException e) {
+            throw new IOException("Not a ledger backup", e);
+        }
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        if (fields.getInt() != BackupWriter.MAGIC) {
+            throw new IOException("Not a ledger backup");
+        }
+        checkCrc(header, "header");
+        int version = fields.get() & 0xFF;
+        if (version != BackupWriter.VERSION) {
+            throw new IOException("Unsupported backup version " + version);
+        }
+        fields.get(); // flags: each block names its own codec
+        incremental = fields.get() == BackupWriter.KIND_INCREMENTAL;
+        createdMillis = fields.getLong();
+        base = new LedgerBackup.Mark(fields.getLong(), fields.getInt());
+
+        int type = readBlock();
+        if (type == BackupWriter.BLOCK_USERS) {
+            readUsers();
+        } else {
+            pendingType = type;
+        }
+    }
+
+    public boolean isIncremental() { return incremental; }
+    public long getCreatedMillis() { return createdMillis; }
+
+    /**
+     * Gets the store position the backup starts at
+     * @return The base mark; position 0 for a full backup
+     */
+    public LedgerBackup.Mark getBase() {
+        return base;
+    }
+
+    /**
+     * Gets the users in the backup
+     * @return The users, in the order they were written
+     */
+    public List<User> getUsers() {
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Reads the next transaction
+     * @return The transaction, or null at the end of the backup
+     * @throws IOException If the backup cannot be read, is damaged or is truncated
+     */
+    public Transaction next() throws IOException {
+        while (blockRecords == 0) {
+            if (end != null) {
+                return null;
+            }
+            int type = pendingType != 0 ? pendingType : readBlock();
+            pendingType = 0;
+            if (type == BackupWriter.BLOCK_TRANSACTIONS) {
+                startTransactions();
+            } else if (type == BackupWriter.BLOCK_END) {
+                readEnd();
+                return null;
+            } else {
+                throw new IOException("Unexpected block type " + type + " in backup block " + blockNumber);
+            }
+        }
+
+        long day = previousDay + unzigzag(getVarint());
+        long cents = previousCents + unzigzag(getVarint());
+        String userId = getReference(userIds);
+        String category = getReference(categoryIds);
+        String description = getString();
+        previousDay = day;
+        previousCents = cents;
+        blockRecords--;
+        if (blockRecords == 0 && position != limit) {
+            throw corrupt("trailing bytes");
+        }
+        transactionCount++;
+        return Transaction.ofCents(userId, LocalDate.ofEpochDay(day), description, category, cents);
+    }
+
+    /**
+     * Gets the store position the backup ends at, known once {@link #next()} returned null
+     * @return The end mark, or null before the end is reached
+     */
+    public LedgerBackup.Mark getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the number of transactions read so far
+     * @return The transaction count
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inflater.end();
+        in.close();
+    }
+
+    /**
+     * Reads the next block into the block buffer and checks it
+     * @return The block type
+     */
+    private int readBlock() throws IOException {
+        try {
+            int type = in.readUnsignedByte();
+            int codec = in.readUnsignedByte();
+            int rawLength = (int) readVarint(in);
+            int storedLength = (int) readVarint(in);
+            int expectedCrc = in.readInt();
+            blockNumber++;
+            if (rawLength < 0 || rawLength > MAX_BLOCK_LENGTH || storedLength < 0 || storedLength > MAX_BLOCK_LENGTH) {
+                throw corrupt("bad length");
+            }
+            if (block.length < rawLength) {
+                block = new byte[rawLength];
+            }
+            if (codec == BackupWriter.CODEC_STORED) {
+                if (storedLength != rawLength) {
+                    throw corrupt("bad length");
+                }
+                in.readFully(block, 0, rawLength);
+            } else if (codec == BackupWriter.CODEC_DEFLATE) {
+                if (compressed.length < storedLength) {
+                    compressed = new byte[storedLength];
+                }
+                in.readFully(compressed, 0, storedLength);
+                inflate(storedLength, rawLength);
+            } else {
+                throw corrupt("unknown codec " + codec);
+            }
+            crc.reset();
+            crc.update(block, 0, rawLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw corrupt("checksum mismatch");
+            }
+            position = 0;
+            limit = rawLength;
+            return type;
+        } catch (EOFException e) {
+            throw new IOException("Backup is truncated after block " + blockNumber, e);
+        }
+    }
+
+    private void inflate(int storedLength, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed, 0, storedLength);
+        try {
+            int n = 0;
+            while (n < rawLength) {
+                int inflated = inflater.inflate(block, n, rawLength - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != rawLength || !inflater.finished()) {
+                throw corrupt("bad compressed data");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Backup block " + blockNumber + " is corrupt: " + e.getMessage(), e);
+        }
+    }
+
+    private void readUsers() throws IOException {
+        long count = getVarint();
+        for (long i = 0; i < count; i++) {
+            try {
+                users.add(User.fromFileString(getString()));
+            } catch (RuntimeException e) {
+                throw corrupt("bad user");
+            }
+        }
+        if (position != limit) {
+            throw corrupt("trailing bytes");
+        }
+    }
+
+    private void startTransactions() throws IOException {
+        blockRecords = getVarint();
+        if (blockRecords <= 0) {
+            throw corrupt("empty block");
+        }
+        previousDay = 0;
+        previousCents = 0;
+        userIds.clear();
+        categoryIds.clear();
+    }
+
+    /**
+     * Checks the counts and reads the footer
+     */
+    private void readEnd() throws IOException {
+        long userCount = getVarint();
+        long expectedTransactions = getVarint();
+        if (userCount != users.size() || expectedTransactions != transactionCount) {
+            throw new IOException("Backup is incomplete: expected " + expectedTransactions + " transactions and "
+                + userCount + " users, found " + transactionCount + " and " + users.size());
+        }
+        byte[] footer = new byte[BackupWriter.FOOTER_SIZE];
+        try {
+            in.readFully(footer);
+        } catch (EOFException e) {
+            throw new IOException("Backup is truncated in its footer", e);
+        }
+        end = readFooter(footer);
+    }
+
+    private String getReference(List<String> dictionary) throws IOException {
+        long id = getVarint();
+        if (id < dictionary.size()) {
+            return dictionary.get((int) id);
+        }
+        if (id != dictionary.size()) {
+            throw corrupt("bad dictionary reference");
+        }
+        String value = getString();
+        dictionary.add(value);
+        return value;
+    }
+
+    private String getString() throws IOException {
+        long length = getVarint();
+        if (length > limit - position) {
+            throw corrupt("bad string length");
+        }
+        String value = new String(block, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    private long getVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw corrupt("record runs past the block");
+            }
+            byte b = block[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw corrupt("bad varint");
+    }
+
+    private IOException corrupt(String reason) {
+        return new IOException("Backup block " + blockNumber + " is corrupt: " + reason);
+    }
+
+    /**
+     * Checks and decodes a footer
+     * @param footer The last {@link BackupWriter#FOOTER_SIZE} bytes of a backup
+     * @return The end mark
+     */
+    static LedgerBackup.Mark readFooter(byte[] footer) throws IOException {
+        ByteBuffer fields = ByteBuffer.wrap(footer);
+        if (fields.getInt(footer.length - 4) != BackupWriter.MAGIC) {
+            throw new IOException("Backup is incomplete or corrupt: no footer");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(footer, 0, 12);
+        if ((int) crc.getValue() != fields.getInt(12)) {
+            throw new IOException("Backup footer is corrupt: checksum mismatch");
+        }
+        return new LedgerBackup.Mark(fields.getLong(0), fields.getInt(8));
+    }
+
+    /**
+     * Checks bytes whose last 4 bytes are the CRC32C of the others
+     */
+    private void checkCrc(byte[] data, String part) throws IOException {
+        crc.reset();
+        crc.update(data, 0, data.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(data).getInt(data.length - 4)) {
+            throw new IOException("Backup " + part + " is corrupt: checksum mismatch");
+        }
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Backup is corrupt: bad varint");
+    }
+}
@@ -0,0 +1,327 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * BackupWriter - Writes a backup of users and transactions to a stream, one block at a time,
+ * so memory use does not depend on the size of the ledger. Read it back with BackupReader.
+ *
+ * File layout (integers are big-endian, "varint" marks unsigned LEB128 varints):
+ *   header  int magic "FTXB", byte version, byte flags (1 = deflate), byte kind (0 = full,
+ *           1 = incremental), long creation time, long base position, int base fingerprint,
+ *           int CRC32C of the header
+ *   blocks  byte type, byte codec (0 = stored, 1 = deflate), varint raw length, varint stored
+ *           length, int CRC32C of the raw payload, payload
+ *   footer  long end position, int end fingerprint, int CRC32C of these 12 bytes, int magic
+ *
+ * The first block holds the users, the last one the user and transaction counts. Each
+ * transaction block holds a varint record count and then, per record: the date and the
+ * amount in cents as zigzag varint deltas from the previous record, the user and category
+ * as dictionary references and the description as a varint length and UTF-8 bytes. A
+ * dictionary reference is the varint index of an earlier value in the block, or the
+ * dictionary size followed by a new value. Deltas and dictionaries restart in every block,
+ * so each block decodes and is checked on its own. A block is only deflated when that
+ * makes it smaller.
+ *
+ * The base and end positions tie a backup to the store it was taken from, see LedgerBackup.
+ * A backup without its footer, e.g. from a writer closed without {@link #finish}, is
+ * rejected as truncated by the reader. A writer must not be shared between threads.
+ */
+public class BackupWriter implements Closeable {
+
+    static final int MAGIC = 0x46545842;        // "FTXB"
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+    static final int KIND_FULL = 0;
+    static final int KIND_INCREMENTAL = 1;
+    static final int BLOCK_USERS = 1;
+    static final int BLOCK_TRANSACTIONS = 2;
+    static final int BLOCK_END = 3;
+    static final int CODEC_STORED = 0;
+    static final int CODEC_DEFLATE = 1;
+    static final int HEADER_SIZE = 31;
+    static final int FOOTER_SIZE = 20;
+    // Raw payload bytes collected before a transaction block is written
+    static final int BLOCK_SIZE = 64 * 1024;
+    // Bytes reserved in front of a transaction block for its record count
+    private static final int COUNT_SPACE = 5;
+
+    private final DataOutputStream out;
+    private final Deflater deflater;
+    private final CRC32C crc = new CRC32C();
+    private byte[] block = new byte[BLOCK_SIZE + 1024];
+    private int size = COUNT_SPACE;
+    private byte[] compressed = new byte[BLOCK_SIZE];
+
+    // State of the current transaction block
+    private final Map<String, Integer> userIds = new HashMap<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private int blockRecords;
+    private long previousDay;
+    private long previousCents;
+
+    private int userCount;
+    private long transactionCount;
+    private boolean usersWritten;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Starts a backup and writes its header
+     * @param out The stream the backup is written to; closed with the writer
+     * @param compress True to deflate the blocks
+     * @param incremental True if the backup only holds the records after its base
+     * @param base The store position the backup starts at
+     */
+    public BackupWriter(OutputStream out, boolean compress, boolean incremental, LedgerBackup.Mark base) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BLOCK_SIZE));
+        this.deflater = compress ? new Deflater() : null;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.writeByte(incremental ? KIND_INCREMENTAL : KIND_FULL);
+        header.writeLong(System.currentTimeMillis());
+        header.writeLong(base.getPosition());
+        header.writeInt(base.getFingerprint());
+        writeChecked(bytes.toByteArray());
+    }
+
+    /**
+     * Writes the users. Must be called before the first transaction, at most once.
+     * @param users The users
+     */
+    public void writeUsers(Collection<User> users) throws IOException {
+        if (usersWritten || transactionCount > 0) {
+            throw new IllegalStateException("Users must be written once, before the transactions");
+        }
+        usersWritten = true;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(users.size() * 256 + 8);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        writeVarint(payload, users.size());
+        for (User user : users) {
+            byte[] line = user.toFileString().getBytes(StandardCharsets.UTF_8);
+            writeVarint(payload, line.length);
+            payload.write(line);
+        }
+        byte[] data = bytes.toByteArray();
+        writeBlock(BLOCK_USERS, data, 0, data.length);
+        userCount = users.size();
+    }
+
+    /**
+     * Writes one transaction
+     * @param transaction The transaction
+     */
+    public void write(Transaction transaction) throws IOException {
+        usersWritten = true;
+        long day = transaction.getDate().toEpochDay();
+        long cents = transaction.getAmountCents();
+        putVarint(zigzag(day - previousDay));
+        putVarint(zigzag(cents - previousCents));
+        putReference(userIds, transaction.getUserId());
+        putReference(categoryIds, transaction.getCategory());
+        putString(transaction.getDescription());
+        previousDay = day;
+        previousCents = cents;
+        blockRecords++;
+        transactionCount++;
+        if (size >= BLOCK_SIZE) {
+            flushTransactions();
+        }
+    }
+
+    /**
+     * Gets the number of transactions written so far
+     * @return The transaction count
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Writes the last block and the footer, which completes the backup
+     * @param end The store position the backup ends at
+     */
+    public void finish(LedgerBackup.Mark end) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Backup already finished");
+        }
+        flushTransactions();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        writeVarint(payload, userCount);
+        writeVarint(payload, transactionCount);
+        byte[] data = bytes.toByteArray();
+        writeBlock(BLOCK_END, data, 0, data.length);
+
+        bytes.reset();
+        payload.writeLong(end.getPosition());
+        payload.writeInt(end.getFingerprint());
+        writeChecked(bytes.toByteArray());
+        out.writeInt(MAGIC);
+        out.flush();
+        finished = true;
+    }
+
+    /**
+     * Closes the stream. A backup that was not finished is left incomplete.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered transactions as a block, preceded by their count
+     */
+    private void flushTransactions() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        // Put the count varint right in front of the records
+        int countLength = varintLength(blockRecords);
+        int start = COUNT_SPACE - countLength;
+        long count = blockRecords;
+        for (int i = start; i < COUNT_SPACE - 1; i++) {
+            block[i] = (byte) ((count & 0x7F) | 0x80);
+            count >>>= 7;
+        }
+        block[COUNT_SPACE - 1] = (byte) count;
+        writeBlock(BLOCK_TRANSACTIONS, block, start, size - start);
+
+        size = COUNT_SPACE;
+        blockRecords = 0;
+        previousDay = 0;
+        previousCents = 0;
+        userIds.clear();
+        categoryIds.clear();
+    }
+
+    private void writeBlock(int type, byte[] data, int offset, int length) throws IOException {
+        crc.reset();
+        crc.update(data, offset, length);
+        int codec = CODEC_STORED;
+        byte[] payload = data;
+        int payloadOffset = offset;
+        int payloadLength = length;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished() && n < length) {
+                if (n == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                n += deflater.deflate(compressed, n, compressed.length - n);
+            }
+            if (deflater.finished() && n < length) {
+                codec = CODEC_DEFLATE;
+                payload = compressed;
+                payloadOffset = 0;
+                payloadLength = n;
+            }
+        }
+        out.writeByte(type);
+        out.writeByte(codec);
+        writeVarint(out, length);
+        writeVarint(out, payloadLength);
+        out.writeInt((int) crc.getValue());
+        out.write(payload, payloadOffset, payloadLength);
+    }
+
+    /**
+     * Writes bytes followed by their CRC32C
+     */
+    private void writeChecked(byte[] data) throws IOException {
+        crc.reset();
+        crc.update(data, 0, data.length);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private void putReference(Map<String, Integer> dictionary, String value) {
+        String key = value == null ? "" : value;
+        Integer id = dictionary.get(key);
+        if (id != null) {
+            putVarint(id);
+            return;
+        }
+        putVarint(dictionary.size());
+        dictionary.put(key, dictionary.size());
+        putString(key);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, block, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void putVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            block[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (size + bytes > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, size + bytes));
+        }
+    }
+
+    /**
+     * Maps signed values to unsigned ones so that small magnitudes stay short: 0, -1, 1, -2 ...
+     */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,157 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CsvExporter - Writes transactions to a UTF-8 CSV file with the columns
+ * UserId, Date, Description, Category and Amount.
+ *
+ * Fields are quoted as in RFC 4180: a field holding a comma, a quote, a line break or
+ * surrounding spaces is put in quotes with its quotes doubled, so descriptions such as
+ * "Dinner, drinks" import back as one field. Amounts are written with two decimals.
+ *
+ * Each row is encoded into one large buffer that is written to the file's channel when
+ * full, so memory use does not depend on the number of rows. With gzip on, the buffer
+ * goes through a gzip stream on the same channel instead.
+ *
+ * An exporter writes one file and must not be shared between threads.
+ */
+public class CsvExporter implements Closeable {
+
+    public static final String HEADER = "UserId,Date,Description,Category,Amount";
+    // Encoded bytes collected before each write to the file
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final OutputStream gzip;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(128);
+    private int rowCount;
+    private boolean closed;
+
+    /**
+     * Creates or replaces a CSV file and writes its header
+     * @param file The file to write
+     * @param gzip True to compress the file with gzip
+     */
+    public CsvExporter(File file, boolean gzip) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024) : null;
+        line.append(HEADER).append('\n');
+        encodeLine();
+    }
+
+    /**
+     * Writes one transaction as a CSV row
+     * @param transaction The transaction
+     */
+    public void write(Transaction transaction) throws IOException {
+        line.setLength(0);
+        appendField(line, transaction.getUserId());
+        line.append(',').append(transaction.getDate()).append(',');
+        appendField(line, transaction.getDescription());
+        line.append(',');
+        appendField(line, transaction.getCategory());
+        line.append(',');
+        Money.appendTo(line, transaction.getAmountCents());
+        line.append('\n');
+        encodeLine();
+        rowCount++;
+    }
+
+    /**
+     * Gets the number of rows written so far, without the header
+     * @return The row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the buffered rows and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            drain();
+            if (gzip != null) {
+                gzip.close();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends a field, quoted if it holds a delimiter, a quote, a line break or surrounding spaces
+     * @param out The line to append to
+     * @param value The field value; null is written as an empty field
+     */
+    static void appendField(StringBuilder out, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quote = Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1));
+        for (int i = 0; !quote && i < value.length(); i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private void encodeLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) {
+            drain();
+        }
+        encoder.reset();
+    }
+
+    /**
+     * Writes the buffered bytes to the file, or to the gzip stream
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        if (gzip != null) {
+            gzip.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,695 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * CsvImporter - Reads the records of a CSV file for TransactionManager.importFromCSV,
+ * either on the calling thread or in parallel.
+ *
+ * The file is read as bytes through a FileChannel and split into records and fields by a
+ * {@link CsvTokenizer}; only the fields the record parser asks for are decoded. The charset
+ * is detected from the first bytes of the file when it is opened: UTF-8 (with or without a
+ * byte order mark), GBK, or the platform default charset otherwise.
+ *
+ * A record is a line, unless a quoted field spans several lines. Line numbers in the error
+ * report are the physical line a record starts on, counting "\n", "\r" and "\r\n" as one
+ * line break each.
+ *
+ * In sequential mode the file is read into a buffer piece by piece. In parallel mode the
+ * file is memory-mapped and cut into chunks at record boundaries by a quick byte scan that
+ * only tracks quotes and line breaks. Chunks are parsed on the common fork-join pool, a
+ * bounded number at a time, and committed in file order from the calling thread, so rows
+ * land in the store in the same order and the error report is the same as in sequential mode.
+ *
+ * Progress is reported to an optional listener, and the import stops with a
+ * CancellationException soon after cancellation is requested. Rows already handed to the
+ * committer stay committed; rolling them back is up to the caller.
+ *
+ * An import opens the file once: {@link #sample(int)} peeks at the first records for
+ * format detection and {@link #run(RecordParser, char, boolean)} then parses the file from
+ * the start through the same channel. {@link #sampleRecords(int, int, char, long, SampleVisitor)}
+ * reads records spread over the file for a preview, without reading the rest of it.
+ *
+ * After each batch handed to the committer, an optional checkpoint listener is told the
+ * file offset just past the batch's last record. {@link #resumeAt(long, int)} starts the
+ * next run at such an offset, so an interrupted import can continue where it stopped.
+ *
+ * Import counters are kept per instance; an instance imports one file.
+ */
+class CsvImporter implements Closeable {
+
+    /**
+     * Parses one CSV record into a transaction
+     */
+    interface RecordParser {
+        /**
+         * @param record The tokenizer positioned on the record; fields are decoded on request
+         * @return The transaction
+         * @throws Exception if the record is invalid; the message goes into the error report
+         */
+        Transaction parse(CsvTokenizer record) throws Exception;
+    }
+
+    /**
+     * Told about the rows committed so far, after each batch
+     */
+    interface CheckpointListener {
+        /**
+         * @param offset File offset just past the last committed record
+         * @param lineCount Number of lines before the offset
+         * @param successCount Rows committed by this run
+         * @param errorCount Rows rejected by this run before the offset
+         */
+        void onCommitted(long offset, int lineCount, int successCount, int errorCount);
+    }
+
+    /**
+     * Visits a record read for a preview
+     */
+    interface SampleVisitor {
+        /**
+         * @param record The tokenizer positioned on the record; fields are decoded on request
+         * @param offset File offset of the record
+         * @param length Length of the record in bytes, with its line break
+         * @param lineNumber The record's line number, or 0 if it was read at a random offset
+         */
+        void visit(CsvTokenizer record, long offset, int length, int lineNumber);
+    }
+
+    // Rows are handed to the committer in batches of this size
+    static final int BATCH_SIZE = 1000;
+    // Target size of a parallel chunk and of the sequential read buffer, in bytes
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    // Records between two cancellation checks
+    private static final int CHECK_INTERVAL = 256;
+    // Minimum time between two progress reports
+    private static final long REPORT_INTERVAL_NANOS = 200_000_000L;
+    // Bytes read ahead for charset detection and sample()
+    static final int SAMPLE_BYTES = 64 * 1024;
+    // Bytes read at a random offset to find one record there
+    private static final int RANDOM_WINDOW = 16 * 1024;
+
+    private final Consumer<List<Transaction>> committer;
+    private RecordParser parser;
+    private char delimiter;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private ImportProgress.Listener listener;
+    private BooleanSupplier cancelRequested = () -> false;
+    private CheckpointListener checkpointListener;
+
+    private int successCount;
+    private int errorCount;
+    private ImportErrorLog errorLog = new ImportErrorLog(ImportErrorLog.DEFAULT_EXAMPLES, null);
+
+    // The open file; data is only mapped in parallel mode
+    private FileChannel channel;
+    private MappedByteBuffer data;
+    private ByteBuffer head;
+    private Charset charset;
+    private int dataStart;
+    private ImportCheckpoint.Fingerprint fingerprint;
+    // Where run() starts: the first record, or a resume point
+    private long startOffset;
+    private int startLines;
+
+    // Progress of the running import
+    private long totalBytes;
+    private long startNanos;
+    private long lastReportNanos;
+    // Sequential mode: the read buffer and the file offset of its first byte
+    private ByteBuffer readBuffer;
+    private long readBufferOffset;
+
+    /**
+     * Constructor for CsvImporter
+     * @param committer Receives the parsed rows in file order, in batches; must not keep the list
+     */
+    CsvImporter(Consumer<List<Transaction>> committer) {
+        this.committer = committer;
+    }
+
+    /**
+     * Sets the target chunk size for parallel imports, which is also the initial read buffer
+     * size of sequential imports
+     * @param chunkSize Chunk size in bytes
+     */
+    void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the listener told about the progress of the import
+     * @param listener The listener, or null
+     */
+    void setProgressListener(ImportProgress.Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the log that collects the rejected rows; by default only the first
+     * {@link ImportErrorLog#DEFAULT_EXAMPLES} errors are kept, in memory
+     * @param errorLog The error log
+     */
+    void setErrorLog(ImportErrorLog errorLog) {
+        this.errorLog = errorLog;
+    }
+
+    /**
+     * Sets the condition polled to find out whether the import should stop
+     * @param cancelRequested Returns true once the import should be cancelled
+     */
+    void setCancelRequested(BooleanSupplier cancelRequested) {
+        this.cancelRequested = cancelRequested;
+    }
+
+    /**
+     * Sets the listener told about the rows committed so far, after each batch
+     * @param checkpointListener The listener, or null
+     */
+    void setCheckpointListener(CheckpointListener checkpointListener) {
+        this.checkpointListener = checkpointListener;
+    }
+
+    /**
+     * Opens a file for import and detects its charset. Files too large to map are imported
+     * sequentially.
+     * @param file The CSV file
+     * @param parallel True to parse chunks of the file on the fork-join pool
+     */
+    void open(File file, boolean parallel) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        totalBytes = channel.size();
+
+        head = ByteBuffer.allocate((int) Math.min(totalBytes, SAMPLE_BYTES));
+        // Positional reads leave the channel at the start of the file
+        int read = 0;
+        while (head.hasRemaining() && read >= 0) {
+            read = channel.read(head, head.position());
+        }
+        head.flip();
+        charset = CsvTokenizer.detectCharset(head, head.limit() == totalBytes);
+        dataStart = CsvTokenizer.bomLength(head);
+        startOffset = dataStart;
+        startLines = 0;
+
+        if (parallel) {
+            if (totalBytes <= Integer.MAX_VALUE) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, totalBytes);
+            } else {
+                System.err.println("File too large to import in parallel, importing sequentially: " + file);
+            }
+        }
+    }
+
+    /**
+     * Gets the charset detected when the file was opened
+     * @return The charset used to decode fields
+     */
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the fingerprint of the open file, which identifies it in an import checkpoint
+     * @return The fingerprint
+     */
+    ImportCheckpoint.Fingerprint getFingerprint() throws IOException {
+        if (fingerprint == null) {
+            fingerprint = ImportCheckpoint.Fingerprint.of(channel);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Makes the next run start at a checkpoint of an earlier run of the same file. The
+     * header, if any, lies before the checkpoint and is not skipped again.
+     * @param offset File offset just past the last committed record
+     * @param lineCount Number of lines before the offset
+     */
+    void resumeAt(long offset, int lineCount) {
+        if (offset < dataStart || offset > totalBytes) {
+            throw new IllegalArgumentException("Checkpoint offset " + offset + " is outside the file");
+        }
+        startOffset = offset;
+        startLines = lineCount;
+    }
+
+    /**
+     * Reads the first non-blank records of the open file without consuming them
+     * @param maxRecords Maximum number of records to return
+     * @return Up to maxRecords records from the first {@link #SAMPLE_BYTES} bytes
+     */
+    List<String> sample(int maxRecords) {
+        ByteBuffer bytes = head.duplicate();
+        bytes.position(dataStart);
+        // A record cut off by the sample size is left out
+        CsvTokenizer tokenizer = new CsvTokenizer(charset, CsvTokenizer.NO_DELIMITER);
+        tokenizer.setInput(bytes, head.limit() == totalBytes);
+
+        List<String> records = new ArrayList<>();
+        while (records.size() < maxRecords && tokenizer.next()) {
+            records.add(tokenizer.toString());
+        }
+        return records;
+    }
+
+    /**
+     * Reads the first records of the open file and records at random offsets after them, for
+     * import previews. The rest of the file is cut into equal strata and one offset is drawn
+     * in each; a record is found there by reading a small window and skipping to the next line
+     * break, so the cost does not depend on the file size. A quoted line break can make such a
+     * record start in the middle of a record, so callers should check its field count.
+     * @param headRecords Number of records to read from the start, including a header
+     * @param randomRecords Number of records to read at random offsets
+     * @param delimiter The field delimiter, an ASCII character
+     * @param seed Seed of the random offsets
+     * @param visitor Receives the records, in file order
+     */
+    void sampleRecords(int headRecords, int randomRecords, char delimiter, long seed, SampleVisitor visitor) throws IOException {
+        ByteBuffer bytes = head.duplicate();
+        bytes.position(dataStart);
+        CsvTokenizer tokenizer = new CsvTokenizer(charset, delimiter);
+        tokenizer.setInput(bytes, head.limit() == totalBytes);
+        long headEnd = dataStart;
+        for (int i = 0; i < headRecords; i++) {
+            int offset = bytes.position();
+            if (!tokenizer.next()) {
+                break;
+            }
+            visitor.visit(tokenizer, offset, bytes.position() - offset, tokenizer.getLineNumber());
+            headEnd = bytes.position();
+        }
+        if (randomRecords <= 0 || headEnd >= totalBytes) {
+            return;
+        }
+
+        Random random = new Random(seed);
+        long stratum = Math.max(1, (totalBytes - headEnd) / randomRecords);
+        ByteBuffer window = ByteBuffer.allocate((int) Math.min(RANDOM_WINDOW, totalBytes));
+        long lastOffset = headEnd - 1;
+        for (long from = headEnd; from < totalBytes; from += stratum) {
+            // Read from the byte before the drawn offset, so a record starting right at it is kept
+            long offset = from + (long) (random.nextDouble() * Math.min(stratum, totalBytes - from)) - 1;
+            boolean atStart = offset < dataStart;
+            if (atStart) {
+                offset = 0;
+            }
+            window.clear();
+            int read = 0;
+            while (window.hasRemaining() && read >= 0) {
+                read = channel.read(window, offset + window.position());
+            }
+            window.flip();
+
+            // Skip the rest of the record the offset fell into
+            int start = 0;
+            if (atStart) {
+                start = dataStart;
+            } else {
+                while (start < window.limit() && window.get(start) != '\n' && window.get(start) != '\r') {
+                    start++;
+                }
+                if (start + 1 < window.limit() && window.get(start) == '\r' && window.get(start + 1) == '\n') {
+                    start++;
+                }
+                start++;
+            }
+            if (start >= window.limit()) {
+                continue;
+            }
+            window.position(start);
+            CsvTokenizer sampled = new CsvTokenizer(charset, delimiter);
+            sampled.setInput(window, offset + window.limit() == totalBytes);
+            long recordOffset = offset + start;
+            // In a small file, several offsets can fall into the same record
+            if (recordOffset > lastOffset && sampled.next()) {
+                visitor.visit(sampled, recordOffset, window.position() - start, 0);
+                lastOffset = recordOffset;
+            }
+        }
+    }
+
+    /**
+     * Parses and commits every record of the open file
+     * @param parser Parses a record into a transaction
+     * @param delimiter The field delimiter, an ASCII character
+     * @param hasHeader True if the first non-blank record is a header to skip
+     * @throws CancellationException if the import was cancelled
+     */
+    void run(RecordParser parser, char delimiter, boolean hasHeader) throws IOException {
+        this.parser = parser;
+        this.delimiter = delimiter;
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        hasHeader &= startOffset == dataStart;
+        if (data != null) {
+            runParallel(hasHeader);
+        } else {
+            runSequential(hasHeader);
+        }
+    }
+
+    /**
+     * Releases the open file
+     */
+    @Override
+    public void close() throws IOException {
+        data = null;
+        head = null;
+        readBuffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Reads the file through a buffer on the calling thread. A record that does not fit
+     * the buffer grows it.
+     */
+    private void runSequential(boolean hasHeader) throws IOException {
+        readBuffer = ByteBuffer.allocate((int) Math.max(1, Math.min(chunkSize, totalBytes)));
+        readBufferOffset = startOffset;
+        channel.position(startOffset);
+
+        CsvTokenizer tokenizer = new CsvTokenizer(charset, delimiter);
+        tokenizer.setLineNumber(startLines);
+        Part part = new Part();
+        part.headerPending = hasHeader;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            while (readBuffer.hasRemaining() && !endOfInput) {
+                endOfInput = channel.read(readBuffer) < 0;
+            }
+            readBuffer.flip();
+            tokenizer.setInput(readBuffer, endOfInput);
+            part.input = readBuffer;
+            part.inputOffset = readBufferOffset;
+            parseRecords(tokenizer, part, committer);
+
+            readBufferOffset += readBuffer.position();
+            if (readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                larger.put(readBuffer);
+                readBuffer = larger;
+            } else {
+                readBuffer.compact();
+            }
+        }
+        flush(part, committer);
+        checkpoint(totalBytes, tokenizer.getLinesRead(), part.successCount, part.errorCount);
+        merge(part);
+        report(totalBytes, successCount + errorCount, errorCount, true);
+    }
+
+    /**
+     * Parses chunks of the mapped file on the fork-join pool and commits them in order
+     */
+    private void runParallel(boolean hasHeader) {
+        ByteBuffer records = data.duplicate();
+        records.position((int) startOffset);
+        List<Chunk> chunks = split(records, chunkSize);
+
+        // Keep a few chunks ahead of the commit so memory stays bounded
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ChunkTask> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+                while (next < chunks.size() && inFlight.size() < window) {
+                    ChunkTask task = new ChunkTask(data, chunks.get(next), next == 0 && hasHeader);
+                    pool.execute(task);
+                    inFlight.add(task);
+                    next++;
+                }
+                ChunkTask task = inFlight.poll();
+                Part part = task.join();
+                checkCancelled();
+                for (int i = 0, batch = 0; i < part.transactions.size(); i += BATCH_SIZE, batch++) {
+                    committer.accept(part.transactions.subList(i, Math.min(i + BATCH_SIZE, part.transactions.size())));
+                    // The last batch of a chunk may be partial; the chunk end covers it
+                    if (batch < part.batchEnds.size()) {
+                        long[] end = part.batchEnds.get(batch);
+                        checkpoint(end[0], (int) end[1], successCount + i + BATCH_SIZE, errorCount + (int) end[2]);
+                    }
+                }
+                merge(part);
+                checkpoint(task.chunk.end, part.lineCount, successCount, errorCount);
+                report(task.chunk.end, successCount + errorCount, errorCount, false);
+            }
+        } finally {
+            for (ChunkTask task : inFlight) {
+                task.cancel(false);
+            }
+        }
+        report(data.limit(), successCount + errorCount, errorCount, true);
+    }
+
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the log of the rejected rows
+     * @return The error log
+     */
+    ImportErrorLog getErrorLog() {
+        return errorLog;
+    }
+
+    private void checkpoint(long offset, int lineCount, int committed, int rejected) {
+        if (checkpointListener != null) {
+            checkpointListener.onCommitted(offset, lineCount, committed, rejected);
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelRequested.getAsBoolean()) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+
+    /**
+     * Tells the listener about the progress, unless it was told very recently
+     */
+    private void report(long bytes, int rows, int errors, boolean finished) {
+        long now = System.nanoTime();
+        if (listener == null || (!finished && now - lastReportNanos < REPORT_INTERVAL_NANOS)) {
+            return;
+        }
+        lastReportNanos = now;
+        listener.onProgress(new ImportProgress(bytes, totalBytes, rows, errors, (now - startNanos) / 1_000_000, finished));
+    }
+
+    /**
+     * Adds a part's results. Parts are merged in file order, so the error log is written
+     * in the same order as by a sequential import.
+     */
+    private void merge(Part part) {
+        successCount += part.successCount;
+        errorCount += part.errorCount;
+        for (ImportErrorLog.Entry error : part.errors) {
+            errorLog.add(error);
+        }
+        part.errors.clear();
+    }
+
+    /**
+     * Parses the complete records of the tokenizer's input
+     * @param tokenizer The tokenizer, positioned at a record boundary
+     * @param part Collects the results; skips the first record if its header is pending
+     * @param committer Receives full batches as they are parsed, or null to keep every row in the part
+     */
+    private void parseRecords(CsvTokenizer tokenizer, Part part, Consumer<List<Transaction>> committer) {
+        while (tokenizer.next()) {
+            if (++part.records % CHECK_INTERVAL == 0) {
+                checkCancelled();
+                if (committer != null) {
+                    report(readBufferOffset + readBuffer.position(), part.successCount + part.errorCount, part.errorCount, false);
+                }
+            }
+            if (part.headerPending) {
+                part.headerPending = false;
+                continue;
+            }
+            parseRecord(tokenizer, part, committer);
+        }
+    }
+
+    private void parseRecord(CsvTokenizer record, Part part, Consumer<List<Transaction>> committer) {
+        try {
+            part.transactions.add(parser.parse(record));
+            part.successCount++;
+            if (part.transactions.size() % BATCH_SIZE == 0) {
+                endBatch(record, part, committer);
+            }
+        } catch (Exception e) {
+            part.errorCount++;
+            if (committer != null) {
+                // Sequential mode runs on the importing thread and logs errors as they occur
+                errorLog.add(record.getLineNumber(), e);
+            } else {
+                String errorMsg = e.getMessage() != null ? e.getMessage() : e.toString();
+                part.errors.add(new ImportErrorLog.Entry(record.getLineNumber(), ImportErrorLog.classify(e), errorMsg));
+            }
+            // Log stack trace for debugging unexpected errors
+            if (!(e instanceof IllegalArgumentException || e instanceof DateTimeParseException || e instanceof NumberFormatException)) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Commits a full batch in sequential mode; a parallel chunk only notes where the batch
+     * ends, for the checkpoint taken once the calling thread has committed it
+     */
+    private void endBatch(CsvTokenizer record, Part part, Consumer<List<Transaction>> committer) {
+        long offset = part.inputOffset + part.input.position();
+        if (committer != null) {
+            flush(part, committer);
+            checkpoint(offset, record.getLinesRead(), part.successCount, part.errorCount);
+        } else if (checkpointListener != null) {
+            part.batchEnds.add(new long[] {offset, record.getLinesRead(), part.errorCount});
+        }
+    }
+
+    private static void flush(Part part, Consumer<List<Transaction>> committer) {
+        if (!part.transactions.isEmpty()) {
+            committer.accept(part.transactions);
+            part.transactions.clear();
+        }
+    }
+
+    /**
+     * Cuts a file into chunks of at least chunkSize bytes that end on a record boundary.
+     * Line breaks are counted the way CsvTokenizer counts them ("\n", "\r" or "\r\n") and a
+     * line break only ends a record when the quotes seen so far are balanced. The first chunk
+     * also contains the first non-blank line, so the header is always skipped by the first chunk.
+     * @param data The file contents, from the buffer's position to its limit
+     * @param chunkSize Target chunk size in bytes
+     * @return The chunks in file order
+     */
+    static List<Chunk> split(ByteBuffer data, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        int limit = data.limit();
+        int chunkStart = data.position();
+        int chunkFirstLine = 0;
+        int lines = 0;
+        boolean inQuotes = false;
+        boolean lineBlank = true;
+        boolean seenRecord = false;
+        for (int i = chunkStart; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                lineBlank = false;
+            } else if (b == '\n' || b == '\r') {
+                if (b == '\r' && i + 1 < limit && data.get(i + 1) == '\n') {
+                    i++;
+                }
+                lines++;
+                seenRecord |= !lineBlank;
+                lineBlank = true;
+                if (!inQuotes && seenRecord && i + 1 - chunkStart >= chunkSize) {
+                    chunks.add(new Chunk(chunkStart, i + 1, chunkFirstLine));
+                    chunkStart = i + 1;
+                    chunkFirstLine = lines;
+                }
+            } else if ((b & 0xFF) > ' ') {
+                lineBlank = false;
+            }
+        }
+        if (chunkStart < limit) {
+            chunks.add(new Chunk(chunkStart, limit, chunkFirstLine));
+        }
+        return chunks;
+    }
+
+    /**
+     * Byte range of the file and the number of lines before it
+     */
+    static final class Chunk {
+        final int start;
+        final int end;
+        final int firstLine;
+
+        Chunk(int start, int end, int firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    /**
+     * Parsed rows and errors of a chunk, or of the whole file in sequential mode
+     */
+    private static final class Part {
+        final List<Transaction> transactions = new ArrayList<>();
+        // Errors of a parallel chunk in line order, until the chunk is merged
+        final List<ImportErrorLog.Entry> errors = new ArrayList<>();
+        // Parallel chunks: {offset, line count, error count} after each full batch
+        final List<long[]> batchEnds = new ArrayList<>();
+        int successCount;
+        int errorCount;
+        int records;
+        int lineCount;
+        boolean headerPending;
+        // The tokenizer's input and the file offset of its first byte
+        ByteBuffer input;
+        long inputOffset;
+    }
+
+    /**
+     * Tokenizes and parses one chunk
+     */
+    private final class ChunkTask extends RecursiveTask<Part> {
+        private final ByteBuffer bytes;
+        private final Chunk chunk;
+        private final boolean skipHeader;
+
+        ChunkTask(ByteBuffer data, Chunk chunk, boolean skipHeader) {
+            // Each task gets its own view of the mapping; buffers are not thread-safe
+            ByteBuffer view = data.duplicate();
+            view.position(chunk.start).limit(chunk.end);
+            this.bytes = view.slice();
+            this.chunk = chunk;
+            this.skipHeader = skipHeader;
+        }
+
+        @Override
+        protected Part compute() {
+            CsvTokenizer tokenizer = new CsvTokenizer(charset, delimiter);
+            tokenizer.setLineNumber(startLines + chunk.firstLine);
+            tokenizer.setInput(bytes, true);
+            Part part = new Part();
+            part.headerPending = skipHeader;
+            part.input = bytes;
+            part.inputOffset = chunk.start;
+            parseRecords(tokenizer, part, null);
+            part.lineCount = tokenizer.getLinesRead();
+            return part;
+        }
+    }
+}
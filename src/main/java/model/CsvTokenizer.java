@@ -0,0 +1,375 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CsvTokenizer - Splits the bytes of a CSV file into records and fields without decoding them.
+ *
+ * The tokenizer reads a ByteBuffer, heap or memory-mapped, and for each record only notes
+ * where its fields start and end. A field becomes a String when {@link #getField(int)} asks
+ * for it, so columns the importer ignores are never decoded. The charset must be ASCII
+ * compatible (UTF-8, GBK and the single-byte charsets are): delimiters, quotes and line
+ * breaks are found as single bytes. In GBK the second byte of a character can look like
+ * '|', so the byte after a GBK lead byte is skipped.
+ *
+ * Records follow the rules of the previous reader: blank lines are skipped, a line break
+ * inside quotes continues the record, and the record's line number is the physical line it
+ * starts on, counting "\n", "\r" and "\r\n" as one line break each. Fields are unquoted and
+ * trimmed like TransactionManager.parseCsvLine, and line breaks inside them read as "\n".
+ *
+ * A tokenizer is not thread-safe; the parallel import uses one per chunk.
+ */
+final class CsvTokenizer {
+
+    // Delimiter value that never matches a byte, so the whole record is one field
+    static final int NO_DELIMITER = 256;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final Charset charset;
+    private final int delimiter;
+    private final boolean doubleByte;
+
+    private ByteBuffer buffer;
+    private boolean endOfInput;
+    // Lines before the buffer position
+    private int lineNumber;
+
+    // The current record
+    private int recordStart;
+    private int recordEnd;
+    private int recordLine;
+    private int fieldCount;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Constructor for CsvTokenizer
+     * @param charset Charset of the file, ASCII compatible
+     * @param delimiter The field delimiter, an ASCII character, or {@link #NO_DELIMITER}
+     */
+    CsvTokenizer(Charset charset, int delimiter) {
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.doubleByte = isGbk(charset);
+    }
+
+    /**
+     * Sets the bytes to read next, from the buffer's position to its limit. The position is
+     * moved past each record returned by {@link #next()}, so a caller reading a file in
+     * pieces can compact the buffer, append more bytes and continue.
+     * @param buffer The bytes
+     * @param endOfInput True if no bytes follow the buffer's limit
+     */
+    void setInput(ByteBuffer buffer, boolean endOfInput) {
+        this.buffer = buffer;
+        this.endOfInput = endOfInput;
+    }
+
+    /**
+     * Sets the number of lines before the input, for chunks that start inside a file
+     * @param lineNumber Number of lines before the buffer position
+     */
+    void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Moves to the next non-blank record
+     * @return False if the input holds no further complete record; unless it is the end of
+     *         the input, the bytes of an incomplete record are left in the buffer
+     */
+    boolean next() {
+        int limit = buffer.limit();
+        int i = buffer.position();
+        int start = i;
+        int lines = 0;
+        boolean inQuotes = false;
+        boolean blank = true;
+        resetFields(start);
+
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                int breakLength = 1;
+                if (b == '\r') {
+                    if (i + 1 < limit) {
+                        breakLength = buffer.get(i + 1) == '\n' ? 2 : 1;
+                    } else if (!endOfInput) {
+                        // "\r\n" may be split across two reads
+                        return false;
+                    }
+                }
+                lines++;
+                if (blank) {
+                    // Skip the blank line and start over on the next one
+                    i += breakLength;
+                    start = i;
+                    buffer.position(i);
+                    lineNumber += lines;
+                    lines = 0;
+                    resetFields(start);
+                    continue;
+                }
+                if (!inQuotes) {
+                    endRecord(start, i);
+                    buffer.position(i + breakLength);
+                    lineNumber += lines;
+                    return true;
+                }
+                i += breakLength;
+                continue;
+            }
+            if ((b & 0xFF) > ' ') {
+                blank = false;
+            }
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                fieldQuoted[fieldCount - 1] = true;
+            } else if (b == delimiter && !inQuotes) {
+                fieldEnds[fieldCount - 1] = i;
+                addField(i + 1);
+            } else if (b < 0 && doubleByte) {
+                i++;
+            }
+            i++;
+        }
+
+        if (!endOfInput) {
+            return false;
+        }
+        if (blank) {
+            buffer.position(limit);
+            lineNumber += lines;
+            return false;
+        }
+        // Last record without a line break, or an unterminated quote: still a record
+        endRecord(start, Math.min(i, limit));
+        buffer.position(limit);
+        lineNumber += lines + 1;
+        return true;
+    }
+
+    /**
+     * Gets the line the current record starts on
+     * @return The 1-based line number
+     */
+    int getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Gets the number of lines consumed so far, up to and including the line break that
+     * ends the current record
+     * @return The line count
+     */
+    int getLinesRead() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the number of fields of the current record
+     * @return The field count
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Decodes a field of the current record, unquoted and trimmed
+     * @param index The field index
+     * @return The field text
+     */
+    String getField(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        int length = 0;
+        if (!fieldQuoted[index]) {
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+            byte[] bytes = scratch(end - start);
+            for (int i = start; i < end; i++) {
+                bytes[length++] = buffer.get(i);
+            }
+        } else {
+            // Same rules as parseCsvLine: quotes toggle, "" inside quotes is a literal quote
+            byte[] bytes = scratch(end - start);
+            boolean inQuotes = false;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    if (inQuotes && i + 1 < end && buffer.get(i + 1) == '"') {
+                        bytes[length++] = '"';
+                        i++;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else {
+                    bytes[length++] = b == '\r' ? (byte) '\n' : b;
+                    if (b == '\r' && i + 1 < end && buffer.get(i + 1) == '\n') {
+                        i++;
+                    }
+                }
+            }
+            int from = 0;
+            while (from < length && (bytes[from] & 0xFF) <= ' ') {
+                from++;
+            }
+            while (length > from && (bytes[length - 1] & 0xFF) <= ' ') {
+                length--;
+            }
+            return new String(bytes, from, length - from, charset);
+        }
+        return new String(scratch, 0, length, charset);
+    }
+
+    /**
+     * Decodes the whole current record, for sampling and error messages. Line breaks
+     * inside the record read as "\n".
+     * @return The record text, without its line terminator
+     */
+    @Override
+    public String toString() {
+        byte[] bytes = scratch(recordEnd - recordStart);
+        int length = 0;
+        for (int i = recordStart; i < recordEnd; i++) {
+            byte b = buffer.get(i);
+            bytes[length++] = b == '\r' ? (byte) '\n' : b;
+            if (b == '\r' && i + 1 < recordEnd && buffer.get(i + 1) == '\n') {
+                i++;
+            }
+        }
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Gets the length of a byte order mark at the start of the file
+     * @param head The first bytes of the file, from position 0
+     * @return The number of bytes to skip
+     */
+    static int bomLength(ByteBuffer head) {
+        if (head.limit() < UTF8_BOM.length) {
+            return 0;
+        }
+        for (int i = 0; i < UTF8_BOM.length; i++) {
+            if (head.get(i) != UTF8_BOM[i]) {
+                return 0;
+            }
+        }
+        return UTF8_BOM.length;
+    }
+
+    /**
+     * Detects the charset of a file from its first bytes: UTF-8 if it has a UTF-8 byte order
+     * mark or is valid UTF-8 (including plain ASCII), otherwise GBK if the bytes are valid
+     * GBK, otherwise the platform default charset the importer used before
+     * @param head The first bytes of the file, from position 0
+     * @param complete True if head holds the whole file; otherwise a character cut off at
+     *                 the end is not held against a charset
+     * @return The charset
+     */
+    static Charset detectCharset(ByteBuffer head, boolean complete) {
+        if (bomLength(head) > 0 || isValidUtf8(head, complete)) {
+            return StandardCharsets.UTF_8;
+        }
+        if (isValidGbk(head, complete)) {
+            return Charset.forName("GBK");
+        }
+        return Charset.defaultCharset();
+    }
+
+    private static boolean isValidUtf8(ByteBuffer head, boolean complete) {
+        int limit = head.limit();
+        for (int i = 0; i < limit; i++) {
+            int b = head.get(i) & 0xFF;
+            if (b < 0x80) {
+                continue;
+            }
+            int continuation;
+            if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= limit) {
+                    return !complete;
+                }
+                if ((head.get(i + k) & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation;
+        }
+        return true;
+    }
+
+    private static boolean isValidGbk(ByteBuffer head, boolean complete) {
+        int limit = head.limit();
+        for (int i = 0; i < limit; i++) {
+            int b = head.get(i) & 0xFF;
+            if (b < 0x80) {
+                continue;
+            }
+            if (b == 0x80 || b == 0xFF) {
+                return false;
+            }
+            if (i + 1 >= limit) {
+                return !complete;
+            }
+            int trail = head.get(++i) & 0xFF;
+            if (trail < 0x40 || trail == 0x7F || trail == 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isGbk(Charset charset) {
+        String name = charset.name();
+        return name.startsWith("GB") || name.equals("x-mswin-936");
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    private void resetFields(int start) {
+        fieldCount = 0;
+        addField(start);
+    }
+
+    private void addField(int start) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldQuoted[fieldCount] = false;
+        fieldCount++;
+    }
+
+    private void endRecord(int start, int end) {
+        recordStart = start;
+        recordEnd = end;
+        fieldEnds[fieldCount - 1] = end;
+        recordLine = lineNumber + 1;
+    }
+}
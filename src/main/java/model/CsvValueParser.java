@@ -0,0 +1,324 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.text.ParsePosition;
+import java.util.List;
+
+/**
+ * CsvValueParser - Date and amount parsers learned from the first records of a CSV file.
+ *
+ * Format detection hands over the sampled date and amount cells. The date layout that
+ * parses the most of them, and the decimal separator (point or comma) that reads the most
+ * amounts, are locked in for the rest of the file. Every row is then parsed by hand,
+ * character by character, without DateTimeFormatter exceptions or regular expressions.
+ *
+ * Amounts may carry thousands separators (comma, point, apostrophe or space, in groups of
+ * three), a leading or trailing sign, parentheses for negatives and a currency symbol or
+ * code before or after the number, e.g. "(1.234,50 €)" or "1,234.50 USD".
+ *
+ * A value that does not fit the learned format is inferred again on its own: a date is
+ * tried against every supported layout in the original order, an amount against the other
+ * decimal separator if it contains one and then the old cleanup rules. Only values that none
+ * of them accept throw, with the same messages as before.
+ *
+ * Instances are immutable and shared by the parallel import tasks.
+ */
+final class CsvValueParser {
+
+    /**
+     * Supported date layouts, in the order they are tried for a value that does not fit
+     */
+    enum DateLayout {
+        ISO("yyyy-MM-dd"),
+        YEAR_SLASH("yyyy/MM/dd"),
+        MONTH_FIRST("MM/dd/yyyy"),
+        DAY_FIRST("dd/MM/yyyy"),
+        YEAR_DOT("yyyy.MM.dd"),
+        MONTH_NAME("MMM dd, yyyy"),                 // Jan 01, 2023
+        DAY_MONTH_NAME("dd-MMM-yyyy");              // 01-Jan-2023
+
+        private final String pattern;
+        // Numeric layouts: offsets of the fields in the 10-character value, -1 for text layouts
+        private final int yearAt;
+        private final int monthAt;
+        private final int dayAt;
+        private final DateTimeFormatter formatter;
+
+        DateLayout(String pattern) {
+            this.pattern = pattern;
+            boolean numeric = pattern.indexOf("MMM") < 0;
+            this.yearAt = numeric ? pattern.indexOf("yyyy") : -1;
+            this.monthAt = numeric ? pattern.indexOf("MM") : -1;
+            this.dayAt = numeric ? pattern.indexOf("dd") : -1;
+            this.formatter = numeric ? null : DateTimeFormatter.ofPattern(pattern);
+        }
+
+        /**
+         * Parses a trimmed date in this layout. Like LocalDate.parse with the SMART resolver,
+         * a day past the end of its month is moved back to the last day of the month.
+         * @param text The date text
+         * @return The date, or null if the text does not fit the layout
+         */
+        LocalDate parse(String text) {
+            int year, month, day;
+            if (formatter == null) {
+                if (text.length() != pattern.length()) {
+                    return null;
+                }
+                for (int i = 0; i < text.length(); i++) {
+                    char expected = pattern.charAt(i);
+                    char c = text.charAt(i);
+                    boolean matches = expected == 'y' || expected == 'M' || expected == 'd'
+                        ? c >= '0' && c <= '9'
+                        : c == expected;
+                    if (!matches) {
+                        return null;
+                    }
+                }
+                year = digits(text, yearAt, 4);
+                month = digits(text, monthAt, 2);
+                day = digits(text, dayAt, 2);
+            } else {
+                // parseUnresolved reports a mismatch through the position instead of an exception
+                ParsePosition position = new ParsePosition(0);
+                TemporalAccessor fields = formatter.parseUnresolved(text, position);
+                if (fields == null || position.getErrorIndex() >= 0 || position.getIndex() != text.length()) {
+                    return null;
+                }
+                year = (int) Math.min(Integer.MAX_VALUE, fields.getLong(ChronoField.YEAR_OF_ERA));
+                month = (int) fields.getLong(ChronoField.MONTH_OF_YEAR);
+                day = (int) fields.getLong(ChronoField.DAY_OF_MONTH);
+            }
+            if (year < 1 || year > 999_999_999 || month < 1 || month > 12 || day < 1 || day > 31) {
+                return null;
+            }
+            return LocalDate.of(year, month, Math.min(day, YearMonth.of(year, month).lengthOfMonth()));
+        }
+
+        private static int digits(String text, int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+
+    // Returned by parseCents for a value that does not fit a decimal separator
+    private static final long NO_MATCH = Long.MIN_VALUE;
+
+    private final DateLayout dateLayout;
+    private final char decimalSeparator;
+
+    CsvValueParser(DateLayout dateLayout, char decimalSeparator) {
+        this.dateLayout = dateLayout;
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    /**
+     * Learns the date layout and decimal separator of a file from sampled cells
+     * @param dates Sampled date cells
+     * @param amounts Sampled amount cells
+     * @return The parser for the file
+     */
+    static CsvValueParser infer(List<String> dates, List<String> amounts) {
+        DateLayout bestLayout = DateLayout.ISO;
+        int bestMatches = 0;
+        for (DateLayout layout : DateLayout.values()) {
+            int matches = 0;
+            for (String date : dates) {
+                if (layout.parse(date.trim()) != null) {
+                    matches++;
+                }
+            }
+            // Ties keep the earlier layout, so ambiguous days read month first as before
+            if (matches > bestMatches) {
+                bestMatches = matches;
+                bestLayout = layout;
+            }
+        }
+
+        int pointMatches = 0, commaMatches = 0;
+        for (String amount : amounts) {
+            if (parseCents(amount, '.') != NO_MATCH) {
+                pointMatches++;
+            }
+            if (parseCents(amount, ',') != NO_MATCH) {
+                commaMatches++;
+            }
+        }
+        return new CsvValueParser(bestLayout, commaMatches > pointMatches ? ',' : '.');
+    }
+
+    DateLayout getDateLayout() {
+        return dateLayout;
+    }
+
+    char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    /**
+     * Parses a date cell in the learned layout, or in any supported layout if it does not fit
+     * @param text The date cell
+     * @return The date
+     * @throws DateTimeParseException If no supported layout accepts the value
+     */
+    LocalDate parseDate(String text) throws DateTimeParseException {
+        text = text.trim();
+        LocalDate date = dateLayout.parse(text);
+        if (date != null) {
+            return date;
+        }
+        for (DateLayout layout : DateLayout.values()) {
+            if (layout != dateLayout && (date = layout.parse(text)) != null) {
+                return date;
+            }
+        }
+        throw new DateTimeParseException("Cannot parse date: " + text +
+            ". Supported formats include: yyyy-MM-dd, yyyy/MM/dd, MM/dd/yyyy, etc.", text, 0);
+    }
+
+    /**
+     * Parses an amount cell into cents with the learned decimal separator, falling back to
+     * the other separator if the value contains it, and then to stripping quotes, currency
+     * symbols and commas
+     * @param text The amount cell
+     * @return The amount in cents
+     * @throws NumberFormatException If the value is not a number
+     */
+    long parseAmount(String text) throws NumberFormatException {
+        long cents = parseCents(text, decimalSeparator);
+        char otherSeparator = decimalSeparator == '.' ? ',' : '.';
+        // "12.345" in a decimal point file keeps its old meaning instead of becoming 12345
+        if (cents == NO_MATCH && text.indexOf(otherSeparator) >= 0) {
+            cents = parseCents(text, otherSeparator);
+        }
+        if (cents != NO_MATCH) {
+            return cents;
+        }
+
+        // Not a grouped decimal, e.g. an exponent or more than two decimals
+        StringBuilder cleaned = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\'' && c != ',' && c != '$' && c != '¥' && c != '€' && c != '£') {
+                cleaned.append(c);
+            }
+        }
+        String amount = cleaned.toString().trim();
+        try {
+            return Money.parse(amount);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Cannot parse amount: '" + amount +
+                "'. Please ensure it's a valid number after removing currency symbols and commas.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "date " + dateLayout + ", decimal '" + decimalSeparator + "'";
+    }
+
+    /**
+     * Parses an amount with a decimal separator in one pass: optional sign, parentheses and
+     * currency before the number, digits grouped by threes, at most two decimals, then an
+     * optional sign, closing parenthesis and currency
+     * @return The amount in cents, or NO_MATCH if the text is not in that form
+     */
+    static long parseCents(String text, char decimal) {
+        final int prefix = 0, number = 1, suffix = 2;
+        int phase = prefix;
+        long units = 0, fraction = 0;
+        int digits = 0;
+        int decimals = -1;              // -1 until the decimal separator
+        int group = -1;                 // digits since the last thousands separator, -1 before any
+        boolean negative = false, signed = false, opened = false, closed = false;
+
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (phase == suffix) {
+                    return NO_MATCH;
+                }
+                phase = number;
+                if (decimals >= 0) {
+                    if (++decimals > 2) {
+                        return NO_MATCH;
+                    }
+                    fraction = fraction * 10 + (c - '0');
+                } else {
+                    if (++digits > 15) {
+                        return NO_MATCH;
+                    }
+                    units = units * 10 + (c - '0');
+                    if (group >= 0) {
+                        group++;
+                    }
+                }
+            } else if (phase == number && decimals < 0 && c == decimal) {
+                if (group >= 0 && group != 3) {
+                    return NO_MATCH;
+                }
+                decimals = 0;
+            } else if (phase == number && decimals < 0 && isThousandsSeparator(c, decimal)
+                    && i + 1 < n && text.charAt(i + 1) >= '0' && text.charAt(i + 1) <= '9') {
+                if (group >= 0 ? group != 3 : digits > 3) {
+                    return NO_MATCH;
+                }
+                group = 0;
+            } else {
+                if (phase == number) {
+                    if (decimals < 0 && group >= 0 && group != 3) {
+                        return NO_MATCH;
+                    }
+                    phase = suffix;
+                }
+                if (c == '-' || c == '+') {
+                    if (signed) {
+                        return NO_MATCH;
+                    }
+                    signed = true;
+                    negative = c == '-';
+                } else if (c == '(' && phase == prefix && !opened) {
+                    opened = true;
+                } else if (c == ')' && phase == suffix && opened && !closed) {
+                    closed = true;
+                } else if (!isCurrencyOrSpace(c)) {
+                    return NO_MATCH;
+                }
+            }
+        }
+        if (phase == prefix || opened != closed) {
+            return NO_MATCH;
+        }
+        if (phase == number && decimals < 0 && group >= 0 && group != 3) {
+            return NO_MATCH;
+        }
+        if (decimals == 1) {
+            fraction *= 10;
+        }
+        long cents = units * Money.CENTS_PER_UNIT + fraction;
+        return negative || opened ? -cents : cents;
+    }
+
+    private static boolean isThousandsSeparator(char c, char decimal) {
+        return c != decimal && (c == ',' || c == '.' || c == '\'' || c == ' ' || c == '\u00a0' || c == '\u202f');
+    }
+
+    // Currency symbols and codes ("$", "¥", "USD", "元"), quotes and padding around the number
+    private static boolean isCurrencyOrSpace(char c) {
+        return Character.getType(c) == Character.CURRENCY_SYMBOL || (c >= 'A' && c <= 'Z') || c == '元'
+            || c == '"' || c == '\'' || Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+}
@@ -1,6 +1,7 @@
 package model;
 
-import java.text.DecimalFormat;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.Locale;
@@ -84,15 +85,43 @@ public class CurrencyManager {
     }
     
     /**
-     * Formats a currency amount according to the specified currency
+     * Converts an amount in cents from one currency to another, rounding to the cent
+     * @param cents The amount to convert, in cents
+     * @param fromCurrency The source currency
+     * @param toCurrency The target currency
+     * @return The converted amount in cents
+     */
+    public long convertCents(long cents, String fromCurrency, String toCurrency) {
+        if (fromCurrency.equals(toCurrency)) {
+            return cents;
+        }
+        return Money.multiply(cents, getExchangeRate(fromCurrency, toCurrency));
+    }
+    
+    /**
+     * Formats a currency amount according to the specified currency. The amount is rounded
+     * to the cent half even, by its exact binary value, as DecimalFormat did before amounts
+     * were kept in cents, so callers see the same text as before.
      * @param amount The amount to format
      * @param currency The currency to use for formatting
      * @return The formatted currency string
      */
     public String format(double amount, String currency) {
-        String symbol = currencySymbols.getOrDefault(currency, "¥");
-        DecimalFormat formatter = new DecimalFormat("#,##0.00");
-        return symbol + formatter.format(amount);
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return formatCents(Money.toCents(amount), currency);
+        }
+        long cents = new BigDecimal(amount).setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+        return formatCents(cents, currency);
+    }
+    
+    /**
+     * Formats an amount in cents according to the specified currency, e.g. "¥1,234.56"
+     * @param cents The amount to format, in cents
+     * @param currency The currency to use for formatting
+     * @return The formatted currency string
+     */
+    public String formatCents(long cents, String currency) {
+        return currencySymbols.getOrDefault(currency, "¥") + Money.formatGrouped(cents);
     }
     
     /**
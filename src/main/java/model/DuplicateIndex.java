@@ -0,0 +1,282 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * DuplicateIndex - Per-user fingerprint index of the transaction store, used by imports to
+ * recognize rows that are already in the ledger.
+ *
+ * A fingerprint is a 64-bit hash of the date, the amount in cents and the normalized
+ * description (letters and digits only, lower case), so "STARBUCKS #123" and "Starbucks 123"
+ * on the same day for the same amount are the same row. Each user has an open-addressing
+ * table of fingerprint counts, so a lookup is one probe sequence in a primitive array.
+ * The counts are updated from the store's append notifications as rows are saved.
+ *
+ * The index is persisted next to the data file with a ".dedup" suffix and rebuilt from the
+ * store when it is stale, see PersistedSidecar. Its data maps each user id to the user's
+ * fingerprint counts.
+ */
+public class DuplicateIndex extends PersistedSidecar<Map<String, DuplicateIndex.FingerprintTable>> {
+
+    private static final int MAGIC = 0x46545844;        // "FTXD"
+    private static final int VERSION = 1;
+
+    /**
+     * Creates the duplicate index of a store. Register it with
+     * {@link TransactionStore#addAppendListener(TransactionStore.AppendListener)} to keep it current.
+     * @param store The transaction store
+     */
+    public DuplicateIndex(TransactionStore store) {
+        super(store, ".dedup", MAGIC, VERSION, "duplicate index");
+    }
+
+    /**
+     * Counts the rows of a user that have the same fingerprint as a transaction. Legacy rows
+     * without an owner are counted for every user, as they are shown to everyone.
+     * @param transaction The transaction
+     * @return The number of matching rows in the store
+     */
+    public int count(Transaction transaction) {
+        String userId = transaction.getUserId() == null ? "" : transaction.getUserId();
+        long fingerprint = fingerprint(transaction);
+        int[] count = new int[1];
+        withData(() -> count[0] = countOf(userId, fingerprint));
+        return count[0];
+    }
+
+    /**
+     * Starts duplicate detection for one import
+     * @param skip True to leave duplicates out of the committed batches, false to only count them
+     * @return The filter to commit the import's batches through
+     */
+    public ImportFilter newImportFilter(boolean skip) {
+        return new ImportFilter(skip);
+    }
+
+    /**
+     * Computes the fingerprint of a transaction from its date, amount and normalized description
+     * @param transaction The transaction
+     * @return The 64-bit fingerprint, never 0
+     */
+    static long fingerprint(Transaction transaction) {
+        // FNV-1a over the fields, then a final mix so nearby dates and amounts spread out
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ transaction.getDate().toEpochDay()) * 0x100000001b3L;
+        hash = (hash ^ transaction.getAmountCents()) * 0x100000001b3L;
+        String description = transaction.getDescription() == null ? "" : transaction.getDescription();
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * 0x100000001b3L;
+            }
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private int countOf(String userId, long fingerprint) {
+        FingerprintTable own = data.get(userId);
+        FingerprintTable legacy = userId.isEmpty() ? null : data.get("");
+        return (own == null ? 0 : own.get(fingerprint)) + (legacy == null ? 0 : legacy.get(fingerprint));
+    }
+
+    @Override
+    protected Map<String, FingerprintTable> newData() {
+        return new HashMap<>();
+    }
+
+    @Override
+    protected void add(Map<String, FingerprintTable> tables, Transaction transaction) {
+        String userId = transaction.getUserId() == null ? "" : transaction.getUserId();
+        tables.computeIfAbsent(userId, k -> new FingerprintTable()).increment(fingerprint(transaction));
+    }
+
+    @Override
+    protected void write(Map<String, FingerprintTable> tables, DataOutputStream out) throws IOException {
+        out.writeInt(tables.size());
+        for (Map.Entry<String, FingerprintTable> user : tables.entrySet()) {
+            out.writeUTF(user.getKey());
+            user.getValue().write(out);
+        }
+    }
+
+    @Override
+    protected Map<String, FingerprintTable> read(DataInputStream in) throws IOException {
+        Map<String, FingerprintTable> tables = new HashMap<>();
+        int users = in.readInt();
+        for (int u = 0; u < users; u++) {
+            tables.put(in.readUTF(), FingerprintTable.read(in));
+        }
+        return tables;
+    }
+
+    /**
+     * Duplicate detection for one import. The n-th occurrence of a fingerprint in the import
+     * is a duplicate if the ledger held at least n such rows when the import first met it,
+     * so re-importing a statement with two identical coffees skips both, while a new
+     * statement with two identical coffees imports both.
+     */
+    public final class ImportFilter {
+        private final boolean skip;
+        // Per fingerprint: rows in the ledger when first seen, and occurrences in the import
+        private final FingerprintTable ledgerCounts = new FingerprintTable();
+        private final FingerprintTable importCounts = new FingerprintTable();
+        private int duplicateCount;
+
+        private ImportFilter(boolean skip) {
+            this.skip = skip;
+        }
+
+        /**
+         * Commits a batch, leaving out or only counting the rows already in the ledger.
+         * The lookup and the commit happen under the store's lock, so rows saved meanwhile
+         * are either counted as existing or not at all.
+         * @param batch The parsed rows, in file order
+         * @param committer Receives the rows to save
+         */
+        public void commit(List<Transaction> batch, Consumer<List<Transaction>> committer) {
+            boolean filtered = withData(() -> {
+                List<Transaction> fresh = skip ? new ArrayList<>(batch.size()) : batch;
+                for (Transaction transaction : batch) {
+                    long fingerprint = fingerprint(transaction);
+                    int inLedger = ledgerCounts.get(fingerprint) - 1;
+                    if (inLedger < 0) {
+                        String userId = transaction.getUserId() == null ? "" : transaction.getUserId();
+                        inLedger = countOf(userId, fingerprint);
+                        // Stored off by one, as 0 means not seen yet
+                        ledgerCounts.put(fingerprint, inLedger + 1);
+                    }
+                    boolean duplicate = importCounts.increment(fingerprint) < inLedger;
+                    if (duplicate) {
+                        duplicateCount++;
+                    } else if (skip) {
+                        fresh.add(transaction);
+                    }
+                }
+                committer.accept(fresh);
+            });
+            if (!filtered) {
+                committer.accept(batch);
+            }
+        }
+
+        /**
+         * Gets the number of rows found in the ledger so far
+         * @return The duplicate count
+         */
+        public int getDuplicateCount() {
+            return duplicateCount;
+        }
+
+        /**
+         * Checks whether duplicates are left out of the import
+         * @return True if duplicates are skipped, false if they are only counted
+         */
+        public boolean isSkipping() {
+            return skip;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from non-zero fingerprint to count, with linear probing
+     */
+    static final class FingerprintTable {
+        private long[] keys = new long[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        int get(long fingerprint) {
+            int mask = keys.length - 1;
+            for (int i = (int) fingerprint & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == fingerprint) {
+                    return counts[i];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Adds one to a count
+         * @return The count before
+         */
+        int increment(long fingerprint) {
+            int slot = slot(fingerprint);
+            return counts[slot]++;
+        }
+
+        void put(long fingerprint, int count) {
+            counts[slot(fingerprint)] = count;
+        }
+
+        /**
+         * Finds or claims the slot of a fingerprint, growing the table at 1/2 load
+         */
+        private int slot(long fingerprint) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = (int) fingerprint & mask;
+            while (keys[i] != 0 && keys[i] != fingerprint) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = fingerprint;
+                size++;
+            }
+            return i;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = (int) oldKeys[j] & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                }
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    out.writeLong(keys[i]);
+                    out.writeInt(counts[i]);
+                }
+            }
+        }
+
+        static FingerprintTable read(DataInputStream in) throws IOException {
+            FingerprintTable table = new FingerprintTable();
+            int size = in.readInt();
+            int capacity = 16;
+            while (capacity <= size * 2) {
+                capacity *= 2;
+            }
+            table.keys = new long[capacity];
+            table.counts = new int[capacity];
+            for (int k = 0; k < size; k++) {
+                table.put(in.readLong(), in.readInt());
+            }
+            return table;
+        }
+    }
+}
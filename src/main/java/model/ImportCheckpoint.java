@@ -0,0 +1,285 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * ImportCheckpoint - Journal entry of a CSV import that has not finished yet.
+ *
+ * After every batch of rows committed to the store, the import replaces the journal with the
+ * file offset just past the last committed record, the number of lines before it and the row
+ * counts so far. If the application stops before the import finishes, the next import of the
+ * same file by the same user starts at that offset instead of importing every row again.
+ * A finished import deletes the journal; a cancelled one puts back the state it started from.
+ *
+ * The file is recognized by a fingerprint of its size and the CRC32 of its first and last
+ * bytes, so a renamed or moved export still resumes. The checkpoint also holds the CRC32 of
+ * everything before its offset, which is checked again before resuming, so a file edited
+ * anywhere in its committed part starts over, even if its size and ends are unchanged.
+ * Rows of a batch committed right before the application stopped, but after the last
+ * journal write, are imported again.
+ *
+ * Each user's import of a file has its own journal, kept next to the store's data file and
+ * named after the file's fingerprint and the user (see {@link #journalFor}), so finishing
+ * the import of one file, or another user's import of the same file, does not lose the
+ * checkpoint. A journal is forced to disk and replaced atomically, so a
+ * crash leaves either the previous or the new entry. The rows it counts must be on disk before
+ * it is saved.
+ */
+public class ImportCheckpoint {
+
+    private static final int MAGIC = 0x4654584A;        // "FTXJ"
+    private static final int VERSION = 2;
+    // Bytes at each end of the file covered by the fingerprint
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    private final String sourcePath;
+    private final Fingerprint fingerprint;
+    private final String userId;
+    private final long offset;
+    private final long prefixCrc;
+    private final int lineCount;
+    private final int successCount;
+    private final int errorCount;
+
+    /**
+     * Constructor for ImportCheckpoint
+     * @param sourcePath Path of the imported file, for messages
+     * @param fingerprint Fingerprint of the imported file
+     * @param userId The importing user
+     * @param offset File offset just past the last committed record
+     * @param prefixCrc CRC32 of the file bytes before the offset, see {@link PrefixCrc}
+     * @param lineCount Number of lines before the offset
+     * @param successCount Rows imported before the offset
+     * @param errorCount Rows rejected before the offset
+     */
+    public ImportCheckpoint(String sourcePath, Fingerprint fingerprint, String userId, long offset,
+                            long prefixCrc, int lineCount, int successCount, int errorCount) {
+        this.sourcePath = sourcePath;
+        this.fingerprint = fingerprint;
+        this.userId = userId;
+        this.offset = offset;
+        this.prefixCrc = prefixCrc;
+        this.lineCount = lineCount;
+        this.successCount = successCount;
+        this.errorCount = errorCount;
+    }
+
+    public String getSourcePath() { return sourcePath; }
+    public Fingerprint getFingerprint() { return fingerprint; }
+    public String getUserId() { return userId; }
+    public long getOffset() { return offset; }
+    public long getPrefixCrc() { return prefixCrc; }
+    public int getLineCount() { return lineCount; }
+    public int getSuccessCount() { return successCount; }
+    public int getErrorCount() { return errorCount; }
+
+    /**
+     * Checks whether this checkpoint belongs to an import of a file by a user
+     * @param fingerprint Fingerprint of the file about to be imported
+     * @param userId The importing user
+     * @return True if the file and user are the ones of this checkpoint
+     */
+    public boolean matches(Fingerprint fingerprint, String userId) {
+        return this.fingerprint.equals(fingerprint) && this.userId.equals(userId)
+            && offset <= fingerprint.size;
+    }
+
+    /**
+     * Checks whether an import can resume from this checkpoint: the file and user match and
+     * the bytes before the offset are still the ones that were committed. The checksum is
+     * left at the offset if they are, and at the start of the file otherwise.
+     * @param fingerprint Fingerprint of the file about to be imported
+     * @param userId The importing user
+     * @param prefix Checksum of the file about to be imported, at its start
+     * @return True if the import can resume from this checkpoint
+     */
+    public boolean matches(Fingerprint fingerprint, String userId, PrefixCrc prefix) throws IOException {
+        if (!matches(fingerprint, userId)) {
+            return false;
+        }
+        if (prefix.update(offset) != prefixCrc) {
+            prefix.reset();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the journal of a user's imports of a file
+     * @param base The path the journal names start with, e.g. the store's data file
+     * @param fingerprint Fingerprint of the imported file
+     * @param userId The importing user
+     * @return The journal file; it may not exist
+     */
+    public static File journalFor(File base, Fingerprint fingerprint, String userId) {
+        // User names may hold characters that are not allowed in file names
+        CRC32 user = new CRC32();
+        user.update(userId.getBytes(StandardCharsets.UTF_8));
+        return new File(String.format("%s.import-%x-%08x-%08x-%08x", base.getPath(),
+            fingerprint.size, fingerprint.headCrc, fingerprint.tailCrc, user.getValue()));
+    }
+
+    /**
+     * Reads the journal
+     * @param journal The journal file
+     * @return The checkpoint, or null if there is no journal or it cannot be read
+     */
+    public static ImportCheckpoint load(File journal) {
+        if (!journal.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String sourcePath = in.readUTF();
+            Fingerprint fingerprint = new Fingerprint(in.readLong(), in.readLong(), in.readLong());
+            return new ImportCheckpoint(sourcePath, fingerprint, in.readUTF(), in.readLong(),
+                in.readLong(), in.readInt(), in.readInt(), in.readInt());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the journal with this checkpoint
+     * @param journal The journal file
+     */
+    public void save(File journal) throws IOException {
+        File tmp = new File(journal.getPath() + ".tmp");
+        FileOutputStream file = new FileOutputStream(tmp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(sourcePath);
+            out.writeLong(fingerprint.size);
+            out.writeLong(fingerprint.headCrc);
+            out.writeLong(fingerprint.tailCrc);
+            out.writeUTF(userId);
+            out.writeLong(offset);
+            out.writeLong(prefixCrc);
+            out.writeInt(lineCount);
+            out.writeInt(successCount);
+            out.writeInt(errorCount);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return sourcePath + " at line " + (lineCount + 1) + " (" + successCount + " rows imported)";
+    }
+
+    /**
+     * Running CRC32 of an imported file from its start, advanced to each checkpoint as the
+     * import commits its batches, so the file is read once more in total
+     */
+    public static final class PrefixCrc implements Closeable {
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private final ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_BYTES);
+        private long position;
+
+        /**
+         * Opens a file for its checksum
+         * @param file The imported file
+         */
+        public PrefixCrc(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        /**
+         * Adds the bytes up to an offset to the checksum
+         * @param offset An offset at or after the bytes already added
+         * @return The CRC32 of the bytes before the offset
+         */
+        public long update(long offset) throws IOException {
+            while (position < offset) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), offset - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Imported file is shorter than offset " + offset);
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+            }
+            return crc.getValue();
+        }
+
+        /**
+         * Starts the checksum over at the start of the file
+         */
+        public void reset() {
+            crc.reset();
+            position = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Identifies the contents of an imported file without reading all of it
+     */
+    public static final class Fingerprint {
+        private final long size;
+        private final long headCrc;
+        private final long tailCrc;
+
+        Fingerprint(long size, long headCrc, long tailCrc) {
+            this.size = size;
+            this.headCrc = headCrc;
+            this.tailCrc = tailCrc;
+        }
+
+        /**
+         * Computes the fingerprint of an open file with positional reads
+         * @param channel The file
+         * @return The fingerprint
+         */
+        static Fingerprint of(FileChannel channel) throws IOException {
+            long size = channel.size();
+            return new Fingerprint(size, crc(channel, 0, size), crc(channel, Math.max(0, size - FINGERPRINT_BYTES), size));
+        }
+
+        private static long crc(FileChannel channel, long from, long size) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(FINGERPRINT_BYTES, size - from));
+            int read = 0;
+            while (bytes.hasRemaining() && read >= 0) {
+                read = channel.read(bytes, from + bytes.position());
+            }
+            bytes.flip();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return crc.getValue();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return size == other.size && headCrc == other.headCrc && tailCrc == other.tailCrc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(headCrc ^ tailCrc);
+        }
+    }
+}
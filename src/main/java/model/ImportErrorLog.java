@@ -0,0 +1,239 @@
+package model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ImportErrorLog - Bounded collector for the rows rejected by a CSV import.
+ *
+ * Memory use does not grow with the number of errors: the log keeps a count per error
+ * class (invalid date, invalid amount, ...) and the first few errors as examples. Every
+ * error is also appended to a side file, so a file with thousands of broken rows can still
+ * be inspected in full. The side file has a fixed name, e.g. one per data file, and is only
+ * written when the first error arrives; the log of the previous import with errors is then
+ * kept with a ".1" suffix and any older one is dropped, so logs do not pile up.
+ * {@link #readLog(int, int)} pages through that file; a sparse index of line offsets
+ * keeps each page read short.
+ *
+ * Errors are added from the importing thread, in file order.
+ */
+public class ImportErrorLog implements Closeable {
+
+    // Errors kept in memory and printed to the console
+    public static final int DEFAULT_EXAMPLES = 100;
+    // Lines between two entries of the side file index
+    private static final int INDEX_INTERVAL = 1000;
+
+    private final int maxExamples;
+    private final File logPath;
+
+    private int errorCount;
+    private final Map<String, Integer> countsByClass = new LinkedHashMap<>();
+    private final List<Entry> examples = new ArrayList<>();
+
+    // The side file, once the first error was written to it
+    private File logFile;
+    private OutputStream logOutput;
+    private long logBytes;
+    // Byte offset of every INDEX_INTERVAL-th line of the side file
+    private long[] lineOffsets = new long[16];
+    private boolean logFailed;
+    private boolean closed;
+
+    /**
+     * Constructor for ImportErrorLog
+     * @param maxExamples Number of errors kept in memory
+     * @param logPath The side file, or null to keep only the examples
+     */
+    public ImportErrorLog(int maxExamples, File logPath) {
+        this.maxExamples = maxExamples;
+        this.logPath = logPath;
+    }
+
+    /**
+     * Adds the error of a rejected row
+     * @param lineNumber The line the row starts on
+     * @param error The exception thrown while parsing the row
+     */
+    public void add(int lineNumber, Exception error) {
+        String message = error.getMessage() != null ? error.getMessage() : error.toString();
+        add(new Entry(lineNumber, classify(error), message));
+    }
+
+    /**
+     * Adds the error of a rejected row
+     * @param entry The error
+     */
+    public void add(Entry entry) {
+        errorCount++;
+        countsByClass.merge(entry.errorClass, 1, Integer::sum);
+        if (examples.size() < maxExamples) {
+            examples.add(entry);
+            System.err.println("Error processing line " + entry.lineNumber + " (Reason: " + entry.message + ")");
+        }
+        if (logPath != null && !logFailed) {
+            write(entry);
+        }
+    }
+
+    /**
+     * Gets the number of errors added
+     * @return The error count
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the number of errors per error class
+     * @return Map of error class to count, in order of first occurrence
+     */
+    public Map<String, Integer> getCountsByClass() {
+        return Collections.unmodifiableMap(countsByClass);
+    }
+
+    /**
+     * Gets the first errors, in file order
+     * @return Up to the configured number of errors
+     */
+    public List<Entry> getExamples() {
+        return Collections.unmodifiableList(examples);
+    }
+
+    /**
+     * Gets the side file holding every error, one per line
+     * @return The file, or null if no error was written to a file
+     */
+    public File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Reads a page of the full error log
+     * @param first Index of the first error to read
+     * @param count Maximum number of errors to read
+     * @return The errors as "Line N: message" lines
+     */
+    public List<String> readLog(int first, int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (logFile == null) {
+            for (int i = first; i < Math.min(examples.size(), first + count); i++) {
+                lines.add(examples.get(i).toString());
+            }
+            return lines;
+        }
+        if (logOutput != null) {
+            logOutput.flush();
+        }
+        int indexed = Math.min(first / INDEX_INTERVAL, (errorCount - 1) / INDEX_INTERVAL);
+        try (InputStream in = new FileInputStream(logFile)) {
+            long offset = lineOffsets[Math.max(0, indexed)];
+            while (offset > 0) {
+                offset -= in.skip(offset);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            for (int i = Math.max(0, indexed) * INDEX_INTERVAL; i < first + count && (line = reader.readLine()) != null; i++) {
+                if (i >= first) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Flushes and closes the side file; the log can still be read afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (logOutput != null) {
+            logOutput.close();
+            logOutput = null;
+        }
+        if (errorCount > examples.size()) {
+            System.err.println((errorCount - examples.size()) + " more import errors"
+                + (logFile != null ? " written to " + logFile : ""));
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            if (logFile == null) {
+                if (logPath.exists()) {
+                    Files.move(logPath.toPath(), new File(logPath.getPath() + ".1").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+                logOutput = new BufferedOutputStream(new FileOutputStream(logPath));
+                logFile = logPath;
+            }
+            int line = errorCount - 1;
+            if (line % INDEX_INTERVAL == 0) {
+                int slot = line / INDEX_INTERVAL;
+                if (slot == lineOffsets.length) {
+                    lineOffsets = Arrays.copyOf(lineOffsets, slot * 2);
+                }
+                lineOffsets[slot] = logBytes;
+            }
+            // Messages may quote multi-line records; the log keeps one error per line
+            byte[] bytes = (entry.toString().replace('\r', ' ').replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+            logOutput.write(bytes);
+            logBytes += bytes.length;
+        } catch (IOException e) {
+            // Keep counting and collecting examples without the side file
+            e.printStackTrace();
+            logFailed = true;
+        }
+    }
+
+    /**
+     * Names the class of an import error for the per-class counts
+     */
+    static String classify(Exception error) {
+        if (error instanceof DateTimeParseException) {
+            return "Invalid date";
+        } else if (error instanceof NumberFormatException) {
+            return "Invalid amount";
+        } else if (error instanceof IllegalArgumentException) {
+            return "Missing columns";
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /**
+     * The error of one rejected row
+     */
+    public static class Entry {
+        private final int lineNumber;
+        private final String errorClass;
+        private final String message;
+
+        public Entry(int lineNumber, String errorClass, String message) {
+            this.lineNumber = lineNumber;
+            this.errorClass = errorClass;
+            this.message = message;
+        }
+
+        public int getLineNumber() { return lineNumber; }
+        public String getErrorClass() { return errorClass; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.io.File;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ImportOptions - How {@link TransactionManager#importFromCSV(String, ImportOptions)} reads a
+ * CSV file. New options parse the file sequentially, report no progress, are never cancelled
+ * and skip the rows that are already in the ledger. The setters return the options, so they
+ * can be chained.
+ */
+public class ImportOptions {
+
+    private boolean parallel;
+    private ImportProgress.Listener listener;
+    private BooleanSupplier cancelRequested = () -> false;
+    private boolean skipDuplicates = true;
+    // Set by the import to the store's; tests set them to import without a store
+    private File journalBase;
+    private DuplicateIndex duplicateIndex;
+
+    /**
+     * Parses chunks of the file in parallel on the fork-join pool. Rows are still committed
+     * in file order and the error report is the same as for a sequential import.
+     * @param parallel True to parse in parallel
+     * @return These options
+     */
+    public ImportOptions setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Reports the progress of the import
+     * @param listener Told about bytes and rows processed, throughput and errors; may be null
+     * @return These options
+     */
+    public ImportOptions setListener(ImportProgress.Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Lets the import be cancelled
+     * @param cancelRequested Polled by the import; returns true once it should stop
+     * @return These options
+     */
+    public ImportOptions setCancelRequested(BooleanSupplier cancelRequested) {
+        this.cancelRequested = cancelRequested != null ? cancelRequested : () -> false;
+        return this;
+    }
+
+    /**
+     * Chooses what happens to rows that are already in the ledger, see {@link DuplicateIndex}
+     * @param skipDuplicates True to leave duplicates out, false to import them and only report them
+     * @return These options
+     */
+    public ImportOptions setSkipDuplicates(boolean skipDuplicates) {
+        this.skipDuplicates = skipDuplicates;
+        return this;
+    }
+
+    /**
+     * Journals the progress of the import so an interrupted one can be resumed
+     * @param journalBase Path the checkpoint journals are named after, or null to import without checkpoints
+     * @return These options
+     */
+    ImportOptions setJournalBase(File journalBase) {
+        this.journalBase = journalBase;
+        return this;
+    }
+
+    /**
+     * Recognizes rows already in the ledger
+     * @param duplicateIndex The index to look rows up in, or null to commit every row
+     * @return These options
+     */
+    ImportOptions setDuplicateIndex(DuplicateIndex duplicateIndex) {
+        this.duplicateIndex = duplicateIndex;
+        return this;
+    }
+
+    public boolean isParallel() { return parallel; }
+    public ImportProgress.Listener getListener() { return listener; }
+    public BooleanSupplier getCancelRequested() { return cancelRequested; }
+    public boolean isSkipDuplicates() { return skipDuplicates; }
+    File getJournalBase() { return journalBase; }
+    DuplicateIndex getDuplicateIndex() { return duplicateIndex; }
+
+    /**
+     * Copies these options for an import into a store
+     * @param journalBase The store's data file
+     * @param duplicateIndex The store's duplicate index
+     * @return New options with the store's journal and index
+     */
+    ImportOptions forStore(File journalBase, DuplicateIndex duplicateIndex) {
+        return new ImportOptions()
+            .setParallel(parallel)
+            .setListener(listener)
+            .setCancelRequested(cancelRequested)
+            .setSkipDuplicates(skipDuplicates)
+            .setJournalBase(journalBase)
+            .setDuplicateIndex(duplicateIndex);
+    }
+}
@@ -0,0 +1,127 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ImportPreview - What an import of a CSV file would do, worked out from a sample of its
+ * rows: the first rows of the file and rows read at random offsets in the rest of it.
+ * See {@link TransactionManager#previewCSV(String, int, int)}.
+ *
+ * The predicted error rate is the share of sampled rows that could not be parsed. Rows
+ * read at random offsets are spread evenly over the file, so a format change half way
+ * through a statement shows up even though only a few hundred rows are read.
+ */
+public class ImportPreview {
+
+    private final String charset;
+    private final char delimiter;
+    private final boolean hasHeaders;
+    private final List<String> columns;
+    private final String valueFormat;
+    private final List<Row> rows;
+    private final long totalBytes;
+    private final long estimatedRows;
+    private final long elapsedMillis;
+
+    public ImportPreview(String charset, char delimiter, boolean hasHeaders, List<String> columns, String valueFormat,
+                         List<Row> rows, long totalBytes, long estimatedRows, long elapsedMillis) {
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.hasHeaders = hasHeaders;
+        this.columns = Collections.unmodifiableList(columns);
+        this.valueFormat = valueFormat;
+        this.rows = Collections.unmodifiableList(rows);
+        this.totalBytes = totalBytes;
+        this.estimatedRows = estimatedRows;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getCharset() { return charset; }
+    public char getDelimiter() { return delimiter; }
+    public boolean hasHeaders() { return hasHeaders; }
+    public String getValueFormat() { return valueFormat; }
+    public List<Row> getRows() { return rows; }
+    public long getTotalBytes() { return totalBytes; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    /**
+     * Gets the names of the detected columns: the header of the date, description,
+     * category and amount column, or their position if the file has no header
+     * @return The four column names, in that order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the estimated number of data rows, from the average length of the sampled rows
+     * @return The estimated row count
+     */
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * Gets the number of sampled rows that could not be parsed
+     * @return The error count
+     */
+    public int getErrorCount() {
+        int errors = 0;
+        for (Row row : rows) {
+            if (row.isError()) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Gets the share of sampled rows that could not be parsed
+     * @return The predicted error rate, from 0 to 1
+     */
+    public double getPredictedErrorRate() {
+        return rows.isEmpty() ? 0 : (double) getErrorCount() / rows.size();
+    }
+
+    @Override
+    public String toString() {
+        String shownDelimiter = delimiter == '\t' ? "tab" : "'" + delimiter + "'";
+        return String.format("%s, delimiter %s, %s, %s; about %,d rows, %.1f%% predicted errors",
+            charset, shownDelimiter, hasHeaders ? "header " + columns : "no header", valueFormat,
+            estimatedRows, getPredictedErrorRate() * 100);
+    }
+
+    /**
+     * One sampled row and how it parsed
+     */
+    public static class Row {
+        private final int lineNumber;
+        private final long offset;
+        private final Transaction transaction;
+        private final String errorClass;
+        private final String error;
+
+        public Row(int lineNumber, long offset, Transaction transaction, String errorClass, String error) {
+            this.lineNumber = lineNumber;
+            this.offset = offset;
+            this.transaction = transaction;
+            this.errorClass = errorClass;
+            this.error = error;
+        }
+
+        /**
+         * Gets the line the row starts on
+         * @return The line number, or 0 for rows read at a random offset
+         */
+        public int getLineNumber() { return lineNumber; }
+        public long getOffset() { return offset; }
+        public Transaction getTransaction() { return transaction; }
+        public String getErrorClass() { return errorClass; }
+        public String getError() { return error; }
+
+        public boolean isError() {
+            return transaction == null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+/**
+ * ImportProgress - Snapshot of a running CSV import, passed to an {@link ImportProgress.Listener}.
+ * Rows count every parsed record, whether it was imported or rejected.
+ */
+public class ImportProgress {
+
+    /**
+     * Receives progress snapshots of an import. Called on the importing thread, at most
+     * every few hundred milliseconds and once more when the import finishes; UI listeners
+     * should hand the snapshot over to the event dispatch thread.
+     */
+    public interface Listener {
+        void onProgress(ImportProgress progress);
+    }
+
+    private final long bytesProcessed;
+    private final long totalBytes;
+    private final int rowsProcessed;
+    private final int errorCount;
+    private final long elapsedMillis;
+    private final boolean finished;
+
+    public ImportProgress(long bytesProcessed, long totalBytes, int rowsProcessed, int errorCount,
+                          long elapsedMillis, boolean finished) {
+        this.bytesProcessed = bytesProcessed;
+        this.totalBytes = totalBytes;
+        this.rowsProcessed = rowsProcessed;
+        this.errorCount = errorCount;
+        this.elapsedMillis = elapsedMillis;
+        this.finished = finished;
+    }
+
+    public long getBytesProcessed() { return bytesProcessed; }
+    public long getTotalBytes() { return totalBytes; }
+    public int getRowsProcessed() { return rowsProcessed; }
+    public int getErrorCount() { return errorCount; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isFinished() { return finished; }
+
+    /**
+     * Gets the share of the file processed so far
+     * @return Percentage between 0 and 100
+     */
+    public int getPercentDone() {
+        if (totalBytes <= 0) {
+            return finished ? 100 : 0;
+        }
+        return (int) Math.min(100, bytesProcessed * 100 / totalBytes);
+    }
+
+    /**
+     * Gets the average throughput since the import started
+     * @return Rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : rowsProcessed * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Gets the average read rate since the import started
+     * @return Bytes per second
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis == 0 ? 0 : bytesProcessed * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d%% (%d rows, %d errors, %.0f rows/s)",
+            getPercentDone(), rowsProcessed, errorCount, getRowsPerSecond());
+    }
+}
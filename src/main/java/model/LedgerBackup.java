@@ -0,0 +1,293 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * LedgerBackup - Full and incremental backups of a transaction store and the users, in the
+ * block format of BackupWriter, and restores from them.
+ *
+ * A backup records the store positions it starts and ends at, each with a fingerprint: the
+ * CRC32C of the data file bytes just before the position. An incremental backup holds the
+ * records appended after the end of the previous backup, which is only valid while the store
+ * still has the same bytes there. After a compaction or a rollback has moved records, the
+ * fingerprint no longer matches and a full backup is needed.
+ *
+ * A restore replays a full backup and then its incrementals, in order, into an empty store.
+ * Restored records are laid out as in the original store, so each incremental must start
+ * exactly where the store ends. The records of each backup file are appended through a
+ * savepoint and removed again if the file turns out to be damaged.
+ *
+ * The users are small and are saved whole in every backup; a restore returns those of the
+ * last file.
+ */
+public class LedgerBackup {
+
+    // Bytes before a store position that its fingerprint covers
+    static final int FINGERPRINT_BYTES = 4096;
+    // Transactions appended to the store in one write during a restore
+    private static final int RESTORE_BATCH = 8192;
+
+    private LedgerBackup() {
+    }
+
+    /**
+     * Writes a backup of a store and the users. The file is written next to its target and
+     * moved into place when complete.
+     * @param store The transaction store
+     * @param users The users to save
+     * @param file The backup file
+     * @param compress True to deflate the blocks
+     * @param since End mark of the previous backup for an incremental backup, or null for a full one
+     * @return The outcome of the backup, with the end mark to base the next incremental on
+     * @throws IOException If the store changed under the previous backup, or on a read or write error
+     */
+    public static Result backup(TransactionStore store, Collection<User> users, File file, boolean compress,
+                                Mark since) throws IOException {
+        long startNanos = System.nanoTime();
+        Mark base = since != null ? since : new Mark(0, 0);
+        Mark end;
+        Stream<Transaction> transactions;
+        // Take the end position and open the stream together, so that both see the same records
+        synchronized (store) {
+            end = mark(store, store.getEndPosition());
+            if (since != null && (since.getPosition() > end.getPosition() || !mark(store, since.getPosition()).equals(since))) {
+                throw new IOException("The ledger changed since the previous backup; a full backup is needed");
+            }
+            transactions = store.streamFrom(base.getPosition());
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        long count;
+        boolean written = false;
+        try (Stream<Transaction> records = transactions;
+             BackupWriter writer = new BackupWriter(new FileOutputStream(tmp), compress, since != null, base)) {
+            writer.writeUsers(users);
+            records.forEach(transaction -> {
+                try {
+                    writer.write(transaction);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish(end);
+            count = writer.getTransactionCount();
+            written = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!written) {
+                tmp.delete();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Result(1, new ArrayList<>(users), count, file.length(), end, elapsedMillis(startNanos));
+    }
+
+    /**
+     * Restores a full backup and its incrementals into an empty store
+     * @param files The backup files, starting with a full backup, in the order they were taken
+     * @param store The store to restore into
+     * @return The outcome of the restore, with the users of the last backup
+     * @throws IOException If a backup is damaged or does not follow the previous one, or on a read or write error
+     */
+    public static Result restore(List<File> files, TransactionStore store) throws IOException {
+        long startNanos = System.nanoTime();
+        List<User> users = Collections.emptyList();
+        long count = 0;
+        long bytes = 0;
+        Mark end = null;
+        for (File file : files) {
+            try (BackupReader reader = new BackupReader(new FileInputStream(file))) {
+                checkBase(file, reader, store);
+                count += restore(reader, store);
+                users = reader.getUsers();
+                end = reader.getEnd();
+            }
+            bytes += file.length();
+        }
+        return new Result(files.size(), users, count, bytes, end, elapsedMillis(startNanos));
+    }
+
+    /**
+     * Reads the end mark of a backup from its footer, to base an incremental backup on
+     * @param file A complete backup file
+     * @return The store position the backup ends at
+     */
+    public static Mark readEndMark(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < BackupWriter.HEADER_SIZE + BackupWriter.FOOTER_SIZE) {
+                throw new IOException("Not a complete ledger backup: " + file);
+            }
+            byte[] footer = new byte[BackupWriter.FOOTER_SIZE];
+            in.seek(in.length() - footer.length);
+            in.readFully(footer);
+            return BackupReader.readFooter(footer);
+        }
+    }
+
+    /**
+     * Gets the mark of a store position
+     * @param store The store
+     * @param position A record boundary of its data file
+     * @return The position with the fingerprint of the bytes before it
+     */
+    static Mark mark(TransactionStore store, long position) throws IOException {
+        CRC32C crc = new CRC32C();
+        long from = Math.max(0, position - FINGERPRINT_BYTES);
+        if (position > 0) {
+            try (FileChannel channel = FileChannel.open(store.getDataFile().toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (position - from));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, from + buffer.position()) < 0) {
+                        throw new IOException("Transaction store is shorter than position " + position);
+                    }
+                }
+                buffer.flip();
+                crc.update(buffer);
+            }
+        }
+        return new Mark(position, (int) crc.getValue());
+    }
+
+    /**
+     * Checks that a backup continues where the store ends
+     */
+    private static void checkBase(File file, BackupReader reader, TransactionStore store) throws IOException {
+        if (!reader.isIncremental()) {
+            if (!store.isEmpty()) {
+                throw new IOException("A full backup can only be restored into an empty store: " + file);
+            }
+        } else if (store.getEndPosition() != reader.getBase().getPosition()) {
+            throw new IOException("Incremental backup " + file + " does not follow the restored backups");
+        }
+    }
+
+    /**
+     * Appends the transactions of a backup in batches, removing them again on error
+     * @return The number of transactions restored
+     */
+    private static long restore(BackupReader reader, TransactionStore store) throws IOException {
+        TransactionStore.Savepoint savepoint = store.savepoint();
+        boolean restored = false;
+        try {
+            List<Transaction> batch = new ArrayList<>(RESTORE_BATCH);
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                batch.add(transaction);
+                if (batch.size() == RESTORE_BATCH) {
+                    store.appendAll(batch, savepoint);
+                    batch.clear();
+                }
+            }
+            store.appendAll(batch, savepoint);
+            restored = true;
+            return reader.getTransactionCount();
+        } finally {
+            if (restored) {
+                store.release(savepoint);
+            } else {
+                store.rollback(savepoint);
+            }
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * A position in a store's data file with the fingerprint of the bytes before it
+     */
+    public static final class Mark {
+        private final long position;
+        private final int fingerprint;
+
+        public Mark(long position, int fingerprint) {
+            this.position = position;
+            this.fingerprint = fingerprint;
+        }
+
+        public long getPosition() { return position; }
+        public int getFingerprint() { return fingerprint; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Mark)) return false;
+            Mark other = (Mark) o;
+            return position == other.position && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position, fingerprint);
+        }
+
+        @Override
+        public String toString() {
+            return position + "/" + Integer.toHexString(fingerprint);
+        }
+    }
+
+    /**
+     * Outcome and throughput of a backup or restore
+     */
+    public static class Result {
+        private final int files;
+        private final List<User> users;
+        private final long transactions;
+        private final long bytes;
+        private final Mark end;
+        private final long elapsedMillis;
+
+        private Result(int files, List<User> users, long transactions, long bytes, Mark end, long elapsedMillis) {
+            this.files = files;
+            this.users = users;
+            this.transactions = transactions;
+            this.bytes = bytes;
+            this.end = end;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getFiles() { return files; }
+        public List<User> getUsers() { return users; }
+        public long getTransactions() { return transactions; }
+        public long getBytes() { return bytes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /**
+         * Gets the store position the backup, or the last restored backup, ends at
+         * @return The end mark, or null if nothing was restored
+         */
+        public Mark getEnd() {
+            return end;
+        }
+
+        public double getTransactionsPerSecond() {
+            return transactions * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d file(s), %d users, %,d transactions, %.1f MB in %d ms: %,.0f transactions/s",
+                files, users.size(), transactions, bytes / 1048576.0, elapsedMillis, getTransactionsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Money - Fixed-point helpers for amounts held as a long number of cents.
+ * Sums of cents are exact, so aggregating millions of rows does not drift the way
+ * adding doubles does, and parsing and printing work digit by digit without
+ * String.format or DecimalFormat.
+ *
+ * Doubles are only used at the edges (user input, exchange rates, chart values) and
+ * are rounded half up (away from zero) to the nearest cent by {@link #toCents(double)}.
+ * Rounding goes by the decimal a double prints as, so 1.005 becomes 101 cents even though
+ * the nearest double is slightly below 1.005.
+ */
+public final class Money {
+
+    public static final long CENTS_PER_UNIT = 100;
+    // Below this magnitude a product in cents is off by far less than TIE_MARGIN
+    private static final double FAST_ROUNDING_LIMIT = 1e11;
+    // Products closer than this to half a cent are rounded through BigDecimal
+    private static final double TIE_MARGIN = 1e-3;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding half up, away from zero: 0.125 becomes 13 cents
+     * and -0.125 becomes -13
+     * @param amount The amount in currency units
+     * @return The amount in cents
+     */
+    public static long toCents(double amount) {
+        double scaled = amount * CENTS_PER_UNIT;
+        if (!isNearTie(scaled)) {
+            return Math.round(scaled);
+        }
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    /**
+     * Converts cents to an amount in currency units, e.g. for display or charts
+     * @param cents The amount in cents
+     * @return The amount in currency units
+     */
+    public static double toAmount(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    /**
+     * Multiplies an amount by a factor such as an exchange rate, rounding half up, away
+     * from zero, to the cent
+     * @param cents The amount in cents
+     * @param factor The factor
+     * @return The product in cents
+     */
+    public static long multiply(long cents, double factor) {
+        double product = cents * factor;
+        if (!isNearTie(product)) {
+            return Math.round(product);
+        }
+        return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(factor))
+            .setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * Checks whether a value in cents is too close to half a cent for Math.round, which
+     * rounds ties up rather than away from zero and sees the binary error of the double.
+     * Values that are not finite are left to Math.round.
+     */
+    private static boolean isNearTie(double cents) {
+        if (Double.isNaN(cents) || Double.isInfinite(cents)) {
+            return false;
+        }
+        if (Math.abs(cents) >= FAST_ROUNDING_LIMIT) {
+            return true;
+        }
+        double fraction = Math.abs(cents - (long) cents);
+        return Math.abs(fraction - 0.5) < TIE_MARGIN;
+    }
+
+    /**
+     * Parses an amount such as "-1234.5" into cents. Plain decimals are parsed digit by digit;
+     * other decimals (exponents, more than two decimals) are parsed exactly and rounded half
+     * up to the cent, and whatever else Double.parseDouble accepts is parsed by it.
+     * @param text The amount text
+     * @return The amount in cents
+     * @throws NumberFormatException if the text is not a finite number
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses the amount in a range of a character sequence, see {@link #parse(CharSequence)}
+     * @param text The text holding the amount
+     * @param start Start of the amount (inclusive)
+     * @param end End of the amount (exclusive)
+     * @return The amount in cents
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        long cents = parseCents(text, start, end);
+        return cents != Long.MIN_VALUE ? cents : parseSlow(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Parses an ASCII amount in a byte range, see {@link #parse(CharSequence)}
+     * @param bytes The buffer holding the amount
+     * @param start Start of the amount (inclusive)
+     * @param end End of the amount (exclusive)
+     * @return The amount in cents
+     */
+    public static long parse(byte[] bytes, int start, int end) {
+        long cents = parseCents(bytes, start, end);
+        return cents != Long.MIN_VALUE
+            ? cents
+            : parseSlow(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Formats cents with two decimals and no grouping, e.g. "-1234.50"
+     * @param cents The amount in cents
+     * @return The formatted amount
+     */
+    public static String format(long cents) {
+        StringBuilder out = new StringBuilder(24);
+        appendTo(out, cents);
+        return out.toString();
+    }
+
+    /**
+     * Appends cents with two decimals and no grouping to a builder
+     * @param out The builder to append to
+     * @param cents The amount in cents
+     */
+    public static void appendTo(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+        }
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        int fraction = (int) Math.abs(cents % CENTS_PER_UNIT);
+        out.append(units).append('.')
+            .append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Formats cents with thousands separators and two decimals, e.g. "1,234.50"
+     * @param cents The amount in cents
+     * @return The formatted amount
+     */
+    public static String formatGrouped(long cents) {
+        String plain = format(cents);
+        int digitsStart = cents < 0 ? 1 : 0;
+        int pointIndex = plain.length() - 3;
+        StringBuilder out = new StringBuilder(plain.length() + 8);
+        out.append(plain, 0, digitsStart);
+        for (int i = digitsStart; i < pointIndex; i++) {
+            if (i > digitsStart && (pointIndex - i) % 3 == 0) {
+                out.append(',');
+            }
+            out.append(plain.charAt(i));
+        }
+        return out.append(plain, pointIndex, plain.length()).toString();
+    }
+
+    /**
+     * Parses [-]digits[.d[d]] into cents
+     * @return The amount in cents, or Long.MIN_VALUE if the text is not in that form
+     */
+    static long parseCents(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long units = 0;
+        int digitCount = 0;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            units = units * 10 + (text.charAt(i++) - '0');
+            if (++digitCount > 15) {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (digitCount == 0) {
+            return Long.MIN_VALUE;
+        }
+        long fraction = 0;
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            int decimals = 0;
+            while (i < end && decimals < 2 && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                fraction = fraction * 10 + (text.charAt(i++) - '0');
+                decimals++;
+            }
+            if (decimals == 1) {
+                fraction *= 10;
+            }
+        }
+        if (i != end) {
+            return Long.MIN_VALUE;
+        }
+        long cents = units * CENTS_PER_UNIT + fraction;
+        return negative ? -cents : cents;
+    }
+
+    static long parseCents(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = i < end && bytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long units = 0;
+        int digitCount = 0;
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            units = units * 10 + (bytes[i++] - '0');
+            if (++digitCount > 15) {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (digitCount == 0) {
+            return Long.MIN_VALUE;
+        }
+        long fraction = 0;
+        if (i < end && bytes[i] == '.') {
+            i++;
+            int decimals = 0;
+            while (i < end && decimals < 2 && bytes[i] >= '0' && bytes[i] <= '9') {
+                fraction = fraction * 10 + (bytes[i++] - '0');
+                decimals++;
+            }
+            if (decimals == 1) {
+                fraction *= 10;
+            }
+        }
+        if (i != end) {
+            return Long.MIN_VALUE;
+        }
+        long cents = units * CENTS_PER_UNIT + fraction;
+        return negative ? -cents : cents;
+    }
+
+    private static long parseSlow(String text) {
+        BigDecimal exact;
+        try {
+            // Rounds the decimal as written, so "1.005" is 101 cents
+            exact = new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            double amount = Double.parseDouble(text);
+            if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+                throw new NumberFormatException("Amount out of range: " + text);
+            }
+            exact = BigDecimal.valueOf(amount);
+        }
+        if (exact.abs().compareTo(BigDecimal.valueOf(1_000_000_000_000_000L)) >= 0) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+        return exact.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+}
@@ -0,0 +1,250 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MonthlyRollup - Materialized (user, month, category) aggregates of the transaction store.
+ * Each cell holds the sum, count, minimum and maximum amount in cents. Cells are updated
+ * from the store's append notifications, so a save costs one map update per row and
+ * dashboards read their figures without touching the ledger.
+ *
+ * The rollup is persisted next to the data file with a ".rollup" suffix and rebuilt from the
+ * store when it is stale, see PersistedSidecar. Its data maps user id to month index
+ * (year * 12 + month - 1) to category to cell.
+ */
+public class MonthlyRollup extends PersistedSidecar<Map<String, Map<Integer, Map<String, MonthlyRollup.Summary>>>> {
+
+    private static final int MAGIC = 0x46545852;        // "FTXR"
+    private static final int VERSION = 1;
+
+    /**
+     * Creates the rollup of a store. Register it with
+     * {@link TransactionStore#addAppendListener(TransactionStore.AppendListener)} to keep it current.
+     * @param store The transaction store
+     */
+    public MonthlyRollup(TransactionStore store) {
+        super(store, ".rollup", MAGIC, VERSION, "monthly rollup");
+    }
+
+    /**
+     * Gets the current user's category summaries for a month
+     * @param month The month
+     * @return Map of category name to summary
+     */
+    public Map<String, Summary> getCategorySummaries(YearMonth month) {
+        return getCategorySummaries(currentUserId(), month);
+    }
+
+    /**
+     * Gets a user's category summaries for a month, including legacy rows without an owner
+     * @param userId The user id ("" for the legacy rows only)
+     * @param month The month
+     * @return Map of category name to summary, in first-seen order
+     */
+    public Map<String, Summary> getCategorySummaries(String userId, YearMonth month) {
+        int monthIndex = month.getYear() * 12 + month.getMonthValue() - 1;
+        Map<String, Summary> result = new LinkedHashMap<>();
+        withData(() -> {
+            mergeInto(result, "", monthIndex);
+            if (!userId.isEmpty()) {
+                mergeInto(result, userId, monthIndex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the current user's category totals for a month, for the budget views
+     * @param month The month
+     * @return Map of category name to total amount
+     */
+    public Map<String, Double> getCategoryTotals(YearMonth month) {
+        return getCategoryTotals(currentUserId(), month);
+    }
+
+    /**
+     * Gets a user's category totals for a month
+     * @param userId The user id
+     * @param month The month
+     * @return Map of category name to total amount
+     */
+    public Map<String, Double> getCategoryTotals(String userId, YearMonth month) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        for (Map.Entry<String, Summary> entry : getCategorySummaries(userId, month).entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().getSum());
+        }
+        return totals;
+    }
+
+    /**
+     * Gets the current user's summary over all categories of a month
+     * @param month The month
+     * @return The month summary
+     */
+    public Summary getMonthSummary(YearMonth month) {
+        return getMonthSummary(currentUserId(), month);
+    }
+
+    /**
+     * Gets a user's summary over all categories of a month
+     * @param userId The user id
+     * @param month The month
+     * @return The month summary
+     */
+    public Summary getMonthSummary(String userId, YearMonth month) {
+        Summary total = new Summary();
+        for (Summary summary : getCategorySummaries(userId, month).values()) {
+            total.merge(summary);
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether the current user has any transaction, including legacy rows
+     * @return True if at least one transaction is visible to the current user
+     */
+    public boolean hasTransactions() {
+        return hasTransactions(currentUserId());
+    }
+
+    /**
+     * Checks whether a user has any transaction, including legacy rows
+     * @param userId The user id
+     * @return True if at least one transaction is visible to the user
+     */
+    public boolean hasTransactions(String userId) {
+        boolean[] found = new boolean[1];
+        withData(() -> found[0] = data.containsKey(userId) || data.containsKey(""));
+        return found[0];
+    }
+
+    @Override
+    protected Map<String, Map<Integer, Map<String, Summary>>> newData() {
+        return new HashMap<>();
+    }
+
+    @Override
+    protected void write(Map<String, Map<Integer, Map<String, Summary>>> cells, DataOutputStream out) throws IOException {
+        out.writeInt(cells.size());
+        for (Map.Entry<String, Map<Integer, Map<String, Summary>>> user : cells.entrySet()) {
+            out.writeUTF(user.getKey());
+            out.writeInt(user.getValue().size());
+            for (Map.Entry<Integer, Map<String, Summary>> month : user.getValue().entrySet()) {
+                out.writeInt(month.getKey());
+                out.writeInt(month.getValue().size());
+                for (Map.Entry<String, Summary> cell : month.getValue().entrySet()) {
+                    Summary summary = cell.getValue();
+                    out.writeUTF(cell.getKey());
+                    out.writeLong(summary.sumCents);
+                    out.writeInt(summary.count);
+                    out.writeLong(summary.minCents);
+                    out.writeLong(summary.maxCents);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Map<String, Map<Integer, Map<String, Summary>>> read(DataInputStream in) throws IOException {
+        Map<String, Map<Integer, Map<String, Summary>>> cells = new HashMap<>();
+        int users = in.readInt();
+        for (int u = 0; u < users; u++) {
+            Map<Integer, Map<String, Summary>> months = new HashMap<>();
+            cells.put(in.readUTF(), months);
+            int monthCount = in.readInt();
+            for (int m = 0; m < monthCount; m++) {
+                Map<String, Summary> categories = new LinkedHashMap<>();
+                months.put(in.readInt(), categories);
+                int categoryCount = in.readInt();
+                for (int c = 0; c < categoryCount; c++) {
+                    Summary summary = new Summary();
+                    categories.put(in.readUTF(), summary);
+                    summary.sumCents = in.readLong();
+                    summary.count = in.readInt();
+                    summary.minCents = in.readLong();
+                    summary.maxCents = in.readLong();
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Override
+    protected void add(Map<String, Map<Integer, Map<String, Summary>>> cells, Transaction transaction) {
+        int monthIndex = monthIndex((int) transaction.getDate().toEpochDay());
+        cells.computeIfAbsent(transaction.getUserId(), k -> new HashMap<>())
+            .computeIfAbsent(monthIndex, k -> new LinkedHashMap<>())
+            .computeIfAbsent(transaction.getCategory(), k -> new Summary())
+            .add(transaction.getAmountCents());
+    }
+
+    private void mergeInto(Map<String, Summary> result, String userId, int monthIndex) {
+        Map<Integer, Map<String, Summary>> months = data.get(userId);
+        Map<String, Summary> categories = months == null ? null : months.get(monthIndex);
+        if (categories == null) {
+            return;
+        }
+        for (Map.Entry<String, Summary> entry : categories.entrySet()) {
+            result.computeIfAbsent(entry.getKey(), k -> new Summary()).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * Converts an epoch day to a month index (year * 12 + month - 1) without creating a LocalDate.
+     * Uses the days-to-civil algorithm for the proleptic Gregorian calendar.
+     */
+    static int monthIndex(int epochDay) {
+        long z = epochDay + 719468L;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    private static String currentUserId() {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        return currentUser != null ? currentUser.getUsername() : "";
+    }
+
+    /**
+     * Sum, count, minimum and maximum of a group of amounts, in cents
+     */
+    public static class Summary {
+        private long sumCents;
+        private int count;
+        private long minCents = Long.MAX_VALUE;
+        private long maxCents = Long.MIN_VALUE;
+
+        void add(long cents) {
+            sumCents += cents;
+            count++;
+            minCents = Math.min(minCents, cents);
+            maxCents = Math.max(maxCents, cents);
+        }
+
+        void merge(Summary other) {
+            sumCents += other.sumCents;
+            count += other.count;
+            minCents = Math.min(minCents, other.minCents);
+            maxCents = Math.max(maxCents, other.maxCents);
+        }
+
+        public long getSumCents() { return sumCents; }
+        public int getCount() { return count; }
+        public double getSum() { return Money.toAmount(sumCents); }
+
+        // Minimum and maximum are 0 for an empty summary
+        public long getMinCents() { return count == 0 ? 0 : minCents; }
+        public long getMaxCents() { return count == 0 ? 0 : maxCents; }
+    }
+}
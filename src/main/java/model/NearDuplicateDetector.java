@@ -0,0 +1,253 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NearDuplicateDetector - Finds pairs of transactions that are probably the same purchase
+ * recorded twice, e.g. once in a card statement and once in an Alipay or WeChat export.
+ * Such rows rarely match exactly: the dates can be a day or two apart and the descriptions
+ * differ, so DuplicateIndex does not catch them.
+ *
+ * Rows are sorted by (user, amount, date). For each row only the rows whose amount lies within
+ * the amount tolerance above it are visited, and within each amount only the ones inside the
+ * date window, found by binary search. Each such pair is scored on description similarity: the
+ * Dice coefficient of the character bigrams of the normalized descriptions, which works for
+ * Chinese text too. Pairs scoring at least the minimum similarity are reported.
+ *
+ * The detector only reports candidates; deciding what to remove is left to the user.
+ */
+public class NearDuplicateDetector {
+
+    public static final double DEFAULT_AMOUNT_TOLERANCE = 0.01;  // 1% of the amount
+    public static final int DEFAULT_DATE_WINDOW_DAYS = 2;
+    // Two unrelated merchants that share one word, e.g. 美团外卖 and 美团单车, score about 0.33;
+    // a merchant name behind a payment app prefix, e.g. 支付宝-肯德基 and 肯德基KFC, 0.4 or more
+    public static final double DEFAULT_MIN_SIMILARITY = 0.4;
+
+    private final double amountTolerance;
+    private final int dateWindowDays;
+    private final double minSimilarity;
+
+    /**
+     * Creates a detector with the default tolerance, window and minimum similarity
+     */
+    public NearDuplicateDetector() {
+        this(DEFAULT_AMOUNT_TOLERANCE, DEFAULT_DATE_WINDOW_DAYS, DEFAULT_MIN_SIMILARITY);
+    }
+
+    /**
+     * Constructor for NearDuplicateDetector
+     * @param amountTolerance Largest amount difference, as a fraction of the smaller amount; at least one cent
+     * @param dateWindowDays Largest number of days between the two dates
+     * @param minSimilarity Smallest description similarity (0 to 1) of a reported pair
+     */
+    public NearDuplicateDetector(double amountTolerance, int dateWindowDays, double minSimilarity) {
+        this.amountTolerance = amountTolerance;
+        this.dateWindowDays = dateWindowDays;
+        this.minSimilarity = minSimilarity;
+    }
+
+    /**
+     * Finds near-duplicate pairs in a ledger
+     * @param transactions The transactions, e.g. a user's ledger
+     * @return The candidate pairs, most similar first
+     */
+    public List<Candidate> findCandidates(List<Transaction> transactions) {
+        return findCandidates(Collections.emptyList(), transactions);
+    }
+
+    /**
+     * Finds near-duplicate pairs that involve newly added transactions, e.g. after an import.
+     * Pairs of two existing transactions are not reported.
+     * @param existing Transactions already in the ledger
+     * @param added The new transactions
+     * @return The candidate pairs, most similar first
+     */
+    public List<Candidate> findCandidates(List<Transaction> existing, List<Transaction> added) {
+        int n = existing.size() + added.size();
+        Transaction[] rows = new Transaction[n];
+        boolean[] isAdded = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i < existing.size() ? existing.get(i) : added.get(i - existing.size());
+            isAdded[i] = i >= existing.size();
+        }
+
+        // Sort by (user, amount, date) and copy the keys into primitive columns
+        Map<String, Integer> userIds = new HashMap<>();
+        int[] users = new int[n];
+        for (int i = 0; i < n; i++) {
+            String userId = rows[i].getUserId() == null ? "" : rows[i].getUserId();
+            users[i] = userIds.computeIfAbsent(userId, k -> userIds.size());
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> users[i])
+            .thenComparingLong(i -> rows[i].getAmountCents())
+            .thenComparingLong(i -> rows[i].getDate().toEpochDay()));
+
+        Transaction[] sorted = new Transaction[n];
+        int[] user = new int[n];
+        long[] cents = new long[n];
+        long[] days = new long[n];
+        boolean[] fresh = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            sorted[k] = rows[i];
+            user[k] = users[i];
+            cents[k] = rows[i].getAmountCents();
+            days[k] = rows[i].getDate().toEpochDay();
+            fresh[k] = isAdded[i];
+        }
+
+        // groupEnd[k]: end of the run of rows with the same user and amount as row k
+        int[] groupEnd = new int[n];
+        for (int k = n - 1; k >= 0; k--) {
+            groupEnd[k] = k + 1 < n && user[k + 1] == user[k] && cents[k + 1] == cents[k] ? groupEnd[k + 1] : k + 1;
+        }
+
+        int[][] bigrams = new int[n][];
+        List<Candidate> candidates = new ArrayList<>();
+        for (int a = 0; a < n; a++) {
+            long maxCents = cents[a] + Math.max(1, (long) (Math.abs(cents[a]) * amountTolerance));
+            // Same amount: later dates follow in order
+            for (int b = a + 1; b < groupEnd[a] && days[b] - days[a] <= dateWindowDays; b++) {
+                score(a, b, sorted, days, fresh, bigrams, candidates);
+            }
+            // Higher amounts within the tolerance: binary search each amount's date window
+            for (int g = groupEnd[a]; g < n && user[g] == user[a] && cents[g] <= maxCents; g = groupEnd[g]) {
+                for (int b = firstOnOrAfter(days, g, groupEnd[g], days[a] - dateWindowDays);
+                     b < groupEnd[g] && days[b] - days[a] <= dateWindowDays; b++) {
+                    score(a, b, sorted, days, fresh, bigrams, candidates);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::getSimilarity).reversed());
+        return candidates;
+    }
+
+    private void score(int a, int b, Transaction[] rows, long[] days, boolean[] fresh, int[][] bigrams,
+                       List<Candidate> candidates) {
+        if (!fresh[a] && !fresh[b]) {
+            return;
+        }
+        if (bigrams[a] == null) {
+            bigrams[a] = bigrams(rows[a].getDescription());
+        }
+        if (bigrams[b] == null) {
+            bigrams[b] = bigrams(rows[b].getDescription());
+        }
+        double similarity = similarity(bigrams[a], bigrams[b]);
+        if (similarity >= minSimilarity) {
+            // Report the earlier transaction first
+            boolean ordered = days[a] <= days[b];
+            candidates.add(new Candidate(ordered ? rows[a] : rows[b], ordered ? rows[b] : rows[a], similarity));
+        }
+    }
+
+    private static int firstOnOrAfter(long[] days, int from, int to, long day) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (days[mid] < day) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Gets the sorted character bigrams of a description, keeping letters and digits only,
+     * in lower case. A single character counts as one bigram.
+     */
+    static int[] bigrams(String description) {
+        StringBuilder normalized = new StringBuilder();
+        if (description != null) {
+            for (int i = 0; i < description.length(); i++) {
+                char c = description.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    normalized.append(Character.toLowerCase(c));
+                }
+            }
+        }
+        if (normalized.length() < 2) {
+            return normalized.length() == 0 ? new int[0] : new int[] {normalized.charAt(0)};
+        }
+        int[] bigrams = new int[normalized.length() - 1];
+        for (int i = 0; i < bigrams.length; i++) {
+            bigrams[i] = normalized.charAt(i) << 16 | normalized.charAt(i + 1);
+        }
+        Arrays.sort(bigrams);
+        return bigrams;
+    }
+
+    /**
+     * Dice coefficient of two sorted bigram multisets: twice the shared bigrams over the total
+     */
+    static double similarity(int[] first, int[] second) {
+        if (first.length == 0 || second.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] == second[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return 2.0 * shared / (first.length + second.length);
+    }
+
+    /**
+     * Two transactions that may be the same purchase
+     */
+    public static class Candidate {
+        private final Transaction first;
+        private final Transaction second;
+        private final double similarity;
+
+        public Candidate(Transaction first, Transaction second, double similarity) {
+            this.first = first;
+            this.second = second;
+            this.similarity = similarity;
+        }
+
+        public Transaction getFirst() { return first; }
+        public Transaction getSecond() { return second; }
+        public double getSimilarity() { return similarity; }
+
+        /**
+         * Gets the number of days between the two transactions
+         * @return The day difference, 0 or more
+         */
+        public long getDayDifference() {
+            return Math.abs(second.getDate().toEpochDay() - first.getDate().toEpochDay());
+        }
+
+        /**
+         * Gets the amount difference between the two transactions
+         * @return The absolute difference in cents
+         */
+        public long getAmountDifferenceCents() {
+            return Math.abs(second.getAmountCents() - first.getAmountCents());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f: %s | %s", similarity, first, second);
+        }
+    }
+}
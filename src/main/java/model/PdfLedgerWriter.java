@@ -0,0 +1,106 @@
+package model;
+
+import com.itextpdf.text.pdf.PdfPTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * PdfLedgerWriter - Writes transaction listings of any length into a {@link PdfReport} in
+ * bounded memory.
+ *
+ * The listing is an iText large table: it is marked incomplete and added to the document
+ * every {@link #CHUNK_ROWS} rows, which writes the finished rows to the pages and drops them
+ * from the table. Together with rows read lazily from the ledger through
+ * {@link TransactionStore#streamRange(String, boolean, LocalDate, LocalDate)}, a listing of
+ * ten years of transactions holds at most one chunk of rows in memory.
+ *
+ * For date-ordered listings, a subtotal row can close each month.
+ */
+public class PdfLedgerWriter {
+
+    // Table rows written to the document at a time
+    static final int CHUNK_ROWS = 500;
+
+    private final PdfReport report;
+    private boolean monthlySubtotals;
+
+    /**
+     * Constructor for PdfLedgerWriter
+     * @param report The report the listings are added to
+     */
+    public PdfLedgerWriter(PdfReport report) {
+        this.report = report;
+    }
+
+    /**
+     * Sets whether a subtotal row follows the last transaction of each month. Only
+     * meaningful when the transactions are in date order.
+     * @param monthlySubtotals True to add monthly subtotal rows
+     */
+    public void setMonthlySubtotals(boolean monthlySubtotals) {
+        this.monthlySubtotals = monthlySubtotals;
+    }
+
+    /**
+     * Lists a user's transactions dated within a range, in date order, reading them from the
+     * ledger as the table is written. Legacy rows without an owner are included.
+     * @param store The transaction store
+     * @param userId The user id
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @return The number of transactions listed
+     */
+    public long write(TransactionStore store, String userId, LocalDate from, LocalDate to) throws IOException {
+        try (Stream<Transaction> transactions = store.streamRange(userId, true, from, to)) {
+            return write(transactions.iterator());
+        }
+    }
+
+    /**
+     * Lists transactions in the order given
+     * @param transactions The transactions; read errors may be thrown as UncheckedIOException
+     * @return The number of transactions listed
+     */
+    public long write(Iterator<Transaction> transactions) throws IOException {
+        PdfPTable table = report.createTable(PdfReport.TRANSACTION_HEADERS, PdfReport.TRANSACTION_WIDTHS);
+        // An incomplete table is a large element: adding it writes and then drops its rows
+        table.setComplete(false);
+        long rows = 0;
+        int pendingRows = 0;
+        YearMonth month = null;
+        long monthCents = 0;
+        try {
+            while (transactions.hasNext()) {
+                Transaction transaction = transactions.next();
+                YearMonth transactionMonth = YearMonth.from(transaction.getDate());
+                if (monthlySubtotals && month != null && !month.equals(transactionMonth)) {
+                    report.addSubtotalRow(table, "Total " + month, monthCents);
+                    monthCents = 0;
+                    pendingRows++;
+                }
+                month = transactionMonth;
+                monthCents += transaction.getAmountCents();
+
+                report.addTransactionRow(table, transaction);
+                rows++;
+                if (++pendingRows >= CHUNK_ROWS) {
+                    report.add(table);
+                    pendingRows = 0;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (monthlySubtotals && month != null) {
+            report.addSubtotalRow(table, "Total " + month, monthCents);
+        }
+        table.setComplete(true);
+        report.add(table);
+        return rows;
+    }
+}
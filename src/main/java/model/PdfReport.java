@@ -0,0 +1,332 @@
+package model;
+
+import com.itextpdf.awt.PdfGraphics2D;
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.jfree.chart.JFreeChart;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * PdfReport - Writes a PDF report of headings, text, charts and tables to a stream, in one
+ * pass and without temporary files.
+ *
+ * Charts are drawn by JFreeChart straight into a PdfTemplate through iText's Graphics2D, so
+ * they stay vector graphics at any zoom. Chart text is drawn as shapes, which keeps Chinese
+ * labels readable without embedding a CJK font.
+ *
+ * Text and tables need a font with Chinese glyphs. The system property "report.font" names
+ * a TrueType font file to embed (for a .ttc collection, append ",0" to pick its first font).
+ * Without it, STSong from the iText Asian font pack is used when that is on the class path,
+ * and otherwise the first of the usual Chinese system fonts of Windows, macOS and Linux that
+ * is installed. Only when none is found does the report fall back to Helvetica, in which
+ * Chinese text is missing; a warning says so on standard error.
+ */
+public class PdfReport implements Closeable {
+
+    public static final String[] TRANSACTION_HEADERS = {"Date", "Description", "Category", "Amount"};
+    static final float[] TRANSACTION_WIDTHS = {2, 6, 3, 2};
+    private static final float MARGIN = 36;
+    private static final BaseColor HEADER_BACKGROUND = new BaseColor(52, 152, 219);
+    private static final BaseColor SUBTOTAL_BACKGROUND = new BaseColor(235, 245, 251);
+    // System fonts with Chinese glyphs, in order of preference
+    private static final String[] CJK_FONT_FILES = {
+        "C:/Windows/Fonts/msyh.ttc,0",
+        "C:/Windows/Fonts/simsun.ttc,0",
+        "C:/Windows/Fonts/simhei.ttf",
+        "/System/Library/Fonts/PingFang.ttc,0",
+        "/System/Library/Fonts/STHeiti Light.ttc,0",
+        "/Library/Fonts/Arial Unicode.ttf",
+        "/usr/share/fonts/truetype/wqy/wqy-microhei.ttc,0",
+        "/usr/share/fonts/wqy-microhei/wqy-microhei.ttc,0",
+        "/usr/share/fonts/truetype/wqy/wqy-zenhei.ttc,0",
+        "/usr/share/fonts/wenquanyi/wqy-zenhei/wqy-zenhei.ttc,0",
+        "/usr/share/fonts/truetype/arphic/uming.ttc,0",
+        "/usr/share/fonts/truetype/droid/DroidSansFallbackFull.ttf",
+        "/usr/share/fonts/google-droid/DroidSansFallbackFull.ttf"
+    };
+    // Checked against every candidate font
+    private static final char CJK_SAMPLE = '\u4e2d';
+
+    // The font found for reports, looked up once
+    private static BaseFont reportFont;
+
+    private final Document document;
+    private final PdfWriter writer;
+    private final Font titleFont;
+    private final Font headingFont;
+    private final Font textFont;
+    private final Font tableHeaderFont;
+    private final Font subtotalFont;
+    private boolean closed;
+
+    /**
+     * Starts an A4 report
+     * @param out The stream the PDF is written to; closed with the report
+     * @param title The document title, shown in the PDF viewer
+     */
+    public PdfReport(OutputStream out, String title) throws IOException {
+        document = new Document(PageSize.A4, MARGIN, MARGIN, MARGIN, MARGIN);
+        try {
+            writer = PdfWriter.getInstance(document, out);
+            BaseFont baseFont = createBaseFont();
+            titleFont = new Font(baseFont, 18, Font.BOLD);
+            headingFont = new Font(baseFont, 13, Font.BOLD);
+            textFont = new Font(baseFont, 9);
+            tableHeaderFont = new Font(baseFont, 9, Font.BOLD, BaseColor.WHITE);
+            subtotalFont = new Font(baseFont, 9, Font.BOLD);
+        } catch (DocumentException e) {
+            throw new IOException("Cannot create PDF report: " + e.getMessage(), e);
+        }
+        document.addTitle(title);
+        document.addCreator("Financial Management Application");
+        document.open();
+    }
+
+    /**
+     * Adds the report title
+     * @param text The title
+     */
+    public void addTitle(String text) throws IOException {
+        Paragraph paragraph = new Paragraph(text, titleFont);
+        paragraph.setSpacingAfter(12);
+        add(paragraph);
+    }
+
+    /**
+     * Adds a section heading
+     * @param text The heading
+     */
+    public void addHeading(String text) throws IOException {
+        Paragraph paragraph = new Paragraph(text, headingFont);
+        paragraph.setSpacingBefore(10);
+        paragraph.setSpacingAfter(6);
+        add(paragraph);
+    }
+
+    /**
+     * Adds a paragraph of text
+     * @param text The text
+     */
+    public void addText(String text) throws IOException {
+        add(new Paragraph(text, textFont));
+    }
+
+    /**
+     * Adds a chart as vector graphics, scaled to the page width if it is wider
+     * @param chart The chart
+     * @param width Width in points (1/72 inch)
+     * @param height Height in points
+     */
+    public void addChart(JFreeChart chart, float width, float height) throws IOException {
+        PdfTemplate template = writer.getDirectContent().createTemplate(width, height);
+        Graphics2D graphics = new PdfGraphics2D(template, width, height, true);
+        try {
+            chart.draw(graphics, new Rectangle2D.Double(0, 0, width, height));
+        } finally {
+            graphics.dispose();
+        }
+        try {
+            Image image = Image.getInstance(template);
+            float pageWidth = document.right() - document.left();
+            if (width > pageWidth) {
+                image.scaleToFit(pageWidth, height * pageWidth / width);
+            }
+            image.setAlignment(Element.ALIGN_CENTER);
+            document.add(image);
+        } catch (DocumentException e) {
+            throw new IOException("Cannot add chart to PDF report: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds a table whose header row is repeated on every page it spans
+     * @param headers The column headers
+     * @param rows The rows, each with one value per column
+     */
+    public void addTable(String[] headers, List<String[]> rows) throws IOException {
+        PdfPTable table = createTable(headers, null);
+        for (String[] row : rows) {
+            addRow(table, row);
+        }
+        add(table);
+    }
+
+    /**
+     * Adds a table of transactions with their date, description, category and amount. The
+     * table is written in chunks by a {@link PdfLedgerWriter}, so the transactions can be
+     * read lazily and only one chunk of rows is held in memory.
+     * @param transactions The transactions, in the order to list them
+     */
+    public void addTransactionTable(Iterable<Transaction> transactions) throws IOException {
+        new PdfLedgerWriter(this).write(transactions.iterator());
+    }
+
+    /**
+     * Starts a new page
+     */
+    public void newPage() {
+        document.newPage();
+    }
+
+    /**
+     * Gets the number of the page being written
+     * @return The page number, from 1
+     */
+    public int getPageNumber() {
+        return writer.getPageNumber();
+    }
+
+    /**
+     * Finishes the PDF and closes the stream
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            document.close();
+        }
+    }
+
+    /**
+     * Creates a table with a styled header row that repeats on every page
+     * @param headers The column headers
+     * @param relativeWidths The relative column widths, or null for equal columns
+     */
+    PdfPTable createTable(String[] headers, float[] relativeWidths) {
+        PdfPTable table = relativeWidths != null ? new PdfPTable(relativeWidths) : new PdfPTable(headers.length);
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        for (String header : headers) {
+            PdfPCell cell = new PdfPCell(new Phrase(header, tableHeaderFont));
+            cell.setBackgroundColor(HEADER_BACKGROUND);
+            cell.setPadding(4);
+            table.addCell(cell);
+        }
+        return table;
+    }
+
+    /**
+     * Adds a row of text cells to a table
+     */
+    void addRow(PdfPTable table, String[] values) {
+        for (String value : values) {
+            PdfPCell cell = new PdfPCell(new Phrase(value != null ? value : "", textFont));
+            cell.setPadding(3);
+            table.addCell(cell);
+        }
+    }
+
+    /**
+     * Adds a transaction row to a table made with {@link #TRANSACTION_HEADERS}
+     */
+    void addTransactionRow(PdfPTable table, Transaction transaction) {
+        addRow(table, new String[] {transaction.getDate().toString(), transaction.getDescription(), transaction.getCategory()});
+        PdfPCell amount = new PdfPCell(new Phrase(Money.formatGrouped(transaction.getAmountCents()), textFont));
+        amount.setPadding(3);
+        amount.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        table.addCell(amount);
+    }
+
+    /**
+     * Adds a bold row with a label and an amount to a table made with {@link #TRANSACTION_HEADERS}
+     */
+    void addSubtotalRow(PdfPTable table, String label, long cents) {
+        PdfPCell labelCell = new PdfPCell(new Phrase(label, subtotalFont));
+        labelCell.setColspan(TRANSACTION_HEADERS.length - 1);
+        labelCell.setPadding(3);
+        labelCell.setBackgroundColor(SUBTOTAL_BACKGROUND);
+        table.addCell(labelCell);
+        PdfPCell amount = new PdfPCell(new Phrase(Money.formatGrouped(cents), subtotalFont));
+        amount.setPadding(3);
+        amount.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        amount.setBackgroundColor(SUBTOTAL_BACKGROUND);
+        table.addCell(amount);
+    }
+
+    /**
+     * Adds an element to the document
+     */
+    void add(Element element) throws IOException {
+        try {
+            document.add(element);
+        } catch (DocumentException e) {
+            throw new IOException("Cannot write PDF report: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the font for text and tables: the one set with the "report.font" property, or
+     * the first font with Chinese glyphs that is available, or Helvetica
+     */
+    private static synchronized BaseFont createBaseFont() throws DocumentException, IOException {
+        if (reportFont != null) {
+            return reportFont;
+        }
+        String fontFile = System.getProperty("report.font");
+        if (fontFile != null && !fontFile.isEmpty()) {
+            reportFont = loadCjkFont(fontFile);
+            if (reportFont == null) {
+                System.err.println("Cannot use report font " + fontFile + "; looking for a system font with Chinese glyphs");
+            }
+        }
+        if (reportFont == null) {
+            try {
+                // Only available with the iText Asian font pack (itext-asian.jar)
+                reportFont = BaseFont.createFont("STSong-Light", "UniGB-UCS2-H", BaseFont.NOT_EMBEDDED);
+            } catch (DocumentException | IOException e) {
+                reportFont = null;
+            }
+        }
+        for (int i = 0; reportFont == null && i < CJK_FONT_FILES.length; i++) {
+            String candidate = CJK_FONT_FILES[i];
+            int collectionIndex = candidate.lastIndexOf(",");
+            String path = collectionIndex > 0 ? candidate.substring(0, collectionIndex) : candidate;
+            if (new File(path).isFile()) {
+                reportFont = loadCjkFont(candidate);
+            }
+        }
+        if (reportFont == null) {
+            System.err.println("WARNING: No font with Chinese glyphs was found. Chinese text will be MISSING from "
+                + "PDF reports. Install a Chinese font or start the application with -Dreport.font=<font file>.");
+            reportFont = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        }
+        return reportFont;
+    }
+
+    /**
+     * Loads a TrueType font for embedding
+     * @param fontFile The font file, with ",index" for a font of a collection
+     * @return The font, or null if it cannot be loaded or has no Chinese glyphs
+     */
+    private static BaseFont loadCjkFont(String fontFile) {
+        try {
+            BaseFont font = BaseFont.createFont(fontFile, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+            if (font.charExists(CJK_SAMPLE)) {
+                return font;
+            }
+            System.err.println("Font " + fontFile + " has no Chinese glyphs");
+        } catch (DocumentException | IOException e) {
+            System.err.println("Cannot load font " + fontFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,241 @@
+package model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * PersistedSidecar - Base of the data derived from every record of a transaction store and
+ * kept in a file next to its data file, such as MonthlyRollup and DuplicateIndex.
+ *
+ * The data is updated from the store's append notifications. It is persisted together with
+ * the data file stamp it was built for, and when the stamps no longer match it is rebuilt
+ * from the store. A rebuild reads the ledger without holding the store's lock, so saves go
+ * on meanwhile; the records appended during the rebuild are then read under the lock, and
+ * the rebuild starts over if a rollback or compaction moved records in the meantime.
+ *
+ * The data is guarded by the store's lock. Subclasses read it through {@link #withData(Runnable)}.
+ * @param <D> The type of the derived data
+ */
+public abstract class PersistedSidecar<D> implements TransactionStore.AppendListener {
+
+    protected final TransactionStore store;
+    private final File file;
+    private final int magic;
+    private final int version;
+    private final String name;
+
+    // The derived data, null until loaded
+    protected D data;
+    // Stamp of the data file the data is valid for, null until loaded
+    private long[] stamp;
+    private boolean dirty;
+
+    /**
+     * Constructor for PersistedSidecar
+     * @param store The transaction store
+     * @param suffix Suffix of the file next to the store's data file
+     * @param magic Magic number at the start of the file
+     * @param version Format version of the file
+     * @param name Name of the data in messages
+     */
+    protected PersistedSidecar(TransactionStore store, String suffix, int magic, int version, String name) {
+        this.store = store;
+        this.file = new File(store.getDataFile().getPath() + suffix);
+        this.magic = magic;
+        this.version = version;
+        this.name = name;
+    }
+
+    /**
+     * Creates empty data
+     */
+    protected abstract D newData();
+
+    /**
+     * Adds a committed transaction to the data
+     */
+    protected abstract void add(D data, Transaction transaction);
+
+    /**
+     * Writes the data after the file header
+     */
+    protected abstract void write(D data, DataOutputStream out) throws IOException;
+
+    /**
+     * Reads data written by {@link #write}
+     */
+    protected abstract D read(DataInputStream in) throws IOException;
+
+    /**
+     * Adds committed transactions to the data. Called by the store while its lock is held.
+     * @param store The store the transactions were appended to
+     * @param transactions The committed transactions
+     */
+    @Override
+    public void onAppend(TransactionStore store, Collection<Transaction> transactions) {
+        if (stamp == null) {
+            // Not loaded yet; loading reads these rows from the store
+            return;
+        }
+        for (Transaction transaction : transactions) {
+            add(data, transaction);
+        }
+        stamp = new long[] {store.getDataFile().lastModified(), store.getDataFile().length()};
+        dirty = true;
+    }
+
+    /**
+     * Drops the data so the next read rebuilds it from the store, e.g. after a rollback
+     */
+    public void invalidate() {
+        synchronized (store) {
+            data = null;
+            stamp = null;
+            file.delete();
+        }
+    }
+
+    /**
+     * Persists the data if it changed since it was last written
+     */
+    public void save() throws IOException {
+        synchronized (store) {
+            if (stamp == null || !dirty) {
+                return;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeLong(stamp[0]);
+                out.writeLong(stamp[1]);
+                write(data, out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Runs an action on the data while holding the store's lock, loading or rebuilding the
+     * data first if it does not match the data file
+     * @param action Reads {@link #data}
+     * @return False if the store could not be read; the action was not run
+     */
+    protected boolean withData(Runnable action) {
+        while (true) {
+            if (!ensureLoaded()) {
+                return false;
+            }
+            synchronized (store) {
+                // Unless it was invalidated again since
+                if (isCurrent()) {
+                    action.run();
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the data matches the data file. Called with the store's lock held.
+     */
+    private boolean isCurrent() {
+        try {
+            long[] current = store.getModificationStamp();
+            return stamp != null && stamp[0] == current[0] && stamp[1] == current[1];
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes sure the data matches the data file, loading or rebuilding it if needed
+     * @return False if the store could not be read
+     */
+    private boolean ensureLoaded() {
+        try {
+            while (true) {
+                Stream<Transaction> snapshot;
+                long end;
+                int layout;
+                synchronized (store) {
+                    long[] current = store.getModificationStamp();
+                    if (stamp != null && stamp[0] == current[0] && stamp[1] == current[1]) {
+                        return true;
+                    }
+                    if (stamp == null && load(current)) {
+                        return true;
+                    }
+                    // Stale or missing: appends are not tracked until the rebuild is done
+                    data = null;
+                    stamp = null;
+                    snapshot = store.stream();
+                    end = store.getEndPosition();
+                    layout = store.getLayoutVersion();
+                }
+
+                // Read the ledger up to the snapshot without holding the lock
+                D rebuilt = newData();
+                try (Stream<Transaction> transactions = snapshot) {
+                    transactions.forEach(transaction -> add(rebuilt, transaction));
+                } catch (UncheckedIOException e) {
+                    if (e.getCause() instanceof TransactionStore.LayoutChangedException) {
+                        // Rolled back meanwhile: start over from the new layout
+                        continue;
+                    }
+                    throw e.getCause();
+                }
+
+                synchronized (store) {
+                    if (store.getLayoutVersion() != layout) {
+                        continue;
+                    }
+                    // Catch up with the rows appended meanwhile
+                    try (Stream<Transaction> appended = store.streamFrom(end)) {
+                        appended.forEach(transaction -> add(rebuilt, transaction));
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    data = rebuilt;
+                    stamp = store.getModificationStamp();
+                    dirty = true;
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            synchronized (store) {
+                data = null;
+                stamp = null;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads the persisted data if it was written for the current data file
+     */
+    private boolean load(long[] current) {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != magic || in.readInt() != version
+                    || in.readLong() != current[0] || in.readLong() != current[1]) {
+                return false;
+            }
+            data = read(in);
+            stamp = current;
+            dirty = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Rebuilding " + name + ": " + e.getMessage());
+            data = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package model;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.general.DefaultPieDataset;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * StatementJob - Headless batch job that writes a monthly PDF statement for every user,
+ * meant to run from a scheduler on the 1st of each month:
+ *
+ *     java -cp ... model.StatementJob [output directory] [yyyy-MM] [threads]
+ *
+ * Statements are rendered in parallel on a fixed pool of threads. Each statement holds the
+ * month's totals, a chart of the spending per category and the month's transactions. The
+ * totals come from the monthly rollup; the transactions are read lazily from the ledger and
+ * written to the PDF in chunks by a {@link PdfLedgerWriter}, so memory use does not grow with
+ * the number of rows. The store is only locked while the month's rows are looked up in the
+ * date index, so the threads render concurrently.
+ *
+ * A statement is written to a temporary file and moved into place when complete. A user
+ * whose statement fails is reported and does not stop the others.
+ */
+public class StatementJob {
+
+    private final TransactionStore store;
+    private final MonthlyRollup rollup;
+    private final File outputDirectory;
+    private final YearMonth month;
+    private int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Constructor for StatementJob
+     * @param store The transaction store
+     * @param rollup The monthly rollup of the store, for the totals
+     * @param outputDirectory Directory the statements are written to
+     * @param month The month of the statements
+     */
+    public StatementJob(TransactionStore store, MonthlyRollup rollup, File outputDirectory, YearMonth month) {
+        this.store = store;
+        this.rollup = rollup;
+        this.outputDirectory = outputDirectory;
+        this.month = month;
+    }
+
+    /**
+     * Sets the number of statements rendered at the same time
+     * @param threads The pool size, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Writes the statements of all registered users
+     * @return The outcome and throughput of the run
+     */
+    public Result runForAllUsers() throws InterruptedException {
+        return run(UserManager.getInstance().getAllUsers().keySet());
+    }
+
+    /**
+     * Writes the statements of the given users
+     * @param userIds The users
+     * @return The outcome and throughput of the run
+     */
+    public Result run(Collection<String> userIds) throws InterruptedException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create output directory: " + outputDirectory);
+        }
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, Future<Long>> statements = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                statements.put(userId, pool.submit(() -> writeStatement(userId, getStatementFile(userId))));
+            }
+            for (Map.Entry<String, Future<Long>> statement : statements.entrySet()) {
+                try {
+                    result.addStatement(statement.getValue().get(), getStatementFile(statement.getKey()).length());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    System.err.println("Statement for " + statement.getKey() + " failed: " + cause);
+                    result.failures.put(statement.getKey(), String.valueOf(cause.getMessage()));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        result.elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        return result;
+    }
+
+    /**
+     * Gets the file a user's statement is written to
+     * @param userId The user id
+     * @return The statement file in the output directory
+     */
+    public File getStatementFile(String userId) {
+        String safeName = userId.isEmpty() ? "legacy" : userId.replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(outputDirectory, "statement-" + safeName + "-" + month + ".pdf");
+    }
+
+    /**
+     * Writes one user's statement
+     * @return The number of transactions listed
+     */
+    long writeStatement(String userId, File file) throws IOException {
+        Map<String, MonthlyRollup.Summary> categories = rollup.getCategorySummaries(userId, month);
+        MonthlyRollup.Summary total = new MonthlyRollup.Summary();
+        for (MonthlyRollup.Summary summary : categories.values()) {
+            total.merge(summary);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        long rows;
+        boolean written = false;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+             PdfReport report = new PdfReport(out, "Statement " + month)) {
+            report.addTitle("Monthly Statement - " + month);
+            report.addText("Account: " + (userId.isEmpty() ? "(shared)" : userId));
+            report.addText("Period: " + month.atDay(1) + " to " + month.atEndOfMonth());
+            report.addText("Transactions: " + total.getCount() + ", total: " + Money.formatGrouped(total.getSumCents()));
+
+            if (!categories.isEmpty()) {
+                report.addHeading("By Category");
+                List<String[]> categoryRows = new ArrayList<>();
+                DefaultPieDataset<String> dataset = new DefaultPieDataset<>();
+                for (Map.Entry<String, MonthlyRollup.Summary> category : categories.entrySet()) {
+                    MonthlyRollup.Summary summary = category.getValue();
+                    categoryRows.add(new String[] {category.getKey(), String.valueOf(summary.getCount()),
+                        Money.formatGrouped(summary.getSumCents())});
+                    dataset.setValue(category.getKey(), Math.abs(summary.getSum()));
+                }
+                JFreeChart chart = ChartFactory.createPieChart("Spending by Category", dataset, true, false, false);
+                report.addChart(chart, 523, 260);
+                report.addTable(new String[] {"Category", "Count", "Total"}, categoryRows);
+            }
+
+            report.addHeading("Transactions");
+            rows = new PdfLedgerWriter(report).write(store, userId, month.atDay(1), month.atEndOfMonth());
+            written = true;
+        } finally {
+            if (!written) {
+                tmp.delete();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Runs the job for all users. Arguments: output directory (default "statements"), month
+     * as yyyy-MM (default the previous month) and number of threads.
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File outputDirectory = new File(args.length > 0 ? args[0] : "statements");
+        YearMonth month = args.length > 1 ? YearMonth.parse(args[1]) : YearMonth.now().minusMonths(1);
+
+        StatementJob job = new StatementJob(TransactionManager.getStore(), TransactionManager.getMonthlyRollup(),
+            outputDirectory, month);
+        if (args.length > 2) {
+            job.setThreads(Integer.parseInt(args[2]));
+        }
+        Result result = job.runForAllUsers();
+        System.out.println("Statements for " + month + ": " + result);
+        if (!result.getFailures().isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Outcome and throughput of a run
+     */
+    public static class Result {
+        private int statements;
+        private long transactions;
+        private long bytes;
+        private long elapsedMillis;
+        private final Map<String, String> failures = new LinkedHashMap<>();
+
+        private void addStatement(long rows, long fileBytes) {
+            statements++;
+            transactions += rows;
+            bytes += fileBytes;
+        }
+
+        public int getStatements() { return statements; }
+        public long getTransactions() { return transactions; }
+        public long getBytes() { return bytes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /**
+         * Gets the users whose statement could not be written
+         * @return Map of user id to error message
+         */
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        public double getStatementsPerSecond() {
+            return statements * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        public double getTransactionsPerSecond() {
+            return transactions * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements (%d failed), %,d transactions, %.1f MB in %d ms: "
+                + "%.1f statements/s, %,.0f transactions/s", statements, failures.size(), transactions,
+                bytes / 1048576.0, elapsedMillis, getStatementsPerSecond(), getTransactionsPerSecond());
+        }
+    }
+}
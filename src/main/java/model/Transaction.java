@@ -7,13 +7,14 @@ public class Transaction {
     private LocalDate date;
     private String description;
     private String category;
-    private double amount;
+    // Stored in cents, see Money
+    private long amountCents;
     
     public Transaction(LocalDate date, String description, String category, double amount) {
         this.date = date;
         this.description = description;
         this.category = category;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         // Default userId to empty string when not specified
         this.userId = "";
     }
@@ -23,7 +24,22 @@ public class Transaction {
         this.date = date;
         this.description = description;
         this.category = category;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
+    }
+    
+    /**
+     * Creates a transaction from an exact amount in cents
+     * @param userId The owner's user id
+     * @param date The transaction date
+     * @param description The description
+     * @param category The category
+     * @param amountCents The amount in cents
+     * @return The transaction
+     */
+    public static Transaction ofCents(String userId, LocalDate date, String description, String category, long amountCents) {
+        Transaction transaction = new Transaction(userId, date, description, category, 0);
+        transaction.amountCents = amountCents;
+        return transaction;
     }
     
     // Getters
@@ -31,44 +47,24 @@ public class Transaction {
     public LocalDate getDate() { return date; }
     public String getDescription() { return description; }
     public String getCategory() { return category; }
-    public double getAmount() { return amount; }
+    public double getAmount() { return Money.toAmount(amountCents); }
+    public long getAmountCents() { return amountCents; }
     
     // Setters
     public void setUserId(String userId) { this.userId = userId; }
     public void setDate(LocalDate date) { this.date = date; }
     public void setDescription(String description) { this.description = description; }
     public void setCategory(String category) { this.category = category; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public void setAmount(double amount) { this.amountCents = Money.toCents(amount); }
+    public void setAmountCents(long amountCents) { this.amountCents = amountCents; }
     
     @Override
     public String toString() {
-        return String.format("%s,%s,%s,%s,%.2f", 
-            userId, date.toString(), description, category, amount);
+        return TransactionCodec.format(this);
     }
     
     public static Transaction fromString(String line) {
-        String[] parts = line.split(",");
-        if (parts.length < 4) {
-            throw new IllegalArgumentException("Invalid transaction format");
-        }
-        
-        if (parts.length == 4) {
-            // Old format without userId - backward compatibility
-            return new Transaction(
-                LocalDate.parse(parts[0]),
-                parts[1],
-                parts[2],
-                Double.parseDouble(parts[3])
-            );
-        } else {
-            // New format with userId
-            return new Transaction(
-                parts[0],
-                LocalDate.parse(parts[1]),
-                parts[2],
-                parts[3],
-                Double.parseDouble(parts[4])
-            );
-        }
+        // Five fields, or the old format without userId for backward compatibility
+        return TransactionCodec.decode(line);
     }
 } 
\ No newline at end of file
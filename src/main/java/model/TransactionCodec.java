@@ -0,0 +1,292 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+
+/**
+ * TransactionCodec - Hand-written encoder and decoder for the comma separated
+ * transaction line format "userId,yyyy-MM-dd,description,category,amount".
+ * The legacy four-field format without a user id is still decoded.
+ *
+ * Dates and two-decimal amounts are parsed and printed digit by digit instead of going
+ * through String.format, String.split, LocalDate.parse and Double.parseDouble (amounts
+ * through {@link Money}). Input that is not in the canonical form (other date layouts,
+ * exponents, more decimals) falls back to the java.time and Double parsers, so anything
+ * the old code accepted is still accepted.
+ *
+ * The static methods are thread-safe. An instance keeps reusable encode buffers for
+ * writing many lines and must not be shared between threads.
+ */
+public final class TransactionCodec {
+
+    private final StringBuilder line = new StringBuilder(96);
+    private byte[] bytes = new byte[128];
+    private int byteLength;
+
+    /**
+     * Encodes a transaction into this codec's reusable character buffer
+     * @param transaction The transaction
+     * @return The encoded line without a line terminator; valid until the next encode call
+     */
+    public CharSequence encode(Transaction transaction) {
+        line.setLength(0);
+        appendTo(line, transaction);
+        return line;
+    }
+
+    /**
+     * Encodes a transaction as UTF-8 into this codec's reusable byte buffer
+     * @param transaction The transaction
+     * @return The number of bytes written to {@link #getBytes()}
+     */
+    public int encodeBytes(Transaction transaction) {
+        encode(transaction);
+        byteLength = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            ensureBytes(4);
+            if (c < 0x80) {
+                bytes[byteLength++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[byteLength++] = (byte) (0xC0 | (c >> 6));
+                bytes[byteLength++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < line.length()
+                    && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                bytes[byteLength++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[byteLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[byteLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[byteLength++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[byteLength++] = (byte) '?';
+            } else {
+                bytes[byteLength++] = (byte) (0xE0 | (c >> 12));
+                bytes[byteLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[byteLength++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * Gets the byte buffer filled by {@link #encodeBytes(Transaction)}
+     * @return The buffer; only the first encodeBytes() bytes are meaningful
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Formats a transaction as a line, as returned by {@link Transaction#toString()}
+     * @param transaction The transaction
+     * @return The encoded line
+     */
+    public static String format(Transaction transaction) {
+        StringBuilder out = new StringBuilder(64);
+        appendTo(out, transaction);
+        return out.toString();
+    }
+
+    /**
+     * Appends the encoded form of a transaction to a builder
+     * @param out The builder to append to
+     * @param transaction The transaction
+     */
+    public static void appendTo(StringBuilder out, Transaction transaction) {
+        out.append(transaction.getUserId()).append(',');
+        appendDate(out, transaction.getDate());
+        out.append(',').append(transaction.getDescription())
+            .append(',').append(transaction.getCategory())
+            .append(',');
+        Money.appendTo(out, transaction.getAmountCents());
+    }
+
+    /**
+     * Decodes a line in the five-field format, or the legacy four-field format without a user id
+     * @param line The line
+     * @return The decoded transaction
+     * @throws IllegalArgumentException if the line has fewer than four fields
+     * @throws java.time.format.DateTimeParseException if the date is invalid
+     * @throws NumberFormatException if the amount is invalid
+     */
+    public static Transaction decode(CharSequence line) {
+        int[] ends = new int[5];
+        int fields = splitFields(line, 0, line.length(), ends);
+        if (fields < 4) {
+            throw new IllegalArgumentException("Invalid transaction format");
+        }
+
+        int start = 0;
+        String userId = "";
+        if (fields > 4) {
+            userId = line.subSequence(0, ends[0]).toString();
+            start = ends[0] + 1;
+        }
+        int f = fields > 4 ? 1 : 0;
+        LocalDate date = parseDate(line, start, ends[f]);
+        String description = line.subSequence(ends[f] + 1, ends[f + 1]).toString();
+        String category = line.subSequence(ends[f + 1] + 1, ends[f + 2]).toString();
+        long cents = Money.parse(line, ends[f + 2] + 1, ends[f + 3]);
+        return Transaction.ofCents(userId, date, description, category, cents);
+    }
+
+    /**
+     * Decodes a UTF-8 encoded line in place, without first converting it to a String.
+     * Only the text fields are materialized; the date and amount are parsed from the bytes.
+     * @param bytes The buffer holding the line
+     * @param offset Start of the line
+     * @param length Length of the line in bytes, without a line terminator
+     * @return The decoded transaction
+     */
+    public static Transaction decode(byte[] bytes, int offset, int length) {
+        int[] ends = new int[5];
+        int end = offset + length;
+        int fields = splitFields(bytes, offset, end, ends);
+        if (fields < 4) {
+            throw new IllegalArgumentException("Invalid transaction format");
+        }
+
+        int start = offset;
+        String userId = "";
+        if (fields > 4) {
+            userId = new String(bytes, offset, ends[0] - offset, StandardCharsets.UTF_8);
+            start = ends[0] + 1;
+        }
+        int f = fields > 4 ? 1 : 0;
+        LocalDate date = parseDate(bytes, start, ends[f]);
+        String description = new String(bytes, ends[f] + 1, ends[f + 1] - ends[f] - 1, StandardCharsets.UTF_8);
+        String category = new String(bytes, ends[f + 1] + 1, ends[f + 2] - ends[f + 1] - 1, StandardCharsets.UTF_8);
+        long cents = Money.parse(bytes, ends[f + 2] + 1, ends[f + 3]);
+        return Transaction.ofCents(userId, date, description, category, cents);
+    }
+
+    /**
+     * Finds the end of the first five fields. The field count follows String.split(","),
+     * where trailing empty fields do not count, and is capped at five.
+     * @return The number of fields
+     */
+    private static int splitFields(CharSequence line, int start, int end, int[] ends) {
+        int fields = 0;
+        int fieldStart = start;
+        int lastNonEmpty = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || line.charAt(i) == ',') {
+                if (fields < ends.length) {
+                    ends[fields] = i;
+                }
+                fields++;
+                if (i > fieldStart) {
+                    lastNonEmpty = fields;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        return Math.min(lastNonEmpty, ends.length);
+    }
+
+    private static int splitFields(byte[] bytes, int start, int end, int[] ends) {
+        int fields = 0;
+        int fieldStart = start;
+        int lastNonEmpty = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || bytes[i] == ',') {
+                if (fields < ends.length) {
+                    ends[fields] = i;
+                }
+                fields++;
+                if (i > fieldStart) {
+                    lastNonEmpty = fields;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        return Math.min(lastNonEmpty, ends.length);
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date digit by digit, falling back to LocalDate.parse
+     */
+    static LocalDate parseDate(CharSequence text, int start, int end) {
+        if (end - start == 10 && text.charAt(start + 4) == '-' && text.charAt(start + 7) == '-') {
+            int year = digits(text, start, 4);
+            int month = digits(text, start + 5, 2);
+            int day = digits(text, start + 8, 2);
+            // Invalid values are left to LocalDate.parse so it reports them as before
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1
+                    && day <= Month.of(month).length(Year.isLeap(year))) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(text.subSequence(start, end));
+    }
+
+    static LocalDate parseDate(byte[] bytes, int start, int end) {
+        if (end - start == 10 && bytes[start + 4] == '-' && bytes[start + 7] == '-') {
+            int year = digits(bytes, start, 4);
+            int month = digits(bytes, start + 5, 2);
+            int day = digits(bytes, start + 8, 2);
+            // Invalid values are left to LocalDate.parse so it reports them as before
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1
+                    && day <= Month.of(month).length(Year.isLeap(year))) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int digits(byte[] bytes, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Appends a date as yyyy-MM-dd (LocalDate.toString for years outside 0-9999)
+     */
+    static void appendDate(StringBuilder out, LocalDate date) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(date);
+            return;
+        }
+        out.append((char) ('0' + year / 1000))
+            .append((char) ('0' + year / 100 % 10))
+            .append((char) ('0' + year / 10 % 10))
+            .append((char) ('0' + year % 10))
+            .append('-');
+        appendTwoDigits(out, date.getMonthValue());
+        out.append('-');
+        appendTwoDigits(out, date.getDayOfMonth());
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private void ensureBytes(int needed) {
+        if (byteLength + needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteLength + needed));
+        }
+    }
+}
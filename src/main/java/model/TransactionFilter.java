@@ -0,0 +1,88 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * TransactionFilter - Selects transactions by date range, category and amount range, e.g.
+ * for an export. Every criterion is optional; a new filter accepts every transaction.
+ *
+ * The date range is exposed separately so callers can hand it to the store's date index
+ * and only test the other criteria on the rows read.
+ */
+public class TransactionFilter implements Predicate<Transaction> {
+
+    private LocalDate from;
+    private LocalDate to;
+    private Set<String> categories;
+    private long minCents = Long.MIN_VALUE;
+    private long maxCents = Long.MAX_VALUE;
+
+    /**
+     * Limits the dates of the accepted transactions
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     */
+    public void setDateRange(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Limits the categories of the accepted transactions, ignoring case
+     * @param categories The accepted categories, or null for any category
+     */
+    public void setCategories(Collection<String> categories) {
+        if (categories == null) {
+            this.categories = null;
+            return;
+        }
+        this.categories = new HashSet<>();
+        for (String category : categories) {
+            this.categories.add(category.toLowerCase());
+        }
+    }
+
+    /**
+     * Limits the amounts of the accepted transactions
+     * @param minCents Smallest amount in cents (inclusive), or null for no lower bound
+     * @param maxCents Largest amount in cents (inclusive), or null for no upper bound
+     */
+    public void setAmountRange(Long minCents, Long maxCents) {
+        this.minCents = minCents != null ? minCents : Long.MIN_VALUE;
+        this.maxCents = maxCents != null ? maxCents : Long.MAX_VALUE;
+    }
+
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+
+    /**
+     * Checks whether the filter limits the dates
+     * @return True if a lower or upper date bound is set
+     */
+    public boolean hasDateRange() {
+        return from != null || to != null;
+    }
+
+    /**
+     * Checks whether a transaction meets every criterion
+     * @param transaction The transaction
+     * @return True if the transaction is accepted
+     */
+    @Override
+    public boolean test(Transaction transaction) {
+        LocalDate date = transaction.getDate();
+        if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) {
+            return false;
+        }
+        long cents = transaction.getAmountCents();
+        if (cents < minCents || cents > maxCents) {
+            return false;
+        }
+        return categories == null
+            || (transaction.getCategory() != null && categories.contains(transaction.getCategory().toLowerCase()));
+    }
+}
@@ -0,0 +1,221 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionLogWriter - Long-lived append writer for the transaction store.
+ * Saves submitted from any thread are queued and coalesced by a background thread
+ * into batched writes (group commit), so bursts of saves cost one write and at most
+ * one fsync per batch instead of one file open per row.
+ */
+public class TransactionLogWriter {
+
+    /**
+     * When the writer forces committed data to disk
+     */
+    public enum SyncPolicy {
+        /** Leave flushing to the operating system */
+        NEVER,
+        /** Force after every committed batch */
+        EVERY_BATCH,
+        /** Force at most once per sync interval */
+        INTERVAL
+    }
+
+    private final TransactionStore store;
+    private final Object lock = new Object();
+    private List<PendingWrite> queue = new ArrayList<>();
+    private int queuedRows;
+    private Thread worker;
+    private boolean closed;
+
+    // Flush and fsync policy; set from any thread and read by the writer thread
+    private volatile int maxBatchSize = 4096;
+    private volatile long lingerMillis = 2;
+    private volatile SyncPolicy syncPolicy = SyncPolicy.EVERY_BATCH;
+    private volatile long syncIntervalMillis = 1000;
+    private long lastSync;
+
+    /**
+     * Constructor for TransactionLogWriter
+     * @param store The store that batches are committed to
+     */
+    public TransactionLogWriter(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Sets the number of rows after which a batch is committed without waiting for the linger time
+     * @param maxBatchSize Maximum rows per batch
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Sets how long the writer waits for more saves before committing a batch
+     * @param lingerMillis Linger time in milliseconds (0 commits immediately)
+     */
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = Math.max(0, lingerMillis);
+    }
+
+    /**
+     * Sets the fsync policy
+     * @param syncPolicy The sync policy
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Sets the minimum time between two fsyncs for {@link SyncPolicy#INTERVAL}
+     * @param syncIntervalMillis Interval in milliseconds
+     */
+    public void setSyncIntervalMillis(long syncIntervalMillis) {
+        this.syncIntervalMillis = Math.max(0, syncIntervalMillis);
+    }
+
+    /**
+     * Queues transactions for the next batch without waiting for the commit
+     * @param transactions The transactions to append, in order
+     * @return A future completed once the transactions are committed
+     */
+    public CompletableFuture<Void> submit(Collection<Transaction> transactions) {
+        PendingWrite pending = new PendingWrite(new ArrayList<>(transactions));
+        synchronized (lock) {
+            if (closed) {
+                pending.future.completeExceptionally(new IOException("Transaction log writer is closed"));
+                return pending.future;
+            }
+            if (worker == null) {
+                worker = new Thread(this::run, "transaction-log-writer");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            queue.add(pending);
+            queuedRows += pending.transactions.size();
+            lock.notifyAll();
+        }
+        return pending.future;
+    }
+
+    /**
+     * Appends transactions and waits until the batch containing them is committed
+     * @param transactions The transactions to append, in order
+     * @throws IOException If the batch could not be written
+     */
+    public void write(Collection<Transaction> transactions) throws IOException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try {
+            submit(transactions).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for transaction commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Commits everything still queued, syncs and stops the background thread
+     */
+    public void close() {
+        Thread toJoin;
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+            toJoin = worker;
+        }
+        if (toJoin != null) {
+            try {
+                toJoin.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Background loop: waits for work, lingers to coalesce more saves, then commits
+     */
+    private void run() {
+        while (true) {
+            List<PendingWrite> batch;
+            synchronized (lock) {
+                while (queue.isEmpty() && !closed) {
+                    waitQuietly(0);
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                long deadline = System.currentTimeMillis() + lingerMillis;
+                long remaining = lingerMillis;
+                while (!closed && queuedRows < maxBatchSize && remaining > 0) {
+                    waitQuietly(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+                queuedRows = 0;
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        List<Transaction> rows = new ArrayList<>();
+        for (PendingWrite pending : batch) {
+            rows.addAll(pending.transactions);
+        }
+        try {
+            store.appendAll(rows);
+            sync();
+            for (PendingWrite pending : batch) {
+                pending.future.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PendingWrite pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        long now = System.currentTimeMillis();
+        if (syncPolicy == SyncPolicy.EVERY_BATCH
+                || (syncPolicy == SyncPolicy.INTERVAL && now - lastSync >= syncIntervalMillis)) {
+            store.sync();
+            lastSync = now;
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            lock.wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Transactions waiting to be committed together with the caller's future
+     */
+    private static class PendingWrite {
+        private final List<Transaction> transactions;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(List<Transaction> transactions) {
+            this.transactions = transactions;
+        }
+    }
+}
@@ -1,103 +1,411 @@
 package model;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class TransactionManager {
     private static final String TRANSACTIONS_FILE = "transactions.txt";
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private static final DateTimeFormatter CN_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-    // Additional date formats for better bank compatibility
-    private static final DateTimeFormatter[] SUPPORTED_DATE_FORMATS = {
-        DATE_FORMATTER,                                      // yyyy-MM-dd
-        CN_DATE_FORMATTER,                                   // yyyy/MM/dd
-        DateTimeFormatter.ofPattern("MM/dd/yyyy"),           // MM/dd/yyyy
-        DateTimeFormatter.ofPattern("dd/MM/yyyy"),           // dd/MM/yyyy
-        DateTimeFormatter.ofPattern("yyyy.MM.dd"),           // yyyy.MM.dd
-        DateTimeFormatter.ofPattern("MMM dd, yyyy"),         // Jan 01, 2023
-        DateTimeFormatter.ofPattern("dd-MMM-yyyy")           // 01-Jan-2023
-    };
-    
-    // CSV delimiter patterns
-    private static final String[] POSSIBLE_DELIMITERS = {",", ";", "\t", "\\|"};
+    private static final String STORE_FILE = "transactions.dat";
+    // CSV delimiters, in order of preference when scores tie
+    private static final char[] POSSIBLE_DELIMITERS = {',', ';', '\t', '|'};
+    // Records sampled from the start of a CSV file to detect its format
+    private static final int FORMAT_SAMPLE_ROWS = 20;
+    // Rows read from the start and at random offsets of a CSV file for an import preview
+    public static final int PREVIEW_HEAD_ROWS = 20;
+    public static final int PREVIEW_SAMPLE_ROWS = 200;
+    // Header cell keywords, compiled once
+    private static final Pattern HEADER_PATTERN = Pattern.compile(
+        "date|time|desc|category|amount|balance|type|日期|时间|描述|金额|类型|类别", Pattern.CASE_INSENSITIVE);
+    
+    private static TransactionStore store;
+    private static TransactionLogWriter logWriter;
+    private static MonthlyRollup rollup;
+    private static DuplicateIndex duplicateIndex;
     
     public static void saveTransaction(Transaction transaction) {
-        try (FileWriter fw = new FileWriter(TRANSACTIONS_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            // Ensure transaction has the current user's ID if not set
-            if (transaction.getUserId().isEmpty()) {
-                User currentUser = UserManager.getInstance().getCurrentUser();
-                if (currentUser != null) {
+        saveTransactions(Collections.singletonList(transaction));
+    }
+    
+    /**
+     * Saves several transactions as one group commit
+     * @param transactions The transactions to save, in order
+     */
+    public static void saveTransactions(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        
+        // Ensure transactions have the current user's ID if not set
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        if (currentUser != null) {
+            for (Transaction transaction : transactions) {
+                if (transaction.getUserId().isEmpty()) {
                     transaction.setUserId(currentUser.getUsername());
                 }
             }
-            
-            out.println(transaction.toString());
+        }
+        
+        try {
+            getLogWriter().write(transactions);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
     
     public static List<Transaction> loadTransactions() {
+        // Served from the shared in-memory cache; the rows are copied so callers may modify them
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        return TransactionRepository.getInstance().copyTransactions(currentUser != null ? currentUser.getUsername() : "");
+    }
+    
+    /**
+     * Loads a user's transactions dated within a range, using the per-user date index
+     * so only the matching rows are read. Legacy rows without an owner are included
+     * and stamped with the user id, as in loadTransactions().
+     * @param userId The user id
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @return The matching transactions in date order
+     */
+    public static List<Transaction> loadTransactions(String userId, LocalDate from, LocalDate to) {
         List<Transaction> transactions = new ArrayList<>();
-        File file = new File(TRANSACTIONS_FILE);
-        
-        if (!file.exists()) {
-            return transactions;
+        forEachTransaction(userId, from, to, transactions::add);
+        return transactions;
+    }
+    
+    /**
+     * Streams a user's transactions dated within a range to a callback, one row at a time
+     * and in date order, without building a list. The callback runs while the store is
+     * locked, so it should not wait on other threads that save transactions.
+     * @param userId The user id
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @param action Called for every matching transaction
+     */
+    public static void forEachTransaction(String userId, LocalDate from, LocalDate to, Consumer<Transaction> action) {
+        try {
+            getStore().forEachInRange(userId, true, from, to, transaction -> {
+                if (transaction.getUserId().isEmpty()) {
+                    transaction.setUserId(userId);
+                }
+                action.accept(transaction);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        
-        // Get current user
+    }
+    
+    /**
+     * Streams the current user's transactions lazily from the store, including legacy rows
+     * @return Stream of transactions in insertion order; must be closed
+     * @see #streamTransactions(String)
+     */
+    public static Stream<Transaction> streamTransactions() {
         User currentUser = UserManager.getInstance().getCurrentUser();
-        String currentUserId = currentUser != null ? currentUser.getUsername() : "";
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+        return streamTransactions(currentUser != null ? currentUser.getUsername() : "");
+    }
+    
+    /**
+     * Streams a user's transactions lazily from the store, in constant memory.
+     * Legacy rows without an owner are included and stamped with the user id.
+     * Unlike loadTransactions() nothing is cached, so this suits one-off passes over
+     * ledgers of any size, such as exports and sums. The stream must be closed,
+     * e.g. with try-with-resources.
+     * @param userId The user id ("" for the legacy rows only)
+     * @return Stream of transactions in insertion order
+     */
+    public static Stream<Transaction> streamTransactions(String userId) {
+        try {
+            return getStore().stream(userId, true).peek(transaction -> {
+                if (transaction.getUserId().isEmpty()) {
+                    transaction.setUserId(userId);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+    }
+    
+    /**
+     * Streams the transactions of all users lazily from the store, in constant memory.
+     * For admin purposes only
+     * @return Stream of all transactions in insertion order; must be closed
+     */
+    public static Stream<Transaction> streamAllTransactions() {
+        try {
+            return getStore().stream();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+    }
+    
+    /**
+     * Gets the binary transaction store, opening it on first use.
+     * An existing text ledger is migrated into the store and kept as a ".migrated" backup.
+     * @return The shared TransactionStore
+     */
+    static synchronized TransactionStore getStore() throws IOException {
+        if (store == null) {
+            TransactionStore opened = new TransactionStore(new File(STORE_FILE));
+            File legacyFile = new File(TRANSACTIONS_FILE);
+            if (legacyFile.exists()) {
+                int migrated = opened.migrateFromText(legacyFile);
+                File backup = new File(TRANSACTIONS_FILE + ".migrated");
+                if (!legacyFile.renameTo(backup)) {
+                    opened.close();
+                    throw new IOException("Could not move migrated ledger to " + backup);
+                }
+                System.out.println("Migrated " + migrated + " transactions from " + TRANSACTIONS_FILE + " to " + STORE_FILE);
+            }
+            opened.addAppendListener(TransactionRepository.getInstance());
+            rollup = new MonthlyRollup(opened);
+            opened.addAppendListener(rollup);
+            duplicateIndex = new DuplicateIndex(opened);
+            opened.addAppendListener(duplicateIndex);
+            store = opened;
+            logWriter = new TransactionLogWriter(opened);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                logWriter.close();
                 try {
-                    Transaction transaction = Transaction.fromString(line);
-                    
-                    // Only add transactions belonging to the current user or with empty userId (old format)
-                    if (currentUser != null && 
-                        (transaction.getUserId().equals(currentUserId) || transaction.getUserId().isEmpty())) {
-                        // If transaction has empty userId, update it
-                        if (transaction.getUserId().isEmpty()) {
-                            transaction.setUserId(currentUserId);
-                        }
-                        transactions.add(transaction);
-                    } else if (currentUser == null && transaction.getUserId().isEmpty()) {
-                        // If no user is logged in, only show transactions with empty userId
-                        transactions.add(transaction);
-                    }
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Skipping invalid transaction: " + line);
+                    rollup.save();
+                    duplicateIndex.save();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
+                opened.close();
+            }));
+        }
+        return store;
+    }
+    
+    /**
+     * Starts a background compaction if the store would benefit from one, see
+     * {@link TransactionStore#needsCompaction(String)}. Called once the application has
+     * started, rather than when the store is opened, so that opening stays quick.
+     * @return Future completed with the compaction result, or null if none was needed
+     */
+    public static CompletableFuture<TransactionStore.CompactionResult> compactIfNeeded() {
+        try {
+            if (!getStore().needsCompaction(getLegacyOwner())) {
+                return null;
             }
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
-        
-        return transactions;
+        return compactInBackground();
+    }
+    
+    /**
+     * Compacts the transaction store on a background thread: each user's rows are clustered
+     * and sorted by date, legacy rows are migrated to their owner and corrupt records are
+     * quarantined. Saving and loading continue while it runs.
+     * @return Future completed with the compaction result
+     */
+    public static CompletableFuture<TransactionStore.CompactionResult> compactInBackground() {
+        CompletableFuture<TransactionStore.CompactionResult> future = new CompletableFuture<>();
+        Thread compactor = new Thread(() -> {
+            try {
+                TransactionStore.CompactionResult result = getStore().compact(getLegacyOwner());
+                // Cached ledgers and rollups refer to the old layout and owners
+                TransactionRepository.getInstance().invalidate();
+                getMonthlyRollup().invalidate();
+                getDuplicateIndex().invalidate();
+                if (result.getMigrated() > 0) {
+                    System.out.println("Migrated " + result.getMigrated() + " legacy transactions to their owner");
+                }
+                future.complete(result);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                future.completeExceptionally(e);
+            }
+        }, "transaction-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+        return future;
+    }
+    
+    /**
+     * Gets the user that legacy rows without an owner belong to. Such rows are shown to every
+     * user, so they are only handed to someone when there is a single registered user.
+     * @return The owner's user id, or null if it is ambiguous
+     */
+    private static String getLegacyOwner() {
+        Map<String, User> users = UserManager.getInstance().getAllUsers();
+        return users.size() == 1 ? users.keySet().iterator().next() : null;
+    }
+    
+    /**
+     * Gets the shared group-commit writer, e.g. to tune its flush and sync policy
+     * @return The TransactionLogWriter used by saveTransaction(s)
+     */
+    public static synchronized TransactionLogWriter getLogWriter() throws IOException {
+        getStore();
+        return logWriter;
     }
     
     /**
-     * Enhanced CSV import with better error handling and bank compatibility
+     * Gets the monthly (user, month, category) rollup kept current by every save and import
+     * @return The shared MonthlyRollup
+     */
+    public static synchronized MonthlyRollup getMonthlyRollup() throws IOException {
+        getStore();
+        return rollup;
+    }
+    
+    /**
+     * Gets the fingerprint index imports use to recognize rows already in the ledger
+     * @return The shared DuplicateIndex
+     */
+    public static synchronized DuplicateIndex getDuplicateIndex() throws IOException {
+        getStore();
+        return duplicateIndex;
+    }
+    
+    /**
+     * Enhanced CSV import with better error handling and bank compatibility, with the
+     * default {@link ImportOptions}
+     * 
+     * @param filePath Path to the CSV file
+     * @return The number of duplicate rows found
+     * @throws ImportCancelledException If the import was cancelled and rolled back
+     * @throws ImportException If errors occur during import
+     */
+    public static int importFromCSV(String filePath) throws ImportException {
+        return importFromCSV(filePath, new ImportOptions());
+    }
+    
+    /**
+     * CSV import that can report its progress, be cancelled and recognize rows that are
+     * already in the ledger, e.g. when the same monthly statement is imported twice. A row is
+     * a duplicate if the current user already has a row with the same date, amount and
+     * normalized description; see {@link DuplicateIndex}.
+     * 
+     * The import is all or nothing with respect to cancellation: a cancelled import, or one
+     * whose rows could not be written, is rolled back so that none of its rows remain. Rows
+     * saved by others meanwhile are kept.
+     * 
+     * Progress is journaled next to the store after every committed batch. If the application
+     * stops during an import, importing the same file again resumes after the last committed
+     * row; cancelling a resumed import only rolls back the rows of the resumed run.
+     * 
+     * @param filePath Path to the CSV file
+     * @param options How to read the file and what to do with duplicates
+     * @return The number of duplicate rows found
+     * @throws ImportCancelledException If the import was cancelled and rolled back
+     * @throws ImportException If other errors occur during import; the report counts the duplicates
+     */
+    public static int importFromCSV(String filePath, ImportOptions options) throws ImportException {
+        TransactionStore importStore;
+        TransactionStore.Savepoint savepoint;
+        ImportOptions storeOptions;
+        try {
+            importStore = getStore();
+            savepoint = importStore.savepoint();
+            storeOptions = options.forStore(importStore.getDataFile(), getDuplicateIndex());
+        } catch (IOException e) {
+            throw new ImportException("Error opening transaction store: " + e.getMessage(), e);
+        }
+
+        // Rows go straight to the store so that the savepoint knows where they are. Each batch
+        // is forced to disk before the checkpoint that counts it is written.
+        AtomicBoolean commitFailed = new AtomicBoolean();
+        Consumer<List<Transaction>> committer = batch -> {
+            try {
+                importStore.appendAll(batch, savepoint);
+                importStore.sync();
+            } catch (IOException e) {
+                commitFailed.set(true);
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        boolean keep = false;
+        boolean rolledBack = false;
+        try {
+            int duplicateCount = importFromCSV(filePath, storeOptions, committer);
+            keep = true;
+            return duplicateCount;
+        } catch (ImportCancelledException e) {
+            int removed = rollbackImport(importStore, savepoint);
+            rolledBack = true;
+            throw new ImportCancelledException("Import cancelled. " + removed + " imported rows were rolled back.");
+        } catch (ImportException e) {
+            // Rejected rows leave the imported ones in place, as in the other import modes
+            keep = !commitFailed.get();
+            throw e;
+        } finally {
+            if (keep) {
+                importStore.release(savepoint);
+                try {
+                    importStore.sync();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            } else if (!rolledBack) {
+                rollbackImport(importStore, savepoint);
+            }
+        }
+    }
+    
+    /**
+     * Removes the rows of an import and drops the caches that saw them
+     * @return The number of rows removed
+     */
+    private static int rollbackImport(TransactionStore importStore, TransactionStore.Savepoint savepoint) {
+        try {
+            int removed = importStore.rollback(savepoint);
+            TransactionRepository.getInstance().invalidate();
+            getMonthlyRollup().invalidate();
+            getDuplicateIndex().invalidate();
+            System.out.println("Import rolled back: " + removed + " records removed");
+            return removed;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+    
+    /**
+     * CSV import that hands the parsed rows to a committer instead of saving them.
+     * 
+     * With a journal base in the options, progress is journaled per file and user, see
+     * {@link ImportCheckpoint#journalFor}. An import whose journal entry matches the file, with
+     * the same bytes before the checkpoint, resumes after the last committed row. The entry is deleted when the import finishes
+     * and kept when reading the file fails; on cancellation or other errors the journal is put
+     * back as it was. The committer must have made its rows durable when it returns. With a
+     * duplicate index in the options, each batch passes through its import filter first.
      * 
      * @param filePath Path to the CSV file
+     * @param options How to read the file, and the journal base and duplicate index to use, if any
+     * @param committer Receives the rows in file order, in batches
+     * @return The number of duplicate rows found
+     * @throws ImportCancelledException If the import was cancelled; committed rows are not rolled back
      * @throws ImportException If errors occur during import
      */
-    public static void importFromCSV(String filePath) throws ImportException {
-        List<String> errors = new ArrayList<>();
+    static int importFromCSV(String filePath, ImportOptions options, Consumer<List<Transaction>> committer)
+            throws ImportException {
+        File journalBase = options.getJournalBase();
+        DuplicateIndex.ImportFilter duplicates = options.getDuplicateIndex() != null
+            ? options.getDuplicateIndex().newImportFilter(options.isSkipDuplicates()) : null;
         List<String> warnings = new ArrayList<>();
-        Map<Integer, String> lineErrors = new HashMap<>();
             int successCount = 0;
             int errorCount = 0;
         File file = new File(filePath);
@@ -109,10 +417,31 @@ public class TransactionManager {
             warnings.add("File does not have .csv extension. Import may fail if format is incorrect.");
         }
 
-        try {
-            CsvFormat csvFormat = detectCsvFormat(filePath);
-            if (csvFormat == null) {
-                throw new ImportException("Could not detect CSV format. Please ensure the file is a valid CSV.");
+        // This file's journal, and its state to put back if the import neither finishes nor stays resumable
+        File journal = null;
+        ImportCheckpoint previous = null;
+        ImportCheckpoint.PrefixCrc prefix = null;
+        boolean journaling = false;
+        boolean finished = false;
+        boolean resumable = false;
+
+        // The file is opened once; format detection samples the start of the same stream.
+        // Rejected rows are counted and logged to a side file next to the data file, which
+        // the next import with errors replaces.
+        File errorLogFile = journalBase != null ? new File(journalBase.getPath() + ".import-errors.log")
+            : new File(System.getProperty("java.io.tmpdir"), "import-errors.log");
+        try (ImportErrorLog errorLog = new ImportErrorLog(ImportErrorLog.DEFAULT_EXAMPLES, errorLogFile);
+             CsvImporter importer = new CsvImporter(duplicates == null ? committer
+                 : batch -> duplicates.commit(batch, committer))) {
+            CsvFormat csvFormat;
+            ImportCheckpoint.Fingerprint fingerprint;
+            try {
+                importer.open(file, options.isParallel());
+                csvFormat = detectCsvFormat(importer.sample(FORMAT_SAMPLE_ROWS));
+                System.out.println("Detected CSV charset: " + importer.getCharset());
+                fingerprint = journalBase != null ? importer.getFingerprint() : null;
+            } catch (IOException e) {
+                throw new ImportException("Error reading CSV file during format detection: " + e.getMessage(), e);
             }
             if (!csvFormat.hasHeaders) {
                 warnings.add("No headers detected in CSV file. Assuming first row contains data.");
@@ -122,85 +451,241 @@ public class TransactionManager {
             User currentUser = UserManager.getInstance().getCurrentUser();
             String currentUserId = currentUser != null ? currentUser.getUsername() : "";
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                int lineNumber = 0;
-                boolean firstLine = true;
-            
-            while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    if (line.trim().isEmpty()) continue;
-
+            if (journalBase != null) {
+                File checkpointFile = ImportCheckpoint.journalFor(journalBase, fingerprint, currentUserId);
+                journal = checkpointFile;
+                previous = ImportCheckpoint.load(checkpointFile);
+                // A checkpoint only counts if the rows before it are still the same in the file
+                ImportCheckpoint resumeFrom = null;
                 try {
-                        if (firstLine && csvFormat.hasHeaders) {
-                        firstLine = false;
-                            continue;
-                        }
-                        firstLine = false;
-
-                        // Use robust CSV line parser instead of simple split
-                        List<String> parts = parseCsvLine(line, csvFormat.delimiter);
-
-                        if (parts.size() < 4) {
-                            throw new IllegalArgumentException("Insufficient data columns: Found " + parts.size() + ", need at least 4 (Date, Description, Category, Amount). Original line: " + line);
-                        }
-
-                        int dateIndex = csvFormat.dateColumn;
-                        int descIndex = csvFormat.descriptionColumn;
-                        int catIndex = csvFormat.categoryColumn;
-                        int amountIndex = csvFormat.amountColumn;
-                        
-                        // Check indices are within range based on parsed parts
-                        if (dateIndex >= parts.size() || descIndex >= parts.size() || 
-                            catIndex >= parts.size() || amountIndex >= parts.size()) {
-                            throw new IllegalArgumentException("Detected column index out of range for parsed data. Date:" + dateIndex + ", Desc:" + descIndex + ", Cat:" + catIndex + ", Amt:" + amountIndex + ". Parsed Columns: " + parts.size());
-                            }
-
-                        // Parse date
-                        LocalDate date = parseDate(parts.get(dateIndex));
-                        
-                        // Get description and category
-                        String description = parts.get(descIndex);
-                        String category = parts.get(catIndex);
-                        
-                        // Parse amount
-                        double amount = parseAmount(parts.get(amountIndex));
-                        
-                        // Create transaction with user ID
-                        Transaction transaction = new Transaction(currentUserId, date, description, category, amount);
-                        saveTransaction(transaction);
-                        successCount++;
-
-                    } catch (Exception e) {
-                        errorCount++;
-                        String errorMsg = e.getMessage() != null ? e.getMessage() : e.toString();
-                        lineErrors.put(lineNumber, errorMsg);
-                        System.err.println("Error processing line " + lineNumber + ": " + line + " (Reason: " + errorMsg + ")");
-                         // Log stack trace for debugging unexpected errors
-                        if (!(e instanceof IllegalArgumentException || e instanceof DateTimeParseException || e instanceof NumberFormatException)) {
-                            e.printStackTrace();
-                        }
+                    prefix = new ImportCheckpoint.PrefixCrc(file);
+                    if (previous != null && previous.matches(fingerprint, currentUserId, prefix)) {
+                        resumeFrom = previous;
                     }
+                } catch (IOException e) {
+                    throw new ImportException("Error reading CSV file: " + e.getMessage(), e);
                 }
-
-                System.out.println("Import completed: " + successCount + " records successful, " + errorCount + " records failed");
-
-                if (errorCount > 0) {
-                    throw buildImportException(successCount, errorCount, warnings, lineErrors);
+                ImportCheckpoint.PrefixCrc checkpointPrefix = prefix;
+                if (resumeFrom != null) {
+                    importer.resumeAt(resumeFrom.getOffset(), resumeFrom.getLineCount());
+                    System.out.println("Resuming interrupted import of " + resumeFrom);
+                    warnings.add("Resumed an interrupted import after line " + resumeFrom.getLineCount() + "; "
+                        + resumeFrom.getSuccessCount() + " records had already been imported.");
+                } else if (previous != null) {
+                    System.out.println("Replacing the checkpoint of an interrupted import of " + previous);
                 }
+                int importedBefore = resumeFrom != null ? resumeFrom.getSuccessCount() : 0;
+                int failedBefore = resumeFrom != null ? resumeFrom.getErrorCount() : 0;
+                String sourcePath = file.getAbsolutePath();
+                importer.setCheckpointListener((offset, lineCount, committed, rejected) -> {
+                    try {
+                        new ImportCheckpoint(sourcePath, fingerprint, currentUserId, offset,
+                            checkpointPrefix.update(offset), lineCount,
+                            importedBefore + committed, failedBefore + rejected).save(checkpointFile);
+                    } catch (IOException e) {
+                        // The import goes on; only resuming from this batch is lost
+                        e.printStackTrace();
+                    }
+                });
+                journaling = true;
+            }
 
+            importer.setProgressListener(options.getListener());
+            importer.setCancelRequested(options.getCancelRequested());
+            importer.setErrorLog(errorLog);
+            try {
+                importer.run(record -> parseRecord(record, csvFormat, currentUserId),
+                    csvFormat.delimiter.charAt(0), csvFormat.hasHeaders);
             } catch (IOException e) {
+                // The committed rows stay, and the journal lets the next import continue after them
+                resumable = true;
                 throw new ImportException("Error reading CSV file: " + e.getMessage(), e);
+            } catch (CancellationException e) {
+                throw new ImportCancelledException("Import cancelled");
             }
+            finished = true;
+            successCount = importer.getSuccessCount();
+            errorCount = importer.getErrorCount();
+
+            System.out.println("Import completed: " + successCount + " records successful, " + errorCount + " records failed");
+            int duplicateCount = duplicates != null ? duplicates.getDuplicateCount() : 0;
+            if (duplicateCount > 0) {
+                String duplicateMessage = duplicates.isSkipping()
+                    ? duplicateCount + " records were already in the ledger and were skipped."
+                    : duplicateCount + " records look like duplicates of records already in the ledger.";
+                System.out.println(duplicateMessage);
+                warnings.add(duplicateMessage);
+            }
+
+            if (errorCount > 0) {
+                // The log is closed, and its side file flushed, before the exception leaves this block
+                throw buildImportException(successCount, warnings, errorLog);
+            }
+            return duplicateCount;
 
         } catch (ImportException e) {
             throw e;
                 } catch (Exception e) {
             e.printStackTrace(); // Log unexpected errors
             throw new ImportException("Unexpected error during import process: " + e.getMessage(), e);
+        } finally {
+            if (journaling && (finished || !resumable)) {
+                restoreCheckpoint(journal, finished ? null : previous);
+            }
+            if (prefix != null) {
+                try {
+                    prefix.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Previews the import of a CSV file with the default number of sampled rows
+     * 
+     * @param filePath Path to the CSV file
+     * @return The detected format and the sampled rows as they would be imported
+     * @throws ImportException If the file cannot be read or its format cannot be detected
+     */
+    public static ImportPreview previewCSV(String filePath) throws ImportException {
+        return previewCSV(filePath, PREVIEW_HEAD_ROWS, PREVIEW_SAMPLE_ROWS);
+    }
+    
+    /**
+     * Previews the import of a CSV file without reading all of it: the format is detected
+     * as for an import, then the first rows and rows at random offsets spread over the file
+     * are parsed. Only a few small reads are made, so a preview of a file of several
+     * gigabytes takes about as long as one of a few kilobytes. The random offsets depend
+     * only on the file size, so previewing the same file twice gives the same rows.
+     * 
+     * A row read at a random offset whose field count differs from the header's is left
+     * out rather than counted as an error, as it most likely started inside a quoted field.
+     * 
+     * @param filePath Path to the CSV file
+     * @param headRows Number of data rows to read from the start
+     * @param sampleRows Number of rows to read at random offsets
+     * @return The detected format and the sampled rows as they would be imported
+     * @throws ImportException If the file cannot be read or its format cannot be detected
+     */
+    public static ImportPreview previewCSV(String filePath, int headRows, int sampleRows) throws ImportException {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new ImportException("File does not exist: " + filePath);
+        }
+        long startNanos = System.nanoTime();
+
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        String currentUserId = currentUser != null ? currentUser.getUsername() : "";
+
+        try (CsvImporter importer = new CsvImporter(batch -> { })) {
+            importer.open(file, false);
+            List<String> sample = importer.sample(FORMAT_SAMPLE_ROWS);
+            CsvFormat csvFormat = detectCsvFormat(sample);
+            List<String> header = parseCsvLine(sample.get(0), csvFormat.delimiter);
+            int[] columnIndexes = {csvFormat.dateColumn, csvFormat.descriptionColumn,
+                csvFormat.categoryColumn, csvFormat.amountColumn};
+            List<String> columns = new ArrayList<>();
+            for (int column : columnIndexes) {
+                columns.add(csvFormat.hasHeaders ? header.get(column) : "Column " + (column + 1));
+            }
+
+            List<ImportPreview.Row> rows = new ArrayList<>();
+            // Offset of the first data row, and bytes and count of the sampled records, for the row estimate
+            long[] dataStart = {-1};
+            long[] sampled = {0, 0};
+            boolean[] headerSkipped = {!csvFormat.hasHeaders};
+            importer.sampleRecords(headRows + (csvFormat.hasHeaders ? 1 : 0), sampleRows,
+                csvFormat.delimiter.charAt(0), file.length(), (record, offset, length, lineNumber) -> {
+                    if (!headerSkipped[0]) {
+                        headerSkipped[0] = true;
+                        return;
+                    }
+                    if (dataStart[0] < 0) {
+                        dataStart[0] = offset;
+                    }
+                    sampled[0] += length;
+                    sampled[1]++;
+                    if (lineNumber == 0 && record.getFieldCount() != header.size()) {
+                        return;
+                    }
+                    try {
+                        rows.add(new ImportPreview.Row(lineNumber, offset,
+                            parseRecord(record, csvFormat, currentUserId), null, null));
+                    } catch (Exception e) {
+                        rows.add(new ImportPreview.Row(lineNumber, offset, null,
+                            ImportErrorLog.classify(e), e.getMessage()));
+                    }
+                });
+
+            long estimatedRows = sampled[1] > 0
+                ? Math.round((double) (file.length() - dataStart[0]) * sampled[1] / sampled[0]) : 0;
+            return new ImportPreview(importer.getCharset().name(), csvFormat.delimiter.charAt(0), csvFormat.hasHeaders,
+                columns, csvFormat.values.toString(), rows, file.length(), estimatedRows,
+                (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (IOException e) {
+            throw new ImportException("Error reading CSV file for preview: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Puts the checkpoint journal back to an earlier state
+     * @param journal The journal file
+     * @param checkpoint The checkpoint to keep, or null to delete the journal
+     */
+    private static void restoreCheckpoint(File journal, ImportCheckpoint checkpoint) {
+        try {
+            if (checkpoint != null) {
+                checkpoint.save(journal);
+            } else {
+                Files.deleteIfExists(journal.toPath());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Parses one CSV record into a transaction of the importing user. Only the four
+     * detected columns are decoded.
+     *
+     * @param record The tokenizer positioned on the record
+     * @param csvFormat The detected format
+     * @param userId The importing user's ID
+     * @return The transaction
+     */
+    private static Transaction parseRecord(CsvTokenizer record, CsvFormat csvFormat, String userId) {
+        int fieldCount = record.getFieldCount();
+        if (fieldCount < 4) {
+            throw new IllegalArgumentException("Insufficient data columns: Found " + fieldCount + ", need at least 4 (Date, Description, Category, Amount). Original line: " + record);
+        }
+
+        int dateIndex = csvFormat.dateColumn;
+        int descIndex = csvFormat.descriptionColumn;
+        int catIndex = csvFormat.categoryColumn;
+        int amountIndex = csvFormat.amountColumn;
+
+        // Check indices are within range based on parsed parts
+        if (dateIndex >= fieldCount || descIndex >= fieldCount ||
+            catIndex >= fieldCount || amountIndex >= fieldCount) {
+            throw new IllegalArgumentException("Detected column index out of range for parsed data. Date:" + dateIndex + ", Desc:" + descIndex + ", Cat:" + catIndex + ", Amt:" + amountIndex + ". Parsed Columns: " + fieldCount);
+        }
+
+        // Parse date
+        LocalDate date = csvFormat.values.parseDate(record.getField(dateIndex));
+
+        // Get description and category
+        String description = record.getField(descIndex);
+        String category = record.getField(catIndex);
+
+        // Parse amount
+        long amountCents = csvFormat.values.parseAmount(record.getField(amountIndex));
+
+        // Create transaction with user ID
+        return Transaction.ofCents(userId, date, description, category, amountCents);
+    }
+    
     /**
      * Parses a single line of CSV text, respecting quotes.
      *
@@ -243,43 +728,11 @@ public class TransactionManager {
     }
     
     /**
-     * Parses the date string using supported formats.
+     * Builds the ImportException with a formatted error report. The report lists the error
+     * counts per class and the first errors; the exception carries the full log.
      */
-    private static LocalDate parseDate(String dateStr) throws DateTimeParseException {
-        dateStr = dateStr.trim();
-        DateTimeParseException lastException = null;
-        for (DateTimeFormatter formatter : SUPPORTED_DATE_FORMATS) {
-            try {
-                return LocalDate.parse(dateStr, formatter);
-            } catch (DateTimeParseException e) {
-                lastException = e;
-            }
-        }
-        throw new DateTimeParseException("Cannot parse date: " + dateStr +
-            ". Supported formats include: yyyy-MM-dd, yyyy/MM/dd, MM/dd/yyyy, etc.", dateStr, 0, lastException);
-    }
-
-    /**
-     * Parses the amount string, removing common currency symbols and thousands separators.
-     */
-    private static double parseAmount(String amountStr) throws NumberFormatException {
-        amountStr = amountStr.trim()
-                           .replace("\"", "") // Remove quotes
-                           .replace("'", "")  // Remove single quotes
-                           .replaceAll("[$,¥€£]", "") // Remove currency symbols
-                           .replace(",", ""); // Remove thousands separators
-        try {
-            return Double.parseDouble(amountStr);
-        } catch (NumberFormatException e) {
-            throw new NumberFormatException("Cannot parse amount: '" + amountStr + 
-                "'. Please ensure it's a valid number after removing currency symbols and commas.");
-                }
-            }
-            
-    /**
-     * Builds the ImportException with a formatted error report.
-     */
-    private static ImportException buildImportException(int successCount, int errorCount, List<String> warnings, Map<Integer, String> lineErrors) {
+    private static ImportException buildImportException(int successCount, List<String> warnings, ImportErrorLog errorLog) {
+        int errorCount = errorLog.getErrorCount();
         StringBuilder errorReport = new StringBuilder();
         errorReport.append("Import completed with errors:\n");
         errorReport.append("- Successfully imported: ").append(successCount).append(" records\n");
@@ -293,9 +746,19 @@ public class TransactionManager {
             errorReport.append("\n");
         }
         
+        errorReport.append("ERRORS BY TYPE:\n");
+        for (Map.Entry<String, Integer> entry : errorLog.getCountsByClass().entrySet()) {
+            errorReport.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        errorReport.append("\n");
+        
         errorReport.append("ERRORS BY LINE:\n");
-        for (Map.Entry<Integer, String> entry : lineErrors.entrySet()) {
-            errorReport.append("- Line ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        List<ImportErrorLog.Entry> examples = errorLog.getExamples();
+        for (ImportErrorLog.Entry entry : examples) {
+            errorReport.append("- ").append(entry).append("\n");
+        }
+        if (errorCount > examples.size()) {
+            errorReport.append("- ... and ").append(errorCount - examples.size()).append(" more errors\n");
         }
         
         errorReport.append("\nSuggested solutions:\n");
@@ -304,134 +767,157 @@ public class TransactionManager {
         errorReport.append("3. Ensure amount values contain only numbers, decimal points, and optional currency symbols/commas.\n");
         errorReport.append("4. Check that required columns (Date, Description, Category, Amount) exist and are detected correctly.\n");
         
-        return new ImportException(errorReport.toString());
+        return new ImportException(errorReport.toString(), successCount, warnings, errorLog);
     }
 
     /**
-     * Detects CSV format including delimiter and column positions
+     * Detects CSV format including delimiter and column positions from the first records of a file
      * 
-     * @param filePath Path to the CSV file
-     * @return Detected CSV format or null if detection fails
+     * @param sample The first non-blank records of the file
+     * @return Detected CSV format
+     * @throws ImportException If the format cannot be detected
      */
-    private static CsvFormat detectCsvFormat(String filePath) throws ImportException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String firstLine = reader.readLine();
-            if (firstLine == null || firstLine.trim().isEmpty()) {
-                throw new ImportException("CSV file is empty or first line is blank");
-            }
+    private static CsvFormat detectCsvFormat(List<String> sample) throws ImportException {
+        if (sample.isEmpty()) {
+            throw new ImportException("CSV file is empty");
+        }
 
-            String delimiter = detectDelimiter(firstLine);
-            if (delimiter == null) {
-                throw new ImportException("Could not detect CSV delimiter (tested comma, semicolon, tab, pipe)");
-            }
+        char delimiterChar = detectDelimiter(sample);
+        if (delimiterChar == 0) {
+            throw new ImportException("Could not detect CSV delimiter (tested comma, semicolon, tab, pipe)");
+        }
+        String delimiter = String.valueOf(delimiterChar);
 
-            // Use the robust parser to get headers correctly
-            List<String> headersList = parseCsvLine(firstLine, delimiter);
-            String[] headers = headersList.toArray(new String[0]);
+        // Use the robust parser to get headers correctly
+        List<String> headersList = parseCsvLine(sample.get(0), delimiter);
+        String[] headers = headersList.toArray(new String[0]);
 
-            // Read second line to check if headers or data
-            String secondLine = reader.readLine();
-            boolean hasHeaders = false;
-            if (secondLine != null && !secondLine.trim().isEmpty()) {
-                 // If first row contains typical header words, assume it's headers
-                hasHeaders = isHeaderRow(headers);
-            }
+        // A single record is data; otherwise the first record is a header if it looks like one
+        boolean hasHeaders = sample.size() > 1 && isHeaderRow(headers);
 
-            // Find column indices based on header names or assume default order
-            int dateColumn = -1, descriptionColumn = -1, categoryColumn = -1, amountColumn = -1;
-
-            if (hasHeaders) {
-                for (int i = 0; i < headers.length; i++) {
-                    String header = headers[i].toLowerCase().trim().replace("\"", ""); // Clean header
-                    
-                    // Assign index only if not already found (prefer first match)
-                    if (dateColumn == -1 && (header.contains("date") || header.contains("日期") || header.contains("时间") || header.contains("time"))) {
-                        dateColumn = i;
-                    } else if (descriptionColumn == -1 && (header.contains("desc") || header.contains("summary") || header.contains("narrative") || 
-                              header.contains("details") || header.contains("摘要") || header.contains("描述") || 
-                              header.contains("说明") || header.contains("备注"))) {
-                        descriptionColumn = i;
-                    } else if (categoryColumn == -1 && (header.contains("categ") || header.contains("type") || header.contains("用途") ||
-                              header.contains("类别") || header.contains("类型"))) {
-                        categoryColumn = i;
-                    } else if (amountColumn == -1 && (header.contains("amount") || header.contains("sum") || header.contains("value") ||
-                              header.contains("金额") || header.contains("价格") || header.contains("费用") ||
-                              header.contains("价值"))) {
-                        amountColumn = i;
-                    }
+        // Find column indices based on header names or assume default order
+        int dateColumn = -1, descriptionColumn = -1, categoryColumn = -1, amountColumn = -1;
+
+        if (hasHeaders) {
+            for (int i = 0; i < headers.length; i++) {
+                String header = headers[i].toLowerCase().trim().replace("\"", ""); // Clean header
+                
+                // Assign index only if not already found (prefer first match)
+                if (dateColumn == -1 && (header.contains("date") || header.contains("日期") || header.contains("时间") || header.contains("time"))) {
+                    dateColumn = i;
+                } else if (descriptionColumn == -1 && (header.contains("desc") || header.contains("summary") || header.contains("narrative") || 
+                          header.contains("details") || header.contains("摘要") || header.contains("描述") || 
+                          header.contains("说明") || header.contains("备注"))) {
+                    descriptionColumn = i;
+                } else if (categoryColumn == -1 && (header.contains("categ") || header.contains("type") || header.contains("用途") ||
+                          header.contains("类别") || header.contains("类型"))) {
+                    categoryColumn = i;
+                } else if (amountColumn == -1 && (header.contains("amount") || header.contains("sum") || header.contains("value") ||
+                          header.contains("金额") || header.contains("价格") || header.contains("费用") ||
+                          header.contains("价值"))) {
+                    amountColumn = i;
                 }
-            } else {
-                 // No headers detected, assume default order if enough columns
-                 if (headers.length >= 4) {
-                     dateColumn = 0;
-                     descriptionColumn = 1;
-                     categoryColumn = 2;
-                     amountColumn = 3;
-                 } else {
-                     throw new ImportException("Cannot determine column order: No headers found and less than 4 columns detected in the first line.");
-                 }
-            }
-            
-            // Validate that all required columns were found
-            if (dateColumn == -1 || descriptionColumn == -1 || categoryColumn == -1 || amountColumn == -1) {
-                 StringBuilder missingCols = new StringBuilder();
-                 if (dateColumn == -1) missingCols.append("Date, ");
-                 if (descriptionColumn == -1) missingCols.append("Description, ");
-                 if (categoryColumn == -1) missingCols.append("Category, ");
-                 if (amountColumn == -1) missingCols.append("Amount, ");
-                 // Remove trailing comma and space
-                 String missingStr = missingCols.substring(0, missingCols.length() - 2);
-                 throw new ImportException("Could not find required column(s): " + missingStr + ". Please check headers or file format.");
             }
+        } else {
+             // No headers detected, assume default order if enough columns
+             if (headers.length >= 4) {
+                 dateColumn = 0;
+                 descriptionColumn = 1;
+                 categoryColumn = 2;
+                 amountColumn = 3;
+             } else {
+                 throw new ImportException("Cannot determine column order: No headers found and less than 4 columns detected in the first line.");
+             }
+        }
+        
+        // Validate that all required columns were found
+        if (dateColumn == -1 || descriptionColumn == -1 || categoryColumn == -1 || amountColumn == -1) {
+             StringBuilder missingCols = new StringBuilder();
+             if (dateColumn == -1) missingCols.append("Date, ");
+             if (descriptionColumn == -1) missingCols.append("Description, ");
+             if (categoryColumn == -1) missingCols.append("Category, ");
+             if (amountColumn == -1) missingCols.append("Amount, ");
+             // Remove trailing comma and space
+             String missingStr = missingCols.substring(0, missingCols.length() - 2);
+             throw new ImportException("Could not find required column(s): " + missingStr + ". Please check headers or file format.");
+        }
 
-            System.out.println("Detected CSV Format - Delimiter: '" + delimiter + "', Has Headers: " + hasHeaders + 
-                               ", Date Col: " + dateColumn + ", Desc Col: " + descriptionColumn + 
-                               ", Cat Col: " + categoryColumn + ", Amt Col: " + amountColumn);
-                               
-            return new CsvFormat(delimiter, hasHeaders, dateColumn, descriptionColumn, categoryColumn, amountColumn);
-        } catch (IOException e) {
-            throw new ImportException("Error reading CSV file during format detection: " + e.getMessage(), e);
+        // Learn the date and amount format from the sampled data rows
+        List<String> dates = new ArrayList<>();
+        List<String> amounts = new ArrayList<>();
+        for (int row = hasHeaders ? 1 : 0; row < sample.size(); row++) {
+            List<String> fields = parseCsvLine(sample.get(row), delimiter);
+            if (fields.size() > Math.max(dateColumn, amountColumn)) {
+                dates.add(fields.get(dateColumn));
+                amounts.add(fields.get(amountColumn));
+            }
         }
+        CsvValueParser values = CsvValueParser.infer(dates, amounts);
+
+        System.out.println("Detected CSV Format - Delimiter: '" + delimiter + "', Has Headers: " + hasHeaders + 
+                           ", Date Col: " + dateColumn + ", Desc Col: " + descriptionColumn + 
+                           ", Cat Col: " + categoryColumn + ", Amt Col: " + amountColumn + ", Values: " + values);
+                           
+        return new CsvFormat(delimiter, hasHeaders, dateColumn, descriptionColumn, categoryColumn, amountColumn, values);
     }
     
     /**
-     * Detect the delimiter used in a CSV line
+     * Detects the delimiter from sample records. Each record is scanned once, counting every
+     * candidate outside quotes; the delimiter that splits the most records into the same
+     * number (more than one) of fields wins, and more fields break ties.
      * 
-     * @param line Sample line from CSV
-     * @return Most likely delimiter or null if none detected
-     */
-    private static String detectDelimiter(String line) {
-        String bestDelimiter = null;
-        int maxCount = 0;
-
-        for (String delimiter : POSSIBLE_DELIMITERS) {
-             // Use the robust parser to count fields based on this delimiter
-            int count = parseCsvLine(line, delimiter).size();
-            
-            // Basic check: If delimiter itself is in quotes, it's less likely
-            // Example: field1,"field,2",field3 - comma is less likely than if no quotes contained it
-            boolean delimiterInQuotes = false;
+     * @param sample Sample records from the CSV file
+     * @return Most likely delimiter or 0 if none detected
+     */
+    private static char detectDelimiter(List<String> sample) {
+        int[][] fieldCounts = new int[POSSIBLE_DELIMITERS.length][sample.size()];
+        for (int row = 0; row < sample.size(); row++) {
+            String record = sample.get(row);
             boolean inQuotes = false;
-            for(char c : line.toCharArray()) {
-                if (c == '"') inQuotes = !inQuotes;
-                if (inQuotes && c == delimiter.charAt(0)) {
-                    delimiterInQuotes = true;
-                    break;
+            for (int d = 0; d < POSSIBLE_DELIMITERS.length; d++) {
+                fieldCounts[d][row] = 1;
+            }
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes) {
+                    for (int d = 0; d < POSSIBLE_DELIMITERS.length; d++) {
+                        if (c == POSSIBLE_DELIMITERS[d]) {
+                            fieldCounts[d][row]++;
+                        }
+                    }
                 }
             }
+        }
 
-            // Prefer delimiters that yield more fields and are not commonly found within quotes
-            if (count > maxCount && count > 1 && !delimiterInQuotes) {
-                maxCount = count;
-                bestDelimiter = delimiter;
-            } else if (count > maxCount && count > 1 && bestDelimiter == null) {
-                 // Fallback if all potential delimiters are in quotes
-                 maxCount = count;
-                 bestDelimiter = delimiter;
+        char bestDelimiter = 0;
+        long bestScore = 0;
+        for (int d = 0; d < POSSIBLE_DELIMITERS.length; d++) {
+            // Most common field count of this delimiter and how many records have it
+            int[] counts = fieldCounts[d].clone();
+            Arrays.sort(counts);
+            int modeCount = 0, modeRows = 0;
+            for (int i = 0, run = 1; i < counts.length; i++, run++) {
+                if (i + 1 < counts.length && counts[i + 1] == counts[i]) {
+                    continue;
+                }
+                if (run > modeRows || (run == modeRows && counts[i] > modeCount)) {
+                    modeRows = run;
+                    modeCount = counts[i];
+                }
+                run = 0;
+            }
+            if (modeCount < 2) {
+                continue;
+            }
+            long score = (long) modeRows << 32 | modeCount;
+            if (score > bestScore) {
+                bestScore = score;
+                bestDelimiter = POSSIBLE_DELIMITERS[d];
             }
         }
-        
-        return bestDelimiter; 
+        return bestDelimiter;
     }
     
     /**
@@ -441,12 +927,11 @@ public class TransactionManager {
      * @return True if it's likely a header row
      */
     private static boolean isHeaderRow(String[] row) {
-        String headerPattern = "(?i).*(date|time|desc|category|amount|balance|type|日期|时间|描述|金额|类型|类别).*";
-        
         // Check if multiple columns match header patterns
+        Matcher matcher = HEADER_PATTERN.matcher("");
         int headerMatches = 0;
         for (String cell : row) {
-            if (cell.trim().matches(headerPattern)) {
+            if (matcher.reset(cell).find()) {
                 headerMatches++;
             }
         }
@@ -465,15 +950,17 @@ public class TransactionManager {
         private final int descriptionColumn;
         private final int categoryColumn;
         private final int amountColumn;
+        private final CsvValueParser values;
         
         public CsvFormat(String delimiter, boolean hasHeaders, int dateColumn, int descriptionColumn, 
-                         int categoryColumn, int amountColumn) {
+                         int categoryColumn, int amountColumn, CsvValueParser values) {
             this.delimiter = delimiter;
             this.hasHeaders = hasHeaders;
             this.dateColumn = dateColumn;
             this.descriptionColumn = descriptionColumn;
             this.categoryColumn = categoryColumn;
             this.amountColumn = amountColumn;
+            this.values = values;
         }
     }
     
@@ -481,57 +968,275 @@ public class TransactionManager {
      * Custom exception for CSV import errors with detailed messages
      */
     public static class ImportException extends Exception {
+        private final int successCount;
+        private final List<String> warnings;
+        private final ImportErrorLog errorLog;
+        
         public ImportException(String message) {
-            super(message);
+            this(message, 0, Collections.emptyList(), null);
         }
         
         public ImportException(String message, Throwable cause) {
             super(message, cause);
+            this.successCount = 0;
+            this.warnings = Collections.emptyList();
+            this.errorLog = null;
+        }
+        
+        /**
+         * Creates the exception of an import that rejected some rows
+         * @param message The formatted error report
+         * @param successCount Number of rows imported
+         * @param warnings Warnings about the file
+         * @param errorLog The rejected rows
+         */
+        public ImportException(String message, int successCount, List<String> warnings, ImportErrorLog errorLog) {
+            super(message);
+            this.successCount = successCount;
+            this.warnings = warnings;
+            this.errorLog = errorLog;
         }
+        
+        public int getSuccessCount() { return successCount; }
+        public List<String> getWarnings() { return warnings; }
+        
+        /**
+         * Gets the rejected rows: counts per error class, the first errors and the full log
+         * @return The error log, or null if the import failed as a whole
+         */
+        public ImportErrorLog getErrorLog() { return errorLog; }
     }
     
-    public static void exportToCSV(String filePath) {
-        List<Transaction> transactions = loadTransactions();
-        
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            // Write header
-            writer.println("UserId,Date,Description,Category,Amount");
-            
-            // Write transactions
-            for (Transaction transaction : transactions) {
-                writer.println(transaction.toString());
+    /**
+     * Thrown when an import stops because cancellation was requested
+     */
+    public static class ImportCancelledException extends ImportException {
+        public ImportCancelledException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Finds pairs of the current user's transactions that are probably the same purchase,
+     * e.g. from a card statement and a payment app export; see {@link NearDuplicateDetector}.
+     * Nothing is removed.
+     * @return The candidate pairs, most similar first
+     */
+    public static List<NearDuplicateDetector.Candidate> findNearDuplicates() {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        return findNearDuplicates(currentUser != null ? currentUser.getUsername() : "");
+    }
+    
+    /**
+     * Finds pairs of a user's transactions, including legacy rows, that are probably the
+     * same purchase. Runs over the whole ledger in O(n log n) plus the number of pairs
+     * within the amount tolerance and date window.
+     * @param userId The user id
+     * @return The candidate pairs, most similar first
+     */
+    public static List<NearDuplicateDetector.Candidate> findNearDuplicates(String userId) {
+        return new NearDuplicateDetector().findCandidates(loadTransactions(userId, null, null));
+    }
+    
+    /**
+     * Gets the current end of the ledger, to find the rows added after it later
+     * @return The store position after the last row, see {@link #findNearDuplicatesSince(long)}
+     */
+    public static long getLedgerEndPosition() {
+        try {
+            return getStore().getEndPosition();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+    
+    /**
+     * Finds pairs of the current user's transactions that are probably the same purchase and
+     * involve a row added after a position, e.g. by an import. Only the added rows and the
+     * earlier rows dated within the detector's date window of them are read, so the cost
+     * depends on the import rather than on the size of the ledger, and pairs that were
+     * already there are not reported again.
+     * @param position The end of the ledger before the rows were added, from {@link #getLedgerEndPosition()}
+     * @return The candidate pairs, most similar first
+     */
+    public static List<NearDuplicateDetector.Candidate> findNearDuplicatesSince(long position) {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUsername() : "";
+        try {
+            TransactionStore ledger = getStore();
+            List<Transaction> added = new ArrayList<>();
+            ledger.forEachInRange(userId, false, null, null, position, Long.MAX_VALUE, added::add);
+            if (added.isEmpty()) {
+                return new ArrayList<>();
             }
+            // The added rows are in date order
+            int window = NearDuplicateDetector.DEFAULT_DATE_WINDOW_DAYS;
+            LocalDate from = added.get(0).getDate().minusDays(window);
+            LocalDate to = added.get(added.size() - 1).getDate().plusDays(window);
+            List<Transaction> existing = new ArrayList<>();
+            ledger.forEachInRange(userId, true, from, to, 0, position, transaction -> {
+                if (transaction.getUserId().isEmpty()) {
+                    transaction.setUserId(userId);
+                }
+                existing.add(transaction);
+            });
+            return new NearDuplicateDetector().findCandidates(existing, added);
         } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
     }
     
     /**
-     * Loads all transactions from all users
-     * For admin purposes only
-     * @return List of all transactions
+     * Exports all of the current user's transactions to a CSV file, gzipped if the
+     * path ends with ".gz"
+     * 
+     * @param filePath Path of the file to write
      */
-    public static List<Transaction> loadAllTransactions() {
-        List<Transaction> transactions = new ArrayList<>();
-        File file = new File(TRANSACTIONS_FILE);
-        
-        if (!file.exists()) {
-            return transactions;
+    public static void exportToCSV(String filePath) {
+        try {
+            exportToCSV(filePath, new TransactionFilter(), filePath.toLowerCase().endsWith(".gz"));
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    transactions.add(Transaction.fromString(line));
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Skipping invalid transaction: " + line);
+    }
+    
+    /**
+     * Exports the current user's transactions that pass a filter to a CSV file, one row at a
+     * time and in constant memory. Fields are quoted where needed; see {@link CsvExporter}.
+     * With a date range the store's date index is used, so only the rows in the range are
+     * read, in date order; otherwise rows are written in insertion order.
+     * 
+     * @param filePath Path of the file to write; it is replaced if it exists
+     * @param filter Selects the rows to export
+     * @param gzip True to compress the file with gzip, e.g. for monthly archives
+     * @return The number of rows written
+     * @throws IOException If the ledger cannot be read or the file cannot be written
+     */
+    public static int exportToCSV(String filePath, TransactionFilter filter, boolean gzip) throws IOException {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUsername() : "";
+        try (CsvExporter exporter = new CsvExporter(new File(filePath), gzip)) {
+            Consumer<Transaction> writer = transaction -> {
+                // Legacy rows without an owner are stamped with the user id, as when loading
+                if (transaction.getUserId().isEmpty()) {
+                    transaction.setUserId(userId);
+                }
+                if (filter.test(transaction)) {
+                    try {
+                        exporter.write(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            if (filter.hasDateRange()) {
+                getStore().forEachInRange(userId, true, filter.getFrom(), filter.getTo(), writer);
+            } else {
+                try (Stream<Transaction> transactions = getStore().stream(userId, true)) {
+                    transactions.forEach(writer);
                 }
             }
+            return exporter.getRowCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Exports the current user's transactions that pass a filter as a PDF listing
+     * 
+     * @param filePath Path of the file to write; it is replaced if it exists
+     * @param filter Selects the rows to export
+     * @return The number of rows listed
+     * @throws IOException If the ledger cannot be read or the file cannot be written
+     * @see #addLedgerToReport(PdfReport, TransactionFilter)
+     */
+    public static long exportToPDF(String filePath, TransactionFilter filter) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filePath));
+             PdfReport report = new PdfReport(out, "Transactions")) {
+            report.addTitle("Transactions");
+            return addLedgerToReport(report, filter);
+        }
+    }
+    
+    /**
+     * Lists the current user's transactions that pass a filter in a PDF report, in date order
+     * with a subtotal after each month. Rows are read from the ledger as the listing is
+     * written, in chunks, so even a listing of many years uses little memory.
+     * 
+     * @param report The report to add the listing to
+     * @param filter Selects the rows to list
+     * @return The number of rows listed
+     * @throws IOException If the ledger cannot be read or the report cannot be written
+     */
+    public static long addLedgerToReport(PdfReport report, TransactionFilter filter) throws IOException {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUsername() : "";
+        PdfLedgerWriter writer = new PdfLedgerWriter(report);
+        writer.setMonthlySubtotals(true);
+        try (Stream<Transaction> transactions = getStore().streamRange(userId, true, filter.getFrom(), filter.getTo())) {
+            return writer.write(transactions.filter(filter).iterator());
+        }
+    }
+    
+    /**
+     * Backs up the ledger and the users to a file. Given the previous backup, only the
+     * transactions added since it are saved.
+     * 
+     * @param filePath Path of the backup file; it is replaced if it exists
+     * @param previousBackupPath Path of the previous full or incremental backup, or null for a full backup
+     * @param compress True to deflate the backup
+     * @return The outcome of the backup
+     * @throws IOException If the ledger changed under the previous backup (a full backup is
+     *         needed then), or on a read or write error
+     */
+    public static LedgerBackup.Result backup(String filePath, String previousBackupPath, boolean compress) throws IOException {
+        LedgerBackup.Mark since = previousBackupPath != null ? LedgerBackup.readEndMark(new File(previousBackupPath)) : null;
+        return LedgerBackup.backup(getStore(), UserManager.getInstance().getAllUsers().values(),
+            new File(filePath), compress, since);
+    }
+    
+    /**
+     * Restores a full backup and its incrementals into the ledger, which must be empty, and
+     * adds the users of the last backup
+     * 
+     * @param filePaths Paths of the backups, starting with a full backup, in the order they were taken
+     * @return The outcome of the restore
+     * @throws IOException If a backup is damaged or out of order, or on a read or write error
+     */
+    public static LedgerBackup.Result restoreBackup(List<String> filePaths) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String filePath : filePaths) {
+            files.add(new File(filePath));
+        }
+        LedgerBackup.Result result;
+        try {
+            result = LedgerBackup.restore(files, getStore());
+        } catch (IOException e) {
+            // The rows of a damaged backup were rolled back without telling the caches
+            TransactionRepository.getInstance().invalidate();
+            getMonthlyRollup().invalidate();
+            getDuplicateIndex().invalidate();
+            throw e;
+        }
+        UserManager.getInstance().restoreUsers(result.getUsers());
+        System.out.println("Restored " + result);
+        return result;
+    }
+    
+    /**
+     * Loads all transactions from all users
+     * For admin purposes only; use streamAllTransactions() for large ledgers
+     * @return List of all transactions
+     */
+    public static List<Transaction> loadAllTransactions() {
+        try {
+            return getStore().readAll();
         } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        
-        return transactions;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TransactionRepository - Process-wide, in-memory cache of users' ledgers.
+ * A ledger is read from the transaction store once and then served to every view from memory.
+ * Appends committed to the store update the cached ledgers incrementally; any other change to
+ * the backing file (detected through its modification stamp) invalidates them.
+ *
+ * The cached rows are shared by every caller and must not be modified; copyTransactions
+ * returns rows a caller may change. Appended rows are copied into the cache, so a caller
+ * changing its own objects after saving them does not change the cache either.
+ *
+ * The cache is guarded by the store's lock, because append notifications arrive while that
+ * lock is held.
+ */
+public class TransactionRepository implements TransactionStore.AppendListener {
+
+    private static TransactionRepository instance;
+
+    // The store the ledgers are read from, or null for TransactionManager's store
+    private final TransactionStore store;
+
+    // userId -> cached ledger ("" when no user is logged in)
+    private final Map<String, List<Transaction>> ledgers = new HashMap<>();
+    // Stamp of the data file the cached ledgers are valid for
+    private long[] stamp;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private TransactionRepository() {
+        this(null);
+    }
+
+    /**
+     * Creates a repository over a given store, for tests. The caller registers it as the
+     * store's append listener.
+     * @param store The store the ledgers are read from
+     */
+    TransactionRepository(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Gets the singleton instance of TransactionRepository
+     * @return The TransactionRepository instance
+     */
+    public static synchronized TransactionRepository getInstance() {
+        if (instance == null) {
+            instance = new TransactionRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the current user's transactions, including legacy rows without an owner.
+     * When no user is logged in only the legacy rows are returned.
+     * @return Read-only list of transactions in insertion order
+     */
+    public List<Transaction> getTransactions() {
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        return getTransactions(currentUser != null ? currentUser.getUsername() : "");
+    }
+
+    /**
+     * Gets a user's transactions, including legacy rows without an owner
+     * @param userId The user id ("" for the legacy rows only)
+     * @return Read-only list of shared transactions in insertion order
+     */
+    public List<Transaction> getTransactions(String userId) {
+        try {
+            TransactionStore store = getStore();
+            synchronized (store) {
+                long[] current = store.getModificationStamp();
+                if (stamp == null || stamp[0] != current[0] || stamp[1] != current[1]) {
+                    // The file changed outside this process, so no cached ledger can be trusted
+                    clear();
+                    stamp = current;
+                }
+
+                List<Transaction> ledger = ledgers.get(userId);
+                if (ledger == null) {
+                    ledger = Collections.unmodifiableList(load(store, userId));
+                    ledgers.put(userId, ledger);
+                }
+                return ledger;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets a copy of a user's transactions, including legacy rows without an owner, that the
+     * caller may change: both the list and the rows are copies of the cached ones
+     * @param userId The user id ("" for the legacy rows only)
+     * @return Modifiable list of transactions in insertion order
+     */
+    public List<Transaction> copyTransactions(String userId) {
+        List<Transaction> cached = getTransactions(userId);
+        List<Transaction> copy = new ArrayList<>(cached.size());
+        for (Transaction transaction : cached) {
+            copy.add(copyOf(transaction));
+        }
+        return copy;
+    }
+
+    /**
+     * Applies committed transactions to the cached ledgers, so the next read does not
+     * have to go back to disk. Called by the store while its lock is held.
+     * @param store The store the transactions were appended to
+     * @param transactions The committed transactions
+     */
+    @Override
+    public void onAppend(TransactionStore store, Collection<Transaction> transactions) {
+        if (ledgers.isEmpty()) {
+            clear();
+            return;
+        }
+
+        Map<String, List<Transaction>> byUser = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getUserId().isEmpty()) {
+                // Legacy rows are visible to every user
+                clear();
+                return;
+            }
+            byUser.computeIfAbsent(transaction.getUserId(), k -> new ArrayList<>()).add(copyOf(transaction));
+        }
+
+        for (Map.Entry<String, List<Transaction>> entry : byUser.entrySet()) {
+            List<Transaction> ledger = ledgers.get(entry.getKey());
+            if (ledger != null) {
+                List<Transaction> updated = new ArrayList<>(ledger.size() + entry.getValue().size());
+                updated.addAll(ledger);
+                updated.addAll(entry.getValue());
+                ledgers.put(entry.getKey(), Collections.unmodifiableList(updated));
+            }
+        }
+        stamp = new long[] {store.getDataFile().lastModified(), store.getDataFile().length()};
+    }
+
+    /**
+     * Drops every cached ledger
+     */
+    public void invalidate() {
+        try {
+            TransactionStore store = getStore();
+            synchronized (store) {
+                clear();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private TransactionStore getStore() throws IOException {
+        return store != null ? store : TransactionManager.getStore();
+    }
+
+    private void clear() {
+        ledgers.clear();
+        stamp = null;
+    }
+
+    /**
+     * Reads a ledger from the store, stamping legacy rows with the user id
+     */
+    private static List<Transaction> load(TransactionStore store, String userId) throws IOException {
+        if (userId.isEmpty()) {
+            return store.read("");
+        }
+        List<Transaction> transactions = store.readWithLegacy(userId);
+        for (Transaction transaction : transactions) {
+            if (transaction.getUserId().isEmpty()) {
+                transaction.setUserId(userId);
+            }
+        }
+        return transactions;
+    }
+
+    private static Transaction copyOf(Transaction transaction) {
+        return Transaction.ofCents(transaction.getUserId(), transaction.getDate(), transaction.getDescription(),
+            transaction.getCategory(), transaction.getAmountCents());
+    }
+}
@@ -0,0 +1,1537 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * TransactionStore - Binary, record-oriented storage for transactions.
+ * Records are appended to a data file and located through a per-user offset index,
+ * so reading one user's ledger only touches that user's records.
+ *
+ * Data file layout: an 8 byte header (magic, version) followed by records of the form
+ * [int length][short userLen][user][int epochDay][short descLen][desc][short catLen][category][long cents].
+ * The index file is a cache of the per-user offsets and dates and is rebuilt from the data
+ * file when it is missing or stale. Each user's entries can also be viewed sorted by date,
+ * which is what the date-range queries binary search. The stream methods decode records
+ * lazily for callers that make a single pass over ledgers of any size.
+ */
+public class TransactionStore {
+
+    private static final int MAGIC = 0x46545853;        // "FTXS"
+    private static final int INDEX_MAGIC = 0x46545849;  // "FTXI"
+    private static final int VERSION = 1;
+    private static final int INDEX_VERSION = 3;
+    private static final int HEADER_SIZE = 8;
+    private static final int ROLLBACK_MAGIC = 0x46545855; // "FTXU"
+    // Rollback journal header: magic, position the kept bytes go to, their length
+    private static final int ROLLBACK_HEADER_SIZE = 20;
+    private static final int READ_WINDOW = 64 * 1024;
+    // Growth since the last compaction below which compaction is not worth it
+    private static final long MIN_COMPACTION_GROWTH = 1024 * 1024;
+    // How long compaction waits for open streams to be closed before it gives up
+    private static final long READER_WAIT_MILLIS = 30_000;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final File rollbackFile;
+
+    // userId -> ascending record offsets with their dates
+    private final Map<String, UserIndex> index = new HashMap<>();
+    private final List<AppendListener> appendListeners = new ArrayList<>();
+    // Savepoints whose appends can still be rolled back
+    private final List<Savepoint> savepoints = new ArrayList<>();
+    // Streams that hold their own handle on the data file and are not closed yet
+    private int openReaders;
+    private FileChannel channel;
+    private long indexedLength;
+    // Data file length right after the last compaction, 0 if never compacted
+    private long compactedLength;
+    // Changed whenever records move, by a rollback or a compaction
+    private int layoutVersion;
+    private boolean indexDirty;
+
+    /**
+     * Creates a store backed by the given data file. The index is kept next to it
+     * with an ".idx" suffix.
+     * @param dataFile The binary data file
+     */
+    public TransactionStore(File dataFile) {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getPath() + ".idx");
+        this.rollbackFile = new File(dataFile.getPath() + ".rollback");
+    }
+
+    /**
+     * Gets the binary data file backing this store
+     * @return The data file
+     */
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Registers a listener that is told about every committed append
+     * @param listener The listener to add
+     */
+    public synchronized void addAppendListener(AppendListener listener) {
+        appendListeners.add(listener);
+    }
+
+    /**
+     * Gets the modification stamp of the data file, used to detect changes made outside this store
+     * @return The last modified time and length of the data file
+     */
+    public synchronized long[] getModificationStamp() throws IOException {
+        ensureOpen();
+        return new long[] {dataFile.lastModified(), dataFile.length()};
+    }
+
+    /**
+     * Gets a number that changes whenever records move to other positions, i.e. on a
+     * rollback or a compaction. Positions taken with {@link #getEndPosition()} are only
+     * meaningful while it stays the same.
+     * @return The layout version
+     */
+    public synchronized int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    /**
+     * Checks whether the store contains any record
+     * @return True if no record has been written
+     */
+    public synchronized boolean isEmpty() throws IOException {
+        ensureOpen();
+        return indexedLength <= HEADER_SIZE;
+    }
+
+    /**
+     * Appends a single transaction to the store
+     * @param transaction The transaction to append
+     */
+    public void append(Transaction transaction) throws IOException {
+        appendAll(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Appends transactions to the store with a single write and updates the index
+     * @param transactions The transactions to append, in order
+     */
+    public synchronized void appendAll(Collection<Transaction> transactions) throws IOException {
+        appendAll(transactions, null);
+    }
+
+    /**
+     * Appends transactions and records them in a savepoint, so that they can be removed
+     * again with {@link #rollback(Savepoint)}
+     * @param transactions The transactions to append, in order
+     * @param savepoint The savepoint to record the batch in, or null
+     */
+    public synchronized void appendAll(Collection<Transaction> transactions, Savepoint savepoint) throws IOException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        if (savepoint != null && !savepoints.contains(savepoint)) {
+            throw new IllegalStateException("Savepoint was already released or rolled back");
+        }
+        ensureOpen();
+
+        long start = indexedLength;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(256, transactions.size() * 96));
+        String[] users = new String[transactions.size()];
+        long[] offsets = new long[transactions.size()];
+        int[] days = new int[transactions.size()];
+        int i = 0;
+        for (Transaction transaction : transactions) {
+            users[i] = transaction.getUserId() == null ? "" : transaction.getUserId();
+            offsets[i] = start + buffer.position();
+            days[i] = (int) transaction.getDate().toEpochDay();
+            buffer = encode(buffer, transaction);
+            i++;
+        }
+        buffer.flip();
+
+        try {
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            // Drop the partially written batch so the file stays consistent
+            channel.truncate(start);
+            throw e;
+        }
+
+        for (int j = 0; j < users.length; j++) {
+            index.computeIfAbsent(users[j], k -> new UserIndex()).add(offsets[j], days[j]);
+        }
+        indexedLength = start + buffer.limit();
+        indexDirty = true;
+        if (savepoint != null) {
+            savepoint.add(start, indexedLength, users.length);
+        }
+
+        for (AppendListener listener : appendListeners) {
+            try {
+                listener.onAppend(this, transactions);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a single user
+     * @param userId The user id ("" for legacy rows without an owner)
+     * @return The user's transactions in insertion order
+     */
+    public synchronized List<Transaction> read(String userId) throws IOException {
+        ensureOpen();
+        UserIndex offsets = index.get(userId);
+        if (offsets == null) {
+            return new ArrayList<>();
+        }
+        return readOffsets(offsets.toArray());
+    }
+
+    /**
+     * Reads the records of a user together with the legacy rows that have no owner,
+     * preserving the order in which they were written
+     * @param userId The user id
+     * @return The matching transactions in insertion order
+     */
+    public synchronized List<Transaction> readWithLegacy(String userId) throws IOException {
+        ensureOpen();
+        UserIndex own = index.get(userId);
+        UserIndex legacy = userId.isEmpty() ? null : index.get("");
+        if (legacy == null || legacy.size == 0) {
+            return own == null ? new ArrayList<>() : readOffsets(own.toArray());
+        }
+        if (own == null || own.size == 0) {
+            return readOffsets(legacy.toArray());
+        }
+        return readOffsets(mergeSorted(own.toArray(), legacy.toArray()));
+    }
+
+    /**
+     * Reads a user's records dated within a range, using the date index
+     * @param userId The user id
+     * @param includeLegacy Whether legacy rows without an owner are included
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @return The matching transactions in date order
+     */
+    public synchronized List<Transaction> readRange(String userId, boolean includeLegacy,
+                                                    LocalDate from, LocalDate to) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        forEachInRange(userId, includeLegacy, from, to, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Visits a user's records dated within a range one at a time, in date order,
+     * without collecting them
+     * @param userId The user id
+     * @param includeLegacy Whether legacy rows without an owner are included
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @param action Called for every matching transaction
+     */
+    public synchronized void forEachInRange(String userId, boolean includeLegacy, LocalDate from, LocalDate to,
+                                            Consumer<Transaction> action) throws IOException {
+        ensureOpen();
+        visitOffsets(offsetsInRange(userId, includeLegacy, from, to), action);
+    }
+
+    /**
+     * Visits a user's records dated within a range that start between two positions of the
+     * data file, in date order. With a position from {@link #getEndPosition()} this tells the
+     * records appended since, e.g. by an import, from the ones that were there before.
+     * @param userId The user id
+     * @param includeLegacy Whether legacy rows without an owner are included
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @param startPosition First position (inclusive)
+     * @param endPosition Last position (exclusive)
+     * @param action Called for every matching transaction
+     */
+    public synchronized void forEachInRange(String userId, boolean includeLegacy, LocalDate from, LocalDate to,
+                                            long startPosition, long endPosition,
+                                            Consumer<Transaction> action) throws IOException {
+        ensureOpen();
+        long[] offsets = offsetsInRange(userId, includeLegacy, from, to);
+        int kept = 0;
+        for (long offset : offsets) {
+            if (offset >= startPosition && offset < endPosition) {
+                offsets[kept++] = offset;
+            }
+        }
+        visitOffsets(Arrays.copyOf(offsets, kept), action);
+    }
+
+    /**
+     * Streams a user's records dated within a range, in date order. The offsets of the
+     * matching records are taken from the date index when the stream is created; the records
+     * are then read one at a time through a separate file handle as the stream is consumed,
+     * without holding the store's lock. Memory use is eight bytes per matching record, so
+     * listings spanning many years can be written in about constant memory.
+     * The stream must be closed. Read errors are thrown as UncheckedIOException.
+     * @param userId The user id
+     * @param includeLegacy Whether legacy rows without an owner are included
+     * @param from First date (inclusive), or null for no lower bound
+     * @param to Last date (inclusive), or null for no upper bound
+     * @return Lazy stream of the matching transactions
+     */
+    public synchronized Stream<Transaction> streamRange(String userId, boolean includeLegacy,
+                                                        LocalDate from, LocalDate to) throws IOException {
+        ensureOpen();
+        long[] offsets = offsetsInRange(userId, includeLegacy, from, to);
+        FileChannel reader = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+        RecordReader records = new RecordReader(reader);
+        return toStream(new Cursor() {
+            private int i;
+
+            @Override
+            Transaction readNext() throws IOException {
+                return i < offsets.length ? records.read(offsets[i++]) : null;
+            }
+        }, reader);
+    }
+
+    /**
+     * Gets the offsets of a user's records dated within a range, in date order. Records of
+     * the same day are in insertion order.
+     */
+    private long[] offsetsInRange(String userId, boolean includeLegacy, LocalDate from, LocalDate to) {
+        int fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        int toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+        if (fromDay > toDay) {
+            return new long[0];
+        }
+
+        UserIndex own = index.get(userId);
+        UserIndex legacy = includeLegacy && !userId.isEmpty() ? index.get("") : null;
+        if (legacy == null || legacy.size == 0) {
+            return own != null ? own.offsetsInRange(fromDay, toDay) : new long[0];
+        }
+        if (own == null || own.size == 0) {
+            return legacy.offsetsInRange(fromDay, toDay);
+        }
+
+        // Merge the two date-ordered ranges
+        long[] ownOffsets = own.offsetsInRange(fromDay, toDay);
+        int[] ownDays = own.daysInRange(fromDay, toDay);
+        long[] legacyOffsets = legacy.offsetsInRange(fromDay, toDay);
+        int[] legacyDays = legacy.daysInRange(fromDay, toDay);
+        long[] merged = new long[ownOffsets.length + legacyOffsets.length];
+        int i = 0, j = 0, k = 0;
+        while (i < ownOffsets.length && j < legacyOffsets.length) {
+            boolean takeOwn = ownDays[i] < legacyDays[j]
+                || (ownDays[i] == legacyDays[j] && ownOffsets[i] < legacyOffsets[j]);
+            merged[k++] = takeOwn ? ownOffsets[i++] : legacyOffsets[j++];
+        }
+        while (i < ownOffsets.length) merged[k++] = ownOffsets[i++];
+        while (j < legacyOffsets.length) merged[k++] = legacyOffsets[j++];
+        return merged;
+    }
+
+    /**
+     * Reads every record in the store, for admin purposes
+     * @return All transactions in insertion order
+     */
+    public synchronized List<Transaction> readAll() throws IOException {
+        try (Stream<Transaction> transactions = stream()) {
+            return transactions.collect(Collectors.toCollection(ArrayList::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Streams every record in the store, in insertion order. Records are decoded one at a
+     * time through a separate file handle while the stream is consumed, so memory use does
+     * not depend on the size of the ledger. Records appended after this call are not included.
+     * The stream holds the file open and must be closed, e.g. with try-with-resources.
+     * Read errors are thrown as UncheckedIOException.
+     * @return Lazy stream of all transactions
+     */
+    public synchronized Stream<Transaction> stream() throws IOException {
+        return streamFrom(HEADER_SIZE);
+    }
+
+    /**
+     * Gets the length of the data file up to the end of its last record. Records appended
+     * later start at this position, see {@link #streamFrom(long)}.
+     * @return The position after the last record
+     */
+    public synchronized long getEndPosition() throws IOException {
+        ensureOpen();
+        return indexedLength;
+    }
+
+    /**
+     * Streams the records that start at or after a position of the data file, in insertion
+     * order, like {@link #stream()}. Used for incremental backups of the records appended
+     * since an earlier {@link #getEndPosition()}. Compaction and rollbacks move records, so
+     * a position is only meaningful while the bytes before it are unchanged.
+     * @param position A record boundary from {@link #getEndPosition()}; positions inside the
+     *        file header start at the first record
+     * @return Lazy stream of the records from the position on
+     */
+    public synchronized Stream<Transaction> streamFrom(long position) throws IOException {
+        ensureOpen();
+        long start = Math.max(HEADER_SIZE, position);
+        if (start > indexedLength) {
+            throw new IllegalArgumentException("Position " + position + " is past the end of the store");
+        }
+        DataInputStream in = openSequential(start);
+        long end = indexedLength;
+        return toStream(new Cursor() {
+            private long position = start;
+            private byte[] record = new byte[256];
+
+            @Override
+            Transaction readNext() throws IOException {
+                if (position >= end) {
+                    return null;
+                }
+                int length = in.readInt();
+                if (record.length < length) {
+                    record = new byte[length];
+                }
+                in.readFully(record, 0, length);
+                position += 4 + length;
+                return decode(ByteBuffer.wrap(record, 0, length), 0);
+            }
+        }, in);
+    }
+
+    /**
+     * Streams a user's records in insertion order, optionally merged with the legacy rows
+     * that have no owner. Only the user's records are read, through a separate file handle,
+     * as the stream is consumed. The stream must be closed.
+     * @param userId The user id
+     * @param includeLegacy Whether legacy rows without an owner are included
+     * @return Lazy stream of the user's transactions
+     */
+    public synchronized Stream<Transaction> stream(String userId, boolean includeLegacy) throws IOException {
+        ensureOpen();
+        UserIndex own = index.get(userId);
+        UserIndex legacy = includeLegacy && !userId.isEmpty() ? index.get("") : null;
+
+        // Appends only add entries past these sizes; a rollback or compaction that rewrites
+        // the entries below them fails the stream, see Cursor
+        long[] ownOffsets = own == null ? new long[0] : own.values;
+        int ownSize = own == null ? 0 : own.size;
+        long[] legacyOffsets = legacy == null ? new long[0] : legacy.values;
+        int legacySize = legacy == null ? 0 : legacy.size;
+
+        FileChannel reader = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+        RecordReader records = new RecordReader(reader);
+        return toStream(new Cursor() {
+            private int i, j;
+
+            @Override
+            Transaction readNext() throws IOException {
+                if (i < ownSize && (j >= legacySize || ownOffsets[i] < legacyOffsets[j])) {
+                    return records.read(ownOffsets[i++]);
+                }
+                if (j < legacySize) {
+                    return records.read(legacyOffsets[j++]);
+                }
+                return null;
+            }
+        }, reader);
+    }
+
+    /**
+     * Counts the records stored for a user
+     * @param userId The user id
+     * @return The number of records
+     */
+    public synchronized int count(String userId) throws IOException {
+        ensureOpen();
+        UserIndex offsets = index.get(userId);
+        return offsets == null ? 0 : offsets.size;
+    }
+
+    /**
+     * Migrates a legacy text ledger (one {@link Transaction#toString()} line per row) into the store.
+     * Invalid lines are moved to a ".quarantine" file next to the text file and reported once.
+     * @param textFile The legacy transactions file
+     * @return The number of migrated transactions
+     */
+    public int migrateFromText(File textFile) throws IOException {
+        int migrated = 0;
+        List<Transaction> batch = new ArrayList<>();
+        List<String> invalidLines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(textFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    batch.add(Transaction.fromString(line));
+                } catch (RuntimeException e) {
+                    invalidLines.add(line);
+                }
+                if (batch.size() == 4096) {
+                    appendAll(batch);
+                    migrated += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        appendAll(batch);
+        migrated += batch.size();
+        flushIndex();
+
+        if (!invalidLines.isEmpty()) {
+            File quarantineFile = new File(textFile.getPath() + ".quarantine");
+            try (PrintWriter writer = new PrintWriter(new FileWriter(quarantineFile, true))) {
+                for (String line : invalidLines) {
+                    writer.println(line);
+                }
+            }
+            System.err.println("Moved " + invalidLines.size() + " invalid transactions to " + quarantineFile);
+        }
+        return migrated;
+    }
+
+    /**
+     * Starts tracking a group of appends, e.g. an import, so they can be undone as a whole.
+     * Compaction is skipped while a savepoint is open.
+     * @return The savepoint; pass it to {@link #appendAll(Collection, Savepoint)}
+     */
+    public synchronized Savepoint savepoint() throws IOException {
+        ensureOpen();
+        Savepoint savepoint = new Savepoint();
+        savepoints.add(savepoint);
+        return savepoint;
+    }
+
+    /**
+     * Keeps the appends of a savepoint and stops tracking them
+     * @param savepoint The savepoint
+     */
+    public synchronized void release(Savepoint savepoint) {
+        savepoints.remove(savepoint);
+    }
+
+    /**
+     * Removes the records appended through a savepoint. Records appended after them by
+     * anyone else are kept, in their original order. Append listeners are not told; callers
+     * holding derived data (repository, rollup) must invalidate it.
+     *
+     * When nothing follows the savepoint's records the file is simply cut off. Otherwise the
+     * kept records are first copied to a ".rollback" journal next to the data file and forced
+     * to disk, so that a crash while the data file is rewritten is repaired when it is next
+     * opened. Streams still open on the store fail on their next read with a
+     * {@link LayoutChangedException}, as the positions they read from are no longer valid.
+     * @param savepoint The savepoint
+     * @return The number of records removed
+     */
+    public synchronized int rollback(Savepoint savepoint) throws IOException {
+        if (!savepoints.remove(savepoint)) {
+            throw new IllegalStateException("Savepoint was already released or rolled back");
+        }
+        List<long[]> ranges = savepoint.ranges;
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+        ensureOpen();
+
+        long from = ranges.get(0)[0];
+        layoutVersion++;
+        if (ranges.size() == 1 && ranges.get(0)[1] == indexedLength) {
+            // The savepoint's records are the last ones in the file
+            channel.truncate(from);
+            channel.force(false);
+        } else {
+            rewriteFrom(from, ranges);
+        }
+
+        // Records after the first removed one moved; index them again
+        for (UserIndex entries : index.values()) {
+            entries.truncate(from);
+        }
+        index.values().removeIf(entries -> entries.size == 0);
+        scanFrom(from, channel.size());
+        indexDirty = true;
+
+        for (Savepoint other : savepoints) {
+            other.relocate(ranges);
+        }
+        return savepoint.records;
+    }
+
+    /**
+     * Replaces everything after a position with the records that follow it outside the
+     * removed ranges, through the rollback journal
+     * @param from Start of the first removed range
+     * @param removed The ascending ranges to remove
+     */
+    private void rewriteFrom(long from, List<long[]> removed) throws IOException {
+        try (FileChannel journal = FileChannel.open(rollbackFile.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The kept bytes go after the header, which is written last to mark the journal complete
+            journal.position(ROLLBACK_HEADER_SIZE);
+            long position = from;
+            for (long[] range : removed) {
+                transfer(channel, position, range[0], journal);
+                position = range[1];
+            }
+            transfer(channel, position, indexedLength, journal);
+            long length = journal.position() - ROLLBACK_HEADER_SIZE;
+            journal.force(true);
+            ByteBuffer header = ByteBuffer.allocate(ROLLBACK_HEADER_SIZE);
+            header.putInt(ROLLBACK_MAGIC).putLong(from).putLong(length).flip();
+            while (header.hasRemaining()) {
+                journal.write(header, header.position());
+            }
+            journal.force(true);
+
+            replay(journal, from, length);
+        }
+        rollbackFile.delete();
+    }
+
+    /**
+     * Completes a rollback that was interrupted, before the data file is read. A journal
+     * without its header was never started on the data file and is dropped.
+     */
+    private void recoverRollback() throws IOException {
+        if (!rollbackFile.exists()) {
+            return;
+        }
+        try (FileChannel journal = FileChannel.open(rollbackFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ROLLBACK_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (journal.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            if (header.remaining() == ROLLBACK_HEADER_SIZE && header.getInt() == ROLLBACK_MAGIC) {
+                long from = header.getLong();
+                long length = header.getLong();
+                if (from >= HEADER_SIZE && journal.size() == ROLLBACK_HEADER_SIZE + length) {
+                    replay(journal, from, length);
+                    // The index may describe the file from before the rollback
+                    indexFile.delete();
+                    System.err.println("Completed an interrupted rollback of " + dataFile);
+                }
+            }
+        }
+        rollbackFile.delete();
+    }
+
+    /**
+     * Cuts the data file back to a position and writes the journaled bytes after it
+     */
+    private void replay(FileChannel journal, long from, long length) throws IOException {
+        channel.truncate(from);
+        long copied = 0;
+        while (copied < length) {
+            long n = channel.transferFrom(journal.position(ROLLBACK_HEADER_SIZE + copied), from + copied, length - copied);
+            if (n <= 0) {
+                throw new EOFException("Rollback journal " + rollbackFile + " is shorter than its header says");
+            }
+            copied += n;
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Copies the bytes between two positions of a channel to the current position of another
+     */
+    private static void transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        long position = from;
+        while (position < to) {
+            long n = in.transferTo(position, to - position, out);
+            if (n <= 0) {
+                throw new EOFException("Unexpected end of transaction store at offset " + position);
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Forces written records to the storage device
+     */
+    public synchronized void sync() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Persists the offset index if it changed since it was last written
+     */
+    public synchronized void flushIndex() throws IOException {
+        if (channel == null || !indexDirty) {
+            return;
+        }
+        channel.force(false);
+
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(indexedLength);
+            out.writeLong(compactedLength);
+            out.writeInt(index.size());
+            for (Map.Entry<String, UserIndex> entry : index.entrySet()) {
+                UserIndex offsets = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(offsets.size);
+                for (int i = 0; i < offsets.size; i++) {
+                    out.writeLong(offsets.values[i]);
+                    out.writeInt(offsets.days[i]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexDirty = false;
+    }
+
+    /**
+     * Checks whether compaction would pay off: there are legacy rows to hand to an owner,
+     * or the file has at least doubled (and grown by 1 MB) since it was last compacted
+     * @param legacyOwner The user legacy rows would be migrated to, or null
+     * @return True if {@link #compact(String)} should be run
+     */
+    public synchronized boolean needsCompaction(String legacyOwner) throws IOException {
+        ensureOpen();
+        if (legacyOwner != null && !legacyOwner.isEmpty() && count("") > 0) {
+            return true;
+        }
+        long base = Math.max(compactedLength, HEADER_SIZE);
+        long growth = indexedLength - base;
+        return growth >= MIN_COMPACTION_GROWTH && growth > base - HEADER_SIZE;
+    }
+
+    /**
+     * Rewrites the data file so that each user's records are stored together and in date order,
+     * which keeps later reads sequential. Legacy rows without an owner are handed to
+     * legacyOwner, and records that fail to decode are moved to a ".quarantine" file
+     * next to the data file.
+     *
+     * The new file is written next to the old one without holding the store's lock, so
+     * appends and reads continue meanwhile. Records committed during that time are copied
+     * over before the new file atomically replaces the old one.
+     *
+     * Open streams read the old file through their own handles, and on some platforms
+     * (Windows) a file that is open cannot be replaced. The replacement therefore waits for
+     * the open streams to be closed; if they stay open for too long the compaction is
+     * abandoned and the old file is kept, to be compacted on a later run.
+     * @param legacyOwner The user to migrate legacy rows to, or null to leave them unowned
+     * @return What the compaction did
+     */
+    public CompactionResult compact(String legacyOwner) throws IOException {
+        boolean migrate = legacyOwner != null && !legacyOwner.isEmpty();
+        File compactFile = new File(dataFile.getPath() + ".compact");
+        File quarantineFile = new File(dataFile.getPath() + ".quarantine");
+
+        // Snapshot each user's records in date order
+        long snapshotLength;
+        List<String> users;
+        Map<String, long[]> offsetsByUser = new HashMap<>();
+        Map<String, int[]> daysByUser = new HashMap<>();
+        synchronized (this) {
+            ensureOpen();
+            if (!savepoints.isEmpty()) {
+                // Moving records would invalidate the open savepoints; try again later
+                return new CompactionResult();
+            }
+            snapshotLength = indexedLength;
+            users = new ArrayList<>(index.keySet());
+            for (String userId : users) {
+                UserIndex entries = index.get(userId);
+                offsetsByUser.put(userId, entries.offsetsInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                daysByUser.put(userId, entries.daysInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+            }
+        }
+        if (migrate && offsetsByUser.containsKey("")) {
+            mergeByDate(offsetsByUser, daysByUser, legacyOwner);
+            users.remove("");
+            if (!users.contains(legacyOwner)) {
+                users.add(legacyOwner);
+            }
+        }
+        Collections.sort(users);
+
+        CompactionResult result = new CompactionResult();
+        Map<String, UserIndex> compactedIndex = new HashMap<>();
+        long position = HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream quarantine = new ByteArrayOutputStream();
+            try (FileChannel in = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                DataOutputStream body = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(out), READ_WINDOW));
+                body.writeInt(MAGIC);
+                body.writeInt(VERSION);
+
+                RecordReader records = new RecordReader(in);
+                ByteBuffer buffer = ByteBuffer.allocate(256);
+                for (String userId : users) {
+                    long[] offsets = offsetsByUser.get(userId);
+                    int[] days = daysByUser.get(userId);
+                    for (int i = 0; i < offsets.length; i++) {
+                        Transaction transaction = records.readValid(offsets[i]);
+                        if (transaction == null) {
+                            quarantine.write(records.readRaw(offsets[i]));
+                            result.quarantined++;
+                            continue;
+                        }
+                        if (migrate && transaction.getUserId().isEmpty()) {
+                            transaction.setUserId(legacyOwner);
+                            result.migrated++;
+                        }
+                        buffer.clear();
+                        buffer = encode(buffer, transaction);
+                        body.write(buffer.array(), 0, buffer.position());
+                        compactedIndex.computeIfAbsent(transaction.getUserId(), k -> new UserIndex())
+                            .add(position, days[i]);
+                        position += buffer.position();
+                        result.written++;
+                    }
+                }
+                body.flush();
+            }
+
+            synchronized (this) {
+                if (!awaitReadersClosed()) {
+                    System.err.println("Compaction of " + dataFile + " abandoned: streams on it are still open");
+                    return new CompactionResult();
+                }
+                if (channel == null) {
+                    throw new IOException("Transaction store was closed during compaction");
+                }
+                // Records committed meanwhile are copied unchanged, after the compacted ones
+                long tail = indexedLength - snapshotLength;
+                long copied = 0;
+                while (copied < tail) {
+                    copied += channel.transferTo(snapshotLength + copied, tail - copied, out);
+                }
+                out.force(true);
+                channel.close();
+                try {
+                    Files.move(compactFile.toPath(), dataFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    // Either the compacted file or, if the move failed, the untouched original
+                    channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                layoutVersion++;
+                // Savepoints opened meanwhile only cover the copied tail, which moved as a whole
+                for (Savepoint savepoint : savepoints) {
+                    savepoint.shift(position - snapshotLength);
+                }
+                index.clear();
+                index.putAll(compactedIndex);
+                indexedLength = position;
+                compactedLength = position;
+                scanFrom(position, channel.size());
+                indexDirty = true;
+                flushIndex();
+            }
+            if (quarantine.size() > 0) {
+                try (FileOutputStream quarantineOut = new FileOutputStream(quarantineFile, true)) {
+                    quarantine.writeTo(quarantineOut);
+                }
+            }
+        } finally {
+            compactFile.delete();
+        }
+        if (result.quarantined > 0) {
+            System.err.println("Moved " + result.quarantined + " corrupt transaction records to " + quarantineFile);
+        }
+        return result;
+    }
+
+    /**
+     * Waits until no stream holds the data file open. The lock is released while waiting,
+     * so appends and new streams can go ahead meanwhile.
+     * @return True once the readers are closed, false if they are still open after the timeout
+     */
+    private boolean awaitReadersClosed() throws IOException {
+        long deadline = System.currentTimeMillis() + READER_WAIT_MILLIS;
+        while (openReaders > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for streams to be closed");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index and releases the underlying file
+     */
+    public synchronized void close() {
+        try {
+            flushIndex();
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+        index.clear();
+    }
+
+    /**
+     * Opens the data file and loads (or rebuilds) the index on first use
+     */
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(dataFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recoverRollback();
+        } catch (IOException e) {
+            channel.close();
+            channel = null;
+            throw e;
+        }
+
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            indexedLength = HEADER_SIZE;
+            indexFile.delete();
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException("Not a transaction store: " + dataFile);
+        }
+
+        if (!loadIndex(size)) {
+            index.clear();
+            indexedLength = HEADER_SIZE;
+        }
+        if (indexedLength < size) {
+            scanFrom(indexedLength, size);
+            indexDirty = true;
+        }
+    }
+
+    /**
+     * Loads the persisted index if it is consistent with the data file
+     * @return True if the index was loaded
+     */
+    private boolean loadIndex(long dataLength) {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                return false;
+            }
+            long covered = in.readLong();
+            long compacted = in.readLong();
+            if (covered < HEADER_SIZE || covered > dataLength || compacted > covered) {
+                return false;
+            }
+            int users = in.readInt();
+            for (int u = 0; u < users; u++) {
+                String userId = in.readUTF();
+                int count = in.readInt();
+                UserIndex offsets = new UserIndex(count);
+                for (int i = 0; i < count; i++) {
+                    offsets.add(in.readLong(), in.readInt());
+                }
+                index.put(userId, offsets);
+            }
+            indexedLength = covered;
+            compactedLength = compacted;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Rebuilding transaction index: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Indexes the records between two file positions. A torn record at the end of the
+     * file (e.g. after a crash mid-write) is truncated away.
+     */
+    private void scanFrom(long from, long size) throws IOException {
+        long position = from;
+        try (DataInputStream in = openSequential(from)) {
+            byte[] user = new byte[64];
+            while (position + 4 <= size) {
+                int length = in.readInt();
+                if (length < 6 || position + 4 + length > size) {
+                    break;
+                }
+                int userLength = in.readUnsignedShort();
+                if (user.length < userLength) {
+                    user = new byte[userLength];
+                }
+                in.readFully(user, 0, userLength);
+                int epochDay = in.readInt();
+                in.skipNBytes(length - 2 - userLength - 4);
+
+                String userId = new String(user, 0, userLength, StandardCharsets.UTF_8);
+                index.computeIfAbsent(userId, k -> new UserIndex()).add(position, epochDay);
+                position += 4 + length;
+            }
+        }
+        if (position < size) {
+            System.err.println("Truncating incomplete transaction record at offset " + position);
+            channel.truncate(position);
+        }
+        indexedLength = position;
+    }
+
+    /**
+     * Merges the legacy rows into the owner's date-ordered offsets
+     */
+    private static void mergeByDate(Map<String, long[]> offsetsByUser, Map<String, int[]> daysByUser, String owner) {
+        long[] ownOffsets = offsetsByUser.getOrDefault(owner, new long[0]);
+        int[] ownDays = daysByUser.getOrDefault(owner, new int[0]);
+        long[] legacyOffsets = offsetsByUser.remove("");
+        int[] legacyDays = daysByUser.remove("");
+
+        long[] offsets = new long[ownOffsets.length + legacyOffsets.length];
+        int[] days = new int[offsets.length];
+        int i = 0, j = 0, k = 0;
+        while (i < ownOffsets.length || j < legacyOffsets.length) {
+            boolean takeOwn = j == legacyOffsets.length || (i < ownOffsets.length
+                && (ownDays[i] < legacyDays[j] || (ownDays[i] == legacyDays[j] && ownOffsets[i] < legacyOffsets[j])));
+            if (takeOwn) {
+                offsets[k] = ownOffsets[i];
+                days[k++] = ownDays[i++];
+            } else {
+                offsets[k] = legacyOffsets[j];
+                days[k++] = legacyDays[j++];
+            }
+        }
+        offsetsByUser.put(owner, offsets);
+        daysByUser.put(owner, days);
+    }
+
+    private DataInputStream openSequential(long position) throws IOException {
+        FileInputStream in = new FileInputStream(dataFile);
+        in.getChannel().position(position);
+        return new DataInputStream(new BufferedInputStream(in, READ_WINDOW));
+    }
+
+    /**
+     * Reads records at the given offsets into a list
+     */
+    private List<Transaction> readOffsets(long[] offsets) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(offsets.length);
+        visitOffsets(offsets, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Decodes the records at the given offsets through the store's channel
+     */
+    private void visitOffsets(long[] offsets, Consumer<Transaction> action) throws IOException {
+        RecordReader records = new RecordReader(channel);
+        for (long offset : offsets) {
+            action.accept(records.read(offset));
+        }
+    }
+
+    /**
+     * Wraps a cursor in a stream that closes its file handle when the stream is closed.
+     * Called with the lock held; the handle counts as an open reader until then.
+     */
+    private Stream<Transaction> toStream(Cursor cursor, Closeable resource) {
+        openReaders++;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    resource.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    readerClosed();
+                }
+            });
+    }
+
+    private synchronized void readerClosed() {
+        openReaders--;
+        notifyAll();
+    }
+
+    /**
+     * Decodes the record payload that starts at the given buffer position
+     */
+    private static Transaction decode(ByteBuffer buffer, int position) {
+        int p = position;
+        int userLength = buffer.getShort(p) & 0xFFFF;
+        String userId = getString(buffer, p + 2, userLength);
+        p += 2 + userLength;
+        LocalDate date = LocalDate.ofEpochDay(buffer.getInt(p));
+        p += 4;
+        int descLength = buffer.getShort(p) & 0xFFFF;
+        String description = getString(buffer, p + 2, descLength);
+        p += 2 + descLength;
+        int catLength = buffer.getShort(p) & 0xFFFF;
+        String category = getString(buffer, p + 2, catLength);
+        p += 2 + catLength;
+        long cents = buffer.getLong(p);
+        return Transaction.ofCents(userId, date, description, category, cents);
+    }
+
+    /**
+     * Appends the framed record of a transaction to a buffer, growing the buffer if needed
+     * @return The buffer holding the record
+     */
+    private static ByteBuffer encode(ByteBuffer buffer, Transaction transaction) {
+        byte[] user = bytes(transaction.getUserId());
+        byte[] description = bytes(transaction.getDescription());
+        byte[] category = bytes(transaction.getCategory());
+        int length = 2 + user.length + 4 + 2 + description.length + 2 + category.length + 8;
+
+        buffer = ensureCapacity(buffer, 4 + length);
+        buffer.putInt(length);
+        putString(buffer, user);
+        buffer.putInt((int) transaction.getDate().toEpochDay());
+        putString(buffer, description);
+        putString(buffer, category);
+        buffer.putLong(transaction.getAmountCents());
+        return buffer;
+    }
+
+    /**
+     * Checks that the field lengths of a record payload add up to its length
+     */
+    private static boolean isWellFormed(ByteBuffer buffer, int position, int length) {
+        int p = position;
+        int end = position + length;
+        for (int field = 0; field < 3; field++) {
+            if (p + 2 > end) {
+                return false;
+            }
+            p += 2 + (buffer.getShort(p) & 0xFFFF);
+            if (field == 0) {
+                p += 4;
+            }
+        }
+        return p + 8 == end;
+    }
+
+    private static String getString(ByteBuffer buffer, int position, int length) {
+        return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Transaction field too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static long[] mergeSorted(long[] a, long[] b) {
+        long[] merged = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            merged[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) merged[k++] = a[i++];
+        while (j < b.length) merged[k++] = b[j++];
+        return merged;
+    }
+
+    /**
+     * Reads records at arbitrary offsets through a sliding read window. Ascending
+     * offsets are served from the window; any backwards jump refills it.
+     */
+    private static class RecordReader {
+        private final FileChannel channel;
+        private ByteBuffer window = ByteBuffer.allocate(READ_WINDOW);
+        private long windowStart = -1;
+        private int windowLength;
+
+        RecordReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        Transaction read(long offset) throws IOException {
+            return decode(window, locate(offset) + 4);
+        }
+
+        /**
+         * Reads the record at an offset, or returns null if it is corrupt
+         */
+        Transaction readValid(long offset) throws IOException {
+            int position = locate(offset);
+            int length = window.getInt(position);
+            if (length < 6 || position + 4 + length > windowLength || !isWellFormed(window, position + 4, length)) {
+                return null;
+            }
+            try {
+                return decode(window, position + 4);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Copies the framed bytes of the record at an offset
+         */
+        byte[] readRaw(long offset) throws IOException {
+            int position = locate(offset);
+            int length = Math.min(4 + Math.max(window.getInt(position), 0), windowLength - position);
+            return Arrays.copyOfRange(window.array(), position, position + length);
+        }
+
+        /**
+         * Makes sure the record at an offset is inside the window
+         * @return The position of the record's length prefix in the window
+         */
+        private int locate(long offset) throws IOException {
+            if (windowStart < 0 || offset < windowStart || offset + 4 > windowStart + windowLength) {
+                fill(offset);
+            }
+            int length = window.getInt((int) (offset - windowStart));
+            if (offset + 4 + length > windowStart + windowLength && length > 0) {
+                if (4 + length > window.capacity()) {
+                    window = ByteBuffer.allocate(4 + length);
+                }
+                fill(offset);
+            }
+            return (int) (offset - windowStart);
+        }
+
+        private void fill(long offset) throws IOException {
+            window.clear();
+            while (window.hasRemaining()) {
+                int read = channel.read(window, offset + window.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            windowStart = offset;
+            windowLength = window.position();
+        }
+    }
+
+    /**
+     * Iterator over records that are decoded on demand. Each record is read under the store's
+     * lock, and the cursor fails once a rollback or a compaction moved records since it was
+     * created, instead of reading rows that were removed or are now elsewhere.
+     */
+    private abstract class Cursor implements Iterator<Transaction> {
+        // Created with the lock held
+        private final int layout = layoutVersion;
+        private Transaction next;
+        private boolean finished;
+
+        /**
+         * Reads the next record
+         * @return The next transaction, or null at the end
+         */
+        abstract Transaction readNext() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                synchronized (TransactionStore.this) {
+                    try {
+                        if (layoutVersion != layout) {
+                            throw new LayoutChangedException("Transaction store " + dataFile
+                                + " was rolled back or compacted while it was read");
+                        }
+                        next = readNext();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Transaction transaction = next;
+            next = null;
+            return transaction;
+        }
+    }
+
+    /**
+     * Thrown, wrapped in an UncheckedIOException, by a stream that was open while a rollback
+     * or a compaction moved records. Reading again from the start gives the current records.
+     */
+    public static class LayoutChangedException extends IOException {
+        public LayoutChangedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Outcome of a compaction
+     */
+    public static class CompactionResult {
+        private int written;
+        private int migrated;
+        private int quarantined;
+
+        // Records in the compacted part of the file
+        public int getWritten() { return written; }
+        // Legacy rows handed to an owner
+        public int getMigrated() { return migrated; }
+        // Corrupt records moved to the quarantine file
+        public int getQuarantined() { return quarantined; }
+    }
+
+    /**
+     * Appends that can be rolled back together, see {@link #savepoint()}.
+     * Guarded by the store's lock.
+     */
+    public static class Savepoint {
+        // Ascending, non-overlapping {start, end} file ranges of the recorded batches
+        private final List<long[]> ranges = new ArrayList<>();
+        private int records;
+
+        private Savepoint() {
+        }
+
+        /**
+         * Gets the number of records appended through this savepoint
+         * @return The record count
+         */
+        public int getRecordCount() {
+            return records;
+        }
+
+        private void add(long start, long end, int count) {
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] == start) {
+                last[1] = end;
+            } else {
+                ranges.add(new long[] {start, end});
+            }
+            records += count;
+        }
+
+        private void shift(long delta) {
+            for (long[] range : ranges) {
+                range[0] += delta;
+                range[1] += delta;
+            }
+        }
+
+        /**
+         * Moves the ranges back by the bytes of the removed ranges before them
+         */
+        private void relocate(List<long[]> removed) {
+            for (long[] range : ranges) {
+                long removedBefore = 0;
+                for (long[] gone : removed) {
+                    if (gone[1] <= range[0]) {
+                        removedBefore += gone[1] - gone[0];
+                    }
+                }
+                range[0] -= removedBefore;
+                range[1] -= removedBefore;
+            }
+        }
+    }
+
+    /**
+     * Listener notified after transactions are committed to the store.
+     * It is called while the store's lock is held, so it sees appends in commit order.
+     */
+    public interface AppendListener {
+        void onAppend(TransactionStore store, Collection<Transaction> transactions);
+    }
+
+    /**
+     * Growable per-user list of record offsets and dates, with a lazily built date order
+     */
+    private static class UserIndex {
+        private long[] values;
+        private int[] days;
+        private int size;
+
+        // Positions into values/days sorted by (day, insertion order); null when stale
+        private int[] byDate;
+
+        UserIndex() {
+            this(16);
+        }
+
+        UserIndex(int capacity) {
+            values = new long[Math.max(capacity, 4)];
+            days = new int[values.length];
+        }
+
+        void add(long offset, int day) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+            }
+            values[size] = offset;
+            days[size] = day;
+            size++;
+
+            if (byDate != null) {
+                if (size == 1 || days[byDate[size - 2]] <= day) {
+                    // Appends in date order keep the sorted view valid
+                    if (byDate.length < size) {
+                        byDate = Arrays.copyOf(byDate, values.length);
+                    }
+                    byDate[size - 1] = size - 1;
+                } else {
+                    byDate = null;
+                }
+            }
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        /**
+         * Drops the entries at or after a file offset; entries are in ascending offset order
+         */
+        void truncate(long offset) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < offset) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low < size) {
+                size = low;
+                byDate = null;
+            }
+        }
+
+        /**
+         * Gets the offsets of the entries dated within [fromDay, toDay], in date order
+         */
+        long[] offsetsInRange(int fromDay, int toDay) {
+            int[] order = sortedByDate();
+            int start = lowerBound(order, fromDay);
+            int end = toDay == Integer.MAX_VALUE ? size : lowerBound(order, toDay + 1);
+            long[] result = new long[Math.max(0, end - start)];
+            for (int i = start; i < end; i++) {
+                result[i - start] = values[order[i]];
+            }
+            return result;
+        }
+
+        /**
+         * Gets the days of the entries dated within [fromDay, toDay], in date order
+         */
+        int[] daysInRange(int fromDay, int toDay) {
+            int[] order = sortedByDate();
+            int start = lowerBound(order, fromDay);
+            int end = toDay == Integer.MAX_VALUE ? size : lowerBound(order, toDay + 1);
+            int[] result = new int[Math.max(0, end - start)];
+            for (int i = start; i < end; i++) {
+                result[i - start] = days[order[i]];
+            }
+            return result;
+        }
+
+        private int[] sortedByDate() {
+            if (byDate == null) {
+                // Sort (day, position) pairs packed into longs; position breaks ties stably
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = ((long) days[i] << 32) | i;
+                }
+                Arrays.sort(keys);
+                byDate = new int[size];
+                for (int i = 0; i < size; i++) {
+                    byDate[i] = (int) keys[i];
+                }
+            }
+            return byDate;
+        }
+
+        /**
+         * Binary search for the first sorted position whose day is >= day
+         */
+        private int lowerBound(int[] order, int day) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (days[order[mid]] < day) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +13,7 @@ import java.util.Map;
 public class UserManager {
     
     private static final String USER_DATA_FILE = "users.txt";
+    private static File dataFile = new File(USER_DATA_FILE);
     private static UserManager instance;
     private Map<String, User> users;
     private User currentUser;
@@ -119,6 +121,17 @@ public class UserManager {
         instance.currentUser = user;
     }
     
+    /**
+     * Points the user manager at another data file, for testing purposes ONLY, so that tests
+     * do not create users.txt in the working directory. The users are loaded from the file on
+     * the next call to getInstance().
+     * @param file The data file to use instead of users.txt
+     */
+    static void setDataFileForTesting(File file) {
+        dataFile = file;
+        instance = null;
+    }
+    
     /**
      * Updates the current user's timeout setting
      * @param minutes The timeout in minutes
@@ -194,7 +207,7 @@ public class UserManager {
      */
     private void loadUsers() {
         try {
-            Path path = Paths.get(USER_DATA_FILE);
+            Path path = dataFile.toPath();
             
             // Create file if it doesn't exist
             if (!Files.exists(path)) {
@@ -203,7 +216,7 @@ public class UserManager {
             }
             
             // Read users from file
-            BufferedReader reader = new BufferedReader(new FileReader(USER_DATA_FILE));
+            BufferedReader reader = new BufferedReader(new FileReader(dataFile));
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.trim().isEmpty()) {
@@ -223,7 +236,7 @@ public class UserManager {
      */
     private boolean saveUsers() {
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(USER_DATA_FILE));
+            BufferedWriter writer = new BufferedWriter(new FileWriter(dataFile));
             for (User user : users.values()) {
                 writer.write(user.toFileString());
                 writer.newLine();
@@ -236,6 +249,18 @@ public class UserManager {
         }
     }
     
+    /**
+     * Adds restored users, e.g. from a backup, replacing registered users of the same name
+     * @param restored The users to add
+     * @return True if the users were saved, false otherwise
+     */
+    public boolean restoreUsers(Collection<User> restored) {
+        for (User user : restored) {
+            users.put(user.getUsername(), user);
+        }
+        return saveUsers();
+    }
+    
     /**
      * Gets all registered users
      * @return A map of username to User objects
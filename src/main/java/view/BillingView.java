@@ -9,8 +9,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import model.ImportErrorLog;
+import model.ImportOptions;
+import model.ImportPreview;
+import model.ImportProgress;
+import model.NearDuplicateDetector;
 import model.Transaction;
 import model.TransactionManager;
+import model.TransactionRepository;
 import model.DeepSeekAPI;
 import model.CurrencyManager;
 import model.User;
@@ -22,6 +28,7 @@ import model.SessionManager;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * BillingView - The billing and subscriptions screen with transaction management.
@@ -63,6 +70,8 @@ public class BillingView extends JFrame {
     
     private User currentUser;
     private JTable billingTable;
+    // The preview of the last chosen file; earlier ones are cancelled and their results dropped
+    private SwingWorker<ImportPreview, Void> previewWorker;
     
     /**
      * Constructor for the BillingView
@@ -986,8 +995,8 @@ public class BillingView extends JFrame {
         
         importPanel.add(contentPanel, BorderLayout.NORTH);
         
-        // Preview area (remains the same for now, might be enhanced later)
-        JLabel previewLabel = new JLabel("Transaction Preview (after import)");
+        // Preview of the selected file, read from a sample of its rows
+        JLabel previewLabel = new JLabel("Import Preview - select a CSV file to see how it will be imported");
         previewLabel.setFont(SUBHEADER_FONT);
         previewLabel.setBorder(BorderFactory.createEmptyBorder(20, 0, 10, 0));
         
@@ -995,15 +1004,36 @@ public class BillingView extends JFrame {
         previewPanel.setBackground(Color.WHITE);
         previewPanel.add(previewLabel, BorderLayout.NORTH);
         
-        String[] columnNames = {"Date", "Description", "Category", "Amount", "AI Confidence"};
-        Object[][] data = {};
-        JTable previewTable = new JTable(data, columnNames);
+        String[] columnNames = {"Line", "Date", "Description", "Category", "Amount", "Status"};
+        javax.swing.table.DefaultTableModel previewModel = new javax.swing.table.DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable previewTable = new JTable(previewModel);
         JScrollPane tableScroll = new JScrollPane(previewTable);
         tableScroll.setPreferredSize(new Dimension(600, 150));
         
         previewPanel.add(tableScroll, BorderLayout.CENTER);
         
-        // importPanel.add(previewPanel, BorderLayout.CENTER); // Add preview later if needed
+        importPanel.add(previewPanel, BorderLayout.CENTER);
+        
+        // The field is only set by the file chooser; preview each newly selected file
+        filePathField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                loadImportPreview(filePathField.getText(), previewModel, previewLabel);
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
         
         this.contentPanel.add(importPanel, "import");
         
@@ -1013,24 +1043,58 @@ public class BillingView extends JFrame {
             if (!filePath.isEmpty()) {
                 try {
                     JDialog processingDialog = new JDialog(this, "导入中...", false);
+                    processingDialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+                    JPanel processingPanel = new JPanel(new BorderLayout(0, 8));
+                    processingPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
                     JLabel processingLabel = new JLabel("正在导入交易数据，请稍候...");
-                    processingLabel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
-                    processingDialog.add(processingLabel);
-                    processingDialog.pack();
+                    JProgressBar progressBar = new JProgressBar(0, 100);
+                    progressBar.setStringPainted(true);
+                    JLabel statsLabel = new JLabel(" ");
+                    JButton cancelImportButton = new JButton("取消");
+                    JPanel cancelPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+                    cancelPanel.add(cancelImportButton);
+                    JPanel progressPanel = new JPanel(new BorderLayout(0, 4));
+                    progressPanel.add(progressBar, BorderLayout.NORTH);
+                    progressPanel.add(statsLabel, BorderLayout.SOUTH);
+                    processingPanel.add(processingLabel, BorderLayout.NORTH);
+                    processingPanel.add(progressPanel, BorderLayout.CENTER);
+                    processingPanel.add(cancelPanel, BorderLayout.SOUTH);
+                    processingDialog.add(processingPanel);
+                    processingDialog.setSize(420, 160);
                     processingDialog.setLocationRelativeTo(this);
                     
-                    SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+                    // Polled by the import; the rows imported so far are rolled back when it stops
+                    AtomicBoolean cancelRequested = new AtomicBoolean();
+                    cancelImportButton.addActionListener(cancelEvent -> {
+                        cancelRequested.set(true);
+                        cancelImportButton.setEnabled(false);
+                        processingLabel.setText("正在取消导入...");
+                    });
+                    
+                    SwingWorker<Void, ImportProgress> worker = new SwingWorker<Void, ImportProgress>() {
                         private String errorMessage = null;
-                        private boolean hasDetailedError = false;
+                        private TransactionManager.ImportException importError = null;
+                        private boolean cancelled = false;
+                        private int duplicateCount = 0;
+                        // End of the ledger before the import; the rows after it are the imported ones
+                        private long ledgerEnd = 0;
                         
                         @Override
                         protected Void doInBackground() {
                             try {
-                                // Import directly using the format detection in TransactionManager
-                                TransactionManager.importFromCSV(filePath);
+                                ledgerEnd = TransactionManager.getLedgerEndPosition();
+                                // Import directly using the format detection in TransactionManager, parsing chunks in parallel.
+                                // Rows already in the ledger, e.g. from importing the same statement twice, are skipped.
+                                duplicateCount = TransactionManager.importFromCSV(filePath, new ImportOptions()
+                                    .setParallel(true)
+                                    .setListener(this::publish)
+                                    .setCancelRequested(cancelRequested::get));
+                            } catch (TransactionManager.ImportCancelledException ex) {
+                                errorMessage = ex.getMessage();
+                                cancelled = true;
                             } catch (TransactionManager.ImportException ex) {
                                 errorMessage = ex.getMessage();
-                                hasDetailedError = true;
+                                importError = ex;
                                 ex.printStackTrace();
                             } catch (Exception ex) {
                                 errorMessage = ex.getMessage();
@@ -1039,21 +1103,47 @@ public class BillingView extends JFrame {
                             return null;
                         }
                         
+                        @Override
+                        protected void process(List<ImportProgress> updates) {
+                            // Only the latest snapshot matters
+                            ImportProgress progress = updates.get(updates.size() - 1);
+                            progressBar.setValue(progress.getPercentDone());
+                            statsLabel.setText(String.format("%,d 行 · %.1f / %.1f MB · %,.0f 行/秒 · %d 错误",
+                                progress.getRowsProcessed(),
+                                progress.getBytesProcessed() / 1048576.0,
+                                progress.getTotalBytes() / 1048576.0,
+                                progress.getRowsPerSecond(),
+                                progress.getErrorCount()));
+                        }
+                        
                         @Override
                         protected void done() {
                             processingDialog.dispose();
                             
-                            if (errorMessage == null) {
+                            if (cancelled) {
+                                JOptionPane.showMessageDialog(
+                                    BillingView.this,
+                                    errorMessage,
+                                    "Import Cancelled",
+                                    JOptionPane.INFORMATION_MESSAGE
+                                );
+                                refreshTransactionsDisplay();
+                            } else if (errorMessage == null) {
                                 JOptionPane.showMessageDialog(
                                     BillingView.this, 
-                                    "Transaction data imported successfully!", 
+                                    "Transaction data imported successfully!" + (duplicateCount > 0
+                                        ? "\n" + duplicateCount + " records were already in the ledger and were skipped."
+                                        : ""), 
                                     "Import Successful", 
                                     JOptionPane.INFORMATION_MESSAGE
                                 );
                                 refreshTransactionsDisplay();
+                                reviewNearDuplicates(ledgerEnd);
                             } else {
-                                if (hasDetailedError && errorMessage.contains("Import completed with errors")) {
-                                    showDetailedErrorDialog(errorMessage);
+                                if (importError != null && importError.getErrorLog() != null) {
+                                    // Rejected rows: page through the error log instead of one huge message
+                                    showDetailedErrorDialog(importError);
+                                    refreshTransactionsDisplay();
                                 } else {
                                     JOptionPane.showMessageDialog(
                                         BillingView.this, 
@@ -1089,25 +1179,199 @@ public class BillingView extends JFrame {
     }
     
     /**
-     * Displays a detailed error dialog for CSV import errors
-     * @param errorMessage The detailed error message from ImportException
+     * Previews the import of a CSV file in the background and shows the sampled rows as they
+     * would be imported, with the detected format and the predicted error rate
+     * @param filePath Path to the selected CSV file
+     * @param previewModel The preview table's model
+     * @param previewLabel The label above the table, set to a summary of the detected format
      */
-    private void showDetailedErrorDialog(String errorMessage) {
+    private void loadImportPreview(String filePath, javax.swing.table.DefaultTableModel previewModel, JLabel previewLabel) {
+        if (previewWorker != null) {
+            previewWorker.cancel(false);
+        }
+        previewModel.setRowCount(0);
+        previewLabel.setText("Import Preview - reading " + new File(filePath).getName() + "...");
+        SwingWorker<ImportPreview, Void> worker = new SwingWorker<ImportPreview, Void>() {
+            @Override
+            protected ImportPreview doInBackground() throws Exception {
+                return TransactionManager.previewCSV(filePath);
+            }
+            
+            @Override
+            protected void done() {
+                // A later file was chosen while this one was read; its preview owns the table
+                if (isCancelled() || previewWorker != this) {
+                    return;
+                }
+                try {
+                    ImportPreview preview = get();
+                    for (ImportPreview.Row row : preview.getRows()) {
+                        // Rows read at random offsets have no line number; show where in the file they are
+                        String line = row.getLineNumber() > 0 ? String.valueOf(row.getLineNumber())
+                            : String.format("~%.0f%%", 100.0 * row.getOffset() / Math.max(1, preview.getTotalBytes()));
+                        Transaction transaction = row.getTransaction();
+                        if (transaction != null) {
+                            previewModel.addRow(new Object[] {line, transaction.getDate(), transaction.getDescription(),
+                                transaction.getCategory(), String.format("%.2f", transaction.getAmount()), "OK"});
+                        } else {
+                            previewModel.addRow(new Object[] {line, "", "", "", "", row.getErrorClass() + ": " + row.getError()});
+                        }
+                    }
+                    previewLabel.setText(String.format("<html>Import Preview (%d sampled rows, %d ms)<br>"
+                        + "<font size='-1'>%s</font></html>", preview.getRows().size(), preview.getElapsedMillis(), preview));
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    previewLabel.setText("Import Preview - could not read the file: " + cause.getMessage());
+                }
+            }
+        };
+        previewWorker = worker;
+        worker.execute();
+    }
+    
+    /**
+     * Looks for likely duplicates across bank sources in the background after an import and
+     * lists them for review. Only pairs with an imported row are listed. Nothing is deleted.
+     * @param ledgerEnd The end of the ledger before the import
+     */
+    private void reviewNearDuplicates(long ledgerEnd) {
+        SwingWorker<List<NearDuplicateDetector.Candidate>, Void> worker = new SwingWorker<List<NearDuplicateDetector.Candidate>, Void>() {
+            @Override
+            protected List<NearDuplicateDetector.Candidate> doInBackground() {
+                return TransactionManager.findNearDuplicatesSince(ledgerEnd);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    List<NearDuplicateDetector.Candidate> candidates = get();
+                    if (!candidates.isEmpty()) {
+                        showNearDuplicatesDialog(candidates);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
+    }
+    
+    /**
+     * Displays candidate pairs of transactions that may be the same purchase
+     * @param candidates The pairs, most similar first
+     */
+    private void showNearDuplicatesDialog(List<NearDuplicateDetector.Candidate> candidates) {
+        JDialog dialog = new JDialog(this, "Possible Duplicates", true);
+        dialog.setLayout(new BorderLayout());
+        dialog.setSize(800, 400);
+        dialog.setLocationRelativeTo(this);
+        
+        String[] columnNames = {"Match", "Date", "Description", "Amount", "Date", "Description", "Amount"};
+        Object[][] rows = new Object[candidates.size()][];
+        for (int i = 0; i < candidates.size(); i++) {
+            NearDuplicateDetector.Candidate candidate = candidates.get(i);
+            Transaction first = candidate.getFirst();
+            Transaction second = candidate.getSecond();
+            rows[i] = new Object[] {
+                String.format("%.0f%%", candidate.getSimilarity() * 100),
+                first.getDate(), first.getDescription(), String.format("%.2f", first.getAmount()),
+                second.getDate(), second.getDescription(), String.format("%.2f", second.getAmount())
+            };
+        }
+        JTable table = new JTable(rows, columnNames);
+        table.setEnabled(false);
+        
+        JLabel messageLabel = new JLabel("<html>" + candidates.size() + " pairs of transactions may be the same purchase "
+            + "recorded twice, e.g. in a card statement and a payment app export. Please review them; nothing was deleted.</html>");
+        messageLabel.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dialog.dispose());
+        buttonPanel.add(closeButton);
+        
+        dialog.add(messageLabel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * Displays a detailed error dialog for CSV import errors. The dialog shows the error
+     * counts per type and pages through the full error log, so a file with many broken
+     * rows does not build one huge text.
+     * @param importError The ImportException of an import that rejected rows
+     */
+    private void showDetailedErrorDialog(TransactionManager.ImportException importError) {
+        ImportErrorLog errorLog = importError.getErrorLog();
+        int pageSize = 100;
+        int pageCount = Math.max(1, (errorLog.getErrorCount() + pageSize - 1) / pageSize);
+        
         // Create a custom dialog for showing detailed import errors
         JDialog errorDialog = new JDialog(this, "Import Results", true);
         errorDialog.setLayout(new BorderLayout());
-        errorDialog.setSize(600, 400);
+        errorDialog.setSize(700, 500);
         errorDialog.setLocationRelativeTo(this);
         
-        // Create text area for errors with scroll capability
-        JTextArea errorArea = new JTextArea(errorMessage);
-        errorArea.setEditable(false);
-        errorArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        errorArea.setLineWrap(true);
-        errorArea.setWrapStyleWord(true);
-        errorArea.setMargin(new Insets(10, 10, 10, 10));
+        // Summary: counts, warnings and errors per type
+        StringBuilder summary = new StringBuilder();
+        summary.append("Successfully imported: ").append(importError.getSuccessCount()).append(" records\n");
+        summary.append("Failed to import: ").append(errorLog.getErrorCount()).append(" records\n");
+        for (String warning : importError.getWarnings()) {
+            summary.append("Warning: ").append(warning).append("\n");
+        }
+        for (java.util.Map.Entry<String, Integer> entry : errorLog.getCountsByClass().entrySet()) {
+            summary.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        JTextArea summaryArea = new JTextArea(summary.toString().trim());
+        summaryArea.setEditable(false);
+        summaryArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        summaryArea.setMargin(new Insets(10, 10, 10, 10));
+        
+        // One page of the error log at a time
+        DefaultListModel<String> pageModel = new DefaultListModel<>();
+        JList<String> errorList = new JList<>(pageModel);
+        errorList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JScrollPane scrollPane = new JScrollPane(errorList);
+        
+        JLabel pageLabel = new JLabel();
+        JButton previousButton = new JButton("< Previous");
+        JButton nextButton = new JButton("Next >");
+        int[] page = {0};
+        Runnable showPage = () -> {
+            pageModel.clear();
+            try {
+                for (String line : errorLog.readLog(page[0] * pageSize, pageSize)) {
+                    pageModel.addElement(line);
+                }
+            } catch (IOException ex) {
+                pageModel.addElement("Could not read the error log: " + ex.getMessage());
+            }
+            pageLabel.setText("Page " + (page[0] + 1) + " / " + pageCount);
+            previousButton.setEnabled(page[0] > 0);
+            nextButton.setEnabled(page[0] + 1 < pageCount);
+            errorList.ensureIndexIsVisible(0);
+        };
+        previousButton.addActionListener(e -> {
+            page[0]--;
+            showPage.run();
+        });
+        nextButton.addActionListener(e -> {
+            page[0]++;
+            showPage.run();
+        });
+        showPage.run();
+        
+        JPanel pagerPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        pagerPanel.add(previousButton);
+        pagerPanel.add(pageLabel);
+        pagerPanel.add(nextButton);
         
-        JScrollPane scrollPane = new JScrollPane(errorArea);
+        JPanel errorsPanel = new JPanel(new BorderLayout());
+        errorsPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+        errorsPanel.add(summaryArea, BorderLayout.NORTH);
+        errorsPanel.add(scrollPane, BorderLayout.CENTER);
+        errorsPanel.add(pagerPanel, BorderLayout.SOUTH);
         
         // Add header panel with icon and title
         JPanel headerPanel = new JPanel(new BorderLayout());
@@ -1128,6 +1392,21 @@ public class BillingView extends JFrame {
         JButton closeButton = new JButton("Close");
         closeButton.addActionListener(e -> errorDialog.dispose());
         
+        // The full log stays on disk after the dialog is closed
+        File logFile = errorLog.getLogFile();
+        JButton openLogButton = new JButton("Open Log File");
+        openLogButton.setEnabled(logFile != null && Desktop.isDesktopSupported());
+        openLogButton.addActionListener(e -> {
+            try {
+                Desktop.getDesktop().open(logFile);
+            } catch (IOException | UnsupportedOperationException ex) {
+                JOptionPane.showMessageDialog(errorDialog,
+                    "The error log is saved at:\n" + logFile.getAbsolutePath(),
+                    "Error Log",
+                    JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+        
         JButton viewHelpButton = new JButton("View Help");
         viewHelpButton.addActionListener(e -> {
             // Open help for CSV import format guidelines
@@ -1142,12 +1421,13 @@ public class BillingView extends JFrame {
                 JOptionPane.INFORMATION_MESSAGE);
         });
         
+        buttonPanel.add(openLogButton);
         buttonPanel.add(viewHelpButton);
         buttonPanel.add(closeButton);
         
         // Add everything to dialog
         errorDialog.add(headerPanel, BorderLayout.NORTH);
-        errorDialog.add(scrollPane, BorderLayout.CENTER);
+        errorDialog.add(errorsPanel, BorderLayout.CENTER);
         errorDialog.add(buttonPanel, BorderLayout.SOUTH);
         
         // Show dialog
@@ -1305,7 +1585,7 @@ public class BillingView extends JFrame {
             transactionsPanel.removeAll();
             
             // Get transactions
-            List<Transaction> transactions = TransactionManager.loadTransactions();
+            List<Transaction> transactions = TransactionRepository.getInstance().getTransactions();
             
             if (transactions.isEmpty()) {
                 JLabel noTransactionsLabel = new JLabel("No transactions found");
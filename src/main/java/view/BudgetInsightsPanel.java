@@ -1,7 +1,7 @@
 package view;
 
 import model.BudgetInsights;
-import model.Transaction;
+import model.MonthlyRollup;
 import model.TransactionManager;
 import model.DeepSeekAPI;
 import view.AccountView; // Import AccountView for theme/budget settings
@@ -12,8 +12,10 @@ import javax.swing.text.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,26 +89,19 @@ public class BudgetInsightsPanel extends JPanel {
     private void initializeData() {
         categoryBreakdown = new HashMap<>();
         
-        // Load real transactions
-        List<Transaction> transactions = TransactionManager.loadTransactions();
-        
-        // Calculate total spent amount and category breakdown
-        spentAmount = 0.0;
-        
-        for (Transaction transaction : transactions) {
-            double amount = transaction.getAmount();
-            spentAmount += amount;
-            
-            // Update category breakdown
-            String category = transaction.getCategory();
-            categoryBreakdown.put(
-                category, 
-                categoryBreakdown.getOrDefault(category, 0.0) + amount
-            );
+        // Calculate total spent amount and category breakdown for the current budget month
+        boolean hasTransactions = false;
+        try {
+            MonthlyRollup rollup = TransactionManager.getMonthlyRollup();
+            hasTransactions = rollup.hasTransactions();
+            spentAmount = rollup.getMonthSummary(YearMonth.now()).getSum();
+            categoryBreakdown.putAll(rollup.getCategoryTotals(YearMonth.now()));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         
         // If no transactions found, use sample data
-        if (transactions.isEmpty()) {
+        if (!hasTransactions) {
             initializeSampleData();
         }
     }
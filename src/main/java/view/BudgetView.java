@@ -9,12 +9,18 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import model.SessionManager;
 import model.UserManager;
+import model.Money;
+import model.MonthlyRollup;
 import model.Transaction;
 import model.TransactionManager;
+import java.io.IOException;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import model.User;
 import model.CurrencyManager;
 import org.jfree.chart.ChartFactory;
@@ -409,23 +415,22 @@ public class BudgetView extends JFrame {
         insightsPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         insightsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
         
-        // Load transaction data for summary calculations
-        List<Transaction> transactions = TransactionManager.loadTransactions();
+        // Calculate totals for the current budget month from the monthly rollup, which also
+        // tells whether there are any transactions without loading the ledger
+        boolean hasTransactions = false;
         double totalSpent = 0.0;
         Map<String, Double> categorySpending = new HashMap<>();
-        
-        // Calculate totals
-        for (Transaction transaction : transactions) {
-            double amount = transaction.getAmount();
-            totalSpent += amount;
-            
-            String category = transaction.getCategory();
-            categorySpending.put(category, 
-                categorySpending.getOrDefault(category, 0.0) + amount);
+        try {
+            MonthlyRollup rollup = TransactionManager.getMonthlyRollup();
+            hasTransactions = rollup.hasTransactions();
+            totalSpent = rollup.getMonthSummary(YearMonth.now()).getSum();
+            categorySpending.putAll(rollup.getCategoryTotals(YearMonth.now()));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         
         // If no transactions, use sample data
-        if (transactions.isEmpty()) {
+        if (!hasTransactions) {
             // Sample data matching the one in BudgetInsightsPanel
             totalSpent = 3240.75;
             categorySpending.put("Housing", 1500.0);
@@ -583,7 +588,7 @@ public class BudgetView extends JFrame {
         String[] columnNames = {"Date", "Description", "Category", "Amount"};
         Object[][] data;
         
-        if (transactions.isEmpty()) {
+        if (!hasTransactions) {
             // Sample data if no transactions
             data = new Object[][] {
                 {"2024-01-20", "Grocery Store", "Food & Dining", "-¥85.43"},
@@ -593,8 +598,12 @@ public class BudgetView extends JFrame {
                 {"2024-01-12", "Electric Bill", "Utilities", "-¥98.76"}
             };
         } else {
-            // Get actual transactions (up to 5 most recent)
-            int count = Math.min(transactions.size(), 5);
+            // Get actual transactions (up to 5), reading only those rows from the store
+            List<Transaction> transactions;
+            try (Stream<Transaction> rows = TransactionManager.streamTransactions()) {
+                transactions = rows.limit(5).collect(Collectors.toList());
+            }
+            int count = transactions.size();
             data = new Object[count][4];
             
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
@@ -604,7 +613,7 @@ public class BudgetView extends JFrame {
                 data[i][0] = transaction.getDate().format(formatter);
                 data[i][1] = transaction.getDescription();
                 data[i][2] = transaction.getCategory();
-                data[i][3] = String.format("-¥%.2f", transaction.getAmount());
+                data[i][3] = "-¥" + Money.format(transaction.getAmountCents());
             }
         }
         
@@ -705,26 +714,34 @@ public class BudgetView extends JFrame {
         insightsContentPanel.setBackground(new Color(240, 248, 255));
         
         // Calculate insights based on actual data
-        List<Transaction> transactions = TransactionManager.loadTransactions();
-        double totalSpent = 0.0;
-        for (Transaction transaction : transactions) {
-            totalSpent += transaction.getAmount();
+        boolean hasTransactions = false;
+        Map<String, MonthlyRollup.Summary> categorySummaries = new HashMap<>();
+        try {
+            MonthlyRollup rollup = TransactionManager.getMonthlyRollup();
+            hasTransactions = rollup.hasTransactions();
+            categorySummaries = rollup.getCategorySummaries(YearMonth.now());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        long totalCents = 0;
+        for (MonthlyRollup.Summary summary : categorySummaries.values()) {
+            totalCents += summary.getSumCents();
         }
+        double totalSpent = Money.toAmount(totalCents);
         
         // Calculate sample insights
         double foodPercentage = 0.0;
         double housingPercentage = 0.0;
         
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equals("Food & Dining")) {
-                foodPercentage += transaction.getAmount() / totalSpent * 100;
-            } else if (transaction.getCategory().equals("Housing")) {
-                housingPercentage += transaction.getAmount() / totalSpent * 100;
-            }
+        if (categorySummaries.containsKey("Food & Dining")) {
+            foodPercentage = categorySummaries.get("Food & Dining").getSumCents() * 100.0 / totalCents;
+        }
+        if (categorySummaries.containsKey("Housing")) {
+            housingPercentage = categorySummaries.get("Housing").getSumCents() * 100.0 / totalCents;
         }
         
         String insightsHTML = "<html>";
-        if (transactions.isEmpty()) {
+        if (!hasTransactions) {
             // Default insights if no transactions
             insightsHTML += "<p>• Based on your spending patterns, you could save <b>¥350/month</b> by reducing dining out expenses.</p>" +
                      "<p>• Your utility bills are <b>18% lower</b> than similar households in your region.</p>" +
@@ -927,22 +944,16 @@ public class BudgetView extends JFrame {
     private void updateBudgetInsightsData() {
         if (budgetInsightsPanel != null) {
             // Get transaction data
-            List<Transaction> transactions = TransactionManager.loadTransactions();
-            
-            // Calculate total spent amount
             double totalSpent = 0.0;
             Map<String, Double> categoryBreakdown = new HashMap<>();
             
-            for (Transaction transaction : transactions) {
-                double amount = transaction.getAmount();
-                totalSpent += amount;
-                
-                // Update category breakdown
-                String category = transaction.getCategory();
-                categoryBreakdown.put(
-                    category, 
-                    categoryBreakdown.getOrDefault(category, 0.0) + amount
-                );
+            // Calculate total spent amount and category breakdown for the current budget month
+            try {
+                MonthlyRollup rollup = TransactionManager.getMonthlyRollup();
+                totalSpent = rollup.getMonthSummary(YearMonth.now()).getSum();
+                categoryBreakdown.putAll(rollup.getCategoryTotals(YearMonth.now()));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
             
             // Get total budget - use custom budget if set, otherwise use CNY boost or default
@@ -1,6 +1,7 @@
 package view;
 
 import model.SessionManager;
+import model.TransactionManager;
 import model.UserManager;
 
 import javax.swing.*;
@@ -194,6 +195,9 @@ public class LoginView extends JFrame {
             
             // Start session monitoring
             SessionManager.getInstance().startSession(accountView);
+            
+            // Tidy up the transaction store while the user works
+            TransactionManager.compactIfNeeded();
         } else {
             JOptionPane.showMessageDialog(
                 LoginView.this,
@@ -7,23 +7,32 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
 
+import model.Money;
+import model.PdfReport;
+import model.TransactionFilter;
+import model.TransactionManager;
+import model.User;
+import model.UserManager;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-import com.itextpdf.text.Document;
-import com.itextpdf.text.Image;
-import com.itextpdf.text.pdf.PdfWriter;
-
 public class TransactionVisualizationUI extends JFrame {
 
     private JFreeChart currentChart;
@@ -105,7 +114,7 @@ public class TransactionVisualizationUI extends JFrame {
 
         generateChartButton.addActionListener(e -> generateChart());
         exportImageButton.addActionListener(e -> exportChartAsImage());
-        exportPDFButton.addActionListener(e -> exportChartAsPDF());
+        exportPDFButton.addActionListener(e -> exportChartAsPDF(exportPDFButton));
         exportCSVButton.addActionListener(e -> exportDataAsCSV());
 
         // 添加鼠标悬停效果
@@ -299,13 +308,43 @@ public class TransactionVisualizationUI extends JFrame {
     }
 
     private Map<String, Double> fetchData() {
-        Map<String, Double> data = new HashMap<>();
-        data.put("2023-01", 2000.0);
-        data.put("2023-02", 2500.0);
-        data.put("2023-03", 3000.0);
+        Map<String, Double> data = new LinkedHashMap<>();
+        User currentUser = UserManager.getInstance().getCurrentUser();
+        if (currentUser == null) {
+            // Sample data if no user is logged in
+            data.put("2023-01", 2000.0);
+            data.put("2023-02", 2500.0);
+            data.put("2023-03", 3000.0);
+            return data;
+        }
+
+        // Monthly totals between the entered months (defaults to the last 12 months)
+        YearMonth end = parseMonth(endDateField.getText(), YearMonth.now());
+        YearMonth start = parseMonth(startDateField.getText(), end.minusMonths(11));
+        int months = (int) ChronoUnit.MONTHS.between(start, end) + 1;
+        if (months <= 0) {
+            return data;
+        }
+
+        // Only the rows inside the range are read, through the date index
+        long[] totals = new long[months];
+        TransactionManager.forEachTransaction(currentUser.getUsername(), start.atDay(1), end.atEndOfMonth(),
+            transaction -> totals[(int) ChronoUnit.MONTHS.between(start, YearMonth.from(transaction.getDate()))]
+                += transaction.getAmountCents());
+        for (int i = 0; i < months; i++) {
+            data.put(start.plusMonths(i).toString(), Money.toAmount(totals[i]));
+        }
         return data;
     }
 
+    private YearMonth parseMonth(String text, YearMonth defaultMonth) {
+        try {
+            return YearMonth.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            return defaultMonth;
+        }
+    }
+
     private JFreeChart createLineChart() {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         for (Map.Entry<String, Double> entry : currentData.entrySet()) {
@@ -323,26 +362,112 @@ public class TransactionVisualizationUI extends JFrame {
     }
 
     private void exportChartAsImage() {
+        if (!hasChart()) {
+            return;
+        }
+        File file = chooseExportFile("chart.png", ".png");
+        if (file == null) {
+            return;
+        }
         try {
-            ChartUtils.saveChartAsPNG(new File("chart.png"), currentChart, 800, 600);
+            ChartUtils.saveChartAsPNG(file, currentChart, 800, 600);
             JOptionPane.showMessageDialog(this, "Chart exported as image successfully!");
         } catch (IOException e) {
             e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Could not export the chart: " + e.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    private void exportChartAsPDF() {
-        try {
-            Document document = new Document();
-            PdfWriter.getInstance(document, new FileOutputStream("chart.pdf"));
-            document.open();
-            Image image = Image.getInstance("chart.png");
-            document.add(image);
-            document.close();
-            JOptionPane.showMessageDialog(this, "Chart exported as PDF successfully!");
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Exports the chart, its monthly figures and the transactions of the charted months as a
+     * PDF report. The chart is drawn into the PDF as vector graphics, so no image file has to
+     * be exported first. The report is written in the background, as the listing reads the
+     * ledger; the button is disabled until it is done.
+     * @param exportButton The button that started the export
+     */
+    private void exportChartAsPDF(JButton exportButton) {
+        if (!hasChart()) {
+            return;
+        }
+        File file = chooseExportFile("chart.pdf", ".pdf");
+        if (file == null) {
+            return;
+        }
+        JFreeChart chart = currentChart;
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : currentData.entrySet()) {
+            rows.add(new String[] {entry.getKey(), Money.formatGrouped(Money.toCents(entry.getValue()))});
+        }
+        TransactionFilter filter = null;
+        if (UserManager.getInstance().getCurrentUser() != null) {
+            // The full listing of the charted months, read from the ledger as it is written
+            YearMonth end = parseMonth(endDateField.getText(), YearMonth.now());
+            YearMonth start = parseMonth(startDateField.getText(), end.minusMonths(11));
+            filter = new TransactionFilter();
+            filter.setDateRange(start.atDay(1), end.atEndOfMonth());
+        }
+        TransactionFilter ledgerFilter = filter;
+
+        exportButton.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                     PdfReport report = new PdfReport(out, "Transaction Report")) {
+                    report.addTitle("Transaction Report");
+                    report.addChart(chart, 523, 360);
+                    report.addHeading("Monthly Totals");
+                    report.addTable(new String[] {"Month", "Amount"}, rows);
+                    if (ledgerFilter != null) {
+                        report.newPage();
+                        report.addHeading("Transactions");
+                        TransactionManager.addLedgerToReport(report, ledgerFilter);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                exportButton.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(TransactionVisualizationUI.this, "Chart exported as PDF successfully!");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(TransactionVisualizationUI.this, "Could not export the chart: " + cause.getMessage(),
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private boolean hasChart() {
+        if (currentChart == null) {
+            JOptionPane.showMessageDialog(this, "Please generate a chart first.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Asks where to save an export
+     * @param defaultName The file name suggested
+     * @param extension The extension added if the chosen name lacks it, e.g. ".pdf"
+     * @return The chosen file, or null if the user cancelled
+     */
+    private File chooseExportFile(String defaultName, String extension) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(defaultName));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return null;
         }
+        File file = chooser.getSelectedFile();
+        return file.getName().toLowerCase().endsWith(extension) ? file : new File(file.getPath() + extension);
     }
 
     private void exportDataAsCSV() {
@@ -0,0 +1,115 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for BackupWriter and BackupReader functionality
+ */
+public class BackupWriterTest {
+
+    private static List<Transaction> transactions(int count) {
+        List<Transaction> transactions = new ArrayList<>();
+        String[] categories = {"Food", "Travel", "餐饮", ""};
+        for (int i = 0; i < count; i++) {
+            transactions.add(Transaction.ofCents(i % 3 == 0 ? "" : "user" + (i % 5), LocalDate.of(2015, 1, 1).plusDays(i / 7),
+                "Purchase " + i + (i % 11 == 0 ? ", with \"quotes\"" : ""), categories[i % 4], (i % 2 == 0 ? -1 : 1) * 1999L * i));
+        }
+        return transactions;
+    }
+
+    private static byte[] write(List<User> users, List<Transaction> transactions, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BackupWriter writer = new BackupWriter(out, compress, false, new LedgerBackup.Mark(0, 0))) {
+            writer.writeUsers(users);
+            for (Transaction transaction : transactions) {
+                writer.write(transaction);
+            }
+            writer.finish(new LedgerBackup.Mark(12345, 0x7ABCDEF0));
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Transaction> read(byte[] backup) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (BackupReader reader = new BackupReader(new ByteArrayInputStream(backup))) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+
+    @Test
+    @DisplayName("Test users and transactions round-trip, with and without compression")
+    public void testRoundTrip() throws IOException {
+        List<Transaction> transactions = transactions(50000);
+        transactions.add(Transaction.ofCents("edge", LocalDate.of(1970, 1, 1), "", "", Long.MIN_VALUE));
+        transactions.add(Transaction.ofCents("edge", LocalDate.of(2999, 12, 31), null, null, Long.MAX_VALUE));
+        List<User> users = Arrays.asList(new User("alice", "hash1", "alice@example.com"), new User("bob", "hash2", "bob@example.com"));
+
+        for (boolean compress : new boolean[] {false, true}) {
+            byte[] backup = write(users, transactions, compress);
+            try (BackupReader reader = new BackupReader(new ByteArrayInputStream(backup))) {
+                assertFalse(reader.isIncremental(), "The backup should be a full one");
+                assertEquals(2, reader.getUsers().size(), "Users should be available when the reader opens");
+                assertEquals("bob@example.com", reader.getUsers().get(1).getEmail(), "User fields should be restored");
+                for (Transaction expected : transactions) {
+                    Transaction actual = reader.next();
+                    assertNotNull(actual, "Every transaction should be read back");
+                    assertEquals(expected.getUserId(), actual.getUserId(), "User ids should round-trip");
+                    assertEquals(expected.getDate(), actual.getDate(), "Dates should round-trip");
+                    assertEquals(expected.getDescription() == null ? "" : expected.getDescription(), actual.getDescription(),
+                        "Descriptions should round-trip");
+                    assertEquals(expected.getCategory() == null ? "" : expected.getCategory(), actual.getCategory(),
+                        "Categories should round-trip");
+                    assertEquals(expected.getAmountCents(), actual.getAmountCents(), "Amounts should round-trip exactly");
+                }
+                assertNull(reader.next(), "The backup should end after the last transaction");
+                assertEquals(new LedgerBackup.Mark(12345, 0x7ABCDEF0), reader.getEnd(), "The end mark should be read from the footer");
+            }
+        }
+
+        byte[] plain = write(users, transactions, false);
+        byte[] deflated = write(users, transactions, true);
+        // The store spends about 45 bytes on each of these records
+        assertTrue(plain.length < transactions.size() * 28, "Varint and dictionary encoding should be compact: " + plain.length);
+        assertTrue(deflated.length < plain.length / 2, "Deflate should shrink the backup further: " + deflated.length);
+    }
+
+    @Test
+    @DisplayName("Test damaged and truncated backups are rejected")
+    public void testCorruption() throws IOException {
+        List<User> users = Collections.singletonList(new User("alice", "hash", "alice@example.com"));
+        for (boolean compress : new boolean[] {false, true}) {
+            byte[] backup = write(users, transactions(20000), compress);
+
+            byte[] damaged = backup.clone();
+            damaged[damaged.length / 2] ^= 0x10;
+            IOException error = assertThrows(IOException.class, () -> read(damaged), "A flipped bit should be detected");
+            assertTrue(error.getMessage().contains("corrupt"), "The error should say the backup is corrupt: " + error.getMessage());
+
+            byte[] truncated = Arrays.copyOf(backup, backup.length - 30);
+            assertThrows(IOException.class, () -> read(truncated), "A truncated backup should be rejected");
+        }
+
+        ByteArrayOutputStream unfinished = new ByteArrayOutputStream();
+        try (BackupWriter writer = new BackupWriter(unfinished, false, false, new LedgerBackup.Mark(0, 0))) {
+            writer.writeUsers(users);
+            writer.write(transactions(1).get(0));
+        }
+        assertThrows(IOException.class, () -> read(unfinished.toByteArray()), "A backup that was never finished should be rejected");
+        assertThrows(IOException.class, () -> read("users.txt".getBytes()), "Other files should be rejected");
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests for CsvExporter class functionality
+ */
+public class CsvExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Imports look up the current user; keep users.txt out of the working directory
+        UserManager.setDataFileForTesting(tempDir.resolve("users.txt").toFile());
+    }
+
+    private static final List<Transaction> ROWS = Arrays.asList(
+        new Transaction("alice", LocalDate.of(2023, 4, 1), "Dinner, drinks", "Food", 86.40),
+        new Transaction("alice", LocalDate.of(2023, 4, 2), "The \"Grand\" Hotel", "Travel", 1250.00),
+        new Transaction("alice", LocalDate.of(2023, 4, 3), "Refund\nticket 42", "Travel", -30.05),
+        new Transaction("alice", LocalDate.of(2023, 4, 4), "星巴克咖啡", "餐饮", 36.00)
+    );
+
+    private File export(String name, boolean gzip, List<Transaction> rows) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        try (CsvExporter exporter = new CsvExporter(file, gzip)) {
+            for (Transaction row : rows) {
+                exporter.write(row);
+            }
+            assertEquals(rows.size(), exporter.getRowCount(), "Every row should be counted");
+        }
+        return file;
+    }
+
+    private static String field(String value) {
+        StringBuilder out = new StringBuilder();
+        CsvExporter.appendField(out, value);
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("Test fields are quoted only when needed")
+    public void testQuoting() {
+        assertEquals("Coffee", field("Coffee"), "A plain field should not be quoted");
+        assertEquals("\"Dinner, drinks\"", field("Dinner, drinks"), "A comma should be quoted");
+        assertEquals("\"The \"\"Grand\"\" Hotel\"", field("The \"Grand\" Hotel"), "Quotes should be doubled");
+        assertEquals("\"a\nb\"", field("a\nb"), "A line break should be quoted");
+        assertEquals("\" padded \"", field(" padded "), "Surrounding spaces should be kept by quoting");
+        assertEquals("", field(null), "A missing field should be empty");
+    }
+
+    @Test
+    @DisplayName("Test an exported file imports back to the same rows")
+    public void testRoundTrip() throws IOException {
+        File file = export("export.csv", false, ROWS);
+
+        List<Transaction> imported = new ArrayList<>();
+        assertDoesNotThrow(() -> TransactionManager.importFromCSV(file.getPath(), new ImportOptions(),
+            imported::addAll), "The export should import without errors");
+
+        assertEquals(ROWS.size(), imported.size(), "Every row should import back");
+        for (int i = 0; i < ROWS.size(); i++) {
+            assertEquals(ROWS.get(i).getDate(), imported.get(i).getDate(), "The date should round-trip");
+            assertEquals(ROWS.get(i).getDescription(), imported.get(i).getDescription(), "The description should round-trip");
+            assertEquals(ROWS.get(i).getCategory(), imported.get(i).getCategory(), "The category should round-trip");
+            assertEquals(ROWS.get(i).getAmountCents(), imported.get(i).getAmountCents(), "The amount should round-trip");
+        }
+    }
+
+    @Test
+    @DisplayName("Test gzip output holds the same CSV text")
+    public void testGzip() throws IOException {
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            rows.add(ROWS.get(i % ROWS.size()));
+        }
+        File plain = export("export.csv", false, rows);
+        File compressed = export("export.csv.gz", true, rows);
+
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed.toPath()))) {
+            in.transferTo(unzipped);
+        }
+        byte[] expected = Files.readAllBytes(plain.toPath());
+        assertTrue(expected.length > CsvExporter.BUFFER_SIZE, "The export should span several buffers");
+        assertArrayEquals(expected, unzipped.toByteArray(), "The gzip file should hold the plain export");
+        assertTrue(compressed.length() < expected.length / 10, "Repetitive rows should compress well");
+        assertTrue(new String(expected, 0, 64, StandardCharsets.UTF_8).startsWith(CsvExporter.HEADER + "\n"),
+            "The file should start with the header");
+    }
+}
@@ -0,0 +1,242 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Tests for CsvImporter class functionality
+ */
+public class CsvImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Imports look up the current user; keep users.txt out of the working directory
+        UserManager.setDataFileForTesting(tempDir.resolve("users.txt").toFile());
+    }
+
+    private static final CsvImporter.RecordParser SIMPLE_PARSER = record -> {
+        if (record.getFieldCount() < 4) {
+            throw new IllegalArgumentException("Insufficient data columns: " + record.getFieldCount());
+        }
+        return new Transaction("", LocalDate.parse(record.getField(0)), record.getField(1), record.getField(2),
+            Double.parseDouble(record.getField(3)));
+    };
+
+    private File writeCsv(String content) throws IOException {
+        File file = tempDir.resolve("import.csv").toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static CsvImporter importFile(File file, boolean parallel, int chunkSize,
+                                          Consumer<List<Transaction>> committer) throws IOException {
+        try (CsvImporter importer = new CsvImporter(committer)) {
+            importer.setChunkSize(chunkSize);
+            importer.open(file, parallel);
+            importer.run(SIMPLE_PARSER, ',', true);
+            return importer;
+        }
+    }
+
+    private String sampleCsv() {
+        StringBuilder csv = new StringBuilder("Date,Description,Category,Amount\r\n");
+        for (int i = 1; i <= 500; i++) {
+            if (i % 50 == 0) {
+                csv.append("not a date,Broken,Other,1.00\n");
+            } else if (i % 70 == 0) {
+                csv.append("\n");
+            } else if (i % 30 == 0) {
+                csv.append("2023-01-01,\"Multi\nline note\",Other,3.00\n");
+            } else {
+                csv.append(String.format("2023-%02d-%02d,Row %d,Food,%d.50\n", i % 12 + 1, i % 28 + 1, i, i));
+            }
+        }
+        return csv.toString();
+    }
+
+    @Test
+    @DisplayName("Test chunks end on record boundaries outside quotes")
+    public void testSplit() {
+        String csv = "h1,h2\n\"a\nb\",1\r\nc,2\rd,3\n";
+        ByteBuffer data = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+
+        List<CsvImporter.Chunk> chunks = CsvImporter.split(data, 1);
+
+        assertEquals(4, chunks.size(), "A quoted line break should not end a chunk");
+        assertEquals("\"a\nb\",1\r\n", csv.substring(chunks.get(1).start, chunks.get(1).end),
+            "The quoted record should stay in one chunk");
+        assertEquals(1, chunks.get(1).firstLine, "Line count should include the header line");
+        assertEquals(3, chunks.get(2).firstLine, "CR LF should count as one line break");
+        assertEquals(4, chunks.get(3).firstLine, "A lone CR should count as a line break");
+    }
+
+    @Test
+    @DisplayName("Test parallel import matches sequential import")
+    public void testParallelMatchesSequential() throws IOException {
+        File file = writeCsv(sampleCsv());
+
+        List<Transaction> sequentialRows = new ArrayList<>();
+        CsvImporter sequential = importFile(file, false, CsvImporter.DEFAULT_CHUNK_SIZE, sequentialRows::addAll);
+
+        List<Transaction> parallelRows = new ArrayList<>();
+        CsvImporter parallel = importFile(file, true, 256, parallelRows::addAll);
+
+        assertEquals(sequential.getSuccessCount(), parallel.getSuccessCount(), "Success counts should match");
+        assertEquals(10, parallel.getErrorCount(), "Every broken row should be reported");
+        assertEquals(sequential.getErrorLog().getExamples().toString(), parallel.getErrorLog().getExamples().toString(),
+            "Errors should be reported for the same lines in the same order");
+        assertEquals(sequentialRows.toString(), parallelRows.toString(), "Rows should be committed in file order");
+        assertTrue(parallelRows.stream().anyMatch(t -> t.getDescription().equals("Multi\nline note")),
+            "A quoted line break should stay inside its record");
+
+        // A read buffer smaller than some records has to carry them over and grow
+        List<Transaction> smallBufferRows = new ArrayList<>();
+        CsvImporter smallBuffer = importFile(file, false, 16, smallBufferRows::addAll);
+        assertEquals(sequentialRows.toString(), smallBufferRows.toString(), "The read buffer size should not change the rows");
+        assertEquals(sequential.getErrorLog().getExamples().toString(), smallBuffer.getErrorLog().getExamples().toString(),
+            "The read buffer size should not change the errors");
+    }
+
+    @Test
+    @DisplayName("Test error report is unchanged by parallel import")
+    public void testImportReport() throws IOException {
+        File file = writeCsv(sampleCsv());
+
+        String[] reports = new String[2];
+        List<List<Transaction>> committed = new ArrayList<>();
+        for (int mode = 0; mode < 2; mode++) {
+            boolean parallel = mode == 1;
+            List<Transaction> rows = new ArrayList<>();
+            TransactionManager.ImportException error = assertThrows(TransactionManager.ImportException.class,
+                () -> TransactionManager.importFromCSV(file.getPath(), new ImportOptions().setParallel(parallel), rows::addAll));
+            reports[mode] = error.getMessage();
+            committed.add(rows);
+        }
+
+        assertEquals(reports[0], reports[1], "Both modes should produce the same report");
+        // Rows 30, 60 and 90 span two physical lines each
+        assertTrue(reports[1].contains("- Line 52: Cannot parse date: not a date"), "Errors should use physical line numbers");
+        assertTrue(reports[1].contains("- Line 104: Cannot parse date: not a date"),
+            "A record should be reported on the physical line it starts on");
+        assertEquals(committed.get(0).toString(), committed.get(1).toString(), "Both modes should commit the same rows");
+    }
+
+    @Test
+    @DisplayName("Test progress is reported and cancellation stops the import")
+    public void testProgressAndCancel() throws IOException {
+        StringBuilder csv = new StringBuilder("Date,Description,Category,Amount\n");
+        for (int i = 0; i < 5000; i++) {
+            csv.append("2023-01-01,Row ").append(i).append(",Food,1.00\n");
+        }
+        File file = writeCsv(csv.toString());
+
+        List<ImportProgress> reports = new ArrayList<>();
+        try (CsvImporter importer = new CsvImporter(rows -> { })) {
+            importer.setProgressListener(reports::add);
+            importer.open(file, false);
+            importer.run(SIMPLE_PARSER, ',', true);
+        }
+
+        ImportProgress last = reports.get(reports.size() - 1);
+        assertTrue(last.isFinished(), "The last report should mark the end of the import");
+        assertEquals(5000, last.getRowsProcessed(), "Every row should be counted");
+        assertEquals(100, last.getPercentDone(), "The whole file should be processed");
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<Transaction> committed = new ArrayList<>();
+            try (CsvImporter cancelled = new CsvImporter(committed::addAll)) {
+                cancelled.setChunkSize(4096);
+                cancelled.setCancelRequested(() -> committed.size() >= CsvImporter.BATCH_SIZE);
+                cancelled.open(file, parallel);
+                assertThrows(CancellationException.class, () -> cancelled.run(SIMPLE_PARSER, ',', true),
+                    "Cancellation should stop the import");
+            }
+            assertTrue(committed.size() < 5000, "Rows after the cancellation should not be committed");
+        }
+    }
+
+    @Test
+    @DisplayName("Test sampling peeks at the first records without consuming them")
+    public void testSample() throws IOException {
+        File file = writeCsv("\nDate,Description,Category,Amount\n2023-01-01,\"Two\nlines\",Food,1.00\n2023-01-02,Tea,Food,2.00\n");
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<Transaction> rows = new ArrayList<>();
+            try (CsvImporter importer = new CsvImporter(rows::addAll)) {
+                importer.open(file, parallel);
+
+                List<String> sample = importer.sample(2);
+
+                assertEquals(2, sample.size(), "Sampling should stop at the requested number of records");
+                assertEquals("2023-01-01,\"Two\nlines\",Food,1.00", sample.get(1), "Sampled records should be quote-aware");
+                importer.run(SIMPLE_PARSER, ',', true);
+            }
+            assertEquals(2, rows.size(), "The import should start from the beginning after sampling");
+        }
+    }
+
+    @Test
+    @DisplayName("Test format detection scores delimiters over several records")
+    public void testFormatDetection() throws IOException, TransactionManager.ImportException {
+        // Unquoted thousands separators make the comma count vary between records
+        File file = writeCsv("Date;Description;Category;Amount\n2023-01-01;Coffee, large;Food;1,234.50\n2023-01-02;Tea;Food;2.00\n");
+
+        List<Transaction> rows = new ArrayList<>();
+        TransactionManager.importFromCSV(file.getPath(), new ImportOptions(), rows::addAll);
+
+        assertEquals(2, rows.size(), "Both data rows should be imported");
+        assertEquals("Coffee, large", rows.get(0).getDescription(), "Semicolon should be detected as delimiter");
+        assertEquals(123450, rows.get(0).getAmountCents(), "Amount should be read from the detected column");
+
+        File piped = writeCsv("Date|Description|Category|Amount\n2023-01-01|Bus|Transport|3.00\n");
+        rows.clear();
+        TransactionManager.importFromCSV(piped.getPath(), new ImportOptions().setParallel(true), rows::addAll);
+        assertEquals("Transport", rows.get(0).getCategory(), "Pipe should be detected as delimiter");
+    }
+
+    @Test
+    @DisplayName("Test GBK and UTF-8 with byte order mark are imported correctly")
+    public void testCharsetDetection() throws IOException, TransactionManager.ImportException {
+        File file = tempDir.resolve("gbk.csv").toFile();
+        Files.write(file.toPath(), "日期,描述,类别,金额\n2023-01-01,午餐,餐饮,25.00\n".getBytes("GBK"));
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<Transaction> rows = new ArrayList<>();
+            TransactionManager.importFromCSV(file.getPath(), new ImportOptions().setParallel(parallel), rows::addAll);
+            assertEquals("午餐", rows.get(0).getDescription(), "GBK descriptions should be decoded");
+            assertEquals("餐饮", rows.get(0).getCategory(), "GBK categories should be decoded");
+        }
+
+        File bom = tempDir.resolve("bom.csv").toFile();
+        byte[] text = "Date,Description,Category,Amount\n2023-01-01,Café,Food,3.50\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[text.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, bytes, 3, text.length);
+        Files.write(bom.toPath(), bytes);
+
+        List<Transaction> rows = new ArrayList<>();
+        TransactionManager.importFromCSV(bom.getPath(), new ImportOptions(), rows::addAll);
+        assertEquals(1, rows.size(), "The byte order mark should not hide the header");
+        assertEquals("Café", rows.get(0).getDescription(), "UTF-8 descriptions should be decoded");
+    }
+}
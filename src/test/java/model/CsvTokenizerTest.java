@@ -0,0 +1,93 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for CsvTokenizer class functionality
+ */
+public class CsvTokenizerTest {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private static CsvTokenizer tokenize(String csv, Charset charset, char delimiter) {
+        CsvTokenizer tokenizer = new CsvTokenizer(charset, delimiter);
+        tokenizer.setInput(ByteBuffer.wrap(csv.getBytes(charset)), true);
+        return tokenizer;
+    }
+
+    @Test
+    @DisplayName("Test records and fields follow the CSV line parser rules")
+    public void testFields() {
+        CsvTokenizer tokenizer = tokenize(
+            "\n a , \"b, c\" ,\"say \"\"hi\"\"\"\r\n  \r\n\"two\r\nlines\",x\rlast,\"open", StandardCharsets.UTF_8, ',');
+
+        assertTrue(tokenizer.next(), "The first record should be found after a blank line");
+        assertEquals(2, tokenizer.getLineNumber(), "Blank lines should be counted");
+        assertEquals(3, tokenizer.getFieldCount(), "A delimiter inside quotes should not split the field");
+        assertEquals("a", tokenizer.getField(0), "Fields should be trimmed");
+        assertEquals("b, c", tokenizer.getField(1), "Quotes should be removed");
+        assertEquals("say \"hi\"", tokenizer.getField(2), "Doubled quotes should read as one quote");
+
+        assertTrue(tokenizer.next(), "A quoted line break should continue the record");
+        assertEquals(4, tokenizer.getLineNumber(), "CR LF should count as one line break");
+        assertEquals("two\nlines", tokenizer.getField(0), "Line breaks inside a field should read as \\n");
+        assertEquals("\"two\nlines\",x", tokenizer.toString(), "The record text should join its lines with \\n");
+
+        assertTrue(tokenizer.next(), "A lone CR should end a record");
+        assertEquals(6, tokenizer.getLineNumber(), "A lone CR should count as a line break");
+        assertEquals("open", tokenizer.getField(1), "An unterminated quote should run to the end of the input");
+        assertFalse(tokenizer.next(), "The input should be exhausted");
+    }
+
+    @Test
+    @DisplayName("Test an incomplete record is left in the buffer until more input arrives")
+    public void testIncompleteInput() {
+        byte[] bytes = "a,b\nc,\"d\ne".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(bytes).flip();
+        CsvTokenizer tokenizer = new CsvTokenizer(StandardCharsets.UTF_8, ',');
+
+        tokenizer.setInput(buffer, false);
+        assertTrue(tokenizer.next(), "The complete record should be returned");
+        assertFalse(tokenizer.next(), "The record inside open quotes should wait for more input");
+        assertEquals(4, buffer.position(), "The incomplete record should not be consumed");
+
+        buffer.compact().put("\",f\r".getBytes(StandardCharsets.UTF_8)).flip();
+        tokenizer.setInput(buffer, false);
+        assertFalse(tokenizer.next(), "A CR at the end of the input may still be followed by LF");
+
+        buffer.compact().put("\n".getBytes(StandardCharsets.UTF_8)).flip();
+        tokenizer.setInput(buffer, true);
+        assertTrue(tokenizer.next(), "The record should be complete once its quote is closed");
+        assertEquals("d\ne", tokenizer.getField(1), "The field should span both reads");
+        assertEquals(2, tokenizer.getLineNumber(), "Line numbers should continue across reads");
+    }
+
+    @Test
+    @DisplayName("Test charset detection and GBK decoding")
+    public void testCharsets() {
+        byte[] gbk = "日期,描述\n2023-01-01,午餐\n".getBytes(GBK);
+        byte[] utf8 = "日期,描述\n2023-01-01,午餐\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a'};
+
+        assertEquals(GBK, CsvTokenizer.detectCharset(ByteBuffer.wrap(gbk), true), "GBK bytes should be detected");
+        assertEquals(StandardCharsets.UTF_8, CsvTokenizer.detectCharset(ByteBuffer.wrap(utf8), true), "UTF-8 bytes should be detected");
+        assertEquals(StandardCharsets.UTF_8, CsvTokenizer.detectCharset(ByteBuffer.wrap("a,b".getBytes(StandardCharsets.US_ASCII)), true),
+            "ASCII should be read as UTF-8");
+        assertEquals(StandardCharsets.UTF_8, CsvTokenizer.detectCharset(ByteBuffer.wrap(utf8, 0, 3), false),
+            "A character cut off by the sample should not rule out UTF-8");
+        assertEquals(3, CsvTokenizer.bomLength(ByteBuffer.wrap(bom)), "A UTF-8 byte order mark should be skipped");
+
+        // The second GBK byte of 億 is '|'
+        CsvTokenizer tokenizer = tokenize("2023-01-01|億元|Food|1.00\n", GBK, '|');
+        assertTrue(tokenizer.next(), "The record should be found");
+        assertEquals(4, tokenizer.getFieldCount(), "A GBK trail byte should not split a field");
+        assertEquals("億元", tokenizer.getField(1), "The field should be decoded as GBK");
+    }
+}
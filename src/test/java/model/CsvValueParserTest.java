@@ -0,0 +1,88 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for CsvValueParser class functionality
+ */
+public class CsvValueParserTest {
+
+    @Test
+    @DisplayName("Test date layouts parse like DateTimeFormatter")
+    public void testDateLayouts() {
+        LocalDate[] dates = {
+            LocalDate.of(2023, 1, 5), LocalDate.of(2024, 2, 29), LocalDate.of(1999, 12, 31), LocalDate.of(2023, 10, 12)
+        };
+        for (CsvValueParser.DateLayout layout : CsvValueParser.DateLayout.values()) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(layout.toString());
+            for (LocalDate date : dates) {
+                assertEquals(date, layout.parse(formatter.format(date)), "Layout " + layout + " should read its own dates");
+            }
+        }
+
+        CsvValueParser.DateLayout iso = CsvValueParser.DateLayout.ISO;
+        assertEquals(LocalDate.of(2023, 2, 28), iso.parse("2023-02-30"), "A day past the month end should be moved back");
+        assertNull(iso.parse("2023-02-32"), "Day 32 should not fit");
+        assertNull(iso.parse("2023-13-01"), "Month 13 should not fit");
+        assertNull(iso.parse("2023-1-05"), "Months should have two digits");
+        assertNull(iso.parse("2023/01/05"), "Separators should match the layout");
+        assertNull(CsvValueParser.DateLayout.MONTH_NAME.parse("Jan 05 2023"), "Text layouts should report a mismatch without throwing");
+    }
+
+    @Test
+    @DisplayName("Test date layout is learned from the sample")
+    public void testInferDate() {
+        CsvValueParser ambiguous = CsvValueParser.infer(Arrays.asList("01/02/2023", "03/04/2023"), Collections.emptyList());
+        assertEquals(CsvValueParser.DateLayout.MONTH_FIRST, ambiguous.getDateLayout(), "Ambiguous days should read month first");
+
+        CsvValueParser dayFirst = CsvValueParser.infer(Arrays.asList("01/02/2023", "25/02/2023"), Collections.emptyList());
+        assertEquals(CsvValueParser.DateLayout.DAY_FIRST, dayFirst.getDateLayout(), "A day above 12 should lock day first");
+        assertEquals(LocalDate.of(2023, 4, 3), dayFirst.parseDate(" 03/04/2023 "), "Later rows should use the learned layout");
+        assertEquals(LocalDate.of(2023, 1, 5), dayFirst.parseDate("2023-01-05"), "A mismatching row should fall back to the other layouts");
+
+        DateTimeParseException error = assertThrows(DateTimeParseException.class, () -> dayFirst.parseDate("not a date"));
+        assertTrue(error.getMessage().startsWith("Cannot parse date: not a date"), "The error should name the value");
+    }
+
+    @Test
+    @DisplayName("Test amounts with separators, signs and currencies")
+    public void testParseAmount() {
+        CsvValueParser point = new CsvValueParser(CsvValueParser.DateLayout.ISO, '.');
+        assertEquals(123450, point.parseAmount("1,234.50"), "Comma should group thousands");
+        assertEquals(-1250, point.parseAmount("(12.50)"), "Parentheses should mark a negative amount");
+        assertEquals(-1250, point.parseAmount("12.50-"), "A trailing minus should mark a negative amount");
+        assertEquals(1250, point.parseAmount("12.50 €"), "A currency suffix should be ignored");
+        assertEquals(-100000, point.parseAmount("-USD 1,000"), "A currency code prefix should be ignored");
+        assertEquals(123456789, point.parseAmount("1'234'567.89"), "Apostrophes should group thousands");
+        assertEquals(1250, point.parseAmount("12,50"), "A decimal comma should still be read when it does not fit");
+        assertEquals(100000, point.parseAmount("1e3"), "Exponents should fall back to the old rules");
+        assertEquals(1235, point.parseAmount("12.345"), "More than two decimals should be rounded as before");
+
+        CsvValueParser comma = new CsvValueParser(CsvValueParser.DateLayout.ISO, ',');
+        assertEquals(-123450, comma.parseAmount("-1.234,50 元"), "Point should group thousands with a decimal comma");
+        assertEquals(1234, comma.parseAmount("12,34"), "Comma should be the decimal separator");
+
+        NumberFormatException error = assertThrows(NumberFormatException.class, () -> point.parseAmount("abc"));
+        assertTrue(error.getMessage().startsWith("Cannot parse amount: 'abc'"), "The error should name the value");
+        assertThrows(NumberFormatException.class, () -> point.parseAmount("(12.50"), "Unbalanced parentheses should be rejected");
+    }
+
+    @Test
+    @DisplayName("Test decimal separator is learned from the sample")
+    public void testInferDecimalSeparator() {
+        assertEquals('.', CsvValueParser.infer(Collections.emptyList(), Arrays.asList("1,234.50", "1,000")).getDecimalSeparator(),
+            "Comma thousands separators should keep the decimal point");
+        assertEquals(',', CsvValueParser.infer(Collections.emptyList(), Arrays.asList("1.234,50", "12,00")).getDecimalSeparator(),
+            "Comma decimals should be detected");
+        assertEquals('.', CsvValueParser.infer(Collections.emptyList(), Collections.emptyList()).getDecimalSeparator(),
+            "An empty sample should default to the decimal point");
+    }
+}
@@ -87,6 +87,14 @@ public class CurrencyManagerTest {
         assertEquals("€1,234.56", formattedEUR, "EUR amount formatting should be correct");
     }
     
+    @Test
+    @DisplayName("Test formatting rounds amounts halfway between cents to even")
+    public void testFormatRoundsHalfEven() {
+        assertEquals("$0.12", currencyManager.format(0.125, CurrencyManager.USD), "0.125 should round to the even cent");
+        assertEquals("$0.38", currencyManager.format(0.375, CurrencyManager.USD), "0.375 should round to the even cent");
+        assertEquals("$1.00", currencyManager.format(1.005, CurrencyManager.USD), "The exact value of the double should be rounded");
+    }
+    
     @Test
     @DisplayName("Test getting currency symbols")
     public void testGetCurrencySymbol() {
@@ -137,4 +145,15 @@ public class CurrencyManagerTest {
         assertEquals(expectedUsdToCny, currencyManager.getExchangeRate(CurrencyManager.USD, CurrencyManager.CNY), 
                     0.0001, "USD to CNY exchange rate should be the reciprocal of CNY to USD rate");
     }
+    
+    @Test
+    @DisplayName("Test converting and formatting amounts in cents")
+    public void testCents() {
+        assertEquals(13810, currencyManager.convertCents(100000, CurrencyManager.CNY, CurrencyManager.USD),
+                    "CNY to USD conversion in cents should round to the cent");
+        assertEquals(123456, currencyManager.convertCents(123456, CurrencyManager.EUR, CurrencyManager.EUR),
+                    "Converting between the same currency should return the original cents");
+        assertEquals("€-1,234.56", currencyManager.formatCents(-123456, CurrencyManager.EUR),
+                    "Negative cents should be formatted like the double formatter");
+    }
 } 
\ No newline at end of file
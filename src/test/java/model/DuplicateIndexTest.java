@@ -0,0 +1,139 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tests for DuplicateIndex class functionality
+ */
+public class DuplicateIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Imports look up the current user; keep users.txt out of the working directory
+        UserManager.setDataFileForTesting(tempDir.resolve("users.txt").toFile());
+    }
+
+    private TransactionStore newStore() {
+        return new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+    }
+
+    private static Transaction coffee(String userId) {
+        return new Transaction(userId, LocalDate.of(2023, 3, 1), "Coffee", "Food", 4.50);
+    }
+
+    private static Consumer<List<Transaction>> appendTo(TransactionStore store) {
+        return batch -> {
+            try {
+                store.appendAll(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Test fingerprints ignore case and punctuation of the description")
+    public void testFingerprint() {
+        LocalDate day = LocalDate.of(2023, 3, 1);
+        long fingerprint = DuplicateIndex.fingerprint(new Transaction("alice", day, "STARBUCKS #123", "Food", 4.50));
+
+        assertEquals(fingerprint, DuplicateIndex.fingerprint(new Transaction("alice", day, "Starbucks 123", "Dining", 4.50)),
+            "Descriptions that differ only in case and punctuation should match");
+        assertNotEquals(fingerprint, DuplicateIndex.fingerprint(new Transaction("alice", day.plusDays(1), "Starbucks 123", "Food", 4.50)),
+            "A different date should not match");
+        assertNotEquals(fingerprint, DuplicateIndex.fingerprint(new Transaction("alice", day, "Starbucks 123", "Food", 4.51)),
+            "A different amount should not match");
+    }
+
+    @Test
+    @DisplayName("Test counts follow saved rows and survive a restart")
+    public void testCountsAndPersistence() throws IOException {
+        TransactionStore store = newStore();
+        DuplicateIndex index = new DuplicateIndex(store);
+        store.addAppendListener(index);
+        store.append(coffee("alice"));
+        assertEquals(1, index.count(coffee("alice")), "The first lookup should build the index from the store");
+        assertEquals(0, index.count(coffee("bob")), "Rows should be counted per user");
+
+        store.append(coffee("alice"));
+        store.append(coffee(""));
+        assertEquals(3, index.count(coffee("alice")), "Saved rows and legacy rows should be counted");
+        index.save();
+        store.close();
+
+        TransactionStore reopened = newStore();
+        DuplicateIndex loaded = new DuplicateIndex(reopened);
+        assertEquals(3, loaded.count(coffee("alice")), "The persisted index should be read back");
+
+        reopened.append(coffee("alice"));
+        assertEquals(4, loaded.count(coffee("alice")), "A stale index should be rebuilt from the store");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test an import skips or counts only the rows already in the ledger")
+    public void testImportFilter() throws IOException {
+        TransactionStore store = newStore();
+        DuplicateIndex index = new DuplicateIndex(store);
+        store.addAppendListener(index);
+        store.appendAll(Arrays.asList(coffee("alice"), coffee("alice")));
+
+        Transaction lunch = new Transaction("alice", LocalDate.of(2023, 3, 1), "Lunch", "Food", 12.00);
+        List<Transaction> statement = Arrays.asList(coffee("alice"), lunch, coffee("alice"), coffee("alice"));
+
+        List<Transaction> committed = new ArrayList<>();
+        DuplicateIndex.ImportFilter skipping = index.newImportFilter(true);
+        skipping.commit(statement, batch -> {
+            committed.addAll(batch);
+            appendTo(store).accept(batch);
+        });
+        assertEquals(2, skipping.getDuplicateCount(), "Both coffees already saved should be duplicates");
+        assertEquals(Arrays.asList(lunch, statement.get(3)), committed, "The third coffee and the lunch should be new");
+
+        DuplicateIndex.ImportFilter flagging = index.newImportFilter(false);
+        committed.clear();
+        flagging.commit(statement, committed::addAll);
+        assertEquals(4, flagging.getDuplicateCount(), "The second import should find every row");
+        assertEquals(4, committed.size(), "Flagged duplicates should still be committed");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test importing the same statement twice adds its rows once")
+    public void testReimport() throws IOException, TransactionManager.ImportException {
+        File csv = tempDir.resolve("statement.csv").toFile();
+        Files.write(csv.toPath(), ("Date,Description,Category,Amount\n"
+            + "2023-03-01,Coffee,Food,4.50\n2023-03-01,Coffee,Food,4.50\n2023-03-02,Rent,Housing,1500.00\n")
+            .getBytes(StandardCharsets.UTF_8));
+        TransactionStore store = newStore();
+        DuplicateIndex index = new DuplicateIndex(store);
+        store.addAppendListener(index);
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            int duplicates = TransactionManager.importFromCSV(csv.getPath(),
+                new ImportOptions().setParallel(parallel).setDuplicateIndex(index), appendTo(store));
+            assertEquals(parallel ? 3 : 0, duplicates, "Only the second import should find duplicates");
+            assertEquals(3, store.readAll().size(), "The statement's rows should be saved once");
+        }
+        store.close();
+    }
+}
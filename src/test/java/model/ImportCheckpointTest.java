@@ -0,0 +1,214 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for ImportCheckpoint class functionality
+ */
+public class ImportCheckpointTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Imports look up the current user; keep users.txt out of the working directory
+        UserManager.setDataFileForTesting(tempDir.resolve("users.txt").toFile());
+    }
+
+    private File writeCsv(String name, int rows) throws IOException {
+        StringBuilder csv = new StringBuilder("Date,Description,Category,Amount\n");
+        for (int i = 1; i <= rows; i++) {
+            if (i % 500 == 0) {
+                csv.append("not a date,Broken,Other,1.00\n");
+            } else {
+                csv.append(String.format("2023-%02d-%02d,Row %d,Food,%d.25\n", i % 12 + 1, i % 28 + 1, i, i));
+            }
+        }
+        File file = tempDir.resolve(name).toFile();
+        Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static ImportCheckpoint.Fingerprint fingerprint(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return ImportCheckpoint.Fingerprint.of(channel);
+        }
+    }
+
+    private static ImportOptions journaled(File base) {
+        return new ImportOptions().setJournalBase(base);
+    }
+
+    private static List<String> descriptions(List<Transaction> rows) {
+        List<String> descriptions = new ArrayList<>();
+        for (Transaction row : rows) {
+            descriptions.add(row.getDescription());
+        }
+        return descriptions;
+    }
+
+    @Test
+    @DisplayName("Test a checkpoint is saved, read back and matched to its file and user")
+    public void testSaveAndMatch() throws IOException {
+        File csv = writeCsv("export.csv", 100);
+        File journal = tempDir.resolve("transactions.dat.import").toFile();
+        assertNull(ImportCheckpoint.load(journal), "A missing journal should read as no checkpoint");
+
+        long prefixCrc;
+        try (ImportCheckpoint.PrefixCrc prefix = new ImportCheckpoint.PrefixCrc(csv)) {
+            prefixCrc = prefix.update(120);
+        }
+        new ImportCheckpoint(csv.getPath(), fingerprint(csv), "alice", 120, prefixCrc, 3, 2, 0).save(journal);
+        ImportCheckpoint loaded = ImportCheckpoint.load(journal);
+
+        assertNotNull(loaded, "The checkpoint should be read back");
+        assertEquals(120, loaded.getOffset(), "The offset should round-trip");
+        assertEquals(prefixCrc, loaded.getPrefixCrc(), "The checksum of the committed bytes should round-trip");
+        assertEquals(3, loaded.getLineCount(), "The line count should round-trip");
+        assertTrue(loaded.matches(fingerprint(csv), "alice"), "The same file and user should match");
+        try (ImportCheckpoint.PrefixCrc prefix = new ImportCheckpoint.PrefixCrc(csv)) {
+            assertTrue(loaded.matches(fingerprint(csv), "alice", prefix), "Unchanged committed bytes should match");
+        }
+        assertFalse(loaded.matches(fingerprint(csv), "bob"), "Another user should not resume the import");
+
+        File moved = tempDir.resolve("moved.csv").toFile();
+        Files.copy(csv.toPath(), moved.toPath());
+        assertTrue(loaded.matches(fingerprint(moved), "alice"), "A copy of the file should still match");
+
+        Files.write(csv.toPath(), "2024-01-01,Extra,Food,1.00\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertFalse(loaded.matches(fingerprint(csv), "alice"), "An edited file should start over");
+    }
+
+    @Test
+    @DisplayName("Test an interrupted import resumes after the last committed row")
+    public void testResume() throws IOException {
+        File csv = writeCsv("export.csv", 3600);
+        File base = tempDir.resolve("transactions.dat").toFile();
+        File journal = ImportCheckpoint.journalFor(base, fingerprint(csv), "");
+        File snapshot = tempDir.resolve("snapshot.import").toFile();
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            // Copy the journal as it is when the third batch arrives, as if the application stopped there
+            List<Transaction> full = new ArrayList<>();
+            int[] batches = {0};
+            TransactionManager.ImportException report = assertThrows(TransactionManager.ImportException.class,
+                () -> TransactionManager.importFromCSV(csv.getPath(), journaled(base).setParallel(parallel), batch -> {
+                    if (++batches[0] == 3) {
+                        try {
+                            Files.copy(journal.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    full.addAll(batch);
+                }));
+            assertEquals(7, report.getErrorLog().getErrorCount(), "Every broken row should be reported");
+            TransactionManager.ImportException firstReport = report;
+            assertFalse(journal.exists(), "A finished import should delete its journal");
+
+            ImportCheckpoint checkpoint = ImportCheckpoint.load(snapshot);
+            assertEquals(2 * CsvImporter.BATCH_SIZE, checkpoint.getSuccessCount(), "Two batches should be journaled");
+            assertEquals(4, checkpoint.getErrorCount(), "Rows rejected before the checkpoint should be counted");
+
+            Files.copy(snapshot.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            List<Transaction> resumed = new ArrayList<>();
+            report = assertThrows(TransactionManager.ImportException.class,
+                () -> TransactionManager.importFromCSV(csv.getPath(), journaled(base).setParallel(parallel), resumed::addAll));
+
+            assertEquals(full.size() - checkpoint.getSuccessCount(), resumed.size(),
+                "Only the rows after the checkpoint should be imported again");
+            assertEquals(descriptions(full.subList(checkpoint.getSuccessCount(), full.size())), descriptions(resumed),
+                "The resumed rows should continue in file order");
+            assertEquals(firstReport.getErrorLog().getExamples().subList(4, 7).toString(),
+                report.getErrorLog().getExamples().toString(), "Line numbers should continue from the checkpoint");
+            assertTrue(report.getWarnings().get(0).startsWith("Resumed an interrupted import"), "The report should mention the resume");
+            assertFalse(journal.exists(), "The resumed import should delete the journal when it finishes");
+        }
+    }
+
+    @Test
+    @DisplayName("Test an import starts over when the file changed before its checkpoint")
+    public void testEditedBeforeCheckpoint() throws IOException {
+        File csv = writeCsv("export.csv", 10000);
+        File base = tempDir.resolve("transactions.dat").toFile();
+        ImportCheckpoint.Fingerprint original = fingerprint(csv);
+        File journal = ImportCheckpoint.journalFor(base, original, "");
+        File snapshot = tempDir.resolve("snapshot.import").toFile();
+        int[] batches = {0};
+        assertThrows(TransactionManager.ImportException.class,
+            () -> TransactionManager.importFromCSV(csv.getPath(), journaled(base), batch -> {
+                if (++batches[0] == 4) {
+                    try {
+                        Files.copy(journal.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        ImportCheckpoint checkpoint = ImportCheckpoint.load(snapshot);
+
+        // Correct an amount between the fingerprinted ends, before the checkpoint, keeping the size
+        String text = new String(Files.readAllBytes(csv.toPath()), StandardCharsets.UTF_8);
+        int row = text.indexOf(",Row 2501,Food,2501.25\n");
+        assertTrue(row > 64 * 1024 && row < checkpoint.getOffset(), "The edited row should be committed and not fingerprinted");
+        Files.write(csv.toPath(), text.replace(",Row 2501,Food,2501.25\n", ",Row 2501,Food,2501.75\n")
+            .getBytes(StandardCharsets.UTF_8));
+        assertEquals(original, fingerprint(csv), "The edit should not change the fingerprint");
+
+        Files.copy(snapshot.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        List<Transaction> imported = new ArrayList<>();
+        TransactionManager.ImportException report = assertThrows(TransactionManager.ImportException.class,
+            () -> TransactionManager.importFromCSV(csv.getPath(), journaled(base), imported::addAll));
+
+        assertEquals(10000 - 20, imported.size(), "The whole file should be imported again");
+        assertTrue(report.getWarnings().stream().noneMatch(warning -> warning.startsWith("Resumed")),
+            "The import should not resume at the stale checkpoint");
+    }
+
+    @Test
+    @DisplayName("Test each file and user has its own journal and a cancelled import puts back the one it started from")
+    public void testJournalPerFile() throws IOException {
+        File csv = writeCsv("export.csv", 3000);
+        File other = writeCsv("other.csv", 10);
+        File base = tempDir.resolve("transactions.dat").toFile();
+        File journal = ImportCheckpoint.journalFor(base, fingerprint(csv), "");
+        File bobJournal = ImportCheckpoint.journalFor(base, fingerprint(csv), "bob");
+        File otherJournal = ImportCheckpoint.journalFor(base, fingerprint(other), "");
+        assertNotEquals(journal, otherJournal, "Different files should have different journals");
+        assertNotEquals(journal, bobJournal, "Different users should have different journals");
+        new ImportCheckpoint(other.getPath(), fingerprint(other), "", 40, 0, 1, 1, 0).save(otherJournal);
+        new ImportCheckpoint(csv.getPath(), fingerprint(csv), "bob", 40, 0, 1, 1, 0).save(bobJournal);
+        // A checkpoint whose committed bytes no longer match, so the import starts over
+        new ImportCheckpoint(csv.getPath(), fingerprint(csv), "", 40, 0, 1, 1, 0).save(journal);
+
+        int[] batches = {0};
+        assertThrows(TransactionManager.ImportCancelledException.class,
+            () -> TransactionManager.importFromCSV(csv.getPath(),
+                journaled(base).setCancelRequested(() -> batches[0] >= 2), batch -> batches[0]++));
+        ImportCheckpoint restored = ImportCheckpoint.load(journal);
+        assertNotNull(restored, "The earlier checkpoint should be kept");
+        assertEquals(0, restored.getPrefixCrc(), "The checkpoint the import started from should be put back");
+
+        assertThrows(TransactionManager.ImportException.class,
+            () -> TransactionManager.importFromCSV(csv.getPath(), journaled(base), batch -> { }));
+        assertFalse(journal.exists(), "A finished import should delete its own journal");
+        assertNotNull(ImportCheckpoint.load(bobJournal), "Another user's journal of the same file should be kept");
+        assertNotNull(ImportCheckpoint.load(otherJournal), "The journal of another file should be kept");
+    }
+}
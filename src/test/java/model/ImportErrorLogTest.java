@@ -0,0 +1,95 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for ImportErrorLog class functionality
+ */
+public class ImportErrorLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Test errors are counted per class and only the first ones are kept")
+    public void testCountsAndExamples() throws IOException {
+        try (ImportErrorLog log = new ImportErrorLog(2, null)) {
+            log.add(3, new DateTimeParseException("Cannot parse date: x", "x", 0));
+            log.add(4, new NumberFormatException("Cannot parse amount: 'y'"));
+            log.add(5, new NumberFormatException("Cannot parse amount: 'z'"));
+            log.add(6, new IllegalArgumentException("Line has insufficient columns"));
+
+            assertEquals(4, log.getErrorCount(), "Every error should be counted");
+            assertEquals(Integer.valueOf(1), log.getCountsByClass().get("Invalid date"), "Date errors should be counted");
+            assertEquals(Integer.valueOf(2), log.getCountsByClass().get("Invalid amount"), "Amount errors should be counted");
+            assertEquals(Integer.valueOf(1), log.getCountsByClass().get("Missing columns"), "Column errors should be counted");
+
+            List<ImportErrorLog.Entry> examples = log.getExamples();
+            assertEquals(2, examples.size(), "Only the configured number of errors should be kept");
+            assertEquals("Line 3: Cannot parse date: x", examples.get(0).toString(), "Examples should keep file order");
+            assertNull(log.getLogFile(), "No file should be written without a log path");
+            assertEquals(1, log.readLog(1, 10).size(), "Reading without a file should page through the examples");
+        }
+    }
+
+    @Test
+    @DisplayName("Test the side file holds every error and can be read page by page")
+    public void testLogFilePaging() throws IOException {
+        File logFile;
+        try (ImportErrorLog log = new ImportErrorLog(10, tempDir.resolve("import-errors.log").toFile())) {
+            for (int i = 1; i <= 2500; i++) {
+                log.add(i, new NumberFormatException("bad amount " + i));
+            }
+            log.add(2501, new IllegalArgumentException("first\nsecond"));
+
+            logFile = log.getLogFile();
+            assertEquals(tempDir.resolve("import-errors.log").toFile(), logFile, "The side file should be written at the log path");
+            assertEquals(10, log.getExamples().size(), "The examples should stay bounded");
+
+            List<String> page = log.readLog(0, 100);
+            assertEquals(100, page.size(), "A full page should be read");
+            assertEquals("Line 1: bad amount 1", page.get(0), "The first page should start at the first error");
+
+            page = log.readLog(1995, 10);
+            assertEquals("Line 1996: bad amount 1996", page.get(0), "A page should start at the requested error");
+            assertEquals("Line 2005: bad amount 2005", page.get(9), "A page may span an index entry");
+
+            page = log.readLog(2490, 100);
+            assertEquals(11, page.size(), "The last page should stop at the last error");
+            assertEquals("Line 2501: first second", page.get(10), "A multi-line message should stay on one line");
+        }
+        assertEquals(2501, Files.readAllLines(logFile.toPath()).size(), "The closed file should hold every error");
+    }
+
+    @Test
+    @DisplayName("Test the side file is only written on errors and keeps one previous log")
+    public void testLogRotation() throws IOException {
+        File logPath = tempDir.resolve("import-errors.log").toFile();
+        File previous = tempDir.resolve("import-errors.log.1").toFile();
+        for (int run = 1; run <= 3; run++) {
+            try (ImportErrorLog log = new ImportErrorLog(10, logPath)) {
+                log.add(run, new NumberFormatException("run " + run));
+            }
+        }
+        try (ImportErrorLog log = new ImportErrorLog(10, logPath)) {
+            assertNull(log.getLogFile(), "An import without errors should not write a log");
+        }
+
+        assertEquals(Collections.singletonList("Line 3: run 3"), Files.readAllLines(logPath.toPath()),
+            "The side file should hold the last import with errors");
+        assertEquals(Collections.singletonList("Line 2: run 2"), Files.readAllLines(previous.toPath()),
+            "The log before it should be kept");
+        assertEquals(2, tempDir.toFile().list().length, "Older logs should be dropped");
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for ImportPreview class functionality
+ */
+public class ImportPreviewTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Imports look up the current user; keep users.txt out of the working directory
+        UserManager.setDataFileForTesting(tempDir.resolve("users.txt").toFile());
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<Long> offsets(ImportPreview preview) {
+        List<Long> offsets = new ArrayList<>();
+        for (ImportPreview.Row row : preview.getRows()) {
+            offsets.add(row.getOffset());
+        }
+        return offsets;
+    }
+
+    @Test
+    @DisplayName("Test a preview shows the format, the first rows and a predicted error rate")
+    public void testPreview() throws IOException, TransactionManager.ImportException {
+        StringBuilder csv = new StringBuilder("Posted Date,Merchant Description,Type,Amount\n");
+        for (int i = 1; i <= 20000; i++) {
+            String amount = i % 10 == 0 ? "n/a" : i % 1000 + ".50";
+            csv.append(String.format("2023-%02d-%02d,Shop %d,Food,%s\n", i % 12 + 1, i % 28 + 1, i, amount));
+        }
+        File file = write("statement.csv", csv.toString());
+
+        ImportPreview preview = TransactionManager.previewCSV(file.getPath());
+
+        assertEquals(Arrays.asList("Posted Date", "Merchant Description", "Type", "Amount"), preview.getColumns(),
+            "The detected columns should be named by their headers");
+        assertEquals(',', preview.getDelimiter(), "The delimiter should be detected");
+        assertTrue(preview.hasHeaders(), "The header should be detected");
+
+        ImportPreview.Row first = preview.getRows().get(0);
+        assertEquals(2, first.getLineNumber(), "The first data row should be on line 2");
+        assertEquals("Shop 1", first.getTransaction().getDescription(), "The first row should be parsed");
+        assertEquals(150, first.getTransaction().getAmountCents(), "The amount should be parsed");
+        assertEquals("Invalid amount", preview.getRows().get(9).getErrorClass(), "The tenth row should be rejected");
+
+        List<ImportPreview.Row> sampled = preview.getRows().subList(TransactionManager.PREVIEW_HEAD_ROWS, preview.getRows().size());
+        assertTrue(sampled.size() >= TransactionManager.PREVIEW_SAMPLE_ROWS - 1, "Rows should be read at random offsets");
+        assertTrue(sampled.get(sampled.size() - 1).getOffset() > file.length() * 9 / 10, "The sample should reach the end of the file");
+        assertEquals(0.1, preview.getPredictedErrorRate(), 0.05, "The error rate should be close to one in ten");
+        assertEquals(20000, preview.getEstimatedRows(), 1000, "The row count should be estimated from the sampled rows");
+
+        assertEquals(offsets(preview), offsets(TransactionManager.previewCSV(file.getPath())),
+            "Previewing the same file again should read the same rows");
+    }
+
+    @Test
+    @DisplayName("Test rows read inside a quoted line break are left out of the sample")
+    public void testQuotedLineBreaks() throws IOException, TransactionManager.ImportException {
+        StringBuilder csv = new StringBuilder("Date,Description,Category,Amount\n");
+        for (int i = 1; i <= 5000; i++) {
+            csv.append(String.format("2023-01-%02d,\"Transfer %d\nref,%d\",Other,%d.00\n", i % 28 + 1, i, i, i));
+        }
+        File file = write("multiline.csv", csv.toString());
+
+        ImportPreview preview = TransactionManager.previewCSV(file.getPath());
+
+        assertEquals(0, preview.getErrorCount(), "Misaligned rows should not be predicted as errors");
+        for (ImportPreview.Row row : preview.getRows()) {
+            assertTrue(row.getTransaction().getDescription().startsWith("Transfer"), "Every kept row should start at a record");
+        }
+    }
+
+    @Test
+    @DisplayName("Test a small file is previewed without repeating rows")
+    public void testSmallFile() throws IOException, TransactionManager.ImportException {
+        File file = write("small.csv", "2023-01-01,Coffee,Food,4.50\n2023-01-02,Lunch,Food,12.00\n"
+            + "2023-01-03,Rent,Housing,1500.00\n2023-01-04,Bus,Transport,2.00\n");
+
+        ImportPreview preview = TransactionManager.previewCSV(file.getPath(), 2, 50);
+
+        assertFalse(preview.hasHeaders(), "The file has no header");
+        assertEquals(Arrays.asList("Column 1", "Column 2", "Column 3", "Column 4"), preview.getColumns(),
+            "Columns without a header should be named by position");
+        assertEquals(4, preview.getRows().size(), "Each row should be previewed once");
+        assertEquals(0.0, preview.getPredictedErrorRate(), "Every row should parse");
+    }
+}
@@ -0,0 +1,120 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for LedgerBackup class functionality
+ */
+public class LedgerBackupTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Transaction> rows(String userId, int count, int start) {
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            rows.add(new Transaction(userId, LocalDate.of(2020, 1, 1).plusDays(i % 1500), "Row " + i, i % 2 == 0 ? "Food" : "Rent", 10 + i));
+        }
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Test a full backup and its incrementals restore the same ledger and users")
+    public void testIncrementalRestore() throws IOException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        List<User> users = Arrays.asList(new User("alice", "hash", "alice@example.com"), new User("bob", "hash", "bob@example.com"));
+        store.appendAll(rows("alice", 20000, 0));
+        store.appendAll(rows("", 100, 0));
+
+        File full = tempDir.resolve("full.bak").toFile();
+        LedgerBackup.Result first = LedgerBackup.backup(store, users, full, true, null);
+        assertEquals(20100, first.getTransactions(), "The full backup should hold every record");
+        assertEquals(first.getEnd(), LedgerBackup.readEndMark(full), "The end mark should be readable from the file");
+
+        store.appendAll(rows("bob", 300, 20000));
+        File incremental = tempDir.resolve("incremental-1.bak").toFile();
+        LedgerBackup.Result second = LedgerBackup.backup(store, users, incremental, true, LedgerBackup.readEndMark(full));
+        assertEquals(300, second.getTransactions(), "The incremental backup should hold only the new records");
+        assertTrue(incremental.length() < full.length() / 10, "The incremental backup should be small");
+
+        File empty = tempDir.resolve("incremental-2.bak").toFile();
+        assertEquals(0, LedgerBackup.backup(store, users, empty, false, second.getEnd()).getTransactions(),
+            "An incremental backup without new records should be empty");
+
+        TransactionStore restored = new TransactionStore(tempDir.resolve("restored.dat").toFile());
+        LedgerBackup.Result result = LedgerBackup.restore(Arrays.asList(full, incremental, empty), restored);
+        assertEquals(20400, result.getTransactions(), "Every record should be restored");
+        assertEquals(2, result.getUsers().size(), "The users should be restored");
+        assertEquals(store.getEndPosition(), restored.getEndPosition(), "The restored store should have the same layout");
+
+        List<Transaction> expected = store.readAll();
+        List<Transaction> actual = restored.readAll();
+        assertEquals(expected.size(), actual.size(), "The restored ledger should have the same size");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUserId(), actual.get(i).getUserId(), "Owners should match");
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate(), "Dates should match");
+            assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription(), "Descriptions should match");
+            assertEquals(expected.get(i).getAmountCents(), actual.get(i).getAmountCents(), "Amounts should match");
+        }
+        assertEquals(300, restored.read("bob").size(), "The restored index should find each user's records");
+
+        assertThrows(IOException.class, () -> LedgerBackup.restore(Collections.singletonList(incremental), restored),
+            "An incremental backup should not apply out of order");
+        store.close();
+        restored.close();
+    }
+
+    @Test
+    @DisplayName("Test an incremental backup is refused after records before it moved")
+    public void testChangedStore() throws IOException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        TransactionStore.Savepoint savepoint = store.savepoint();
+        store.appendAll(rows("alice", 50, 0), savepoint);
+        store.appendAll(rows("bob", 50, 50));
+        File full = tempDir.resolve("full.bak").toFile();
+        LedgerBackup.backup(store, Collections.emptyList(), full, false, null);
+
+        store.rollback(savepoint);
+        store.appendAll(rows("bob", 50, 100));
+        assertThrows(IOException.class, () -> LedgerBackup.backup(store, Collections.emptyList(),
+            tempDir.resolve("incremental.bak").toFile(), false, LedgerBackup.readEndMark(full)),
+            "A rolled back import should require a new full backup");
+        assertFalse(tempDir.resolve("incremental.bak").toFile().exists(), "No backup file should be left");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test a damaged backup leaves the restored store unchanged")
+    public void testDamagedRestore() throws IOException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        store.appendAll(rows("alice", 5000, 0));
+        File full = tempDir.resolve("full.bak").toFile();
+        LedgerBackup.backup(store, Collections.emptyList(), full, false, null);
+        try (RandomAccessFile file = new RandomAccessFile(full, "rw")) {
+            file.seek(file.length() - 200);
+            int b = file.read();
+            file.seek(file.length() - 200);
+            file.write(b ^ 0x01);
+        }
+
+        TransactionStore restored = new TransactionStore(tempDir.resolve("restored.dat").toFile());
+        assertThrows(IOException.class, () -> LedgerBackup.restore(Collections.singletonList(full), restored),
+            "The damaged block should be detected");
+        assertTrue(restored.isEmpty(), "The records restored before the damage should be rolled back");
+        store.close();
+        restored.close();
+    }
+}
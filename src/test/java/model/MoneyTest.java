@@ -0,0 +1,60 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Money class functionality
+ */
+public class MoneyTest {
+
+    @Test
+    @DisplayName("Test parsing amounts into cents")
+    public void testParse() {
+        assertEquals(123456, Money.parse("1234.56"), "Two decimals should be parsed exactly");
+        assertEquals(-50, Money.parse("-0.5"), "One decimal and a sign should be parsed");
+        assertEquals(700, Money.parse("7"), "Whole amounts should be parsed");
+        assertEquals(1235, Money.parse("12.345"), "Extra decimals should be rounded half up");
+        assertEquals(150000, Money.parse("1.5e3"), "Exponents should fall back to Double.parseDouble");
+        assertThrows(NumberFormatException.class, () -> Money.parse("12,5"), "Invalid amounts should be rejected");
+        assertThrows(NumberFormatException.class, () -> Money.parse("NaN"), "Non-finite amounts should be rejected");
+    }
+
+    @Test
+    @DisplayName("Test formatting cents with and without grouping")
+    public void testFormat() {
+        assertEquals("1234.50", Money.format(123450), "Plain format should have two decimals");
+        assertEquals("-0.05", Money.format(-5), "Small negative amounts should keep their sign");
+        assertEquals("1,234,567.89", Money.formatGrouped(123456789), "Thousands should be grouped");
+        assertEquals("-999.00", Money.formatGrouped(-99900), "Amounts below a thousand should not be grouped");
+    }
+
+    @Test
+    @DisplayName("Test sums in cents do not drift")
+    public void testExactSums() {
+        long cents = 0;
+        double amount = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            cents += Money.toCents(0.10);
+            amount += 0.10;
+        }
+
+        assertEquals(10_000_000, cents, "One million ten-cent amounts should sum exactly");
+        assertNotEquals(100_000.0, amount, "The same sum over doubles drifts");
+        assertEquals(1381, Money.multiply(10_000, 0.1381), "Multiplication should round to the cent");
+    }
+
+    @Test
+    @DisplayName("Test amounts halfway between cents round half up, away from zero")
+    public void testHalfUpRounding() {
+        assertEquals(101, Money.parse("1.005"), "1.005 should round up although its double is below it");
+        assertEquals(-101, Money.parse("-1.005"), "Negative ties should round away from zero");
+        assertEquals(13, Money.toCents(0.125), "0.125 should round up to 13 cents");
+        assertEquals(-13, Money.toCents(-0.125), "-0.125 should round to -13 cents, like 0.125");
+        assertEquals(101, Money.toCents(1.005), "The decimal a double prints as should be rounded");
+        assertEquals(-2, Money.multiply(-5, 0.3), "Negative products halfway between cents should round away from zero");
+        assertEquals(2, Money.multiply(5, 0.3), "Positive products halfway between cents should round up");
+        assertEquals(1234, Money.toCents(12.344999), "Amounts below the tie should round down");
+    }
+}
@@ -0,0 +1,149 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests for MonthlyRollup class functionality
+ */
+public class MonthlyRollupTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TransactionStore newStore() {
+        return new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+    }
+
+    @Test
+    @DisplayName("Test appends update sum, count, min and max of their cell")
+    public void testIncrementalUpdate() throws IOException {
+        TransactionStore store = newStore();
+        MonthlyRollup rollup = new MonthlyRollup(store);
+        store.addAppendListener(rollup);
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 5), "Lunch", "Food & Dining", 20.50));
+
+        assertEquals(20.50, rollup.getMonthSummary("alice", YearMonth.of(2023, 1)).getSum(), 0.001,
+            "The first query should build the rollup from the store");
+
+        store.appendAll(Arrays.asList(
+            new Transaction("alice", LocalDate.of(2023, 1, 20), "Dinner", "Food & Dining", 64.30),
+            new Transaction("alice", LocalDate.of(2023, 2, 1), "Rent", "Housing", 1500.00),
+            new Transaction("bob", LocalDate.of(2023, 1, 9), "Coffee", "Food & Dining", 4.50)
+        ));
+
+        MonthlyRollup.Summary food = rollup.getCategorySummaries("alice", YearMonth.of(2023, 1)).get("Food & Dining");
+        assertEquals(8480, food.getSumCents(), "Sum should include the appended row");
+        assertEquals(2, food.getCount(), "Count should include the appended row");
+        assertEquals(2050, food.getMinCents(), "Minimum should be kept");
+        assertEquals(6430, food.getMaxCents(), "Maximum should be updated");
+        assertEquals(1, rollup.getCategorySummaries("alice", YearMonth.of(2023, 2)).size(),
+            "Rows should be grouped by month");
+        assertEquals(0, rollup.getMonthSummary("alice", YearMonth.of(2023, 3)).getCount(),
+            "A month without rows should have an empty summary");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test legacy rows are included in every user's rollup")
+    public void testLegacyRows() throws IOException {
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("", LocalDate.of(2023, 1, 1), "Old row", "Other", 10.00),
+            new Transaction("alice", LocalDate.of(2023, 1, 2), "Gift", "Other", 15.00)
+        ));
+        MonthlyRollup rollup = new MonthlyRollup(store);
+
+        Map<String, Double> totals = rollup.getCategoryTotals("alice", YearMonth.of(2023, 1));
+
+        assertEquals(25.00, totals.get("Other"), 0.001, "Legacy and own rows should be merged");
+        assertTrue(rollup.hasTransactions("carol"), "Legacy rows should be visible to every user");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test the rollup is persisted and rebuilt when the ledger changed")
+    public void testPersistence() throws IOException {
+        TransactionStore store = newStore();
+        MonthlyRollup rollup = new MonthlyRollup(store);
+        store.addAppendListener(rollup);
+        rollup.getMonthSummary("alice", YearMonth.of(2023, 1));
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 5), "Lunch", "Food & Dining", 20.00));
+        rollup.save();
+        store.close();
+
+        File rollupFile = tempDir.resolve("transactions.dat.rollup").toFile();
+        assertTrue(rollupFile.exists(), "The rollup should be written next to the data file");
+
+        TransactionStore reopened = newStore();
+        assertEquals(2000, new MonthlyRollup(reopened).getMonthSummary("alice", YearMonth.of(2023, 1)).getSumCents(),
+            "The persisted rollup should be loaded");
+
+        // Appended without a listener, so the persisted rollup is stale
+        reopened.append(new Transaction("alice", LocalDate.of(2023, 1, 6), "Lunch", "Food & Dining", 5.00));
+        assertEquals(2500, new MonthlyRollup(reopened).getMonthSummary("alice", YearMonth.of(2023, 1)).getSumCents(),
+            "A stale rollup should be rebuilt from the store");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test month index matches java.time across leap years and negative epoch days")
+    public void testMonthIndex() {
+        for (LocalDate date = LocalDate.of(1960, 1, 1); date.isBefore(LocalDate.of(2101, 1, 1)); date = date.plusDays(1)) {
+            int expected = date.getYear() * 12 + date.getMonthValue() - 1;
+            assertEquals(expected, MonthlyRollup.monthIndex((int) date.toEpochDay()), "Month index for " + date);
+        }
+    }
+
+    @Test
+    @DisplayName("Test a rebuild does not hold the store's lock and includes rows saved meanwhile")
+    public void testRebuildOutsideLock() throws Exception {
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 5), "Lunch", "Food & Dining", 20.00));
+        boolean[] saved = new boolean[1];
+        MonthlyRollup rollup = new MonthlyRollup(store) {
+            private boolean started;
+
+            @Override
+            protected void add(Map<String, Map<Integer, Map<String, Summary>>> cells, Transaction transaction) {
+                if (!started) {
+                    // Save a row from another thread while the rebuild reads the ledger
+                    started = true;
+                    Thread writer = new Thread(() -> {
+                        try {
+                            store.append(new Transaction("alice", LocalDate.of(2023, 1, 6), "Dinner", "Food & Dining", 5.00));
+                            saved[0] = true;
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    writer.start();
+                    try {
+                        writer.join(5000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.add(cells, transaction);
+            }
+        };
+        store.addAppendListener(rollup);
+
+        MonthlyRollup.Summary summary = rollup.getMonthSummary("alice", YearMonth.of(2023, 1));
+
+        assertTrue(saved[0], "Saving should not wait for the rebuild");
+        assertEquals(2500, summary.getSumCents(), "The rebuild should include the row saved meanwhile");
+        assertEquals(2, summary.getCount(), "The row saved meanwhile should be counted once");
+        store.close();
+    }
+}
@@ -0,0 +1,98 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for NearDuplicateDetector class functionality
+ */
+public class NearDuplicateDetectorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2023, 5, 10);
+
+    private static Transaction row(String userId, int dayOffset, String description, double amount) {
+        return new Transaction(userId, DAY.plusDays(dayOffset), description, "Food", amount);
+    }
+
+    @Test
+    @DisplayName("Test description similarity of English and Chinese descriptions")
+    public void testSimilarity() {
+        double english = NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("Starbucks Shanghai"), NearDuplicateDetector.bigrams("STARBUCKS*SHANGHAI 021"));
+        double chinese = NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("星巴克咖啡"), NearDuplicateDetector.bigrams("支付宝-星巴克"));
+        double unrelated = NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("Starbucks"), NearDuplicateDetector.bigrams("Metro card"));
+        double prefixed = NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("支付宝-肯德基"), NearDuplicateDetector.bigrams("肯德基KFC"));
+        double sharedWord = NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("美团外卖"), NearDuplicateDetector.bigrams("美团单车"));
+
+        assertTrue(english > 0.8, "The same merchant in other punctuation should be very similar");
+        assertTrue(chinese >= NearDuplicateDetector.DEFAULT_MIN_SIMILARITY, "A shared Chinese merchant name should count");
+        assertTrue(unrelated < NearDuplicateDetector.DEFAULT_MIN_SIMILARITY, "Unrelated descriptions should not pair up");
+        assertTrue(prefixed >= NearDuplicateDetector.DEFAULT_MIN_SIMILARITY, "A merchant behind a payment app prefix should count");
+        assertTrue(sharedWord < NearDuplicateDetector.DEFAULT_MIN_SIMILARITY, "Merchants sharing only a brand word should not pair up");
+        assertEquals(1.0, NearDuplicateDetector.similarity(
+            NearDuplicateDetector.bigrams("Coffee"), NearDuplicateDetector.bigrams("coffee")), 0.001, "Case should not matter");
+    }
+
+    @Test
+    @DisplayName("Test pairs must be within the amount tolerance and date window")
+    public void testCandidates() {
+        Transaction card = row("alice", 0, "STARBUCKS SHANGHAI", 36.00);
+        Transaction alipay = row("alice", 1, "支付宝 Starbucks Shanghai", 36.00);
+        List<Transaction> ledger = Arrays.asList(
+            card,
+            alipay,
+            row("alice", 5, "Starbucks Shanghai", 36.00),       // outside the date window
+            row("alice", 0, "Starbucks Shanghai", 40.00),       // outside the amount tolerance
+            row("alice", 0, "Metro card top-up", 36.00),        // different description
+            row("bob", 0, "Starbucks Shanghai", 36.00)          // another user
+        );
+
+        List<NearDuplicateDetector.Candidate> candidates = new NearDuplicateDetector().findCandidates(ledger);
+
+        assertEquals(1, candidates.size(), "Only the card and Alipay rows should pair up");
+        assertSame(card, candidates.get(0).getFirst(), "The earlier transaction should come first");
+        assertSame(alipay, candidates.get(0).getSecond(), "The later transaction should come second");
+        assertEquals(1, candidates.get(0).getDayDifference(), "The day difference should be reported");
+
+        List<NearDuplicateDetector.Candidate> tolerant = new NearDuplicateDetector(0.2, 2, 0.3).findCandidates(ledger);
+        assertEquals(3, tolerant.size(), "A wider amount tolerance should also pair the 40.00 row with both rows in its window");
+    }
+
+    @Test
+    @DisplayName("Test only pairs with a newly added row are reported after an import")
+    public void testAddedOnly() {
+        List<Transaction> existing = Arrays.asList(row("alice", 0, "Lunch", 20.00), row("alice", 1, "Lunch", 20.00));
+        List<Transaction> added = Collections.singletonList(row("alice", 2, "lunch", 20.00));
+
+        List<NearDuplicateDetector.Candidate> candidates = new NearDuplicateDetector().findCandidates(existing, added);
+
+        assertEquals(2, candidates.size(), "The existing pair should be left out");
+        for (NearDuplicateDetector.Candidate candidate : candidates) {
+            assertSame(added.get(0), candidate.getSecond(), "Every pair should involve the added row");
+        }
+    }
+
+    @Test
+    @DisplayName("Test a daily repeated purchase only pairs within the date window")
+    public void testRepeatedAmounts() {
+        List<Transaction> ledger = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            ledger.add(row("alice", i, "Coffee", 4.50));
+        }
+
+        List<NearDuplicateDetector.Candidate> candidates = new NearDuplicateDetector().findCandidates(ledger);
+
+        assertEquals(2 * 20000 - 3, candidates.size(), "Each day should only pair with the next two days");
+    }
+}
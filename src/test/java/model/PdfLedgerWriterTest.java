@@ -0,0 +1,90 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests for PdfLedgerWriter class functionality
+ */
+public class PdfLedgerWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TransactionStore createStore() throws IOException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        List<Transaction> rows = new ArrayList<>();
+        // Three years of daily rows, appended newest first so date order differs from file order
+        for (int i = 3 * 365 - 1; i >= 0; i--) {
+            rows.add(new Transaction("alice", LocalDate.of(2020, 1, 1).plusDays(i), "Purchase " + i, "Food", 10));
+        }
+        rows.add(new Transaction("", LocalDate.of(2021, 6, 15), "Legacy row", "Other", 5));
+        rows.add(new Transaction("bob", LocalDate.of(2021, 6, 15), "Not alice", "Other", 7));
+        store.appendAll(rows);
+        return store;
+    }
+
+    @Test
+    @DisplayName("Test a range is streamed in date order with legacy rows merged in")
+    public void testStreamRange() throws IOException {
+        TransactionStore store = createStore();
+        List<Transaction> june;
+        try (Stream<Transaction> rows = store.streamRange("alice", true, LocalDate.of(2021, 6, 1), LocalDate.of(2021, 6, 30))) {
+            june = rows.collect(Collectors.toList());
+        }
+        assertEquals(31, june.size(), "June should have 30 of alice's rows and the legacy row");
+        for (int i = 1; i < june.size(); i++) {
+            assertFalse(june.get(i).getDate().isBefore(june.get(i - 1).getDate()), "Rows should be in date order");
+        }
+        assertTrue(june.stream().anyMatch(t -> t.getDescription().equals("Legacy row")), "The legacy row should be included");
+        assertTrue(june.stream().noneMatch(t -> t.getUserId().equals("bob")), "Other users' rows should be left out");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test a multi-year listing is written in chunks with monthly subtotals")
+    public void testMultiYearListing() throws IOException {
+        TransactionStore store = createStore();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows;
+        try (PdfReport report = new PdfReport(out, "Ledger")) {
+            report.addTitle("Ledger");
+            PdfLedgerWriter writer = new PdfLedgerWriter(report);
+            writer.setMonthlySubtotals(true);
+            rows = writer.write(store, "alice", null, null);
+        }
+        store.close();
+
+        assertEquals(3 * 365 + 1, rows, "Every row of alice and the legacy row should be listed");
+        assertTrue(rows > 2 * PdfLedgerWriter.CHUNK_ROWS, "The listing should take several chunks");
+
+        PdfReader reader = new PdfReader(out.toByteArray());
+        assertTrue(reader.getNumberOfPages() > 20, "The listing should span many pages");
+        StringBuilder text = new StringBuilder();
+        for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+            text.append(PdfTextExtractor.getTextFromPage(reader, page)).append('\n');
+        }
+        reader.close();
+        String all = text.toString();
+        assertTrue(all.contains("Total 2020-01 310.00"), "January 2020 should close with its subtotal");
+        assertTrue(all.contains("Total 2021-06 305.00"), "June 2021 should include the legacy row in its subtotal");
+        assertTrue(all.contains("Total 2022-12"), "The last month should close with its subtotal");
+        assertTrue(all.indexOf("2020-01-01") < all.indexOf("Total 2020-01"), "Rows should come before their subtotal");
+        assertTrue(all.indexOf("Total 2020-01") < all.indexOf("2020-02-01"), "Months should be listed in date order");
+        assertFalse(all.contains("Not alice"), "Other users' rows should be left out");
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for PdfReport class functionality
+ */
+public class PdfReportTest {
+
+    private static JFreeChart chart() {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        dataset.addValue(2000, "支出", "2023-01");
+        dataset.addValue(2500, "支出", "2023-02");
+        return ChartFactory.createLineChart("Transaction Trend", "Month", "Amount", dataset);
+    }
+
+    @Test
+    @DisplayName("Test a chart is embedded as vector graphics, not as an image")
+    public void testVectorChart() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfReport report = new PdfReport(out, "Chart")) {
+            report.addTitle("Transaction Report");
+            report.addChart(chart(), 800, 400);
+        }
+
+        PdfReader reader = new PdfReader(out.toByteArray());
+        PdfDictionary xObjects = reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+        assertNotNull(xObjects, "The chart should be drawn into an XObject");
+        for (PdfName name : xObjects.getKeys()) {
+            assertEquals(PdfName.FORM, xObjects.getAsStream(name).getAsName(PdfName.SUBTYPE),
+                "The chart should be a form of vector drawing commands");
+        }
+        assertTrue(PdfTextExtractor.getTextFromPage(reader, 1).contains("Transaction Report"), "The title should be on the first page");
+        reader.close();
+    }
+
+    @Test
+    @DisplayName("Test a statement with a chart and a long table spans several pages")
+    public void testMultiPageStatement() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            transactions.add(new Transaction("alice", LocalDate.of(2023, 1, 1).plusDays(i), "Row " + i, "Food", 1234.5 + i));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfReport report = new PdfReport(out, "Statement")) {
+            report.addTitle("Monthly Statement");
+            report.addChart(chart(), 523, 300);
+            report.addHeading("Transactions");
+            report.addTransactionTable(transactions);
+            report.newPage();
+            report.addHeading("Notes");
+            report.addTable(new String[] {"Month", "Amount"}, Collections.singletonList(new String[] {"2023-01", "1.00"}));
+        }
+
+        PdfReader reader = new PdfReader(out.toByteArray());
+        assertTrue(reader.getNumberOfPages() > 3, "The table should continue over several pages");
+        String secondPage = PdfTextExtractor.getTextFromPage(reader, 2);
+        assertTrue(secondPage.contains("Description"), "The table header should repeat on every page");
+        assertTrue(PdfTextExtractor.getTextFromPage(reader, 1).contains("1,234.50"), "Amounts should be grouped with two decimals");
+        assertTrue(PdfTextExtractor.getTextFromPage(reader, reader.getNumberOfPages()).contains("Notes"),
+            "The last section should start on a new page");
+        reader.close();
+    }
+}
@@ -0,0 +1,63 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for StatementJob class functionality
+ */
+public class StatementJobTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Test a statement is written for every user with only the month's transactions")
+    public void testStatements() throws IOException, InterruptedException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        List<Transaction> rows = new ArrayList<>();
+        String[] categories = {"Food", "Travel", "餐饮"};
+        for (int i = 0; i < 1200; i++) {
+            rows.add(new Transaction("alice", LocalDate.of(2023, 5, 1 + i % 31), "Purchase " + i, categories[i % 3], 10 + i));
+        }
+        rows.add(new Transaction("alice", LocalDate.of(2023, 6, 1), "Next month", "Food", 99));
+        rows.add(new Transaction("bob", LocalDate.of(2023, 5, 31), "Rent", "Housing", 1500));
+        store.appendAll(rows);
+
+        File outputDirectory = tempDir.resolve("statements").toFile();
+        StatementJob job = new StatementJob(store, new MonthlyRollup(store), outputDirectory, YearMonth.of(2023, 5));
+        job.setThreads(2);
+        StatementJob.Result result = job.run(Arrays.asList("alice", "bob", "carol"));
+
+        assertTrue(result.getFailures().isEmpty(), "No statement should fail: " + result.getFailures());
+        assertEquals(3, result.getStatements(), "Every user should get a statement");
+        assertEquals(1201, result.getTransactions(), "Only May's transactions should be listed");
+        assertTrue(result.getTransactionsPerSecond() > 0, "Throughput should be reported");
+        assertEquals(0, outputDirectory.listFiles((dir, name) -> name.endsWith(".tmp")).length,
+            "No temporary files should be left");
+
+        PdfReader reader = new PdfReader(job.getStatementFile("alice").getPath());
+        assertTrue(reader.getNumberOfPages() > 10, "A long month should span many pages");
+        String firstPage = PdfTextExtractor.getTextFromPage(reader, 1);
+        assertTrue(firstPage.contains("Monthly Statement - 2023-05"), "The statement should name its month");
+        assertTrue(firstPage.contains("Transactions: 1200"), "The totals should count the month's rows");
+        assertFalse(PdfTextExtractor.getTextFromPage(reader, reader.getNumberOfPages()).contains("Next month"),
+            "Rows of the next month should be left out");
+        reader.close();
+        store.close();
+    }
+}
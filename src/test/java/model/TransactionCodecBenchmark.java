@@ -0,0 +1,143 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing TransactionCodec with the original String.format / String.split
+ * implementation of Transaction.toString and Transaction.fromString.
+ * Run the main method directly, e.g. redirecting the output to bench_output.txt.
+ */
+public class TransactionCodecBenchmark {
+
+    private static final int ROWS = 200_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        List<Transaction> transactions = sampleTransactions(ROWS);
+        List<String> lines = new ArrayList<>(ROWS);
+        for (Transaction transaction : transactions) {
+            lines.add(legacyFormat(transaction));
+        }
+        byte[][] rawLines = new byte[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rawLines[i] = lines.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+
+        System.out.println("Rows per round: " + ROWS + ", rounds: " + ROUNDS);
+        for (int warmup = 0; warmup < 2; warmup++) {
+            benchmarkEncode(transactions, warmup == 1);
+            benchmarkDecode(lines, rawLines, warmup == 1);
+        }
+    }
+
+    private static void benchmarkEncode(List<Transaction> transactions, boolean report) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Transaction transaction : transactions) {
+                checksum += legacyFormat(transaction).length();
+            }
+        }
+        long legacy = System.nanoTime() - start;
+
+        TransactionCodec codec = new TransactionCodec();
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Transaction transaction : transactions) {
+                checksum -= codec.encode(transaction).length();
+            }
+        }
+        long reused = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Transaction transaction : transactions) {
+                checksum += codec.encodeBytes(transaction);
+            }
+        }
+        long bytes = System.nanoTime() - start;
+
+        if (report) {
+            print("encode  String.format", legacy);
+            print("encode  codec (chars)", reused);
+            print("encode  codec (UTF-8)", bytes);
+            System.out.println("checksum " + checksum);
+        }
+    }
+
+    private static void benchmarkDecode(List<String> lines, byte[][] rawLines, boolean report) {
+        double checksum = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String line : lines) {
+                checksum += legacyParse(line).getAmount();
+            }
+        }
+        long legacy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String line : lines) {
+                checksum -= TransactionCodec.decode(line).getAmount();
+            }
+        }
+        long text = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] line : rawLines) {
+                checksum += TransactionCodec.decode(line, 0, line.length).getAmount();
+            }
+        }
+        long bytes = System.nanoTime() - start;
+
+        if (report) {
+            print("decode  String.split ", legacy);
+            print("decode  codec (chars)", text);
+            print("decode  codec (UTF-8)", bytes);
+            System.out.println("checksum " + checksum);
+        }
+    }
+
+    private static void print(String name, long nanos) {
+        System.out.printf("%s  %8.1f ns/row%n", name, nanos / (double) (ROWS * ROUNDS));
+    }
+
+    /**
+     * The original Transaction.toString
+     */
+    private static String legacyFormat(Transaction transaction) {
+        return String.format("%s,%s,%s,%s,%.2f",
+            transaction.getUserId(), transaction.getDate().toString(), transaction.getDescription(),
+            transaction.getCategory(), transaction.getAmount());
+    }
+
+    /**
+     * The original Transaction.fromString
+     */
+    private static Transaction legacyParse(String line) {
+        String[] parts = line.split(",");
+        if (parts.length == 4) {
+            return new Transaction(LocalDate.parse(parts[0]), parts[1], parts[2], Double.parseDouble(parts[3]));
+        }
+        return new Transaction(parts[0], LocalDate.parse(parts[1]), parts[2], parts[3], Double.parseDouble(parts[4]));
+    }
+
+    private static List<Transaction> sampleTransactions(int count) {
+        String[] categories = {"Food & Dining", "Housing", "Transportation", "Utilities", "Entertainment", "Other"};
+        Random random = new Random(42);
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(new Transaction("user" + random.nextInt(50),
+                LocalDate.of(2020, 1, 1).plusDays(random.nextInt(1500)),
+                "Purchase " + random.nextInt(10_000),
+                categories[random.nextInt(categories.length)],
+                random.nextInt(500_000) / 100.0));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Tests for TransactionCodec class functionality
+ */
+public class TransactionCodecTest {
+
+    @Test
+    @DisplayName("Test encoding matches the original line format")
+    public void testEncode() {
+        TransactionCodec codec = new TransactionCodec();
+
+        assertEquals("alice,2023-01-05,Rent,Housing,1500.00",
+            codec.encode(new Transaction("alice", LocalDate.of(2023, 1, 5), "Rent", "Housing", 1500)).toString(),
+            "Amounts should always have two decimals");
+        assertEquals("alice,2023-12-31,Refund,Other,-0.50",
+            codec.encode(new Transaction("alice", LocalDate.of(2023, 12, 31), "Refund", "Other", -0.5)).toString(),
+            "Negative amounts should keep their sign");
+        assertEquals(",0999-03-09,Old,Other,0.07",
+            TransactionCodec.format(new Transaction(LocalDate.of(999, 3, 9), "Old", "Other", 0.07)),
+            "Years and fields should be zero padded");
+    }
+
+    @Test
+    @DisplayName("Test decoding both line formats from text and bytes")
+    public void testDecode() {
+        String line = "bob,2024-02-29,Café,Food & Dining,12.5";
+        byte[] bytes = ("xx" + line).getBytes(StandardCharsets.UTF_8);
+
+        Transaction fromText = TransactionCodec.decode(line);
+        Transaction fromBytes = TransactionCodec.decode(bytes, 2, bytes.length - 2);
+
+        for (Transaction transaction : new Transaction[] {fromText, fromBytes}) {
+            assertEquals("bob", transaction.getUserId(), "UserId should be decoded");
+            assertEquals(LocalDate.of(2024, 2, 29), transaction.getDate(), "Leap days should be decoded");
+            assertEquals("Café", transaction.getDescription(), "Non-ASCII text should be decoded");
+            assertEquals(12.5, transaction.getAmount(), 0.0, "One-decimal amounts should be decoded");
+        }
+
+        Transaction legacy = TransactionCodec.decode("2023-01-15,Groceries,Food,123.45");
+        assertEquals("", legacy.getUserId(), "The four-field format should have no userId");
+        assertEquals(123.45, legacy.getAmount(), 0.0, "Amounts should match Double.parseDouble exactly");
+    }
+
+    @Test
+    @DisplayName("Test non-canonical values fall back to the standard parsers")
+    public void testFallbacks() {
+        assertEquals(123457, TransactionCodec.decode("a,2023-01-01,d,c,1234.5678").getAmountCents(),
+            "More than two decimals should still be accepted and rounded to the cent");
+        assertEquals(1000.0, TransactionCodec.decode("a,2023-01-01,d,c,1e3").getAmount(), 0.0,
+            "Exponents should still be accepted");
+        assertThrows(DateTimeParseException.class, () -> TransactionCodec.decode("a,2023-02-30,d,c,1.00"),
+            "Invalid dates should be rejected as before");
+        assertThrows(NumberFormatException.class, () -> TransactionCodec.decode("a,2023-01-01,d,c,abc"),
+            "Invalid amounts should be rejected as before");
+        assertThrows(IllegalArgumentException.class, () -> TransactionCodec.decode("2023-01-01,d,c,"),
+            "Trailing empty fields should not count");
+    }
+}
@@ -0,0 +1,44 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Tests for TransactionFilter class functionality
+ */
+public class TransactionFilterTest {
+
+    private static Transaction row(int day, String category, double amount) {
+        return new Transaction("alice", LocalDate.of(2023, 6, day), "Row", category, amount);
+    }
+
+    @Test
+    @DisplayName("Test a new filter accepts every transaction")
+    public void testAcceptsAll() {
+        TransactionFilter filter = new TransactionFilter();
+        assertFalse(filter.hasDateRange(), "A new filter should have no date range");
+        assertTrue(filter.test(row(1, "Food", -5.00)), "Any transaction should pass");
+        assertTrue(filter.test(row(1, null, 0)), "A transaction without category should pass");
+    }
+
+    @Test
+    @DisplayName("Test date, category and amount criteria are combined")
+    public void testCriteria() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setDateRange(LocalDate.of(2023, 6, 10), LocalDate.of(2023, 6, 20));
+        filter.setCategories(Arrays.asList("Food", "travel"));
+        filter.setAmountRange(1000L, null);
+
+        assertTrue(filter.hasDateRange(), "The date range should be reported");
+        assertTrue(filter.test(row(10, "food", 10.00)), "Bounds should be inclusive and categories case-insensitive");
+        assertTrue(filter.test(row(20, "Travel", 500.00)), "The last day should be included");
+        assertFalse(filter.test(row(21, "Food", 50.00)), "A later date should be rejected");
+        assertFalse(filter.test(row(15, "Rent", 50.00)), "Another category should be rejected");
+        assertFalse(filter.test(row(15, "Food", 9.99)), "A smaller amount should be rejected");
+        assertFalse(filter.test(row(15, null, 50.00)), "A transaction without category should be rejected");
+    }
+}
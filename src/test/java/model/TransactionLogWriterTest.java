@@ -0,0 +1,74 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests for TransactionLogWriter class functionality
+ */
+public class TransactionLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Test write blocks until the rows are readable from the store")
+    public void testWriteIsVisibleAfterReturn() throws IOException {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        TransactionLogWriter writer = new TransactionLogWriter(store);
+
+        writer.write(Collections.singletonList(
+            new Transaction("alice", LocalDate.of(2023, 1, 1), "Rent", "Housing", 1500.0)));
+
+        assertEquals(1, store.count("alice"), "A committed write should be visible immediately");
+        writer.close();
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test concurrent submissions are all committed in order per caller")
+    public void testBurstySubmissions() throws Exception {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        TransactionLogWriter writer = new TransactionLogWriter(store);
+        writer.setLingerMillis(5);
+        writer.setSyncPolicy(TransactionLogWriter.SyncPolicy.NEVER);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(writer.submit(Collections.singletonList(
+                new Transaction("bob", LocalDate.of(2023, 1, 1).plusDays(i), "Item " + i, "Other", i))));
+        }
+        for (CompletableFuture<Void> future : futures) {
+            future.get();
+        }
+
+        List<Transaction> rows = store.read("bob");
+        assertEquals(500, rows.size(), "Every submitted row should be committed");
+        assertEquals("Item 499", rows.get(499).getDescription(), "Rows should keep submission order");
+        writer.close();
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test writes after close are rejected")
+    public void testWriteAfterClose() {
+        TransactionStore store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        TransactionLogWriter writer = new TransactionLogWriter(store);
+        writer.close();
+
+        assertThrows(IOException.class, () -> writer.write(Collections.singletonList(
+            new Transaction("alice", LocalDate.of(2023, 1, 1), "Rent", "Housing", 1.0))),
+            "A closed writer should refuse new rows");
+        store.close();
+    }
+}
@@ -0,0 +1,89 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for TransactionRepository class functionality
+ */
+public class TransactionRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TransactionStore store;
+
+    private TransactionRepository createRepository() throws IOException {
+        store = new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+        store.appendAll(Arrays.asList(
+            new Transaction("alice", LocalDate.of(2023, 1, 1), "Lunch", "Food", 12.5),
+            new Transaction("bob", LocalDate.of(2023, 1, 2), "Rent", "Housing", 900),
+            new Transaction("", LocalDate.of(2022, 12, 31), "Legacy", "Other", 1)));
+        TransactionRepository repository = new TransactionRepository(store);
+        store.addAppendListener(repository);
+        return repository;
+    }
+
+    @Test
+    @DisplayName("Test a ledger is cached and kept per user")
+    public void testCacheAndIsolation() throws IOException {
+        TransactionRepository repository = createRepository();
+        List<Transaction> alice = repository.getTransactions("alice");
+        assertSame(alice, repository.getTransactions("alice"), "A second read should be served from the cache");
+        assertEquals(2, alice.size(), "Alice should see her row and the legacy row");
+        assertEquals("alice", alice.get(1).getUserId(), "Legacy rows should be stamped with the user id");
+        assertEquals("bob", repository.getTransactions("bob").get(1).getUserId(),
+            "Each user's ledger should stamp its own copy of the legacy rows");
+        assertTrue(alice.stream().noneMatch(t -> t.getDescription().equals("Rent")), "Other users' rows should be left out");
+        assertThrows(UnsupportedOperationException.class, () -> alice.add(alice.get(0)), "The cached list should be read-only");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test appends update the cached ledger and compaction invalidates it")
+    public void testInvalidation() throws IOException {
+        TransactionRepository repository = createRepository();
+        List<Transaction> bob = repository.getTransactions("bob");
+        repository.getTransactions("alice");
+
+        Transaction saved = new Transaction("alice", LocalDate.of(2023, 2, 1), "Dinner", "Food", 30);
+        store.append(saved);
+        List<Transaction> alice = repository.getTransactions("alice");
+        assertEquals(3, alice.size(), "An append should be added to the cached ledger");
+        assertSame(bob, repository.getTransactions("bob"), "Another user's cached ledger should be kept");
+
+        saved.setDescription("Changed after saving");
+        assertEquals("Dinner", repository.getTransactions("alice").get(2).getDescription(),
+            "Changing a saved object should not change the cache");
+
+        store.append(new Transaction("", LocalDate.of(2023, 3, 1), "Legacy 2", "Other", 2));
+        assertEquals(3, repository.getTransactions("bob").size(), "A legacy append should reach every user's ledger");
+
+        store.compact("alice");
+        repository.invalidate();
+        assertEquals(4, repository.getTransactions("alice").size(), "Alice should own the migrated legacy rows");
+        assertEquals(1, repository.getTransactions("bob").size(), "Bob should no longer see the migrated rows");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test copies can be modified without changing the cache")
+    public void testCopies() throws IOException {
+        TransactionRepository repository = createRepository();
+        List<Transaction> copy = repository.copyTransactions("alice");
+        copy.get(0).setAmount(99);
+        copy.remove(1);
+        List<Transaction> cached = repository.getTransactions("alice");
+        assertEquals(2, cached.size(), "Removing from the copy should not change the cache");
+        assertEquals(1250, cached.get(0).getAmountCents(), "Changing a copied row should not change the cached row");
+        store.close();
+    }
+}
@@ -0,0 +1,367 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests for TransactionStore class functionality
+ */
+public class TransactionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TransactionStore newStore() {
+        return new TransactionStore(tempDir.resolve("transactions.dat").toFile());
+    }
+
+    @Test
+    @DisplayName("Test reading back one user's transactions")
+    public void testReadByUser() throws IOException {
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("alice", LocalDate.of(2023, 1, 1), "Rent", "Housing", 1500.0),
+            new Transaction("bob", LocalDate.of(2023, 1, 2), "Coffee", "Food", 4.5),
+            new Transaction("alice", LocalDate.of(2023, 1, 3), "Bus", "Transportation", 2.0)
+        ));
+
+        List<Transaction> alice = store.read("alice");
+
+        assertEquals(2, alice.size(), "Only alice's transactions should be returned");
+        assertEquals("Rent", alice.get(0).getDescription(), "Insertion order should be preserved");
+        assertEquals(LocalDate.of(2023, 1, 3), alice.get(1).getDate(), "Date should round-trip");
+        assertEquals(2.0, alice.get(1).getAmount(), 0.001, "Amount should round-trip");
+        assertEquals(1, store.count("bob"), "Bob should have one transaction");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test index is persisted and reused after reopening")
+    public void testReopen() throws IOException {
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 2, 1), "Groceries", "Food", 88.8));
+        store.close();
+
+        TransactionStore reopened = newStore();
+        reopened.append(new Transaction("alice", LocalDate.of(2023, 2, 2), "Lunch", "Food", 30.0));
+
+        assertEquals(2, reopened.read("alice").size(), "Records from before and after reopening should be indexed");
+        assertEquals(2, reopened.readAll().size(), "A full read should return every record");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test a torn record at the end of the file is discarded")
+    public void testTornRecordRecovery() throws IOException {
+        File dataFile = tempDir.resolve("transactions.dat").toFile();
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 3, 1), "Gym", "Personal", 50.0));
+        store.close();
+        new File(dataFile.getPath() + ".idx").delete();
+
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(100);
+            raf.writeShort(5);
+        }
+
+        TransactionStore reopened = newStore();
+        assertEquals(1, reopened.read("alice").size(), "The complete record should survive");
+        reopened.append(new Transaction("alice", LocalDate.of(2023, 3, 2), "Book", "Education", 12.0));
+        assertEquals(2, reopened.readAll().size(), "Appends after recovery should be readable");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test migrating the legacy text format")
+    public void testMigrateFromText() throws IOException {
+        File textFile = tempDir.resolve("transactions.txt").toFile();
+        try (FileWriter writer = new FileWriter(textFile)) {
+            writer.write("2022-12-31,Old row,Other,10.00\n");
+            writer.write("alice,2023-01-15,Groceries,Food,123.45\n");
+            writer.write("not a transaction\n");
+        }
+
+        TransactionStore store = newStore();
+        int migrated = store.migrateFromText(textFile);
+
+        assertEquals(2, migrated, "Valid rows should be migrated and invalid rows skipped");
+        List<Transaction> merged = store.readWithLegacy("alice");
+        assertEquals(2, merged.size(), "Legacy rows should be returned alongside the user's rows");
+        assertEquals("", merged.get(0).getUserId(), "Legacy rows should keep their empty userId");
+        assertEquals(123.45, merged.get(1).getAmount(), 0.001, "Amount should be migrated");
+        assertEquals("not a transaction\n",
+            new String(Files.readAllBytes(tempDir.resolve("transactions.txt.quarantine"))).replace("\r", ""),
+            "Invalid rows should be moved to the quarantine file");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test date range reads return only the range, in date order")
+    public void testReadRange() throws IOException {
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("alice", LocalDate.of(2023, 3, 10), "Gym", "Personal", 50.0),
+            new Transaction("alice", LocalDate.of(2023, 1, 5), "Rent", "Housing", 1500.0),
+            new Transaction("", LocalDate.of(2023, 3, 1), "Old row", "Other", 10.0),
+            new Transaction("bob", LocalDate.of(2023, 3, 2), "Coffee", "Food", 4.5),
+            new Transaction("alice", LocalDate.of(2023, 3, 20), "Book", "Education", 12.0)
+        ));
+
+        List<Transaction> march = store.readRange("alice", true, LocalDate.of(2023, 3, 1), LocalDate.of(2023, 3, 31));
+
+        assertEquals(3, march.size(), "Only March rows of alice and legacy rows should be returned");
+        assertEquals("Old row", march.get(0).getDescription(), "Legacy rows should be merged by date");
+        assertEquals("Gym", march.get(1).getDescription(), "Rows appended out of order should be sorted by date");
+        assertEquals("Book", march.get(2).getDescription(), "The last day of the range should be inclusive");
+        assertEquals(2, store.readRange("alice", false, LocalDate.of(2023, 3, 1), LocalDate.of(2023, 3, 31)).size(),
+            "Legacy rows should be left out when not requested");
+
+        long end = store.getEndPosition();
+        store.append(new Transaction("alice", LocalDate.of(2023, 3, 5), "Imported", "Other", 8.0));
+        List<String> before = new ArrayList<>();
+        store.forEachInRange("alice", false, LocalDate.of(2023, 3, 1), null, 0, end, t -> before.add(t.getDescription()));
+        List<String> since = new ArrayList<>();
+        store.forEachInRange("alice", false, null, null, end, Long.MAX_VALUE, t -> since.add(t.getDescription()));
+        assertEquals(Arrays.asList("Gym", "Book"), before, "Rows appended after the position should be left out");
+        assertEquals(Arrays.asList("Imported"), since, "Only the rows appended after the position should be visited");
+        store.close();
+
+        TransactionStore reopened = newStore();
+        assertEquals(1, reopened.readRange("alice", false, LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 31)).size(),
+            "The date index should survive reopening the store");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test streams read records lazily and only up to the time they were opened")
+    public void testStream() throws IOException {
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("", LocalDate.of(2023, 1, 1), "Old row", "Other", 10.0),
+            new Transaction("alice", LocalDate.of(2023, 1, 2), "Rent", "Housing", 1500.0),
+            new Transaction("bob", LocalDate.of(2023, 1, 3), "Coffee", "Food", 4.5),
+            new Transaction("alice", LocalDate.of(2023, 1, 4), "Bus", "Transportation", 2.0)
+        ));
+
+        try (Stream<Transaction> all = store.stream();
+             Stream<Transaction> alice = store.stream("alice", true)) {
+            store.append(new Transaction("alice", LocalDate.of(2023, 1, 5), "Late", "Other", 1.0));
+
+            assertEquals(4, all.count(), "Rows appended after opening the stream should not be included");
+            List<String> descriptions = alice.map(Transaction::getDescription).collect(Collectors.toList());
+            assertEquals(Arrays.asList("Old row", "Rent", "Bus"), descriptions,
+                "A user's stream should merge legacy rows in insertion order");
+        }
+        try (Stream<Transaction> bob = store.stream("bob", false)) {
+            assertEquals(450, bob.mapToLong(t -> Math.round(t.getAmount() * 100)).sum(), "Streams should support aggregation");
+        }
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test compaction clusters rows by user and date, migrates legacy rows and quarantines corrupt ones")
+    public void testCompact() throws IOException {
+        File dataFile = tempDir.resolve("transactions.dat").toFile();
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("bob", LocalDate.of(2023, 1, 2), "Coffee", "Food", 4.5),
+            new Transaction("alice", LocalDate.of(2023, 1, 3), "Bus", "Transportation", 2.0),
+            new Transaction("", LocalDate.of(2023, 1, 1), "Old row", "Other", 10.0),
+            new Transaction("alice", LocalDate.of(2023, 1, 2), "Lunch", "Food", 12.0),
+            new Transaction("bob", LocalDate.of(2023, 1, 5), "Broken", "X", 1.0)
+        ));
+        store.close();
+
+        // Corrupt the category length of the last record
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.seek(raf.length() - 8 - 1 - 2);
+            raf.writeShort(500);
+        }
+
+        TransactionStore reopened = newStore();
+        TransactionStore.CompactionResult result = reopened.compact("alice");
+
+        assertEquals(4, result.getWritten(), "Every valid record should be kept");
+        assertEquals(1, result.getMigrated(), "The legacy row should be migrated");
+        assertEquals(1, result.getQuarantined(), "The corrupt record should be quarantined");
+        assertTrue(new File(dataFile.getPath() + ".quarantine").length() > 0, "The quarantine file should hold the record");
+        assertEquals(Arrays.asList("Old row", "Lunch", "Bus", "Coffee"),
+            reopened.readAll().stream().map(Transaction::getDescription).collect(Collectors.toList()),
+            "Rows should be clustered by user and sorted by date");
+        assertEquals(0, reopened.count(""), "No legacy rows should be left");
+        assertEquals("alice", reopened.read("alice").get(0).getUserId(), "Migrated rows should be written with their owner");
+
+        reopened.append(new Transaction("bob", LocalDate.of(2023, 1, 6), "Tea", "Food", 3.0));
+        reopened.close();
+        TransactionStore again = newStore();
+        assertEquals(2, again.read("bob").size(), "Appends after compaction should survive reopening");
+        assertFalse(again.needsCompaction("alice"), "A freshly compacted store should not need compaction");
+        again.close();
+    }
+
+    @Test
+    @DisplayName("Test compaction waits for open streams before replacing the data file")
+    public void testCompactWaitsForStreams() throws Exception {
+        TransactionStore store = newStore();
+        store.appendAll(Arrays.asList(
+            new Transaction("bob", LocalDate.of(2023, 1, 2), "Coffee", "Food", 4.5),
+            new Transaction("alice", LocalDate.of(2023, 1, 3), "Bus", "Transportation", 2.0),
+            new Transaction("bob", LocalDate.of(2023, 1, 1), "Tea", "Food", 3.0)
+        ));
+
+        TransactionStore.CompactionResult[] result = new TransactionStore.CompactionResult[1];
+        Thread compactor;
+        try (Stream<Transaction> all = store.stream()) {
+            Iterator<Transaction> records = all.iterator();
+            assertEquals("Coffee", records.next().getDescription(), "The stream should start with the first record");
+
+            compactor = new Thread(() -> {
+                try {
+                    result[0] = store.compact(null);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            compactor.start();
+            compactor.join(500);
+            assertTrue(compactor.isAlive(), "Compaction should wait while a stream is open");
+            store.append(new Transaction("alice", LocalDate.of(2023, 1, 4), "Late", "Other", 1.0));
+
+            assertEquals("Bus", records.next().getDescription(), "The open stream should keep reading the old layout");
+            assertEquals("Tea", records.next().getDescription(), "The open stream should keep reading the old layout");
+        }
+        compactor.join(5000);
+        assertFalse(compactor.isAlive(), "Compaction should finish once the stream is closed");
+
+        assertEquals(3, result[0].getWritten(), "The records of the snapshot should be compacted");
+        assertEquals(Arrays.asList("Bus", "Tea", "Coffee", "Late"),
+            store.readAll().stream().map(Transaction::getDescription).collect(Collectors.toList()),
+            "Rows appended while waiting should follow the compacted ones");
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Test rolling back a savepoint keeps rows appended by others")
+    public void testSavepointRollback() throws IOException {
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 1), "Before", "Food", 1.0));
+
+        TransactionStore.Savepoint imported = store.savepoint();
+        store.appendAll(Arrays.asList(
+            new Transaction("alice", LocalDate.of(2023, 1, 2), "Import 1", "Food", 2.0),
+            new Transaction("alice", LocalDate.of(2023, 1, 3), "Import 2", "Food", 3.0)
+        ), imported);
+        store.append(new Transaction("bob", LocalDate.of(2023, 1, 4), "Manual", "Food", 4.0));
+        TransactionStore.Savepoint other = store.savepoint();
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 5), "Import 3", "Food", 5.0));
+        store.appendAll(Arrays.asList(new Transaction("bob", LocalDate.of(2023, 1, 6), "Other", "Food", 6.0)), other);
+        store.appendAll(Arrays.asList(new Transaction("alice", LocalDate.of(2023, 1, 7), "Import 4", "Food", 7.0)), imported);
+
+        assertEquals(3, store.rollback(imported), "Only the savepoint's records should be removed");
+        assertEquals(Arrays.asList("Before", "Manual", "Import 3", "Other"),
+            store.readAll().stream().map(Transaction::getDescription).collect(Collectors.toList()),
+            "Other records should be kept in order");
+        assertEquals(2, store.read("alice").size(), "The index should no longer list removed records");
+        assertThrows(IllegalStateException.class, () -> store.rollback(imported), "A savepoint can only be rolled back once");
+
+        assertEquals(1, store.rollback(other), "Another savepoint should still find its moved record");
+        store.close();
+
+        TransactionStore reopened = newStore();
+        assertEquals(Arrays.asList("Before", "Manual", "Import 3"),
+            reopened.readAll().stream().map(Transaction::getDescription).collect(Collectors.toList()),
+            "The rollback should be persisted");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test rolling back the last records cuts the file and an interrupted rollback is completed on open")
+    public void testRollbackRecovery() throws IOException {
+        File dataFile = tempDir.resolve("transactions.dat").toFile();
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 1), "Kept", "Food", 1.0));
+        long before = store.getEndPosition();
+        TransactionStore.Savepoint last = store.savepoint();
+        store.appendAll(Arrays.asList(new Transaction("alice", LocalDate.of(2023, 1, 2), "Undone", "Food", 2.0)), last);
+        assertEquals(1, store.rollback(last), "The savepoint's record should be removed");
+        assertEquals(before, dataFile.length(), "Rolling back the last records should cut the file");
+        assertFalse(new File(dataFile.getPath() + ".rollback").exists(), "No journal is needed to cut the file");
+
+        // Removed, then kept record; simulate a crash right after the file was cut back
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 3), "Removed", "Food", 3.0));
+        long removedEnd = store.getEndPosition();
+        store.append(new Transaction("bob", LocalDate.of(2023, 1, 4), "Later", "Food", 4.0));
+        long end = store.getEndPosition();
+        store.close();
+        byte[] data = Files.readAllBytes(dataFile.toPath());
+        ByteBuffer journal = ByteBuffer.allocate(20 + (int) (end - removedEnd));
+        journal.putInt(0x46545855).putLong(before).putLong(end - removedEnd);
+        journal.put(data, (int) removedEnd, (int) (end - removedEnd));
+        Files.write(tempDir.resolve("transactions.dat.rollback"), journal.array());
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.setLength(before);
+        }
+
+        TransactionStore reopened = newStore();
+        assertEquals(Arrays.asList("Kept", "Later"),
+            reopened.readAll().stream().map(Transaction::getDescription).collect(Collectors.toList()),
+            "The journaled records should be written back after the cut");
+        assertEquals(1, reopened.read("bob").size(), "The index should be rebuilt after recovery");
+        assertFalse(new File(dataFile.getPath() + ".rollback").exists(), "The journal should be removed after recovery");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Test streams open during a rollback fail instead of reading moved records")
+    public void testStreamsFailAfterRollback() throws IOException {
+        TransactionStore store = newStore();
+        store.append(new Transaction("alice", LocalDate.of(2023, 1, 1), "Kept", "Food", 1.0));
+        TransactionStore.Savepoint imported = store.savepoint();
+        store.appendAll(Arrays.asList(new Transaction("alice", LocalDate.of(2023, 1, 2), "Undone", "Food", 2.0)), imported);
+        store.append(new Transaction("bob", LocalDate.of(2023, 1, 3), "Later", "Food", 3.0));
+
+        try (Stream<Transaction> all = store.stream();
+             Stream<Transaction> own = store.stream("alice", true);
+             Stream<Transaction> range = store.streamRange("alice", true, null, null)) {
+            Iterator<Transaction> allRecords = all.iterator();
+            assertEquals("Kept", allRecords.next().getDescription(), "Records before the rollback should be read");
+
+            store.rollback(imported);
+
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, allRecords::next,
+                "A stream should fail once records moved under it");
+            assertTrue(e.getCause() instanceof TransactionStore.LayoutChangedException,
+                "The failure should say the store changed");
+            assertThrows(UncheckedIOException.class, () -> own.iterator().next(),
+                "A user's stream should not read the rewritten index");
+            assertThrows(UncheckedIOException.class, () -> range.iterator().next(),
+                "A range stream should not read the old positions");
+        }
+
+        try (Stream<Transaction> reopened = store.stream()) {
+            assertEquals(Arrays.asList("Kept", "Later"),
+                reopened.map(Transaction::getDescription).collect(Collectors.toList()),
+                "A stream opened after the rollback should read the current records");
+        }
+        store.close();
+    }
+}